@@ -48,6 +48,10 @@ jmh {
     timeUnit.set("ns")
     benchmarkMode.set(listOf("thrpt", "avgt"))
     resultFormat.set("JSON")
+    // Report allocation rate and GC churn next to every result
+    profilers.set(listOf("gc"))
+    // The 10M-entry parameters need room for the table plus the boxed key samples
+    jvmArgs.set(listOf("-Xms4g", "-Xmx4g"))
 }
 
 configure<com.vanniktech.maven.publish.MavenPublishBaseExtension> {
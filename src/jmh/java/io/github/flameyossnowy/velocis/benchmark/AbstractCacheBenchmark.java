@@ -0,0 +1,97 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shared workload for the cache benchmarks.
+ * <p>
+ * The cache is pre-filled with {@code size} entries and then driven with keys
+ * drawn from a key space twice as large, so every mix exercises hits, misses
+ * and (for writes) eviction. Three operation mixes are measured:
+ * <ul>
+ *   <li>{@link #readOnly}   — 100% get</li>
+ *   <li>{@link #readMostly} — 80% get / 20% put</li>
+ *   <li>{@link #writeHeavy} — 20% get / 80% put</li>
+ * </ul>
+ * Subclasses choose the implementation and the thread count.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public abstract class AbstractCacheBenchmark {
+    /** Number of pre-sampled keys; power of two so the cursor can be masked. */
+    static final int SAMPLES = 1 << 20;
+
+    @Param({"1000", "100000", "1000000", "10000000"})
+    public int size;
+
+    @Param({"UNIFORM", "ZIPF"})
+    public KeyDistribution distribution;
+
+    Map<Integer, Integer> cache;
+    Integer[] keys;
+
+    abstract Map<Integer, Integer> newCache(int size);
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cache = newCache(size);
+        for (int i = 0; i < size; i++) cache.put(i, i);
+        keys = distribution.sample(size * 2, SAMPLES, 0x5EEDL);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        cache.clear();
+        cache = null;
+        keys  = null;
+    }
+
+    /** Per-thread key cursor and operation-mix generator. */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int  index;
+        long seed;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            index = random.nextInt(SAMPLES);
+            seed  = random.nextLong() | 1L;
+        }
+
+        int nextIndex() {
+            return index = (index + 1) & (SAMPLES - 1);
+        }
+
+        /** Returns a value in {@code [0, 100)} from a per-thread xorshift. */
+        int nextPercent() {
+            long x = seed;
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            seed = x;
+            return (int) ((x >>> 1) % 100);
+        }
+    }
+
+    @Benchmark
+    public Integer readOnly(Cursor cursor) {
+        return cache.get(keys[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    public Integer readMostly(Cursor cursor) {
+        Integer key = keys[cursor.nextIndex()];
+        return cursor.nextPercent() < 80 ? cache.get(key) : cache.put(key, key);
+    }
+
+    @Benchmark
+    public Integer writeHeavy(Cursor cursor) {
+        Integer key = keys[cursor.nextIndex()];
+        return cursor.nextPercent() < 20 ? cache.get(key) : cache.put(key, key);
+    }
+}
@@ -0,0 +1,188 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Shared workload for the table benchmarks.
+ * <p>
+ * The table is pre-filled with a {@code rows x columns} grid of roughly
+ * {@code size} cells ({@code rows ~ sqrt(size)}), so row views have a
+ * realistic number of columns at every size. Row and column keys are boxed
+ * once during setup and looked up by index in the measured loop.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public abstract class AbstractTableBenchmark {
+    static final int SAMPLES = 1 << 20;
+    /** Cells a thread claims at once for {@link #growUnderLoad}, to keep the shared counter cold. */
+    static final int GROW_CHUNK = 64;
+
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    TableTarget table;
+    volatile TableTarget growing;
+    /** Cells handed out to {@link #growUnderLoad} since the iteration started. */
+    final AtomicLong grown = new AtomicLong();
+
+    int rows;
+    int columns;
+
+    Integer[] rowKeys;
+    Integer[] columnKeys;
+    /** Rows that are never pre-filled, used for insert/remove pairs. */
+    Integer[] absentRowKeys;
+
+    /** Pre-sampled existing cells: {@code sampleRows[i], sampleColumns[i]}. */
+    int[] sampleRows;
+    int[] sampleColumns;
+
+    abstract String impl();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        rows    = Math.max(1, (int) Math.sqrt(size));
+        columns = Math.max(1, size / rows);
+
+        rowKeys       = boxed(0, rows);
+        absentRowKeys = boxed(rows, rows);
+        columnKeys    = boxed(0, columns);
+
+        table = TableTarget.create(impl(), 16);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) table.put(rowKeys[r], columnKeys[c], c);
+        }
+
+        SplittableRandom random = new SplittableRandom(0x5EEDL);
+        sampleRows    = new int[SAMPLES];
+        sampleColumns = new int[SAMPLES];
+        for (int i = 0; i < SAMPLES; i++) {
+            sampleRows[i]    = random.nextInt(rows);
+            sampleColumns[i] = random.nextInt(columns);
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetGrowing() {
+        growing = TableTarget.create(impl(), 16);
+        grown.set(0);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        table   = null;
+        growing = null;
+    }
+
+    private static Integer[] boxed(int from, int count) {
+        Integer[] keys = new Integer[count];
+        for (int i = 0; i < count; i++) keys[i] = from + i;
+        return keys;
+    }
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int  index;
+        long seed;
+        /** Next cell of the chunk this thread claimed for {@link #growUnderLoad}, and its end. */
+        long cell;
+        long chunkEnd;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            index = random.nextInt(SAMPLES);
+            seed  = random.nextLong() | 1L;
+        }
+
+        @Setup(Level.Iteration)
+        public void resetChunk() {
+            cell = chunkEnd = 0;
+        }
+
+        int nextIndex() {
+            return index = (index + 1) & (SAMPLES - 1);
+        }
+
+        int nextPercent() {
+            long x = seed;
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            seed = x;
+            return (int) ((x >>> 1) % 100);
+        }
+    }
+
+    @Benchmark
+    public Integer get(Cursor cursor) {
+        int i = cursor.nextIndex();
+        return table.get(rowKeys[sampleRows[i]], columnKeys[sampleColumns[i]]);
+    }
+
+    @Benchmark
+    public Integer update(Cursor cursor) {
+        int i = cursor.nextIndex();
+        Integer column = columnKeys[sampleColumns[i]];
+        return table.put(rowKeys[sampleRows[i]], column, column);
+    }
+
+    @Benchmark
+    public Integer readMostly(Cursor cursor) {
+        int i = cursor.nextIndex();
+        Integer row    = rowKeys[sampleRows[i]];
+        Integer column = columnKeys[sampleColumns[i]];
+        return cursor.nextPercent() < 80 ? table.get(row, column) : table.put(row, column, column);
+    }
+
+    /** Inserts a cell into an absent row and removes it again. */
+    @Benchmark
+    public Integer insertRemove(Cursor cursor) {
+        int i = cursor.nextIndex();
+        Integer row    = absentRowKeys[sampleRows[i]];
+        Integer column = columnKeys[sampleColumns[i]];
+        table.put(row, column, column);
+        return table.remove(row, column);
+    }
+
+    @Benchmark
+    public Integer rowGet(Cursor cursor) {
+        int i = cursor.nextIndex();
+        return table.rowGet(rowKeys[sampleRows[i]], columnKeys[sampleColumns[i]]);
+    }
+
+    @Benchmark
+    public int rowScan(Cursor cursor) {
+        return table.rowScan(rowKeys[sampleRows[cursor.nextIndex()]]);
+    }
+
+    @Benchmark
+    public int scan() {
+        return table.scan();
+    }
+
+    /**
+     * Inserts distinct cells into a table that starts at the default
+     * capacity, while the other threads insert theirs, so the measured
+     * window covers every resize up to {@code size} cells. Once all the
+     * cells have been handed out, the thread that wraps the count starts a
+     * fresh table: every put is an insert, apart from the at most one chunk
+     * per thread still landing in the new table from the previous round.
+     */
+    @Benchmark
+    public Integer growUnderLoad(Cursor cursor) {
+        if (cursor.cell == cursor.chunkEnd) {
+            cursor.cell     = grown.getAndAdd(GROW_CHUNK);
+            cursor.chunkEnd = cursor.cell + GROW_CHUNK;
+        }
+        long n    = cursor.cell++;
+        int  cell = (int) (n % (rows * columns));
+        if (cell == 0 && n != 0) growing = TableTarget.create(impl(), 16);
+        return growing.put(rowKeys[cell / columns], columnKeys[cell % columns], cell);
+    }
+}
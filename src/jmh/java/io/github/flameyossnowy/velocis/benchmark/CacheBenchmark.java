@@ -0,0 +1,29 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import io.github.flameyossnowy.velocis.cache.algorithms.LFRUCache;
+import io.github.flameyossnowy.velocis.cache.algorithms.LFUCache;
+import io.github.flameyossnowy.velocis.cache.algorithms.LRUCache;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Map;
+
+/**
+ * Single-threaded caches. These are not thread-safe, so they are only
+ * measured with one thread.
+ */
+@Threads(1)
+public class CacheBenchmark extends AbstractCacheBenchmark {
+    @Param({"LRUCache", "LFUCache", "LFRUCache"})
+    public String impl;
+
+    @Override
+    Map<Integer, Integer> newCache(int size) {
+        return switch (impl) {
+            case "LRUCache"  -> new LRUCache<>(size);
+            case "LFUCache"  -> new LFUCache<>(size);
+            case "LFRUCache" -> new LFRUCache<>(size);
+            default -> throw new IllegalArgumentException("Unknown cache: " + impl);
+        };
+    }
+}
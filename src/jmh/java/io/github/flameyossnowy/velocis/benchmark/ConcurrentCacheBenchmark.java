@@ -0,0 +1,48 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFUCache;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLRUCache;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentSLRUCache;
+import io.github.flameyossnowy.velocis.cache.algorithms.Probing;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Map;
+
+/**
+ * Lock-based open-addressing caches, measured at 1, 4 and all available
+ * threads and with each {@link Probing} mode. Each nested class inherits
+ * the workload and only pins the thread count. The thread-safe caches
+ * without a probing mode are in {@link UnprobedConcurrentCacheBenchmark}.
+ */
+public abstract class ConcurrentCacheBenchmark extends AbstractCacheBenchmark {
+    @Param({"ConcurrentLRUCache", "ConcurrentLFUCache", "ConcurrentLFRUCache", "ConcurrentSLRUCache"})
+    public String impl;
+
+    @Param({"LINEAR", "ROBIN_HOOD"})
+    public Probing probing;
+
+    @Override
+    Map<Integer, Integer> newCache(int size) {
+        return switch (impl) {
+            case "ConcurrentLRUCache"  -> new ConcurrentLRUCache<>(size, probing);
+            case "ConcurrentLFUCache"  -> new ConcurrentLFUCache<>(size, probing);
+            case "ConcurrentLFRUCache" -> new ConcurrentLFRUCache<>(size, probing);
+            case "ConcurrentSLRUCache" -> new ConcurrentSLRUCache<>(size, probing);
+            default -> throw new IllegalArgumentException("Unknown cache: " + impl);
+        };
+    }
+
+    @Threads(1)
+    public static class OneThread extends ConcurrentCacheBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends ConcurrentCacheBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MaxThreads extends ConcurrentCacheBenchmark {
+    }
+}
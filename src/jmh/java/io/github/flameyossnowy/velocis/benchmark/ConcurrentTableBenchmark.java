@@ -0,0 +1,30 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Thread-safe tables and their concurrent-map baselines at 1, 4 and all
+ * available threads.
+ */
+public abstract class ConcurrentTableBenchmark extends AbstractTableBenchmark {
+    @Param({"ConcurrentHashTable", "LinkedConcurrentTable", "ConcurrentHashMapPair", "NestedConcurrentHashMap"})
+    public String impl;
+
+    @Override
+    String impl() {
+        return impl;
+    }
+
+    @Threads(1)
+    public static class OneThread extends ConcurrentTableBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends ConcurrentTableBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MaxThreads extends ConcurrentTableBenchmark {
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import java.util.SplittableRandom;
+
+/**
+ * Key distributions used to drive the benchmarks.
+ * <p>
+ * Keys are pre-sampled into a boxed array during setup so that the measured
+ * loop neither boxes nor draws random numbers, which keeps the GC profiler
+ * output attributable to the structure under test.
+ */
+public enum KeyDistribution {
+    /** Every key in the key space is equally likely. */
+    UNIFORM {
+        @Override
+        Integer[] sample(int keySpace, int count, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Integer[] keys = new Integer[count];
+            for (int i = 0; i < count; i++) keys[i] = random.nextInt(keySpace);
+            return keys;
+        }
+    },
+
+    /**
+     * Scrambled Zipfian (theta = 0.99), as used by YCSB. Popular ranks are
+     * hashed across the key space so the hot set does not sit in one
+     * contiguous run of slots.
+     */
+    ZIPF {
+        @Override
+        Integer[] sample(int keySpace, int count, long seed) {
+            SplittableRandom random = new SplittableRandom(seed);
+            Zipf zipf = new Zipf(keySpace, 0.99);
+            Integer[] keys = new Integer[count];
+            for (int i = 0; i < count; i++) {
+                long rank = zipf.next(random.nextDouble());
+                keys[i] = (int) Long.remainderUnsigned(fmix64(rank), keySpace);
+            }
+            return keys;
+        }
+    };
+
+    abstract Integer[] sample(int keySpace, int count, long seed);
+
+    private static long fmix64(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /** Gray et al. rejection-free Zipfian generator over ranks {@code [0, n)}. */
+    private static final class Zipf {
+        private final long   n;
+        private final double theta;
+        private final double alpha;
+        private final double zetaN;
+        private final double eta;
+
+        Zipf(long n, double theta) {
+            this.n     = n;
+            this.theta = theta;
+            this.alpha = 1.0 / (1.0 - theta);
+            this.zetaN = zeta(n, theta);
+            double zeta2 = zeta(2, theta);
+            this.eta   = (1 - Math.pow(2.0 / n, 1 - theta)) / (1 - zeta2 / zetaN);
+        }
+
+        long next(double u) {
+            double uz = u * zetaN;
+            if (uz < 1.0) return 0;
+            if (uz < 1.0 + Math.pow(0.5, theta)) return 1;
+            return Math.min(n - 1, (long) (n * Math.pow(eta * u - eta + 1, alpha)));
+        }
+
+        private static double zeta(long n, double theta) {
+            double sum = 0;
+            for (long i = 1; i <= n; i++) sum += 1 / Math.pow(i, theta);
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Every table, plus the {@code HashMap<Pair, V>} and nested-map baselines,
+ * on a single thread.
+ */
+@Threads(1)
+public class TableBenchmark extends AbstractTableBenchmark {
+    @Param({"HashTable", "LinkedHashTable", "ConcurrentHashTable", "LinkedConcurrentTable", "HashMapPair", "NestedHashMap"})
+    public String impl;
+
+    @Override
+    String impl() {
+        return impl;
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import io.github.flameyossnowy.velocis.tables.ConcurrentHashTable;
+import io.github.flameyossnowy.velocis.tables.HashTable;
+import io.github.flameyossnowy.velocis.tables.LinkedConcurrentTable;
+import io.github.flameyossnowy.velocis.tables.LinkedHashTable;
+import io.github.flameyossnowy.velocis.tables.Table;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Uniform two-key interface over the Velocis tables and the map-based
+ * baselines they are compared against, so every benchmark runs the exact
+ * same call sequence regardless of the structure underneath.
+ */
+abstract class TableTarget {
+
+    abstract Integer get(Integer row, Integer column);
+
+    abstract Integer put(Integer row, Integer column, Integer value);
+
+    abstract Integer remove(Integer row, Integer column);
+
+    /** Looks up a single column through the row view. */
+    abstract Integer rowGet(Integer row, Integer column);
+
+    /** Walks every column of one row and folds the values. */
+    abstract int rowScan(Integer row);
+
+    /** Walks every mapping and folds the values. */
+    abstract int scan();
+
+    static TableTarget create(String impl, int initialCapacity) {
+        return switch (impl) {
+            case "HashTable"               -> new Velocis(new HashTable<>(initialCapacity));
+            case "LinkedHashTable"         -> new Velocis(new LinkedHashTable<>(initialCapacity));
+            case "ConcurrentHashTable"     -> new Velocis(new ConcurrentHashTable<>(initialCapacity));
+            case "LinkedConcurrentTable"   -> new Velocis(new LinkedConcurrentTable<>(initialCapacity));
+            case "HashMapPair"             -> new PairMap(new HashMap<>(initialCapacity));
+            case "ConcurrentHashMapPair"   -> new PairMap(new ConcurrentHashMap<>(initialCapacity));
+            case "NestedHashMap"           -> new NestedMap(new HashMap<>(), false);
+            case "NestedConcurrentHashMap" -> new NestedMap(new ConcurrentHashMap<>(), true);
+            default -> throw new IllegalArgumentException("Unknown table: " + impl);
+        };
+    }
+
+    private static final class Velocis extends TableTarget {
+        private final Table<Integer, Integer, Integer> table;
+
+        Velocis(Table<Integer, Integer, Integer> table) {
+            this.table = table;
+        }
+
+        @Override Integer get(Integer row, Integer column)                { return table.get(row, column); }
+        @Override Integer put(Integer row, Integer column, Integer value) { return table.put(row, column, value); }
+        @Override Integer remove(Integer row, Integer column)             { return table.remove(row, column); }
+        @Override Integer rowGet(Integer row, Integer column)             { return table.row(row).get(column); }
+
+        @Override
+        int rowScan(Integer row) {
+            int acc = 0;
+            for (Map.Entry<Integer, Integer> e : table.row(row).entrySet()) acc += e.getValue();
+            return acc;
+        }
+
+        @Override
+        int scan() {
+            int[] acc = {0};
+            table.forEach((r, c, v) -> acc[0] += v);
+            return acc[0];
+        }
+    }
+
+    /** {@code Map<Pair, V>} baseline: one composite key object per lookup. */
+    private static final class PairMap extends TableTarget {
+        private final Map<Pair, Integer> map;
+
+        PairMap(Map<Pair, Integer> map) {
+            this.map = map;
+        }
+
+        @Override Integer get(Integer row, Integer column)                { return map.get(new Pair(row, column)); }
+        @Override Integer put(Integer row, Integer column, Integer value) { return map.put(new Pair(row, column), value); }
+        @Override Integer remove(Integer row, Integer column)             { return map.remove(new Pair(row, column)); }
+        @Override Integer rowGet(Integer row, Integer column)             { return get(row, column); }
+
+        @Override
+        int rowScan(Integer row) {
+            // No row index: a row view over a pair-keyed map is a full scan.
+            int acc = 0;
+            for (Map.Entry<Pair, Integer> e : map.entrySet()) {
+                if (e.getKey().row.equals(row)) acc += e.getValue();
+            }
+            return acc;
+        }
+
+        @Override
+        int scan() {
+            int acc = 0;
+            for (Integer v : map.values()) acc += v;
+            return acc;
+        }
+    }
+
+    /** Guava {@code HashBasedTable}-style baseline: {@code Map<R, Map<C, V>>}. */
+    private static final class NestedMap extends TableTarget {
+        private final Map<Integer, Map<Integer, Integer>> rows;
+        private final boolean concurrent;
+
+        NestedMap(Map<Integer, Map<Integer, Integer>> rows, boolean concurrent) {
+            this.rows       = rows;
+            this.concurrent = concurrent;
+        }
+
+        @Override
+        Integer get(Integer row, Integer column) {
+            Map<Integer, Integer> columns = rows.get(row);
+            return columns == null ? null : columns.get(column);
+        }
+
+        @Override
+        Integer put(Integer row, Integer column, Integer value) {
+            return rows.computeIfAbsent(row, r -> concurrent ? new ConcurrentHashMap<>() : new HashMap<>())
+                    .put(column, value);
+        }
+
+        @Override
+        Integer remove(Integer row, Integer column) {
+            Map<Integer, Integer> columns = rows.get(row);
+            return columns == null ? null : columns.remove(column);
+        }
+
+        @Override
+        Integer rowGet(Integer row, Integer column) {
+            return get(row, column);
+        }
+
+        @Override
+        int rowScan(Integer row) {
+            Map<Integer, Integer> columns = rows.get(row);
+            if (columns == null) return 0;
+            int acc = 0;
+            for (Integer v : columns.values()) acc += v;
+            return acc;
+        }
+
+        @Override
+        int scan() {
+            int acc = 0;
+            for (Map<Integer, Integer> columns : rows.values()) {
+                for (Integer v : columns.values()) acc += v;
+            }
+            return acc;
+        }
+    }
+
+    private record Pair(Integer row, Integer column) {
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.flameyossnowy.velocis.benchmark;
+
+import io.github.flameyossnowy.velocis.cache.LinkedConcurrentCache;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentClockCache;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.Map;
+
+/**
+ * Thread-safe caches that have no {@link io.github.flameyossnowy.velocis.cache.algorithms.Probing}
+ * mode, measured at 1, 4 and all available threads like
+ * {@link ConcurrentCacheBenchmark}, but without crossing them with a
+ * parameter they would ignore.
+ */
+public abstract class UnprobedConcurrentCacheBenchmark extends AbstractCacheBenchmark {
+    @Param({"ConcurrentClockCache", "LinkedConcurrentCache"})
+    public String impl;
+
+    @Override
+    Map<Integer, Integer> newCache(int size) {
+        return switch (impl) {
+            case "ConcurrentClockCache"  -> new ConcurrentClockCache<>(size);
+            case "LinkedConcurrentCache" -> new LinkedConcurrentCache<>(size, true);
+            default -> throw new IllegalArgumentException("Unknown cache: " + impl);
+        };
+    }
+
+    @Threads(1)
+    public static class OneThread extends UnprobedConcurrentCacheBenchmark {
+    }
+
+    @Threads(4)
+    public static class FourThreads extends UnprobedConcurrentCacheBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class MaxThreads extends UnprobedConcurrentCacheBenchmark {
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.flameyossnowy.velocis.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Turns keys or values into bytes and back, wherever they leave the Java
+ * heap: off-heap tiers, invalidation messages, snapshots. {@code decode(encode(v))}
+ * must equal {@code v}.
+ * <p>
+ * {@link #write} and {@link #read} are the streaming form used by
+ * snapshots, which write millions of values back to back. By default they
+ * length-prefix {@link #encode}'s bytes; a codec that can write straight to
+ * the stream should override both, as the built-in numeric and byte-array
+ * codecs do, to skip the intermediate array.
+ * Implementations must be thread-safe; the built-in ones are stateless.
+ */
+public interface Codec<T> {
+
+    byte[] encode(@NotNull T value);
+
+    @NotNull T decode(byte[] bytes);
+
+    /** Writes {@code value} so that {@link #read} reads it back. */
+    default void write(@NotNull T value, @NotNull DataOutput out) throws IOException {
+        byte[] bytes = encode(value);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    default @NotNull T read(@NotNull DataInput in) throws IOException {
+        return decode(readBytes(in));
+    }
+
+    /**
+     * Reads a length-prefixed array as written by the default {@link #write}.
+     * The array grows as the bytes arrive, so a corrupt length runs into
+     * the end of the stream instead of allocating up to 2 GB up front.
+     */
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) throw new StreamCorruptedException("negative length " + len);
+        byte[] bytes = new byte[Math.min(len, 1 << 16)];
+        for (int off = 0; ; ) {
+            in.readFully(bytes, off, bytes.length - off);
+            if (bytes.length == len) return bytes;
+            off   = bytes.length;
+            bytes = Arrays.copyOf(bytes, (int) Math.min(len, bytes.length * 2L));
+        }
+    }
+
+    /** UTF-8 strings. */
+    Codec<String> STRING = new Codec<>() {
+        @Override public byte[] encode(@NotNull String value) { return value.getBytes(StandardCharsets.UTF_8); }
+        @Override public @NotNull String decode(byte[] bytes) { return new String(bytes, StandardCharsets.UTF_8); }
+    };
+
+    /** Byte arrays, stored as they are. */
+    Codec<byte[]> BYTES = new Codec<>() {
+        @Override public byte[] encode(byte[] value) { return value.clone(); }
+        @Override public byte[] decode(byte[] bytes) { return bytes; }
+        @Override public void write(byte[] value, @NotNull DataOutput out) throws IOException {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+        @Override public byte[] read(@NotNull DataInput in) throws IOException { return readBytes(in); }
+    };
+
+    Codec<Integer> INTEGER = new Codec<>() {
+        @Override public byte[] encode(@NotNull Integer value) { return ByteBuffer.allocate(Integer.BYTES).putInt(0, value).array(); }
+        @Override public @NotNull Integer decode(byte[] bytes) { return ByteBuffer.wrap(bytes).getInt(0); }
+        @Override public void write(@NotNull Integer value, @NotNull DataOutput out) throws IOException { out.writeInt(value); }
+        @Override public @NotNull Integer read(@NotNull DataInput in) throws IOException { return in.readInt(); }
+    };
+
+    Codec<Long> LONG = new Codec<>() {
+        @Override public byte[] encode(@NotNull Long value) { return ByteBuffer.allocate(Long.BYTES).putLong(0, value).array(); }
+        @Override public @NotNull Long decode(byte[] bytes) { return ByteBuffer.wrap(bytes).getLong(0); }
+        @Override public void write(@NotNull Long value, @NotNull DataOutput out) throws IOException { out.writeLong(value); }
+        @Override public @NotNull Long read(@NotNull DataInput in) throws IOException { return in.readLong(); }
+    };
+
+    /**
+     * Java serialization. Works for any {@link Serializable} value, but is
+     * slow and verbose; prefer a dedicated codec on hot paths.
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Serializable> @NotNull Codec<T> serializable() {
+        return new Codec<>() {
+            @Override
+            public byte[] encode(@NotNull T value) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+                    out.writeObject(value);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return bytes.toByteArray();
+            }
+
+            @Override
+            public @NotNull T decode(byte[] bytes) {
+                try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes))) {
+                    return (T) in.readObject();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } catch (ClassNotFoundException e) {
+                    throw new IllegalStateException("Cannot decode value", e);
+                }
+            }
+        };
+    }
+}
@@ -1,18 +1,47 @@
 package io.github.flameyossnowy.velocis.cache;
 
 import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentDoublyLinkedList;
-import io.github.flameyossnowy.velocis.cache.algorithms.Node;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentDoublyLinkedList.Node;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
-
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFUCache.nextPow2;
+
+/**
+ * Concurrent map that keeps its entries in a {@link ConcurrentDoublyLinkedList},
+ * which takes no locks but can block, in insertion order or (optionally)
+ * access order, and can be bounded.
+ * <p>
+ * A {@link ConcurrentHashMap} indexes the list nodes. When {@code maxSize}
+ * is set, inserting past it evicts from the head of the list: the oldest
+ * entry, or the least-recently-used one in access order.
+ * <p>
+ * In access order, {@code get} does not move the node itself. Hits are
+ * recorded in small striped, lossy read buffers and replayed onto the list
+ * in batches by whichever thread wins a {@code tryLock}, so reads do not all
+ * contend on the tail. A hit dropped from a full buffer only makes the
+ * recency order slightly stale.
+ */
 @SuppressWarnings("unused")
 public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Map<K, V> {
 
     private final ConcurrentHashMap<K, Node<K, V>> map;
     private final ConcurrentDoublyLinkedList<K, V> concurrentDoublyLinkedList;
 
+    private final int           maxSize;
+    private final boolean       accessOrder;
+    private final AtomicInteger size = new AtomicInteger();
+
+    // Access-order read buffers (null in insertion order)
+    private final ReadBuffer[]  readBuffers;
+    private final int           readBufferMask;
+    private final ReentrantLock drainLock = new ReentrantLock();
+
     private Values values;
     private EntrySet entrySet;
     private KeySet keySet;
@@ -20,10 +49,38 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
     private static final int INITIAL_CAPACITY = 16;
     private static final int INITIAL_CONCURRENCY_LEVEL = 1;
     private static final float INITIAL_LOAD_FACTOR =  0.75F;
-
-    public LinkedConcurrentCache(int preallocatedSize, float loadFactor, int concurrencyLevel) {
+    private static final int UNBOUNDED = Integer.MAX_VALUE;
+
+    /**
+     * @param maxSize     the most entries kept before the head is evicted
+     * @param accessOrder whether {@code get} promotes an entry, making eviction LRU
+     *                    instead of FIFO
+     */
+    public LinkedConcurrentCache(int preallocatedSize, float loadFactor, int concurrencyLevel,
+                                 int maxSize, boolean accessOrder) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
         this.map = new ConcurrentHashMap<>(preallocatedSize, loadFactor, concurrencyLevel);
         this.concurrentDoublyLinkedList = new ConcurrentDoublyLinkedList<>();
+        this.maxSize     = maxSize;
+        this.accessOrder = accessOrder;
+
+        if (accessOrder) {
+            int stripes = nextPow2(Runtime.getRuntime().availableProcessors());
+            this.readBuffers = new ReadBuffer[stripes];
+            for (int i = 0; i < stripes; i++) readBuffers[i] = new ReadBuffer();
+            this.readBufferMask = stripes - 1;
+        } else {
+            this.readBuffers    = null;
+            this.readBufferMask = 0;
+        }
+    }
+
+    public LinkedConcurrentCache(int maxSize, boolean accessOrder) {
+        this(Math.min(maxSize, 1 << 16), INITIAL_LOAD_FACTOR, INITIAL_CONCURRENCY_LEVEL, maxSize, accessOrder);
+    }
+
+    public LinkedConcurrentCache(int preallocatedSize, float loadFactor, int concurrencyLevel) {
+        this(preallocatedSize, loadFactor, concurrencyLevel, UNBOUNDED, false);
     }
 
     public LinkedConcurrentCache(int preallocatedSize, int loadFactor) {
@@ -60,12 +117,12 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
 
     @Override
     public int size() {
-        return map.size();
+        return size.get();
     }
 
     @Override
     public boolean isEmpty() {
-        return map.isEmpty();
+        return size.get() == 0;
     }
 
     @Override
@@ -81,28 +138,60 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
         return false;
     }
 
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public boolean isAccessOrder() {
+        return accessOrder;
+    }
+
     public V get(Object key) {
-        return map.get(key).value;
+        Node<K, V> node = map.get(key);
+        if (node == null) return null;
+        if (accessOrder) recordAccess(node);
+        return node.getValue();
     }
 
+    @SuppressWarnings("unchecked")
     public V put(K key, V value) {
-        Node<K, V> newNode = new Node<>(key, value);
+        if (key   == null) throw new IllegalArgumentException("Null keys are not allowed");
+        if (value == null) throw new IllegalArgumentException("Null values are not allowed");
+
+        Object[] previous = new Object[1];
         while (true) {
-            Node<K, V> oldNode = map.putIfAbsent(key, newNode);
+            // Under the map's lock for the key, which remove and unmap take
+            // too: a concurrent removal either sees the new value or unmaps
+            // the node first and sends this put to the insert below.
+            Node<K, V> oldNode = map.computeIfPresent(key, (k, node) -> {
+                if (node.isDeleted()) {
+                    // Evicted, but the evicting thread has not unmapped it yet.
+                    size.decrementAndGet();
+                    return null;
+                }
+                previous[0] = node.setValue(value);
+                return node;
+            });
             if (oldNode != null) {
-                oldNode.value = value;
-                this.concurrentDoublyLinkedList.moveToEnd(oldNode);
-                return value;
+                if (accessOrder) recordAccess(oldNode);
+                return (V) previous[0];
+            }
+
+            Node<K, V> newNode = new Node<>(key, value);
+            if (map.putIfAbsent(key, newNode) == null) {
+                this.concurrentDoublyLinkedList.addToEnd(newNode);
+                if (size.incrementAndGet() > maxSize) evict();
+                return null;
             }
-            this.concurrentDoublyLinkedList.addToEnd(newNode);
         }
     }
 
     public V remove(Object key) {
         Node<K, V> node = map.remove(key);
         if (node != null) {
+            size.decrementAndGet();
             this.concurrentDoublyLinkedList.remove(node);
-            return node.value;
+            return node.getValue();
         }
         return null;
     }
@@ -114,15 +203,154 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
         }
     }
 
+    /** Not atomic: entries put concurrently may survive. */
     public void clear() {
-        map.clear();
-        concurrentDoublyLinkedList.clear();
+        drainLock.lock();
+        try {
+            if (readBuffers != null) {
+                for (ReadBuffer buffer : readBuffers) buffer.clear();
+            }
+            for (Node<K, V> node : map.values()) {
+                if (unmap(node)) concurrentDoublyLinkedList.remove(node);
+            }
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    /** Removes {@code node}'s mapping if it is still the current one. */
+    private boolean unmap(Node<K, V> node) {
+        if (map.remove(node.getKey(), node)) {
+            size.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Evicts from the head until the cache is back within {@code maxSize}.
+     * Pending promotions are applied first so that recently read entries
+     * are not mistaken for cold ones.
+     */
+    private void evict() {
+        if (accessOrder) tryDrainReadBuffers();
+        while (size.get() > maxSize) {
+            Node<K, V> head = concurrentDoublyLinkedList.removeHead();
+            if (head == null) return;
+            unmap(head);
+        }
+    }
+
+    private void recordAccess(Node<K, V> node) {
+        ReadBuffer buffer = readBuffers[stripe() & readBufferMask];
+        if (buffer.offer(node)) return;
+        tryDrainReadBuffers();
+        buffer.offer(node);
+    }
+
+    /** Replays buffered reads onto the list, unless another thread already is. */
+    private void tryDrainReadBuffers() {
+        if (!drainLock.tryLock()) return;
+        try {
+            for (ReadBuffer buffer : readBuffers) buffer.drainTo(concurrentDoublyLinkedList);
+        } finally {
+            drainLock.unlock();
+        }
+    }
+
+    private static int stripe() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Bounded multi-producer ring of pending promotions, drained by one
+     * thread at a time under {@code drainLock}. Offers fail rather than
+     * wait when the ring is full or contended.
+     */
+    private static final class ReadBuffer {
+        static final int SIZE = 16;
+        static final int MASK = SIZE - 1;
+
+        final AtomicReferenceArray<Node<?, ?>> slots = new AtomicReferenceArray<>(SIZE);
+        final AtomicInteger writes = new AtomicInteger();
+        volatile int reads;
+
+        /** Returns false if the ring is full and should be drained. */
+        boolean offer(Node<?, ?> node) {
+            int tail = writes.get();
+            if (tail - reads >= SIZE) return false;
+            if (writes.compareAndSet(tail, tail + 1)) slots.lazySet(tail & MASK, node);
+            return true; // lost the race: dropping the hit is fine
+        }
+
+        @SuppressWarnings("unchecked")
+        <K, V> void drainTo(ConcurrentDoublyLinkedList<K, V> list) {
+            int head = reads;
+            int tail = writes.get();
+            for (; head != tail; head++) {
+                int i = head & MASK;
+                Node<K, V> node = (Node<K, V>) slots.get(i);
+                if (node == null) break; // claimed but not yet published
+                slots.lazySet(i, null);
+                list.moveToEnd(node);
+            }
+            reads = head;
+        }
+
+        void clear() {
+            int tail = writes.get();
+            for (int i = 0; i < SIZE; i++) slots.lazySet(i, null);
+            reads = tail;
+        }
+    }
+
+    /** Weakly consistent walk over the live nodes, from head to tail. */
+    private abstract class NodeIterator<T> implements Iterator<T> {
+        private final Node<K, V> end = concurrentDoublyLinkedList.getTail();
+        private Node<K, V> current = advance(concurrentDoublyLinkedList.getHead());
+        private Node<K, V> lastReturned;
+
+        private Node<K, V> advance(Node<K, V> from) {
+            Node<K, V> n = from.successor();
+            while (n != null && n != end && n.isDeleted()) n = n.successor();
+            return n == end ? null : n;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return current != null;
+        }
+
+        Node<K, V> nextNode() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            lastReturned = current;
+            current = advance(current);
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == null) {
+                throw new IllegalStateException();
+            }
+            if (unmap(lastReturned)) concurrentDoublyLinkedList.remove(lastReturned);
+            lastReturned = null;
+        }
     }
 
     private class KeySet extends AbstractSet<K> {
         @Override
         public @NotNull Iterator<K> iterator() {
-            return new KeyIterator();
+            return new NodeIterator<K>() {
+                @Override
+                public K next() {
+                    return nextNode().getKey();
+                }
+            };
         }
 
         @Override
@@ -144,41 +372,17 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
         public void clear() {
             LinkedConcurrentCache.this.clear();
         }
-
-        private class KeyIterator implements Iterator<K> {
-            private Node<K, V> current = concurrentDoublyLinkedList.getHead().get();
-            private Node<K, V> lastReturned;
-
-            @Override
-            public boolean hasNext() {
-                return current != null;
-            }
-
-            @Override
-            public K next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
-                }
-                lastReturned = current;
-                current = current.next;
-                return lastReturned.key;
-            }
-
-            @Override
-            public void remove() {
-                if (lastReturned == null) {
-                    throw new IllegalStateException();
-                }
-                LinkedConcurrentCache.this.remove(lastReturned.key);
-                lastReturned = null;
-            }
-        }
     }
 
     private class Values extends AbstractCollection<V> {
         @Override
         public @NotNull Iterator<V> iterator() {
-            return new ValueIterator();
+            return new NodeIterator<V>() {
+                @Override
+                public V next() {
+                    return nextNode().getValue();
+                }
+            };
         }
 
         @Override
@@ -195,41 +399,18 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
         public void clear() {
             LinkedConcurrentCache.this.clear();
         }
-
-        private class ValueIterator implements Iterator<V> {
-            private Node<K, V> current = concurrentDoublyLinkedList.getHead().get();
-            private Node<K, V> lastReturned;
-
-            @Override
-            public boolean hasNext() {
-                return current != null;
-            }
-
-            @Override
-            public V next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
-                }
-                lastReturned = current;
-                current = current.next;
-                return lastReturned.value;
-            }
-
-            @Override
-            public void remove() {
-                if (lastReturned == null) {
-                    throw new IllegalStateException();
-                }
-                LinkedConcurrentCache.this.remove(lastReturned.key);
-                lastReturned = null;
-            }
-        }
     }
 
     private class EntrySet extends AbstractSet<Entry<K, V>> {
         @Override
         public @NotNull Iterator<Entry<K, V>> iterator() {
-            return new EntryIterator();
+            return new NodeIterator<Entry<K, V>>() {
+                @Override
+                public Entry<K, V> next() {
+                    Node<K, V> node = nextNode();
+                    return new AbstractMap.SimpleEntry<>(node.getKey(), node.getValue());
+                }
+            };
         }
 
         @Override
@@ -240,8 +421,8 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
         @Override
         public boolean contains(Object o) {
             if (!(o instanceof final Map.Entry<?, ?> entry)) return false;
-            V value = LinkedConcurrentCache.this.get(entry.getKey());
-            return value != null && value.equals(entry.getValue());
+            Node<K, V> node = map.get(entry.getKey());
+            return node != null && node.getValue().equals(entry.getValue());
         }
 
         @Override
@@ -259,35 +440,5 @@ public class LinkedConcurrentCache<K, V> extends AbstractMap<K, V> implements Ma
         public void clear() {
             LinkedConcurrentCache.this.clear();
         }
-
-        private class EntryIterator implements Iterator<Entry<K, V>> {
-            private Node<K, V> current = concurrentDoublyLinkedList.getHead().get();
-            private Node<K, V> lastReturned;
-
-            @Override
-            public boolean hasNext() {
-                return current != null;
-            }
-
-            @Override
-            public Entry<K, V> next() {
-                if (!hasNext()) {
-                    throw new NoSuchElementException();
-                }
-                lastReturned = current;
-                current = current.next;
-                return lastReturned;
-            }
-
-            @Override
-            public void remove() {
-                if (lastReturned == null) {
-                    throw new IllegalStateException();
-                }
-                
-                LinkedConcurrentCache.this.remove(lastReturned.key);
-                lastReturned = null;
-            }
-        }
     }
 }
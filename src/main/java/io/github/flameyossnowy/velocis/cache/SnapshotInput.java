@@ -0,0 +1,177 @@
+package io.github.flameyossnowy.velocis.cache;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SelectableChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered {@link DataInput} that snapshots are read through, the
+ * counterpart of {@link SnapshotOutput}. It reads ahead, so the source
+ * should hold nothing after the snapshot that someone else wants to read.
+ * A channel must be in blocking mode. The source is never closed. Not
+ * thread-safe.
+ */
+public final class SnapshotInput implements DataInput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAGIC       = 0x564C4353; // "VLCS"
+    private static final int VERSION     = 1;
+
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).limit(0);
+
+    private final InputStream         stream;  // exactly one of these is set
+    private final ReadableByteChannel channel;
+
+    public SnapshotInput(@NotNull InputStream in) {
+        this.stream  = in;
+        this.channel = null;
+    }
+
+    public SnapshotInput(@NotNull ReadableByteChannel in) {
+        if (in instanceof SelectableChannel sc && !sc.isBlocking()) throw new IllegalArgumentException("channel must be in blocking mode");
+        this.stream  = null;
+        this.channel = in;
+    }
+
+    /** Checks the stream starts a snapshot of the given {@code kind}. */
+    public void readHeader(@NotNull String kind) throws IOException {
+        if (readInt() != MAGIC) throw new StreamCorruptedException("not a Velocis snapshot");
+        int version = readUnsignedByte();
+        if (version != VERSION) throw new StreamCorruptedException("unsupported snapshot version " + version);
+        String found = readUTF();
+        if (!found.equals(kind)) throw new StreamCorruptedException("expected a " + kind + " snapshot, found " + found);
+    }
+
+    /**
+     * Reads a count written by the snapshot and checks it lies in
+     * {@code [0, max]}, so a corrupt stream fails here rather than with
+     * a huge allocation.
+     */
+    public int readCount(int max) throws IOException {
+        int n = readInt();
+        if (n < 0 || n > max) throw new StreamCorruptedException("bad count " + n);
+        return n;
+    }
+
+    /** Fills the first {@code len} elements of {@code a}. */
+    public void readInts(int[] a, int len) throws IOException {
+        for (int off = 0; off < len; ) {
+            require(Integer.BYTES);
+            int n = Math.min(buf.remaining() / Integer.BYTES, len - off);
+            buf.asIntBuffer().get(a, off, n);
+            buf.position(buf.position() + n * Integer.BYTES);
+            off += n;
+        }
+    }
+
+    /** Fills the first {@code len} elements of {@code a}. */
+    public void readLongs(long[] a, int len) throws IOException {
+        for (int off = 0; off < len; ) {
+            require(Long.BYTES);
+            int n = Math.min(buf.remaining() / Long.BYTES, len - off);
+            buf.asLongBuffer().get(a, off, n);
+            buf.position(buf.position() + n * Long.BYTES);
+            off += n;
+        }
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            require(1);
+            int n = Math.min(buf.remaining(), len);
+            buf.get(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+        int skipped = 0;
+        while (skipped < n) {
+            if (!buf.hasRemaining() && !fill()) break;
+            int k = Math.min(buf.remaining(), n - skipped);
+            buf.position(buf.position() + k);
+            skipped += k;
+        }
+        return skipped;
+    }
+
+    @Override public boolean readBoolean()       throws IOException { return readByte() != 0; }
+    @Override public byte    readByte()          throws IOException { require(1); return buf.get(); }
+    @Override public int     readUnsignedByte()  throws IOException { return readByte() & 0xFF; }
+    @Override public short   readShort()         throws IOException { require(Short.BYTES); return buf.getShort(); }
+    @Override public int     readUnsignedShort() throws IOException { return readShort() & 0xFFFF; }
+    @Override public char    readChar()          throws IOException { require(Character.BYTES); return buf.getChar(); }
+    @Override public int     readInt()           throws IOException { require(Integer.BYTES); return buf.getInt(); }
+    @Override public long    readLong()          throws IOException { require(Long.BYTES); return buf.getLong(); }
+    @Override public float   readFloat()         throws IOException { return Float.intBitsToFloat(readInt()); }
+    @Override public double  readDouble()        throws IOException { return Double.longBitsToDouble(readLong()); }
+
+    /**
+     * As {@link java.io.DataInputStream#readLine}: the bytes up to a
+     * {@code \n}, {@code \r} or {@code \r\n}, each taken as one char, or
+     * null at end of input.
+     */
+    @Override
+    public @Nullable String readLine() throws IOException {
+        StringBuilder line = new StringBuilder();
+        while (buf.hasRemaining() || fill()) {
+            int c = buf.get() & 0xFF;
+            if (c == '\n') return line.toString();
+            if (c == '\r') {
+                if ((buf.hasRemaining() || fill()) && buf.get(buf.position()) == '\n') buf.get();
+                return line.toString();
+            }
+            line.append((char) c);
+        }
+        return line.length() == 0 ? null : line.toString();
+    }
+
+    /** Standard UTF-8, as written by {@link SnapshotOutput#writeUTF}. */
+    @Override
+    public @NotNull String readUTF() throws IOException {
+        byte[] bytes = new byte[readUnsignedShort()];
+        readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Makes at least {@code n} bytes available, {@code n} being at most a primitive's size. */
+    private void require(int n) throws IOException {
+        while (buf.remaining() < n) {
+            if (!fill()) throw new EOFException("snapshot is truncated");
+        }
+    }
+
+    /** Reads more bytes after those not yet consumed; false at end of input. */
+    private boolean fill() throws IOException {
+        buf.compact();
+        try {
+            int read;
+            do {
+                read = stream != null
+                        ? stream.read(buf.array(), buf.position(), buf.remaining())
+                        : channel.read(buf);
+            } while (read == 0); // there is always room, so 0 is not the end
+            if (read > 0 && stream != null) buf.position(buf.position() + read);
+            return read > 0;
+        } finally {
+            buf.flip();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package io.github.flameyossnowy.velocis.cache;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.DataOutput;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UTFDataFormatException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered {@link DataOutput} that snapshots are written through, to an
+ * {@link OutputStream} or a {@link WritableByteChannel}.
+ * <p>
+ * Besides the usual per-value methods it writes whole primitive arrays
+ * with {@link #writeInts}, {@link #writeLongs} and {@link #write(byte[])},
+ * a buffer-sized block at a time, which is how the structure-of-arrays
+ * caches dump their tables. Everything is big-endian, like
+ * {@link java.io.DataOutputStream}.
+ * <p>
+ * {@link #flush()} must be called once the snapshot is complete. A channel
+ * must be in blocking mode. The target is never closed. Not thread-safe.
+ */
+public final class SnapshotOutput implements DataOutput, Flushable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int MAGIC       = 0x564C4353; // "VLCS"
+    private static final int VERSION     = 1;
+
+    private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+
+    private final OutputStream        stream;  // exactly one of these is set
+    private final WritableByteChannel channel;
+
+    public SnapshotOutput(@NotNull OutputStream out) {
+        this.stream  = out;
+        this.channel = null;
+    }
+
+    public SnapshotOutput(@NotNull WritableByteChannel out) {
+        if (out instanceof SelectableChannel sc && !sc.isBlocking()) throw new IllegalArgumentException("channel must be in blocking mode");
+        this.stream  = null;
+        this.channel = out;
+    }
+
+    /** Starts a snapshot of the given {@code kind}, checked by {@link SnapshotInput#readHeader}. */
+    public void writeHeader(@NotNull String kind) throws IOException {
+        writeInt(MAGIC);
+        writeByte(VERSION);
+        writeUTF(kind);
+    }
+
+    /** Writes the first {@code len} elements of {@code a}, without a length prefix. */
+    public void writeInts(int[] a, int len) throws IOException {
+        for (int off = 0; off < len; ) {
+            if (buf.remaining() < Integer.BYTES) drain();
+            int n = Math.min(buf.remaining() / Integer.BYTES, len - off);
+            buf.asIntBuffer().put(a, off, n);
+            buf.position(buf.position() + n * Integer.BYTES);
+            off += n;
+        }
+    }
+
+    /** Writes the first {@code len} elements of {@code a}, without a length prefix. */
+    public void writeLongs(long[] a, int len) throws IOException {
+        for (int off = 0; off < len; ) {
+            if (buf.remaining() < Long.BYTES) drain();
+            int n = Math.min(buf.remaining() / Long.BYTES, len - off);
+            buf.asLongBuffer().put(a, off, n);
+            buf.position(buf.position() + n * Long.BYTES);
+            off += n;
+        }
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        ensure(1);
+        buf.put((byte) b);
+    }
+
+    @Override
+    public void write(byte[] b) throws IOException {
+        write(b, 0, b.length);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len >= BUFFER_SIZE) {
+            // Too big to be worth copying through the buffer
+            drain();
+            if (stream != null) stream.write(b, off, len);
+            else for (ByteBuffer src = ByteBuffer.wrap(b, off, len); src.hasRemaining(); ) channel.write(src);
+            return;
+        }
+        while (len > 0) {
+            if (!buf.hasRemaining()) drain();
+            int n = Math.min(buf.remaining(), len);
+            buf.put(b, off, n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override public void writeBoolean(boolean v) throws IOException { write(v ? 1 : 0); }
+    @Override public void writeByte(int v)        throws IOException { write(v); }
+    @Override public void writeShort(int v)       throws IOException { ensure(Short.BYTES);   buf.putShort((short) v); }
+    @Override public void writeChar(int v)        throws IOException { ensure(Character.BYTES); buf.putChar((char) v); }
+    @Override public void writeInt(int v)         throws IOException { ensure(Integer.BYTES); buf.putInt(v); }
+    @Override public void writeLong(long v)       throws IOException { ensure(Long.BYTES);    buf.putLong(v); }
+    @Override public void writeFloat(float v)     throws IOException { writeInt(Float.floatToIntBits(v)); }
+    @Override public void writeDouble(double v)   throws IOException { writeLong(Double.doubleToLongBits(v)); }
+
+    @Override
+    public void writeBytes(@NotNull String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) write(s.charAt(i));
+    }
+
+    @Override
+    public void writeChars(@NotNull String s) throws IOException {
+        for (int i = 0; i < s.length(); i++) writeChar(s.charAt(i));
+    }
+
+    /** Standard UTF-8 rather than {@link DataOutput}'s modified form; {@link SnapshotInput#readUTF} matches. */
+    @Override
+    public void writeUTF(@NotNull String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new UTFDataFormatException("string too long: " + bytes.length + " bytes");
+        writeShort(bytes.length);
+        write(bytes);
+    }
+
+    /** Writes out everything buffered so far. */
+    @Override
+    public void flush() throws IOException {
+        drain();
+        if (stream != null) stream.flush();
+    }
+
+    private void ensure(int n) throws IOException {
+        if (buf.remaining() < n) drain();
+    }
+
+    private void drain() throws IOException {
+        buf.flip();
+        if (stream != null) {
+            stream.write(buf.array(), 0, buf.limit());
+        } else {
+            while (buf.hasRemaining()) channel.write(buf);
+        }
+        buf.clear();
+    }
+}
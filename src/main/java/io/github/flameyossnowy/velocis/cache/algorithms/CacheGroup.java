@@ -0,0 +1,241 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shares one entry budget between several {@link ConcurrentLRUCache}s and
+ * moves capacity to whichever of them turns it into the most hits.
+ * <p>
+ * While in a group, a cache counts the hits on its coldest entries, which
+ * shrinking would lose, and the misses on keys it has just evicted, which
+ * growing would have turned into hits; both per entry of a window a
+ * sixteenth of its size. Every rebalance pairs the member gaining most
+ * from more room with the member whose coldest entries earn least, moves
+ * a window of capacity from the second to the first if that gains more
+ * hits than it costs, and goes on down both rankings. The donor shrinks
+ * through {@link ConcurrentLRUCache#setMaximumSize}, which evicts its
+ * least-recently-used entries there and then, so capacity always leaves
+ * the group through its coldest victims. The rates decay by half every
+ * round, so the split follows shifts in load.
+ * <p>
+ * The members' maximum sizes add up to the budget. A member resized from
+ * outside the group is scaled back into it, along with the others, at the
+ * next add, remove, budget change or rebalance. Sizes are counted in
+ * entries: the caches do not weigh their values.
+ * <p>
+ * A daemon thread rebalances every {@code rebalanceIntervalMillis};
+ * {@link #rebalance()} runs a round straight away.
+ */
+public final class CacheGroup implements AutoCloseable {
+
+    private static final long DEFAULT_REBALANCE_MILLIS = 1000;
+
+    private int budget;
+    private final List<Member> members = new ArrayList<>(); // guarded by this
+
+    private final ScheduledExecutorService rebalancer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "velocis-cache-group-rebalancer");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private static final class Member {
+        final ConcurrentLRUCache<?, ?> cache;
+        double  gain;  // decayed misses on recently evicted keys, per entry of window
+        double  loss;  // decayed hits on the coldest window of entries, per entry
+        boolean moved; // already paired this round
+
+        Member(ConcurrentLRUCache<?, ?> cache) {
+            this.cache = cache;
+        }
+    }
+
+    public CacheGroup(int budget) {
+        this(budget, DEFAULT_REBALANCE_MILLIS);
+    }
+
+    /**
+     * @param budget                  entries shared by all the members
+     * @param rebalanceIntervalMillis time between two rebalancing rounds
+     */
+    public CacheGroup(int budget, long rebalanceIntervalMillis) {
+        if (budget <= 0) throw new IllegalArgumentException("budget must be > 0");
+        if (rebalanceIntervalMillis <= 0) throw new IllegalArgumentException("rebalanceIntervalMillis must be > 0");
+        this.budget = budget;
+        rebalancer.scheduleWithFixedDelay(this::rebalanceQuietly, rebalanceIntervalMillis, rebalanceIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Adds {@code cache} with an even share of the budget, taken from the
+     * largest members; the maximum size it had is overwritten.
+     */
+    public synchronized void add(@NotNull ConcurrentLRUCache<?, ?> cache) {
+        if (cache.marginalHits() != null) throw new IllegalArgumentException("cache already belongs to a group");
+        if (members.size() >= budget) throw new IllegalStateException("budget " + budget + " cannot give another member an entry");
+
+        resync();
+        int share = budget / (members.size() + 1);
+        for (int needed = members.isEmpty() ? 0 : share; needed > 0; ) {
+            // The others hold the whole budget, so one has more than a share while any is needed
+            Member largest = largest();
+            int    max     = largest.cache.getMaximumSize();
+            int    take    = Math.min(needed, max - share);
+            if (take <= 0) break; // resized from outside since the resync; the next one settles it
+            largest.cache.setMaximumSize(max - take);
+            needed -= take;
+        }
+        cache.setMaximumSize(share);
+        cache.trackMarginalHits(true);
+        members.add(new Member(cache));
+    }
+
+    /**
+     * Removes {@code cache}, which keeps its current maximum size, and
+     * shares its capacity out evenly among the remaining members.
+     */
+    public synchronized boolean remove(@NotNull ConcurrentLRUCache<?, ?> cache) {
+        int i = indexOf(cache);
+        if (i < 0) return false;
+        resync();
+        members.remove(i);
+        cache.trackMarginalHits(false);
+        if (!members.isEmpty()) spread(cache.getMaximumSize());
+        return true;
+    }
+
+    public synchronized int getBudget() {
+        return budget;
+    }
+
+    /**
+     * Changes the budget, scaling every member's share by the same factor.
+     * Lowering it evicts from the members straight away.
+     */
+    public synchronized void setBudget(int budget) {
+        if (budget <= 0) throw new IllegalArgumentException("budget must be > 0");
+        if (budget < members.size()) throw new IllegalArgumentException("budget " + budget + " cannot give every member an entry");
+        this.budget = budget;
+        resync();
+    }
+
+    /** The member caches, in the order they were added. */
+    public synchronized @NotNull List<ConcurrentLRUCache<?, ?>> members() {
+        List<ConcurrentLRUCache<?, ?>> caches = new ArrayList<>(members.size());
+        for (Member m : members) caches.add(m.cache);
+        return caches;
+    }
+
+    /** Runs one rebalancing round now. */
+    public synchronized void rebalance() {
+        resync();
+        for (Member m : members) {
+            MarginalHits mh = m.cache.marginalHits();
+            if (mh == null) continue;
+            m.gain  = m.gain / 2 + (double) mh.ghostHits.sumThenReset() / mh.window;
+            m.loss  = m.loss / 2 + (double) mh.tailHits.sumThenReset()  / mh.window;
+            m.moved = false;
+        }
+        if (members.size() < 2) return;
+
+        List<Member> byGain = new ArrayList<>(members);
+        List<Member> byLoss = new ArrayList<>(members);
+        byGain.sort(Comparator.comparingDouble((Member m) -> m.gain).reversed());
+        byLoss.sort(Comparator.comparingDouble((Member m) -> m.loss));
+
+        int d = 0;
+        for (Member to : byGain) {
+            if (to.moved) continue;
+            while (d < byLoss.size() && (byLoss.get(d).moved || byLoss.get(d) == to || byLoss.get(d).cache.getMaximumSize() <= 1)) d++;
+            if (d == byLoss.size()) break;
+
+            Member from = byLoss.get(d++);
+            if (to.gain <= from.loss) break; // every later pair gains less or loses more
+
+            int fromMax = from.cache.getMaximumSize();
+            int slice   = Math.min(from.cache.marginalHits().window, fromMax - 1);
+            from.cache.setMaximumSize(fromMax - slice);
+            to.cache.setMaximumSize(to.cache.getMaximumSize() + slice);
+            from.moved = to.moved = true;
+        }
+    }
+
+    /** Stops rebalancing; the members keep their current sizes and leave the group. */
+    @Override
+    public synchronized void close() {
+        rebalancer.shutdown();
+        for (Member m : members) m.cache.trackMarginalHits(false);
+        members.clear();
+    }
+
+    /**
+     * Scales the members' sizes by one factor so they add up to the budget
+     * again, if anything resized them from outside the group.
+     */
+    private void resync() {
+        if (members.isEmpty()) return;
+        int[] sizes = new int[members.size()];
+        long  held  = 0;
+        for (int i = 0; i < sizes.length; i++) held += sizes[i] = members.get(i).cache.getMaximumSize();
+        if (held == budget) return;
+
+        long total = 0;
+        for (int i = 0; i < sizes.length; i++) {
+            sizes[i] = (int) Math.max(1, sizes[i] * (long) budget / held);
+            total   += sizes[i];
+        }
+        // Rounding left the shares off by at most one each; settle that on the largest
+        while (total != budget) {
+            int j = 0;
+            for (int i = 1; i < sizes.length; i++) if (sizes[i] > sizes[j]) j = i;
+            int step = (int) Math.max(budget - total, 1 - sizes[j]);
+            sizes[j] += step;
+            total    += step;
+        }
+        // Shrink first, so the members never hold more than the old or new total together
+        for (int pass = 0; pass < 2; pass++) {
+            for (int i = 0; i < sizes.length; i++) {
+                ConcurrentLRUCache<?, ?> cache = members.get(i).cache;
+                if ((pass == 0) == (sizes[i] < cache.getMaximumSize())) cache.setMaximumSize(sizes[i]);
+            }
+        }
+    }
+
+    private void rebalanceQuietly() {
+        try {
+            rebalance();
+        } catch (RuntimeException e) {
+            // A throwing eviction listener must not cancel the periodic rebalance
+            Thread t = Thread.currentThread();
+            t.getUncaughtExceptionHandler().uncaughtException(t, e);
+        }
+    }
+
+    private Member largest() {
+        Member largest = members.get(0);
+        for (Member m : members)
+            if (m.cache.getMaximumSize() > largest.cache.getMaximumSize()) largest = m;
+        return largest;
+    }
+
+    /** Gives {@code capacity} evenly to the members. */
+    private void spread(int capacity) {
+        int n = members.size();
+        for (int i = 0; i < n; i++) {
+            ConcurrentLRUCache<?, ?> cache = members.get(i).cache;
+            cache.setMaximumSize(cache.getMaximumSize() + capacity / n + (i < capacity % n ? 1 : 0));
+        }
+    }
+
+    private int indexOf(ConcurrentLRUCache<?, ?> cache) {
+        for (int i = 0; i < members.size(); i++)
+            if (members.get(i).cache == cache) return i;
+        return -1;
+    }
+}
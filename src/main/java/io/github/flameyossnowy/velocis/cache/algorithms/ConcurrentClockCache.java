@@ -0,0 +1,563 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFUCache.nextPow2;
+
+/**
+ * Non-blocking, open-addressing CLOCK cache in the style of Cliff Click's
+ * {@code NonBlockingHashMap}. No operation takes a lock: slots are claimed
+ * and updated with CAS, so writers on different keys never wait for each
+ * other, and a stalled thread never stops the others.
+ *
+ * <h2>Layout</h2>
+ * Each table generation holds parallel arrays indexed by slot {@code i}:
+ * <pre>
+ *   Object[] keys      — null = never claimed; set once by CAS, then fixed
+ *   Object[] values    — null, a value, TOMBSTONE, or a Prime during a copy
+ *   int[]    hashes    — spread hash memo, written after the key claim
+ *   byte[]   ref       — CLOCK reference bit
+ * </pre>
+ * A key keeps its slot for the life of the table: a remove only swaps the
+ * value for {@code TOMBSTONE}, and putting the key back reuses the slot.
+ * That is what makes a single CAS on the value enough for every update.
+ *
+ * <h2>Reclamation</h2>
+ * Dead key slots are reclaimed by table generation rather than one by one.
+ * Once claimed slots pass the load limit, a new table sized for the live
+ * entries is published, and every thread that runs into the copy helps
+ * move a chunk of slots across. A slot is first frozen by boxing its value
+ * in a {@code Prime}, so no write can land in the old table after its value
+ * was copied. When every slot is copied the new table is promoted, and the
+ * old one, tombstones and all, is left to the garbage collector, which
+ * already guarantees that no thread still reading it sees its memory
+ * reused.
+ *
+ * <h2>Eviction</h2>
+ * A hit sets its slot's reference bit with a plain store. Eviction is
+ * cooperative: the put that takes the cache past {@code maxSize} advances
+ * a shared clock hand, clearing reference bits until it finds an entry
+ * without one, and removes that entry with a CAS that fails harmlessly if
+ * the value changed meanwhile. New entries start unreferenced, so a burst
+ * of one-time keys is evicted before anything that has been read. The
+ * size can briefly exceed {@code maxSize} by one entry per concurrent
+ * writer.
+ *
+ * <h2>Sizing</h2>
+ * Tables are sized at four times the live entry count, so a copy leaves
+ * room for at least as many fresh keys as it moved before the next one,
+ * and the work stays a few slot copies per insert even under constant
+ * churn. The price is a larger footprint than the lock-based caches.
+ * <p>
+ * Hashes are mixed with a random per-instance seed, so keys cannot be
+ * picked to share a probe run.
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentClockCache<K, V> implements Map<K, V>, Resizable {
+
+    private static final int MIN_CAPACITY  = 16;
+    private static final int MAX_CAPACITY  = 1 << 30;
+    private static final int REPROBE_LIMIT = 10;
+    private static final int COPY_CHUNK    = 1024;
+
+    private static final VarHandle SLOT = MethodHandles.arrayElementVarHandle(Object[].class);
+
+    /** Value of a removed entry, or key of a slot sealed empty by a copy. */
+    private static final Object TOMBSTONE = new Object();
+
+    /** Expected value meaning "whatever is there". */
+    private static final Object NO_MATCH_OLD = new Object();
+
+    /** A value frozen by a table copy. */
+    private static final class Prime {
+        final Object value;
+
+        Prime(Object value) {
+            this.value = value;
+        }
+    }
+
+    /** A slot whose copy is done, or that was dead when frozen: it carries nothing on. */
+    private static final Prime TOMBPRIME = new Prime(TOMBSTONE);
+
+    /**
+     * A slot frozen before any value reached it. A copy that was on its way
+     * to fill it goes on to the next table; TOMBPRIME stops it there.
+     */
+    private static final Prime EMPTYPRIME = new Prime(null);
+
+    /** One table generation. */
+    private static final class Table {
+        final Object[] keys;
+        final Object[] values;
+        final int[]    hashes;
+        final byte[]   ref;
+        final int      mask;
+        final int      generation; // tables before this one, counting those clear() dropped
+
+        final AtomicInteger size;                            // live entries; shared along a copy chain
+        final AtomicInteger slots    = new AtomicInteger();  // claimed key slots, live or dead
+        final AtomicInteger hand     = new AtomicInteger();  // clock hand
+        final AtomicInteger copyIdx  = new AtomicInteger();  // next chunk to copy
+        final AtomicInteger copyDone = new AtomicInteger();  // slots known to be copied
+        final AtomicReference<Table> next = new AtomicReference<>();
+
+        Table(int capacity, AtomicInteger size, int generation) {
+            this.keys       = new Object[capacity];
+            this.values     = new Object[capacity];
+            this.hashes     = new int   [capacity];
+            this.ref        = new byte  [capacity];
+            this.mask       = capacity - 1;
+            this.size       = size;
+            this.generation = generation;
+        }
+
+        int length() {
+            return mask + 1;
+        }
+    }
+
+    private final AtomicReference<Table> top;
+    private volatile int maxSize;
+
+    /**
+     * Hash seed, fixed for the life of the cache: a hash is computed once
+     * per operation and carried through every table of a copy chain. A
+     * probe run that overflows the reprobe limit already forces a copy.
+     */
+    private final int seed = ConcurrentLFRUCache.newSeed0();
+
+    public ConcurrentClockCache(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+        this.top     = new AtomicReference<>(new Table(MIN_CAPACITY, new AtomicInteger(), 0));
+    }
+
+    public ConcurrentClockCache() { this(16); }
+
+    /**
+     * Changes the entry limit. Lowering it evicts down to the new limit
+     * straight away; the table itself shrinks at its next copy.
+     */
+    public void setMaximumSize(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        this.maxSize = maxSize;
+        evict();
+    }
+
+    public int getMaximumSize() {
+        return maxSize;
+    }
+
+    private int spread(int h) {
+        return ConcurrentLFRUCache.mix0(h, seed);
+    }
+
+    private static Object key(Table t, int i) {
+        return SLOT.getVolatile(t.keys, i);
+    }
+
+    private static Object val(Table t, int i) {
+        return SLOT.getVolatile(t.values, i);
+    }
+
+    private static boolean casKey(Table t, int i, Object expected, Object key) {
+        return SLOT.compareAndSet(t.keys, i, expected, key);
+    }
+
+    private static boolean casVal(Table t, int i, Object expected, Object value) {
+        return SLOT.compareAndSet(t.values, i, expected, value);
+    }
+
+    /** Probe budget before a lookup gives up on a table and moves on to its copy. */
+    private static int reprobeLimit(int length) {
+        return REPROBE_LIMIT + (length >> 2);
+    }
+
+    private static boolean keyEq(Object k, Object key, int[] hs, int i, int h) {
+        // A 0 hash memo means the claimer has not written it yet
+        return k == key || ((hs[i] == 0 || hs[i] == h) && k != TOMBSTONE && key.equals(k));
+    }
+
+    @Override
+    public @Nullable V get(Object key) {
+        Object v = get(top.get(), key, spread(key.hashCode()));
+        return v == TOMBSTONE ? null : (V) v;
+    }
+
+    private Object get(Table t, Object key, int h) {
+        int i = h & t.mask;
+        for (int reprobes = 0; ; i = (i + 1) & t.mask) {
+            Object k = key(t, i);
+            Object v = val(t, i);
+            if (k == null) return null; // never here: a copy seals empty slots before moving on
+            Table nt = t.next.get();    // volatile read orders the key's fields before equals
+            if (keyEq(k, key, t.hashes, i, h)) {
+                if (v instanceof Prime) return get(copySlotAndCheck(t, i, key), key, h);
+                if (v != null && v != TOMBSTONE && t.ref[i] == 0) t.ref[i] = 1;
+                return v;
+            }
+            if (++reprobes >= reprobeLimit(t.length()) || k == TOMBSTONE)
+                return nt == null ? null : get(helpCopy(nt), key, h);
+        }
+    }
+
+    @Override
+    public @Nullable V put(K key, V value) {
+        if (value == null) throw new IllegalArgumentException("Null values are not allowed");
+        Object old = putIfMatch(top.get(), key, spread(key.hashCode()), value, NO_MATCH_OLD);
+        if (old == null || old == TOMBSTONE) {
+            if (size() > maxSize) evict();
+            return null;
+        }
+        return (V) old;
+    }
+
+    @Override
+    public @Nullable V remove(Object key) {
+        Object old = putIfMatch(top.get(), key, spread(key.hashCode()), TOMBSTONE, NO_MATCH_OLD);
+        return old == TOMBSTONE ? null : (V) old;
+    }
+
+    /**
+     * Sets {@code key}'s value to {@code putval} if the current value is
+     * {@code expVal}, or unconditionally for {@code NO_MATCH_OLD}; a null
+     * {@code expVal} is the table copy, which only fills an empty slot and
+     * leaves the size alone. Returns the previous value, null or
+     * {@code TOMBSTONE} if there was none.
+     */
+    private Object putIfMatch(Table t, Object key, int h, Object putval, Object expVal) {
+        int    len      = t.length();
+        int    i        = h & t.mask;
+        int    reprobes = 0;
+        Table  nt;
+        Object v;
+        while (true) {
+            v = val(t, i);
+            Object k = key(t, i);
+            if (k == null) {
+                // The key was never in this table
+                if (putval == TOMBSTONE) return null;
+                if (expVal != NO_MATCH_OLD && expVal != null) return null;
+                if (casKey(t, i, null, key)) {
+                    t.slots.incrementAndGet();
+                    t.hashes[i] = h;
+                    nt = t.next.get();
+                    break;
+                }
+                k = key(t, i); // lost the claim; compare with the winner
+            }
+            nt = t.next.get();
+            if (keyEq(k, key, t.hashes, i, h)) break;
+
+            if (++reprobes >= reprobeLimit(len) || k == TOMBSTONE) {
+                // Neither get nor put looks further in this table: the key
+                // belongs in the next one
+                nt = resize(t);
+                if (expVal != null) nt = helpCopy(nt);
+                return putIfMatch(nt, key, h, putval, expVal);
+            }
+            i = (i + 1) & t.mask;
+        }
+
+        if (putval == v) return v;
+
+        // A fresh key is the one moment to check the table is not full
+        if (nt == null && ((v == null && tableFull(t, reprobes)) || v instanceof Prime)) nt = resize(t);
+        if (nt != null) return putInNext(t, i, key, h, putval, expVal);
+
+        while (true) {
+            if (expVal != NO_MATCH_OLD && v != expVal) return v;
+            if (casVal(t, i, v, putval)) {
+                boolean wasLive = v != null && v != TOMBSTONE;
+                if (expVal != null) {
+                    if (!wasLive && putval != TOMBSTONE) t.size.incrementAndGet();
+                    else if (wasLive && putval == TOMBSTONE) t.size.decrementAndGet();
+                }
+                // An update counts as a reference; a fresh entry starts without one
+                if (putval != TOMBSTONE) t.ref[i] = (byte) (wasLive ? 1 : 0);
+                return v;
+            }
+            v = val(t, i);
+            if (v instanceof Prime) return putInNext(t, i, key, h, putval, expVal);
+        }
+    }
+
+    /**
+     * Copies slot {@code i} of {@code t} into the next table and retries the
+     * put there. A table copy only follows a slot that froze empty: any
+     * other slot held a write newer than the value the copy carries, and a
+     * copier stalled since then would otherwise bring back a value that was
+     * overwritten or removed after the slot moved on.
+     */
+    private Object putInNext(Table t, int i, Object key, int h, Object putval, Object expVal) {
+        Table nt = copySlotAndCheck(t, i, expVal);
+        if (expVal == null) {
+            Object v = val(t, i);
+            if (v != EMPTYPRIME) return v;
+        }
+        return putIfMatch(nt, key, h, putval, expVal);
+    }
+
+    private static boolean tableFull(Table t, int reprobes) {
+        int slots = t.slots.get();
+        int len   = t.length();
+        return slots >= len - (len >> 2) || (reprobes >= REPROBE_LIMIT && slots >= len >> 1);
+    }
+
+    /** Starts a copy of {@code t}, or joins the one already started, and returns the new table. */
+    private Table resize(Table t) {
+        Table nt = t.next.get();
+        if (nt != null) return nt;
+
+        int live = Math.max(t.size.get(), 1);
+        int cap  = live >= MAX_CAPACITY >> 2 ? MAX_CAPACITY : Math.max(MIN_CAPACITY, nextPow2(live << 2));
+        nt = new Table(cap, t.size, t.generation + 1);
+        return t.next.compareAndSet(null, nt) ? nt : t.next.get();
+    }
+
+    /**
+     * Copies slot {@code i} of {@code t} into its next table, then helps the
+     * copy along unless this is already a copy ({@code shouldHelp} null).
+     */
+    private Table copySlotAndCheck(Table t, int i, Object shouldHelp) {
+        Table nt = t.next.get();
+        if (copySlot(t, i, nt)) copyCheckAndPromote(t, 1);
+        return shouldHelp == null ? nt : helpCopy(nt);
+    }
+
+    /**
+     * Copies a chunk of the top-level table's pending copy, if any, and
+     * returns the table to go on in: {@code helper}, or the top-level table
+     * if that is newer. Every table before the top-level one is fully
+     * copied, so a thread that fell behind skips straight past them instead
+     * of walking, one call deeper each, every generation since it started.
+     */
+    private Table helpCopy(Table helper) {
+        Table t = top.get();
+        if (t.next.get() != null) helpCopyImpl(t, false);
+        t = top.get();
+        return t.generation - helper.generation > 0 ? t : helper;
+    }
+
+    /**
+     * Copies one chunk of {@code t}, or every remaining slot with
+     * {@code copyAll}. Once every chunk has been handed out, threads
+     * that still find slots uncopied sweep the whole table themselves.
+     */
+    private void helpCopyImpl(Table t, boolean copyAll) {
+        Table nt    = t.next.get();
+        int   len   = t.length();
+        int   chunk = Math.min(len, COPY_CHUNK);
+        int   panic = -1;
+        int   from  = 0;
+        while (t.copyDone.get() < len) {
+            if (panic == -1) {
+                from = t.copyIdx.getAndAdd(chunk);
+                if (from >= len << 1) panic = from;
+            }
+            int done = 0;
+            for (int j = 0; j < chunk; j++)
+                if (copySlot(t, (from + j) & t.mask, nt)) done++;
+            if (done > 0) copyCheckAndPromote(t, done);
+            from += chunk;
+            if (!copyAll && panic == -1) return;
+        }
+        copyCheckAndPromote(t, 0);
+    }
+
+    /** Counts {@code done} more copied slots and promotes the next table once all are. */
+    private void copyCheckAndPromote(Table t, int done) {
+        int copied = done > 0 ? t.copyDone.addAndGet(done) : t.copyDone.get();
+        if (copied == t.length()) top.compareAndSet(t, t.next.get());
+    }
+
+    /**
+     * Freezes slot {@code i} of {@code t} and copies its value into
+     * {@code nt}. Returns true for the one thread whose CAS retired the
+     * slot, so each slot is counted once.
+     */
+    private boolean copySlot(Table t, int i, Table nt) {
+        // Seal an unclaimed slot so no new key starts in this table
+        Object k;
+        while ((k = key(t, i)) == null) casKey(t, i, null, TOMBSTONE);
+
+        // Box the value so no later write can land here
+        Object v = val(t, i);
+        while (!(v instanceof Prime)) {
+            Prime box = v == null ? EMPTYPRIME : v == TOMBSTONE ? TOMBPRIME : new Prime(v);
+            if (casVal(t, i, v, box)) {
+                if (box == TOMBPRIME || box == EMPTYPRIME) return true; // nothing to carry over
+                v = box;
+                break;
+            }
+            v = val(t, i);
+        }
+        if (v == TOMBPRIME || v == EMPTYPRIME) return false; // someone else finished this slot
+
+        // Only fills an empty slot: anything already there is a newer write
+        int h = t.hashes[i];
+        if (h == 0) h = spread(k.hashCode());
+        putIfMatch(nt, k, h, ((Prime) v).value, null);
+        if (t.ref[i] != 0) reference(nt, k, h);
+
+        while (v != TOMBPRIME && !casVal(t, i, v, TOMBPRIME)) v = val(t, i);
+        return v != TOMBPRIME;
+    }
+
+    /** Sets the reference bit of {@code key} in {@code t} alone, if it has a live value there. */
+    private static void reference(Table t, Object key, int h) {
+        int i = h & t.mask;
+        for (int reprobes = 0; reprobes < reprobeLimit(t.length()); reprobes++, i = (i + 1) & t.mask) {
+            Object k = key(t, i);
+            if (k == null || k == TOMBSTONE) return;
+            if (keyEq(k, key, t.hashes, i, h)) {
+                Object v = val(t, i);
+                if (v != null && v != TOMBSTONE && !(v instanceof Prime)) t.ref[i] = 1;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Runs the clock hand until the cache is back under {@code maxSize}:
+     * referenced entries lose their bit and are passed over, the first
+     * unreferenced one is removed. Gives up after two turns of the table,
+     * when other threads are refilling it as fast as this one evicts.
+     */
+    private void evict() {
+        Table t = top.get();
+        for (int n = t.length() << 1; n > 0 && t.size.get() > maxSize; n--) {
+            int    i = t.hand.getAndIncrement() & t.mask;
+            Object k = key(t, i);
+            Object v = val(t, i);
+            if (k == null || k == TOMBSTONE || v == null || v == TOMBSTONE) continue;
+            if (v instanceof Prime) {
+                // Mid-copy: finish it and go on in the new table
+                helpCopyImpl(t, true);
+                t = top.get();
+                n = t.length() << 1;
+                continue;
+            }
+            if (t.ref[i] != 0) {
+                t.ref[i] = 0;
+                continue;
+            }
+            putIfMatch(t, k, spread(k.hashCode()), TOMBSTONE, v);
+        }
+    }
+
+    /** The top-level table once any copy in progress has finished. */
+    private Table snapshot() {
+        while (true) {
+            Table t = top.get();
+            if (t.next.get() == null) return t;
+            helpCopyImpl(t, true);
+        }
+    }
+
+    @Override public void putAll(Map<? extends K, ? extends V> m) { m.forEach(this::put); }
+
+    @Override
+    public void clear() {
+        top.set(new Table(MIN_CAPACITY, new AtomicInteger(), top.get().generation + 1));
+    }
+
+    @Override public int     size()                   { return Math.max(top.get().size.get(), 0); }
+    @Override public boolean isEmpty()                { return size() == 0; }
+    @Override public boolean containsKey(Object key)  { return get(key) != null; }
+
+    @Override
+    public boolean containsValue(Object value) {
+        for (V v : values())
+            if (value.equals(v)) return true;
+        return false;
+    }
+
+    @Override public @NotNull Set<K>           keySet()   { return new KeySetView(); }
+    @Override public @NotNull Collection<V>    values()   { return new ValuesView(); }
+    @Override public @NotNull Set<Entry<K, V>> entrySet() { return new EntrySetView(); }
+
+    /**
+     * Weakly consistent walk over one table generation. A value that has
+     * since been frozen by a copy is read back through {@link #get}.
+     */
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        final Table t = snapshot();
+        int    i = -1;
+        Object nextKey;
+        Object nextValue;
+
+        SlotIterator() {
+            advance();
+        }
+
+        private void advance() {
+            nextKey = null;
+            while (++i < t.length()) {
+                Object k = key(t, i);
+                if (k == null || k == TOMBSTONE) continue;
+                Object v = val(t, i);
+                if (v instanceof Prime) v = get(k);
+                if (v == null || v == TOMBSTONE) continue;
+                nextKey   = k;
+                nextValue = v;
+                return;
+            }
+        }
+
+        @Override public boolean hasNext() {
+            return nextKey != null;
+        }
+
+        @Override public T next() {
+            if (nextKey == null) throw new NoSuchElementException();
+            T result = extract((K) nextKey, (V) nextValue);
+            advance();
+            return result;
+        }
+
+        abstract T extract(K key, V value);
+    }
+
+    private final class KeySetView extends AbstractSet<K> {
+        @Override public int size() { return ConcurrentClockCache.this.size(); }
+        @Override public @NotNull Iterator<K> iterator() {
+            return new SlotIterator<K>() {
+                @Override K extract(K key, V value) {
+                    return key;
+                }
+            };
+        }
+        @Override public boolean contains(Object o) { return containsKey(o); }
+    }
+
+    private final class ValuesView extends AbstractCollection<V> {
+        @Override public int size() { return ConcurrentClockCache.this.size(); }
+        @Override public @NotNull Iterator<V> iterator() {
+            return new SlotIterator<V>() {
+                @Override V extract(K key, V value) {
+                    return value;
+                }
+            };
+        }
+    }
+
+    private final class EntrySetView extends AbstractSet<Entry<K, V>> {
+        @Override public int size() { return ConcurrentClockCache.this.size(); }
+        @Override public @NotNull Iterator<Entry<K, V>> iterator() {
+            return new SlotIterator<Entry<K, V>>() {
+                @Override Entry<K, V> extract(K key, V value) {
+                    return Map.entry(key, value);
+                }
+            };
+        }
+    }
+}
@@ -2,58 +2,139 @@ package io.github.flameyossnowy.velocis.cache.algorithms;
 
 import org.jetbrains.annotations.ApiStatus;
 
-import java.util.concurrent.atomic.AtomicMarkableReference;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 
 /**
- * Lock-free concurrent doubly-linked list using the Sundell & Tsigas algorithm.
+ * Concurrent doubly-linked list built on CAS over VarHandles, with a
+ * Harris / Michael style deletion mark, but no {@code AtomicMarkableReference}.
+ * <p>
+ * It takes no locks, yet it is blocking rather than lock-free: a thread
+ * that reaches a node in the middle of being linked or unlinked spins until
+ * the thread doing that finishes, so one stalled thread can hold up every
+ * other thread that runs into its node. The windows are a few CASes long,
+ * and the uncontended paths never wait.
  *
- * Deletion is two-phase:
- *   1. Logical deletion  — mark node.next with the deletion bit via CAS.
- *   2. Physical deletion — swing predecessor's next pointer past the node.
+ * The deletion mark lives in a separate volatile {@code state} field, so
+ * marking a node is a plain int CAS and never allocates:
+ *   LIVE     — linked and owned by nobody
+ *   MOVING   — an addToEnd / moveToEnd is relinking the node
+ *   REMOVED  — logically deleted
+ * Whoever moves a node out of LIVE owns its unlink.
  *
- * Any thread that encounters a marked node helps complete the physical unlink
- * before proceeding, which keeps the list clean without a dedicated GC thread.
+ * Physical deletion is two-phase:
+ *   1. Freeze — the owner CASes node.next to the shared FROZEN marker and
+ *      keeps the real successor in node.frozenNext. A frozen next pointer is
+ *      never the expected value of an insert CAS, so nothing can be linked
+ *      behind a node that is on its way out.
+ *   2. Unlink — the owner swings the predecessor's next past the node, then
+ *      marks it UNLINKED.
+ *
+ * Only the owner performs step 2. moveToEnd relinks the very node it
+ * unlinked, so a helper that found the predecessor and then stalled could
+ * see its CAS on pred.next succeed against the node's next incarnation and
+ * cut a live node out of the list. The owner is also the only thread that
+ * can relink the node, so its own CAS cannot be fooled that way. A thread
+ * that runs into a frozen node waits for the owner instead of helping.
+ *
+ * Linking is the mirror image: a node's next holds the PENDING marker
+ * until the CAS that publishes it has succeeded, and only then becomes the
+ * tail. So a node whose next is the tail is always reachable and last,
+ * even when reached through a stale prev hint, and an insert can never
+ * land behind a node that is still detached.
+ *
+ * Insertions only happen in front of the tail sentinel, which is all LRU
+ * ordering needs. Once a node exists, moveToEnd and removeHead allocate
+ * nothing.
  *
  * Sentinel head and tail nodes are allocated once and never removed.
  */
-@ApiStatus.Internal
+@ApiStatus.Internal // blocking progress, see above; not for use outside the caches
+@SuppressWarnings({"unchecked", "rawtypes"})
 public class ConcurrentDoublyLinkedList<K, V> {
 
+    static final int LIVE    = 0;
+    static final int MOVING  = 1;
+    static final int REMOVED = 2;
+
+    /** Stored in {@code next} while a node's unlink is in flight. */
+    private static final Node FROZEN   = new Node();
+    /** Stored in {@code next} once a node is no longer reachable. */
+    private static final Node UNLINKED = new Node();
+    /** Stored in {@code next} while a node is being linked in front of the tail. */
+    private static final Node PENDING  = new Node();
+
+    private static final VarHandle NEXT;
+    private static final VarHandle STATE;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            NEXT  = lookup.findVarHandle(Node.class, "next",  Node.class);
+            STATE = lookup.findVarHandle(Node.class, "state", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
     public static final class Node<K, V> {
         final K key;
         volatile V value;
 
-        /**
-         * next: the mark bit means this node is logically deleted.
-         * Once marked, no thread will insert after it or move it.
-         */
-        final AtomicMarkableReference<Node<K, V>> next;
+        /** Successor, or FROZEN / UNLINKED while the node is leaving the list, or PENDING while it is joining. */
+        volatile Node<K, V> next;
 
         /**
-         * prev is a best-effort back-pointer used to speed up backwards
-         * traversal during moveToEnd.  It may transiently point to a deleted
-         * node; callers must follow the chain until they reach a live node.
+         * prev is a best-effort back-pointer used to find the predecessor
+         * quickly. It may be stale; callers fall back to a scan from head.
          */
         volatile Node<K, V> prev;
 
-        // sentinel constructor
+        /** Successor captured when {@code next} was frozen, or the tail while the node is joining. */
+        volatile Node<K, V> frozenNext;
+
+        volatile int state;
+
+        // sentinel / marker constructor
         Node() {
             this.key   = null;
             this.value = null;
-            this.next  = new AtomicMarkableReference<>(null, false);
-            this.prev  = null;
+            this.state = LIVE;
         }
 
-        Node(K key, V value) {
+        /** Creates an unlinked node, to be published with {@link #addToEnd(Node)}. */
+        public Node(K key, V value) {
             this.key   = key;
             this.value = value;
-            this.next  = new AtomicMarkableReference<>(null, false);
-            this.prev  = null;
+            this.state = MOVING; // owned by addToEnd until it is linked
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
         }
 
         /** Returns true if this node has been logically deleted. */
-        boolean isDeleted() {
-            return next.isMarked();
+        public boolean isDeleted() {
+            return state == REMOVED;
+        }
+
+        /**
+         * Returns the node after this one, looking through an unlink that is
+         * in flight. Used by weakly-consistent traversals.
+         */
+        public Node<K, V> successor() {
+            Node<K, V> n = next;
+            return (n == FROZEN || n == UNLINKED || n == PENDING) ? frozenNext : n;
         }
     }
 
@@ -63,7 +144,7 @@ public class ConcurrentDoublyLinkedList<K, V> {
     public ConcurrentDoublyLinkedList() {
         head = new Node<>();
         tail = new Node<>();
-        head.next.set(tail, false);
+        head.next = tail;
         tail.prev = head;
     }
 
@@ -73,18 +154,31 @@ public class ConcurrentDoublyLinkedList<K, V> {
      */
     public Node<K, V> addToEnd(K key, V value) {
         Node<K, V> node = new Node<>(key, value);
-        insertBefore(tail, node);
+        addToEnd(node);
         return node;
     }
 
     /**
-     * Logically deletes {@code node} and then moves it to the tail.
+     * Appends a freshly constructed node at the tail. Lets callers publish
+     * the node elsewhere (e.g. in an index map) before it is linked; a
+     * {@link #remove(Node)} that wins the race keeps it out of the list.
+     */
+    public void addToEnd(Node<K, V> node) {
+        linkLast(node);
+        // A remove / removeHead may have claimed the node while it was being linked.
+        if (!STATE.compareAndSet(node, MOVING, LIVE)) unlink(node);
+    }
+
+    /**
+     * Unlinks {@code node} and re-inserts it at the tail.
      * Used by LRU get/put to mark a node as most-recently-used.
      */
     public void moveToEnd(Node<K, V> node) {
-        if (!physicallyUnlink(node)) return; // someone else removed it concurrently
-        node.next.set(null, false);          // reset for re-insertion
-        insertBefore(tail, node);
+        if (!STATE.compareAndSet(node, LIVE, MOVING)) return; // being moved or removed already
+        unlink(node);
+        if (node.state == REMOVED) return;                     // removed while detached
+        linkLast(node);
+        if (!STATE.compareAndSet(node, MOVING, LIVE)) unlink(node);
     }
 
     /**
@@ -92,95 +186,125 @@ public class ConcurrentDoublyLinkedList<K, V> {
      * or null if the list is empty.
      */
     public Node<K, V> removeHead() {
-        Node<K, V> first = head.next.getReference();
-        if (first == tail) return null;
-        remove(first);
-        return first;
+        for (;;) {
+            Node<K, V> first = head.next;
+            if (first == tail) return null;
+            if (remove(first)) return first;
+            // Someone else is deleting it: wait for it to leave and retry.
+            Thread.onSpinWait();
+        }
     }
 
     /**
-     * Logically deletes {@code node} (marks its next pointer).
-     * Physical unlinking happens lazily during subsequent traversals.
+     * Logically deletes {@code node} and unlinks it.
+     * Returns false if the node had already been removed.
      */
-    public void remove(Node<K, V> node) {
-        if (node == null || node == head || node == tail) return;
-        boolean[] marked = {false};
-        Node<K, V> succ;
-        do {
-            succ = node.next.get(marked);
-            if (marked[0]) return; // already deleted by another thread
-        } while (!node.next.compareAndSet(succ, succ, false, true));
-
-        helpDelete(node, succ);
+    public boolean remove(Node<K, V> node) {
+        if (node == null || node == head || node == tail) return false;
+        for (;;) {
+            int s = node.state;
+            if (s == REMOVED) return false;
+            if (STATE.compareAndSet(node, s, REMOVED)) {
+                // A MOVING node is unlinked by the thread that is moving it.
+                if (s == LIVE) unlink(node);
+                return true;
+            }
+        }
     }
 
     /** Resets to empty (only safe when no concurrent operations are running). */
     public void clear() {
-        head.next.set(tail, false);
+        head.next = tail;
         tail.prev = head;
     }
 
     public Node<K, V> getHead() { return head; }
     public Node<K, V> getTail() { return tail; }
 
-    /**
-     * Inserts {@code node} immediately before {@code successor}.
-     * Retries if {@code successor} is deleted or if CAS fails.
-     */
-    private void insertBefore(Node<K, V> successor, Node<K, V> node) {
+    /** Links {@code node} in front of the tail sentinel. Caller must own the node. */
+    private void linkLast(Node<K, V> node) {
+        node.frozenNext = tail;
+        node.next       = PENDING;
         for (;;) {
-            // Find a live predecessor of successor.
-            Node<K, V> pred = findLivePred(successor);
-
-            node.prev = pred;
-            node.next.set(successor, false);
-
-            if (pred.next.compareAndSet(successor, node, false, false)) {
-                successor.prev = node;
+            Node<K, V> last = findLast(node);
+            node.prev = last;
+            if (NEXT.compareAndSet(last, tail, node)) {
+                node.next = tail;
+                tail.prev = node;
                 return;
             }
         }
     }
 
     /**
-     * Walks backwards from {@code node} via prev pointers, skipping any
-     * logically deleted nodes, until a live predecessor is found.
+     * Finds the node whose next is the tail, starting from the tail's prev
+     * hint. {@code joining} is the caller's own node, which the hint may
+     * still name from before it was unlinked.
      */
-    private Node<K, V> findLivePred(Node<K, V> node) {
-        Node<K, V> pred = node.prev;
-        while (pred != null && pred.isDeleted()) {
-            pred = pred.prev;
+    private Node<K, V> findLast(Node<K, V> joining) {
+        Node<K, V> p = lastHint(joining);
+        for (;;) {
+            Node<K, V> n = p.next;
+            if (n == tail) return p;
+            if (n == FROZEN || n == PENDING) {
+                // p is leaving or joining, and its owner finishes that alone
+                Thread.onSpinWait();
+                p = lastHint(joining);
+            } else if (n == UNLINKED || n == null) {
+                p = head; // stale hint
+            } else {
+                p = n;
+            }
         }
-        return (pred == null) ? head : pred;
+    }
+
+    private Node<K, V> lastHint(Node<K, V> joining) {
+        Node<K, V> p = tail.prev;
+        return p == joining ? head : p;
     }
 
     /**
-     * Physically unlinks {@code node} (which must already be logically deleted)
-     * by swinging its predecessor's next pointer to {@code node}'s successor.
-     * Returns true if this thread performed the unlink.
+     * Freezes and unlinks {@code node}. Must only be called by the thread
+     * that moved the node out of LIVE, so there is exactly one freezer and
+     * exactly one thread that swings the predecessor.
      */
-    private boolean helpDelete(Node<K, V> node, Node<K, V> succ) {
-        boolean[] succMarked = {false};
-        while (succ != tail && succ.next.get(succMarked) != null && succMarked[0]) {
-            succ = succ.next.getReference();
-        }
+    private void unlink(Node<K, V> node) {
+        Node<K, V> succ;
+        do {
+            succ = node.next;
+            node.frozenNext = succ;
+        } while (!NEXT.compareAndSet(node, succ, FROZEN));
 
-        Node<K, V> pred = findLivePred(node);
-        // Swing pred.next past node to succ.
-        return pred.next.compareAndSet(node, succ, false, false);
+        // Nothing can be linked behind a frozen node, and succ cannot leave
+        // before it does, so pred.next == node still means this incarnation.
+        Node<K, V> pred;
+        while ((pred = findPred(node)) == null || !NEXT.compareAndSet(pred, node, succ)) Thread.onSpinWait();
+        node.next = UNLINKED;
+        if (succ.prev == node) succ.prev = pred;
     }
 
     /**
-     * Unlinks a live (non-deleted) node without marking it.
-     * Used by moveToEnd so the node can be re-inserted afterwards.
-     * Returns true if this thread successfully unlinked it.
+     * Returns the node whose next is {@code node}, or null if it was not
+     * found this time round. Tries the prev hint first.
      */
-    private boolean physicallyUnlink(Node<K, V> node) {
-        boolean[] marked = {false};
-        Node<K, V> succ = node.next.get(marked);
-        if (marked[0]) return false; // already logically deleted, hands off
+    private Node<K, V> findPred(Node<K, V> node) {
+        Node<K, V> p = node.prev;
+        if (p != null && p.next == node) return p;
 
-        Node<K, V> pred = findLivePred(node);
-        return pred.next.compareAndSet(node, succ, false, false);
+        p = head;
+        for (;;) {
+            Node<K, V> n = p.next;
+            if (n == node) return p;
+            if (n == tail || n == PENDING || n == null) return null;
+            if (n == FROZEN) {
+                // p is leaving too and cannot be a CAS target; let its owner finish.
+                Thread.onSpinWait();
+                p = head;
+            } else if (n == UNLINKED) {
+                p = head;
+            } else {
+                p = n;
+            }
+        }
     }
-}
\ No newline at end of file
+}
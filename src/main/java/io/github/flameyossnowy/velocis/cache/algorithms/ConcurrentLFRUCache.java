@@ -1,144 +1,309 @@
 package io.github.flameyossnowy.velocis.cache.algorithms;
 
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
+import io.github.flameyossnowy.velocis.cache.SnapshotOutput;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.IntUnaryOperator;
 
 /**
  * Low-level, parallel-array, open-addressing LFRU (Least Frequently Recently Used) cache.
  *
  * <h2>Layout</h2>
- * Five flat arrays indexed by the same slot index {@code i}:
+ * Four flat arrays indexed by the same slot index {@code i}:
  * <pre>
- *   int[]    hashes    — spread hash; 0 = empty, -1 = tombstone
+ *   int[]    hashes    — spread hash; 0 = empty
  *   Object[] keys      — key at slot i
  *   Object[] values    — value at slot i
- *   int[]    freqs     — access frequency at slot i
- *   long[]   lastUsed  — logical timestamp of last access (for recency tiebreaking)
+ *   long[]   meta      — (frequency &lt;&lt; 40) | tick of last access
  * </pre>
+ * Lookups probe a {@code byte[] ctrl} of 7-bit hash tags eight slots at a
+ * time; see {@link ControlBytes}.
+ * Frequency and recency share one word, so an access is a single 64-bit
+ * store and eviction reads one array instead of two. The tick is coarse:
+ * the clock only advances on insertions and updates, which already hold the
+ * write lock, and reads just stamp the current value.
+ * <p>
+ * Removal uses backward-shift deletion instead of tombstones: later
+ * entries of the probe run are moved back into the hole, so every run stays
+ * as short as if the removed key had never been inserted, however long
+ * the cache churns.
+ * <p>
+ * Hashes are seeded per instance (see {@link #mix0}); an insert that still
+ * lands implausibly far from home reseeds and rehashes the table.
  *
  * <h2>LFRU policy</h2>
  * On eviction, the candidate with the <em>lowest frequency</em> is chosen.
  * Among equal-frequency candidates the <em>least recently used</em> wins,
- * i.e. the one with the smallest {@code lastUsed} timestamp.
+ * i.e. the one whose tick is oldest.
  * This combines LFU correctness with LRU tiebreaking, avoiding the
  * "cache pollution" problem of pure LFU where a one-time burst can keep
  * a stale entry alive forever.
  *
+ * <h2>Aging</h2>
+ * Without aging, frequencies only grow and yesterday's hot keys outlive
+ * today's. {@link Decay} selects how counts fade:
+ * <ul>
+ *   <li>{@code NONE} — counts are never aged.</li>
+ *   <li>{@code HALVING} — every {@code period} clock ticks, all frequencies
+ *       are halved in one pass under the write lock.</li>
+ *   <li>{@code EXPONENTIAL} — a frequency halves for every {@code period}
+ *       ticks since its slot was last touched. The decay is applied lazily
+ *       whenever the counter is read, so there is no global pass.</li>
+ * </ul>
+ *
+ * <h2>Eviction</h2>
+ * By default eviction scans every slot, which is exact but O(capacity) per
+ * insert at capacity. {@link #setEvictionSampleSize(int)} switches to
+ * Redis-style sampling: each eviction scores {@code k} random occupied slots
+ * and merges them into a small pool of the best candidates seen so far,
+ * then evicts the best pool entry that still holds the key it was pooled
+ * with. Cost is O(k), and the pool lets good candidates found by earlier
+ * samples survive to later evictions.
+ *
+ * <h2>Sizing</h2>
+ * The table starts at {@code INITIAL_CAPACITY} slots and doubles whenever
+ * it passes the load limit, so a cache configured for millions of entries
+ * only pays for what it holds. {@link Probing#ROBIN_HOOD} raises that limit
+ * from 70% to 87.5%. {@link #setMaximumSize(int)} changes the
+ * limit at runtime; shrinking evicts down to the new limit and releases
+ * the table space it no longer needs.
+ *
+ * <h2>Snapshots</h2>
+ * {@link #writeTo} writes the hash and meta arrays in bulk, then each key
+ * and value through a {@link Codec}; {@link #readFrom} loads them back
+ * into the same slots with their counts and ticks, rehashing only if key
+ * hashCodes have changed since.
+ *
  * <h2>Concurrency</h2>
  * {@link StampedLock} with optimistic reads, same model as
- * {@link ConcurrentLFUCache}.
+ * {@link ConcurrentLFUCache}. A hit does not take the write lock: it bumps
+ * its slot's meta word with a single CAS and drops the bump if another
+ * thread won, so hot keys do not serialize on the lock.
  */
 @SuppressWarnings("unchecked")
-public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
+public class ConcurrentLFRUCache<K, V> implements Map<K, V>, Resizable {
 
     private static final int   EMPTY     =  0;
-    private static final int   TOMBSTONE = -1;
-    private static final float LOAD      = 0.70f;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final int  TICK_BITS = 40;
+    private static final long TICK_MASK = (1L << TICK_BITS) - 1;
+    private static final long FREQ_MAX  = (1L << (63 - TICK_BITS)) - 1;
+
+    private static final VarHandle META = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private static final int POOL_SIZE = 16;
+
+    private static final int PROBE_GUARD_PER_BIT = 16; // guard = 16 * log2(capacity)
+
+    /** Frequency aging strategy. */
+    public enum Decay {
+        NONE,
+        HALVING,
+        EXPONENTIAL
+    }
 
     private int[]    hashes;
     private K[] keys;
     private V[] values;
-    private int[]    freqs;
-    private long[]   lastUsed;
+    private long[]   meta;
+    private byte[]   ctrl;
 
     private int capacity;
     private int mask;
-    private final int maxSize;
+    private volatile int maxSize; // written under the write lock only
 
     private final StampedLock   lock      = new StampedLock();
     private final AtomicInteger liveCount = new AtomicInteger(0);
-    private long                clock     = 0L;
-
-    public ConcurrentLFRUCache(int maxSize) {
+    private volatile long       clock     = 0L; // advanced under the write lock only
+
+    private final Decay   decay;
+    private final long    period;
+    private final Probing probing;
+    private long        lastHalving = 0L;
+
+    private int seed = newSeed0(); // see mix0
+    private int reseededAt;        // capacity at the last reseed
+
+    // Sampled eviction (sampleSize 0 = exact full scan); pool guarded by the write lock
+    private volatile int   sampleSize;
+    private final int[]    poolSlots = new int   [POOL_SIZE];
+    private final Object[] poolKeys  = new Object[POOL_SIZE];
+    private int            poolCount;
+
+    /**
+     * @param decay  how frequencies age
+     * @param period clock ticks (insertions and updates) per halving; the
+     *               interval for {@code HALVING}, the half-life for
+     *               {@code EXPONENTIAL}. Ignored for {@code NONE}.
+     * @param probing collision strategy of the table
+     */
+    public ConcurrentLFRUCache(int maxSize, @NotNull Decay decay, long period, @NotNull Probing probing) {
         if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        if (decay != Decay.NONE && period <= 0) throw new IllegalArgumentException("period must be > 0");
         this.maxSize  = maxSize;
-        this.capacity = nextPow2((int) (maxSize / LOAD) + 1);
+        this.probing  = probing;
+        this.capacity = Math.min(tableSize0(maxSize, probing.load), INITIAL_CAPACITY);
         this.mask     = capacity - 1;
+        this.decay    = decay;
+        this.period   = period;
         allocArrays(capacity);
     }
 
+    public ConcurrentLFRUCache(int maxSize, @NotNull Decay decay, long period) {
+        this(maxSize, decay, period, Probing.LINEAR);
+    }
+
+    public ConcurrentLFRUCache(int maxSize, @NotNull Probing probing) { this(maxSize, Decay.NONE, 0L, probing); }
+    public ConcurrentLFRUCache(int maxSize)                    { this(maxSize, Decay.NONE, 0L); }
+
     public ConcurrentLFRUCache()                               { this(16); }
     public ConcurrentLFRUCache(int s, int i)                   { this(s); }
     public ConcurrentLFRUCache(int s, float f)                 { this(s); }
     public ConcurrentLFRUCache(int s, int i, float f)          { this(s); }
 
+    /**
+     * Sets how many random slots each eviction samples. 0 (the default)
+     * scans the whole table and always evicts the exact LFRU victim; larger
+     * values trade accuracy for O(k) eviction. Redis uses 5 by default,
+     * which is already close to exact; 10 is closer still.
+     */
+    public void setEvictionSampleSize(int k) {
+        if (k < 0) throw new IllegalArgumentException("sampleSize must be >= 0");
+        long stamp = lock.writeLock();
+        try {
+            this.sampleSize = k;
+            clearPool();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int getEvictionSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Changes the entry limit. Lowering it evicts down to the new limit
+     * straight away and shrinks the table to the size the limit needs.
+     */
+    public void setMaximumSize(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        long stamp = lock.writeLock();
+        try {
+            this.maxSize = maxSize;
+            int cap    = Math.min(capacity, tableSize0(maxSize, probing.load));
+            int excess = liveCount.get() - maxSize;
+            if (excess > 0)          evictAndResize(excess, cap);
+            else if (cap < capacity) resize(cap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int getMaximumSize() {
+        return maxSize;
+    }
+
     private void allocArrays(int cap) {
         hashes   = new int   [cap];
         keys     = (K[]) new Object[cap];
         values   = (V[]) new Object[cap];
-        freqs    = new int   [cap];
-        lastUsed = new long  [cap];
+        meta     = new long  [cap];
+        ctrl     = ControlBytes.allocate(cap);
     }
 
-    private static int spread(int h) {
-        h ^= (h >>> 16);
-        h &= 0x7FFF_FFFF;
-        return h == 0 ? 1 : h;
+    private int spread(int h) {
+        return mix0(h, seed);
     }
 
     @Override
     public @Nullable V get(Object key) {
-        int h = spread(key.hashCode());
-
-        // Optimistic read
-        long stamp = lock.tryOptimisticRead();
-        int  idx   = findSlot(h, key, hashes, keys, mask);
-        V    val   = idx >= 0 ? (V) values[idx] : null;
-
-        if (!lock.validate(stamp)) {
-            stamp = lock.readLock();
-            try {
-                idx = findSlot(h, key, hashes, keys, mask);
-                val = idx >= 0 ? (V) values[idx] : null;
-            } finally {
-                lock.unlockRead(stamp);
-            }
+        int hc = key.hashCode();
+
+        // Optimistic read. A resize swaps every array, so work on one
+        // snapshot and skip the probe if it mixes two tables. A reseed
+        // changes the hash as well, so it is taken under the same stamp.
+        long   stamp = lock.tryOptimisticRead();
+        int    h     = spread(hc);
+        byte[] cs    = ctrl;
+        int[]  hs    = hashes;
+        K[]    ks    = keys;
+        V[]    vs    = values;
+        long[] ms    = meta;
+        int    len   = ks.length;
+        int    idx   = len == vs.length && len == ms.length && len == hs.length && cs.length == len + ControlBytes.GROUP - 1
+                     ? findSlot(h, key, cs, hs, ks, len - 1) : -1;
+        K      k     = idx >= 0 ? ks[idx] : null;
+        V      val   = idx >= 0 ? vs[idx] : null;
+        long   m     = idx >= 0 ? (long) META.getVolatile(ms, idx) : 0L;
+
+        if (lock.validate(stamp)) {
+            // A writer may shift or reuse the slot after validation. The
+            // key check skips the bump once the slot holds another key, but
+            // a writer can still slip in between it and the CAS, and the
+            // meta word (frequency and coarse tick) of the entry it moves
+            // there may equal m. The bump then lands on that entry: one
+            // access credited to the wrong key, which LFRU tolerates. A
+            // resize leaves ms behind, and the bump is simply lost.
+            if (idx >= 0 && ks[idx] == k) touch(ms, idx, m);
+            return val;
         }
 
-        if (idx >= 0) {
-            long ws = lock.writeLock();
-            try {
-                int widx = findSlot(h, key, hashes, keys, mask);
-                if (widx >= 0) {
-                    freqs   [widx]++;
-                    lastUsed[widx] = ++clock;
-                }
-            } finally {
-                lock.unlockWrite(ws);
-            }
+        stamp = lock.readLock();
+        try {
+            idx = findSlot(spread(hc), key, ctrl, hashes, keys, mask);
+            if (idx < 0) return null;
+            touch(meta, idx, (long) META.getVolatile(meta, idx));
+            return (V) values[idx];
+        } finally {
+            lock.unlockRead(stamp);
         }
-
-        return val;
     }
 
     @Override
     public @Nullable V put(K key, V value) {
-        int h = spread(key.hashCode());
+        int hc = key.hashCode();
 
         long stamp = lock.writeLock();
         try {
-            int idx = findSlot(h, key, hashes, keys, mask);
+            int h   = spread(hc);
+            int idx = findSlot(h, key, ctrl, hashes, keys, mask);
+            long now = advanceClock();
             if (idx >= 0) {
                 V old       = (V) values[idx];
                 values  [idx] = value;
-                freqs   [idx]++;
-                lastUsed[idx] = ++clock;
+                META.setVolatile(meta, idx, bump((long) META.getVolatile(meta, idx), now));
                 return old;
             }
 
             if (liveCount.get() >= maxSize) evictLFRU();
+            if (liveCount.get() >= (int) (capacity * probing.load)) resize(capacity << 1);
 
-            int slot = probeInsert(h, hashes, mask);
+            int slot = claimSlot(h);
             hashes  [slot] = h;
+            ControlBytes.set(ctrl, slot, ControlBytes.tag(h));
             keys    [slot] = key;
             values  [slot] = value;
-            freqs   [slot] = 1;
-            lastUsed[slot] = ++clock;
+            META.setVolatile(meta, slot, pack(1L, now));
             liveCount.incrementAndGet();
+            if (probeTooLong0(slot, h, mask) && reseededAt != capacity) reseed();
             return null;
         } finally {
             lock.unlockWrite(stamp);
@@ -147,17 +312,13 @@ public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
 
     @Override
     public @Nullable V remove(Object key) {
-        int h = spread(key.hashCode());
+        int hc = key.hashCode();
         long stamp = lock.writeLock();
         try {
-            int idx = findSlot(h, key, hashes, keys, mask);
+            int idx = findSlot(spread(hc), key, ctrl, hashes, keys, mask);
             if (idx < 0) return null;
             V old        = (V) values[idx];
-            hashes  [idx] = TOMBSTONE;
-            keys    [idx] = null;
-            values  [idx] = null;
-            freqs   [idx] = 0;
-            lastUsed[idx] = 0L;
+            deleteSlot(idx);
             liveCount.decrementAndGet();
             return old;
         } finally {
@@ -166,61 +327,567 @@ public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
     }
 
     private void evictLFRU() {
-        int  minFreq     = Integer.MAX_VALUE;
-        long minLastUsed = Long.MAX_VALUE;
-        int  victim      = -1;
+        int k      = sampleSize;
+        int victim = k > 0 ? sampleVictim(k) : -1;
+        if (victim < 0) victim = scanVictim();
 
-        int[]    hs = hashes;
-        int[]    fs = freqs;
-        long[]   lu = lastUsed;
+        if (victim >= 0) {
+            deleteSlot(victim);
+            liveCount.decrementAndGet();
+        }
+    }
+
+    /**
+     * Empties slot {@code i} by backward shift: entries later in its probe
+     * run move back into the hole until the run ends. Caller must hold write
+     * lock.
+     */
+    private void deleteSlot(int i) {
+        for (int j; (j = nextShift(i)) >= 0; i = j) moveSlot(j, i);
+        hashes[i] = EMPTY;
+        ControlBytes.set(ctrl, i, ControlBytes.EMPTY);
+        keys  [i] = null;
+        values[i] = null;
+        META.setVolatile(meta, i, 0L);
+    }
+
+    /** Copies slot {@code from} over slot {@code to}. Caller must hold write lock. */
+    private void moveSlot(int from, int to) {
+        hashes[to] = hashes[from];
+        keys  [to] = keys  [from];
+        values[to] = values[from];
+        META.setVolatile(meta, to, (long) META.getVolatile(meta, from));
+        ControlBytes.set(ctrl, to, ctrl[from]);
+    }
+
+    private int nextShift(int hole) {
+        return probing == Probing.ROBIN_HOOD ? shiftRobinHood0(hole, hashes, mask, EMPTY) : shift0(hole, hashes, mask, EMPTY);
+    }
+
+    /**
+     * Returns the slot a new entry of hash {@code h} goes into. Under Robin
+     * Hood probing that slot may be taken, and its entry and the rest of
+     * the run are first moved one slot forward. Caller must hold write lock.
+     */
+    private int claimSlot(int h) {
+        if (probing == Probing.LINEAR) return probe0(h, hashes, mask, EMPTY);
+        int p = robinHood0(h, hashes, mask, EMPTY);
+        int e = probe0(p, hashes, mask, EMPTY);
+        for (int k = e; k != p; k = (k - 1) & mask) moveSlot((k - 1) & mask, k);
+        return p;
+    }
+
+    /**
+     * Evicts the {@code n} lowest-scoring entries and rehashes the rest into
+     * {@code newCapacity} slots. One sort finds the cutoff score, where
+     * {@code n} exact evictions would each scan the whole table. Caller must
+     * hold write lock.
+     */
+    private void evictAndResize(int n, int newCapacity) {
+        long   now    = clock;
+        long[] scores = new long[liveCount.get()];
+        int    live   = 0;
+        for (int i = 0; i < capacity; i++)
+            if (hashes[i] > 0) scores[live++] = score((long) META.getVolatile(meta, i), now);
+        Arrays.sort(scores, 0, live);
+
+        long cutoff = scores[n - 1];
+        int  ties   = 0; // entries at the cutoff score that go as well
+        for (int j = n - 1; j >= 0 && scores[j] == cutoff; j--) ties++;
+
+        for (int i = 0; i < capacity; i++) {
+            if (hashes[i] <= 0) continue;
+            long sc = score((long) META.getVolatile(meta, i), now);
+            if (sc < cutoff || (sc == cutoff && ties-- > 0)) {
+                hashes[i] = EMPTY;
+                keys  [i] = null;
+                values[i] = null;
+                META.setVolatile(meta, i, 0L);
+                liveCount.decrementAndGet();
+            }
+        }
+        // The holes break probe runs; the rehash repairs them
+        resize(newCapacity);
+    }
+
+    /**
+     * Rehashes every entry into a table of {@code newCapacity} slots. Pooled
+     * candidates refer to old slot indexes, so the pool is dropped. Caller
+     * must hold write lock.
+     */
+    private void resize(int newCapacity) {
+        int[]  oh = hashes;
+        K[]    ok = keys;
+        V[]    ov = values;
+        long[] om = meta;
+
+        allocArrays(newCapacity);
+        capacity = newCapacity;
+        mask     = newCapacity - 1;
+        for (int i = 0; i < oh.length; i++) {
+            if (oh[i] == EMPTY) continue;
+            int s = claimSlot(oh[i]);
+            hashes[s] = oh[i];
+            keys  [s] = ok[i];
+            values[s] = ov[i];
+            meta  [s] = (long) META.getVolatile(om, i);
+            ControlBytes.set(ctrl, s, ControlBytes.tag(oh[i]));
+        }
+        clearPool();
+    }
+
+    /**
+     * Draws a new seed and rehashes every entry, at most once per table
+     * size: keys with equal hashCodes collide under any seed. Caller must
+     * hold write lock.
+     */
+    private void reseed() {
+        reseededAt = capacity;
+        seed       = newSeed0();
+        rehash();
+    }
+
+    /** Recomputes every hash under the current seed and re-lays the table. Caller must hold write lock. */
+    private void rehash() {
+        for (int i = 0; i < capacity; i++)
+            if (hashes[i] != EMPTY) hashes[i] = spread(keys[i].hashCode());
+        resize(capacity);
+    }
+
+    /**
+     * Writes a snapshot of this cache, frequencies, ticks and settings
+     * included, for {@link #readFrom}. Writers wait until it is done; hits
+     * landing meanwhile may or may not be counted. The stream is flushed
+     * but not closed.
+     */
+    public void writeTo(@NotNull OutputStream out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
+    }
+
+    public void writeTo(@NotNull WritableByteChannel out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
+    }
+
+    public static <K, V> @NotNull ConcurrentLFRUCache<K, V> readFrom(@NotNull InputStream in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    public static <K, V> @NotNull ConcurrentLFRUCache<K, V> readFrom(@NotNull ReadableByteChannel in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    private void write(SnapshotOutput out, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.writeHeader("ConcurrentLFRUCache");
+            out.writeInt(maxSize);
+            out.writeUTF(decay.name());
+            out.writeLong(period);
+            out.writeUTF(probing.name());
+            out.writeInt(sampleSize);
+            out.writeInt(capacity);
+            out.writeInt(seed);
+            out.writeInt(liveCount.get());
+            out.writeLong(clock);
+            out.writeLong(lastHalving);
+            out.writeInts(hashes, capacity);
+            out.writeLongs(meta, capacity);
+            writeEntries0(out, hashes, keys, values, EMPTY, keyCodec, valueCodec);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        out.flush();
+    }
+
+    private static <K, V> ConcurrentLFRUCache<K, V> read(SnapshotInput in, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        in.readHeader("ConcurrentLFRUCache");
+        int   maxSize = in.readInt();
+        Decay decay;
+        try {
+            decay = Decay.valueOf(in.readUTF());
+        } catch (IllegalArgumentException e) {
+            throw new StreamCorruptedException("unknown decay: " + e.getMessage());
+        }
+        long    period     = in.readLong();
+        Probing probing    = readProbing0(in);
+        int     sampleSize = in.readInt();
+        if (maxSize <= 0 || sampleSize < 0 || (decay != Decay.NONE && period <= 0))
+            throw new StreamCorruptedException("bad settings");
+        int     capacity   = readTableSize0(in, maxSize, probing);
+
+        ConcurrentLFRUCache<K, V> cache = new ConcurrentLFRUCache<>(maxSize, decay, period, probing);
+        cache.sampleSize  = sampleSize;
+        cache.capacity    = capacity;
+        cache.mask        = capacity - 1;
+        cache.seed        = in.readInt();
+        int size          = in.readCount(Math.min(maxSize, capacity - 1));
+        cache.clock       = in.readLong();
+        cache.lastHalving = in.readLong();
+        if (cache.clock < 0 || cache.lastHalving < 0 || cache.lastHalving > cache.clock)
+            throw new StreamCorruptedException("bad clock " + cache.clock + ", last halving " + cache.lastHalving);
+        cache.allocArrays(capacity);
+        in.readInts(cache.hashes, capacity);
+        in.readLongs(cache.meta, capacity);
+        for (int i = 0; i < capacity; i++) {
+            // A set top bit would overflow the frequency into the score's sign
+            if (cache.meta[i] < 0 || (cache.hashes[i] == EMPTY && cache.meta[i] != 0L))
+                throw new StreamCorruptedException("bad meta at slot " + i);
+        }
+
+        if (!readEntries0(in, cache.hashes, cache.keys, cache.values, cache.ctrl, EMPTY, size,
+                          cache::spread, keyCodec, valueCodec)) cache.rehash();
+        cache.liveCount.set(size);
+        return cache;
+    }
+
+    /** Exact victim: lowest score over every occupied slot. */
+    private int scanVictim() {
+        long best   = Long.MAX_VALUE;
+        int  victim = -1;
+
+        int[]    hs  = hashes;
+        long[]   ms  = meta;
         int      cap = capacity;
+        long     now = clock;
 
         for (int i = 0; i < cap; i++) {
-            if (hs[i] <= 0) continue; // empty or tombstone
-            int  f = fs[i];
-            long t = lu[i];
-            if (f < minFreq || (f == minFreq && t < minLastUsed)) {
-                minFreq     = f;
-                minLastUsed = t;
-                victim      = i;
+            if (hs[i] == EMPTY) continue;
+            long sc = score((long) META.getVolatile(ms, i), now);
+            if (sc < best) {
+                best   = sc;
+                victim = i;
             }
         }
+        return victim;
+    }
 
-        if (victim >= 0) {
-            hashes  [victim] = TOMBSTONE;
-            keys    [victim] = null;
-            values  [victim] = null;
-            freqs   [victim] = 0;
-            lastUsed[victim] = 0L;
-            liveCount.decrementAndGet();
+    /**
+     * Samples {@code k} occupied slots into the candidate pool, then takes
+     * the best pool entry whose slot still holds its pooled key. Returns -1
+     * if nothing valid was found. Caller must hold write lock.
+     */
+    private int sampleVictim(int k) {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        int[] hs = hashes;
+        for (int found = 0, tries = 0; found < k && tries < k * 4; tries++) {
+            int i = rnd.nextInt(capacity);
+            if (hs[i] <= 0) continue;
+            found++;
+            offerCandidate(i);
+        }
+
+        long now    = clock;
+        long best   = Long.MAX_VALUE;
+        int  bestAt = -1;
+        for (int p = 0; p < poolCount; ) {
+            int slot = poolSlots[p];
+            if (hs[slot] <= 0 || keys[slot] != poolKeys[p]) {
+                dropFromPool(p); // evicted, removed or reused since it was pooled
+                continue;
+            }
+            // Re-score: the entry may have been hit since it was sampled
+            long sc = score((long) META.getVolatile(meta, slot), now);
+            if (sc < best) {
+                best   = sc;
+                bestAt = p;
+            }
+            p++;
+        }
+        if (bestAt < 0) return -1;
+
+        int victim = poolSlots[bestAt];
+        dropFromPool(bestAt);
+        return victim;
+    }
+
+    /** Adds slot {@code i} to the pool, replacing the weakest candidate when full. */
+    private void offerCandidate(int i) {
+        Object key = keys[i];
+        for (int p = 0; p < poolCount; p++) {
+            if (poolSlots[p] == i && poolKeys[p] == key) return; // already pooled
+        }
+        if (poolCount < POOL_SIZE) {
+            poolSlots[poolCount] = i;
+            poolKeys [poolCount] = key;
+            poolCount++;
+            return;
+        }
+
+        long now     = clock;
+        long worst   = score((long) META.getVolatile(meta, i), now);
+        int  worstAt = -1;
+        for (int p = 0; p < POOL_SIZE; p++) {
+            long sc = score((long) META.getVolatile(meta, poolSlots[p]), now);
+            if (sc > worst) {
+                worst   = sc;
+                worstAt = p;
+            }
+        }
+        if (worstAt >= 0) {
+            poolSlots[worstAt] = i;
+            poolKeys [worstAt] = key;
         }
     }
 
-    private static int findSlot(int h, Object key, int[] hs, Object[] ks, int mask) {
+    private void dropFromPool(int p) {
+        int last = --poolCount;
+        poolSlots[p]    = poolSlots[last];
+        poolKeys [p]    = poolKeys [last];
+        poolKeys [last] = null;
+    }
+
+    private void clearPool() {
+        Arrays.fill(poolKeys, null);
+        poolCount = 0;
+    }
+
+    /**
+     * Eviction order key: lower frequency first, then older tick. The
+     * lowest score is the best victim.
+     */
+    private long score(long m, long now) {
+        long age = age(m, now);
+        return (effectiveFreq(m, age) << TICK_BITS) | (TICK_MASK - age);
+    }
+
+    /**
+     * Advances the coarse clock and runs a halving pass when one is due.
+     * Caller must hold write lock.
+     */
+    private long advanceClock() {
+        long now = clock + 1;
+        clock = now;
+        if (decay == Decay.HALVING && now - lastHalving >= period) {
+            lastHalving = now;
+            long[] ms = meta;
+            for (int i = 0; i < capacity; i++) {
+                if (hashes[i] <= 0) continue;
+                // CAS so that a concurrent lock-free touch is never lost half-applied
+                long m;
+                do {
+                    m = (long) META.getVolatile(ms, i);
+                } while (!META.compareAndSet(ms, i, m, pack(freqOf(m) >>> 1, m & TICK_MASK)));
+            }
+        }
+        return now;
+    }
+
+    /** Records one access to slot {@code i} of {@code ms}; a lost CAS race drops the access. */
+    private void touch(long[] ms, int i, long m) {
+        if (m == 0L) return; // slot vacated concurrently
+        META.compareAndSet(ms, i, m, bump(m, clock));
+    }
+
+    /** Meta word after one more access at {@code now}, decaying first if configured. */
+    private long bump(long m, long now) {
+        long f = effectiveFreq(m, age(m, now));
+        return pack(Math.min(f + 1, FREQ_MAX), now);
+    }
+
+    private long effectiveFreq(long m, long age) {
+        long f = freqOf(m);
+        if (decay != Decay.EXPONENTIAL) return f;
+        long halvings = age / period;
+        return halvings >= 63 - TICK_BITS ? 0L : f >>> halvings;
+    }
+
+    private static long pack(long freq, long tick) {
+        return (freq << TICK_BITS) | (tick & TICK_MASK);
+    }
+
+    private static long freqOf(long m) {
+        return m >>> TICK_BITS;
+    }
+
+    /** Ticks since the slot was last touched, modulo the tick width. */
+    private static long age(long m, long now) {
+        return (now - m) & TICK_MASK;
+    }
+
+    /** Group probe over the control bytes — returns slot if key found, -1 otherwise. */
+    private int findSlot(int h, Object key, byte[] cs, int[] hs, Object[] ks, int mask) {
+        return probing == Probing.ROBIN_HOOD
+            ? ControlBytes.findRobinHood(h, key, cs, hs, ks, mask)
+            : ControlBytes.find(h, key, cs, ks, mask);
+    }
+
+    /**
+     * Seeded hash for {@code hashes[]}: murmur3's finalizer over the key's
+     * hashCode xor a per-instance random seed, kept positive and non-zero.
+     * A fixed mix lets anyone who picks the keys (URL paths, user ids)
+     * precompute a set that piles into one probe run; without the seed,
+     * they cannot tell which keys collide.
+     */
+    static int mix0(int h, int seed) {
+        h ^= seed;
+        h ^= h >>> 16;
+        h *= 0x85EB_CA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2_AE35;
+        h ^= h >>> 16;
+        h &= 0x7FFF_FFFF; // keep positive; 0 is the empty sentinel
+        return h == 0 ? 1 : h;
+    }
+
+    static int newSeed0() {
+        return ThreadLocalRandom.current().nextInt();
+    }
+
+    /**
+     * Probe-length guard: true when slot {@code i} sits further from its
+     * home than random hashing plausibly puts any entry. The longest run
+     * grows with log(capacity), so the bound does too; past it, the keys
+     * collide under the current seed.
+     */
+    static boolean probeTooLong0(int i, int h, int mask) {
+        return ((i - (h & mask)) & mask) > Integer.numberOfTrailingZeros(mask + 1) * PROBE_GUARD_PER_BIT;
+    }
+
+    /** Linear probe — returns the first empty slot of {@code h}'s run. */
+    static int probe0(int h, int[] hs, int mask, int empty) {
         int i = h & mask;
         for (int p = 0; p <= mask; p++) {
-            int sh = hs[i];
-            if (sh == EMPTY)                        return -1;
-            if (sh == h && key.equals(ks[i]))       return i;
+            if (hs[i] == empty) return i;
             i = (i + 1) & mask;
         }
         return -1;
     }
 
-    private static int probeInsert(int h, int[] hs, int mask) {
-        return probe0(h, hs, mask, EMPTY, TOMBSTONE);
+    /**
+     * Backward-shift step: returns the first slot after {@code hole} whose
+     * entry may move into it without falling before its home slot, or -1
+     * once the probe run ends. Shared by the open-addressing caches whose
+     * {@code hashes[]} hold spread hashes.
+     */
+    static int shift0(int hole, int[] hs, int mask, int empty) {
+        for (int j = (hole + 1) & mask; hs[j] != empty; j = (j + 1) & mask) {
+            int home = hs[j] & mask;
+            // Movable iff the hole lies cyclically within [home, j)
+            if (((j - home) & mask) >= ((j - hole) & mask)) return j;
+        }
+        return -1;
     }
 
-    static int probe0(int h, int[] hs, int mask, int empty, int tombstone) {
-        int i         = h & mask;
-        int firstTomb = -1;
-        for (int p = 0; p <= mask; p++) {
-            int sh = hs[i];
-            if (sh == empty)                          return firstTomb >= 0 ? firstTomb : i;
-            if (sh == tombstone && firstTomb < 0)     firstTomb = i;
+    /**
+     * Robin Hood insertion point: the first slot of {@code h}'s run that is
+     * empty or holds an entry closer to its home than {@code h} would be
+     * there. Ties go to the resident, so runs stay sorted by home slot.
+     */
+    static int robinHood0(int h, int[] hs, int mask, int empty) {
+        int home = h & mask;
+        int i    = home;
+        for (int d = 0; d <= mask; d++) {
+            if (hs[i] == empty || ((i - (hs[i] & mask)) & mask) < d) return i;
             i = (i + 1) & mask;
         }
-        return firstTomb;
+        return -1;
+    }
+
+    /**
+     * {@link #shift0} for a Robin Hood table: only the entry right after the
+     * hole can move, and not if it already sits in its home slot.
+     */
+    static int shiftRobinHood0(int hole, int[] hs, int mask, int empty) {
+        int j = (hole + 1) & mask;
+        return hs[j] != empty && (hs[j] & mask) != j ? j : -1;
+    }
+
+    /** Table size that keeps {@code maxSize} entries under load factor {@code load}. */
+    static int tableSize0(int maxSize, float load) {
+        return nextPow2((int) (maxSize / load) + 1);
+    }
+
+    /**
+     * Returns an empty slot. Slot iterators start just past one and wrap
+     * around: no probe run crosses it, so a backward shift during iteration
+     * never carries a visited entry ahead of the cursor.
+     */
+    static int emptySlot0(int[] hs, int empty) {
+        int i = 0;
+        while (hs[i] != empty) i++;
+        return i;
+    }
+
+    /** Reads the probing mode written as {@code probing.name()}. */
+    static Probing readProbing0(SnapshotInput in) throws IOException {
+        String name = in.readUTF();
+        for (Probing p : Probing.values()) if (p.name().equals(name)) return p;
+        throw new StreamCorruptedException("unknown probing " + name);
+    }
+
+    /** Reads the value strength written as {@code strength.name()}. */
+    static ValueStrength readValueStrength0(SnapshotInput in) throws IOException {
+        String name = in.readUTF();
+        for (ValueStrength s : ValueStrength.values()) if (s.name().equals(name)) return s;
+        throw new StreamCorruptedException("unknown value strength " + name);
+    }
+
+    /**
+     * Reads a snapshot's table size, which must be a power of two no larger
+     * than a cache of {@code maxSize}, already validated, ever grows to.
+     * Bounding it before the tables are allocated keeps a corrupt size from
+     * running out of memory.
+     */
+    static int readTableSize0(SnapshotInput in, int maxSize, Probing probing) throws IOException {
+        int capacity = in.readInt();
+        int limit    = maxSize / probing.load >= 1 << 30 ? 1 << 30 : tableSize0(maxSize, probing.load);
+        if (capacity <= 0 || capacity > limit || Integer.bitCount(capacity) != 1)
+            throw new StreamCorruptedException("bad table size " + capacity);
+        return capacity;
+    }
+
+    /** Writes the key and value of every full slot, in slot order. */
+    static <K, V> void writeEntries0(SnapshotOutput out, int[] hs, Object[] ks, Object[] vs, int empty,
+                                     Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        for (int i = 0; i < hs.length; i++) {
+            if (hs[i] == empty) continue;
+            keyCodec.write((K) ks[i], out);
+            valueCodec.write((V) vs[i], out);
+        }
+    }
+
+    /**
+     * Reads what {@link #writeEntries0} wrote back into the full slots of
+     * {@code hs}, setting their control bytes. Returns false if some key
+     * now spreads to another hash, as keys whose hashCode differs between
+     * processes do; the table must then be rehashed.
+     */
+    static <K, V> boolean readEntries0(SnapshotInput in, int[] hs, Object[] ks, Object[] vs, byte[] cs, int empty, int size,
+                                       IntUnaryOperator spread, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        boolean valid = true;
+        int     found = 0;
+        for (int i = 0; i < hs.length; i++) {
+            int h = hs[i];
+            if (h == empty) continue;
+            if (h < 0) throw new StreamCorruptedException("bad hash at slot " + i);
+            K key = keyCodec.read(in);
+            ks[i] = key;
+            vs[i] = valueCodec.read(in);
+            ControlBytes.set(cs, i, ControlBytes.tag(h));
+            valid &= spread.applyAsInt(key.hashCode()) == h;
+            found++;
+        }
+        if (found != size) throw new StreamCorruptedException("expected " + size + " entries, found " + found);
+        return valid;
+    }
+
+    /**
+     * Checks a linked list read from a snapshot: from {@code head} it must
+     * run through exactly {@code length} full slots, each linking back to
+     * the one before and, with a {@code segment} array, tagged {@code k},
+     * and end at {@code tail}. Any other link would later index out of
+     * the table or send a walk round a cycle.
+     */
+    static void checkList0(int[] hs, int empty, int[] prev, int[] next, int nil, int head, int tail, int length,
+                           byte[] segment, int k) throws StreamCorruptedException {
+        int found = 0;
+        int p     = nil;
+        for (int i = head; i != nil; p = i, i = next[i]) {
+            if (i < 0 || i >= hs.length || hs[i] == empty || prev[i] != p || (segment != null && segment[i] != k) || ++found > length)
+                throw new StreamCorruptedException("bad list link to slot " + i + " from slot " + p);
+        }
+        if (p != tail || found != length)
+            throw new StreamCorruptedException("list of " + found + " slots ending at " + p + ", expected " + length + " ending at " + tail);
     }
 
     @Override public void putAll(Map<? extends K, ? extends V> m) { m.forEach(this::put); }
@@ -230,12 +897,14 @@ public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
         long stamp = lock.writeLock();
         try {
             Arrays.fill(hashes,   EMPTY);
+            Arrays.fill(ctrl,     ControlBytes.EMPTY);
             Arrays.fill(keys,     null);
             Arrays.fill(values,   null);
-            Arrays.fill(freqs,    0);
-            Arrays.fill(lastUsed, 0L);
+            Arrays.fill(meta,     0L);
+            clearPool();
             liveCount.set(0);
-            clock = 0L;
+            clock       = 0L;
+            lastHalving = 0L;
         } finally {
             lock.unlockWrite(stamp);
         }
@@ -258,18 +927,39 @@ public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
     @Override public @NotNull Set<Entry<K,V>> entrySet() { return new EntrySetView(); }
 
     private abstract class SlotIterator<T> implements Iterator<T> {
-        int cursor = 0;
-        int next   = -1;
-        SlotIterator() { advance(); }
-        private void advance() {
-            while (cursor < capacity && hashes[cursor] <= 0) cursor++;
-            next = cursor < capacity ? cursor++ : -1;
-        }
-        @Override public boolean hasNext() { return next >= 0; }
+        // The table as of creation; a later resize leaves this one untouched
+        final int[] hs = hashes;
+        final K[]   ks = keys;
+        final V[]   vs = values;
+        final int   tableMask = hs.length - 1;
+
+        // Starts just past an empty slot and wraps; see emptySlot0
+        final int origin = emptySlot0(hs, EMPTY);
+        int    step = 0;    // slots past origin examined so far
+        int    next = -1;
+        int    last = -1;   // slot returned last, and the key it held
+        Object lastKey;
+
+        @Override public boolean hasNext() {
+            if (next >= 0) return true;
+            // A removal since then may have shifted an unvisited entry back into the returned slot
+            if (last >= 0 && hs[last] > 0 && ks[last] != lastKey) { next = last; return true; }
+            while (++step < hs.length) {
+                int i = (origin + step) & tableMask;
+                if (hs[i] > 0) { next = i; return true; }
+            }
+            return false;
+        }
+
         @Override public T next() {
-            if (next < 0) throw new NoSuchElementException();
-            int i = next; advance(); return extract(i);
+            if (!hasNext()) throw new NoSuchElementException();
+            int i = next;
+            next    = -1;
+            last    = i;
+            lastKey = ks[i];
+            return extract(i);
         }
+
         abstract T extract(int i);
     }
 
@@ -278,7 +968,7 @@ public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
         @Override public boolean contains(Object o) { return containsKey(o); }
         @Override public Iterator<K> iterator() {
             long s = lock.readLock(); try {
-                return new SlotIterator<K>() { @Override K extract(int i) { return (K) keys[i]; } };
+                return new SlotIterator<K>() { @Override K extract(int i) { return ks[i]; } };
             } finally { lock.unlockRead(s); }
         }
     }
@@ -287,7 +977,7 @@ public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
         @Override public int size() { return liveCount.get(); }
         @Override public Iterator<V> iterator() {
             long s = lock.readLock(); try {
-                return new SlotIterator<V>() { @Override V extract(int i) { return (V) values[i]; } };
+                return new SlotIterator<V>() { @Override V extract(int i) { return vs[i]; } };
             } finally { lock.unlockRead(s); }
         }
     }
@@ -298,7 +988,7 @@ public class ConcurrentLFRUCache<K, V> implements Map<K, V> {
             long s = lock.readLock(); try {
                 return new SlotIterator<Entry<K,V>>() {
                     @Override Entry<K,V> extract(int i) {
-                        return Map.entry(keys[i], values[i]);
+                        return Map.entry(ks[i], vs[i]);
                     }
                 };
             } finally { lock.unlockRead(s); }
@@ -1,13 +1,37 @@
 package io.github.flameyossnowy.velocis.cache.algorithms;
 
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
+import io.github.flameyossnowy.velocis.cache.SnapshotOutput;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.StampedLock;
 
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.emptySlot0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.mix0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.newSeed0;
 import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.probe0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.probeTooLong0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.readEntries0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.readProbing0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.readTableSize0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.readValueStrength0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.robinHood0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.shift0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.shiftRobinHood0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.tableSize0;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.writeEntries0;
 
 /**
  * Low-level, parallel-array, open-addressing LFU cache.
@@ -15,15 +39,30 @@ import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCac
  * <h2>Layout</h2>
  * Four flat arrays indexed by the same slot index {@code i}:
  * <pre>
- *   int[]    hashes    — spread hash; 0 = empty, -1 = tombstone
+ *   int[]    hashes    — spread hash; 0 = empty
  *   Object[] keys      — key at slot i
  *   Object[] values    — value at slot i
  *   int[]    freqs     — access frequency at slot i
  * </pre>
+ * plus a {@code byte[] ctrl} of 7-bit hash tags that lookups probe eight
+ * slots at a time; see {@link ControlBytes}.
  *
  * Open addressing with linear probing keeps everything in one cache line
  * neighbourhood, which is the key difference from the original
- * {@code ConcurrentHashMap}-backed version.
+ * {@code ConcurrentHashMap}-backed version. Removal shifts later entries
+ * of the probe run back into the hole instead of leaving a tombstone, so
+ * probe lengths do not degrade under churn.
+ * <p>
+ * Hashes are mixed with a random per-instance seed, so keys cannot be
+ * chosen to collide. Should an insert still land implausibly far from its
+ * home slot, the table draws a new seed and rehashes, at most once per
+ * table size.
+ *
+ * <h2>Sizing</h2>
+ * The table starts small and doubles whenever it passes its load factor
+ * (70% by default, 87.5% with {@link Probing#ROBIN_HOOD}), so the footprint
+ * follows the live entry count rather than {@code maxSize}.
+ * {@link #setMaximumSize(int)} changes the limit at runtime.
  *
  * <h2>Concurrency</h2>
  * A single {@link StampedLock} guards mutations; reads use an optimistic
@@ -36,73 +75,132 @@ import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCac
  * small (cache sizes are typically ≤ 10 000) and the array is extremely
  * cache-friendly, so in practice it outperforms a priority-queue approach
  * for small caches.
+ *
+ * <h2>Value strength</h2>
+ * With {@link ValueStrength#SOFT} or {@link ValueStrength#WEAK} the values
+ * are held through references the GC may clear; their entries read as
+ * absent at once and their slots are freed in batch by the next write,
+ * hit or {@link #cleanUp()}.
+ *
+ * <h2>Snapshots</h2>
+ * {@link #writeTo} writes the hash and frequency arrays in bulk, then each
+ * key and value through a {@link Codec}; {@link #readFrom} loads them
+ * back into the same slots, rehashing only if key hashCodes have changed
+ * since.
  */
 @SuppressWarnings("unchecked")
-public class ConcurrentLFUCache<K, V> implements Map<K, V> {
+public class ConcurrentLFUCache<K, V> implements Map<K, V>, Resizable {
 
     private static final int   EMPTY     =  0;
-    private static final int   TOMBSTONE = -1;
-    private static final float LOAD      = 0.70f; // keep array < 70% full
 
-    private int[]    hashes;   // spread hash | 0=empty | -1=tombstone
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[]    hashes;   // spread hash | 0=empty
     private Object[] keys;
     private Object[] values;
     private int[]    freqs;
+    private byte[]   ctrl;     // see ControlBytes
 
     private int capacity;   // always a power of two
     private int mask;       // capacity - 1
-    private final int maxSize;
+    private volatile int maxSize; // written under the write lock only
+    private final Probing probing;
+
+    private final ValueStrength                    valueStrength;
+    private final @Nullable ReferenceQueue<Object> cleared; // null for STRONG values
+
+    private int seed = newSeed0(); // see ConcurrentLFRUCache.mix0
+    private int reseededAt;        // capacity at the last reseed
 
     private final StampedLock lock = new StampedLock();
     private final AtomicInteger liveCount = new AtomicInteger(0);
 
-    public ConcurrentLFUCache(int maxSize) {
+    public ConcurrentLFUCache(int maxSize, @NotNull Probing probing, @NotNull ValueStrength valueStrength) {
         if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
         this.maxSize  = maxSize;
-        this.capacity = nextPow2((int) (maxSize / LOAD) + 1);
+        this.probing  = probing;
+        this.valueStrength = valueStrength;
+        this.cleared       = valueStrength == ValueStrength.STRONG ? null : new ReferenceQueue<>();
+        this.capacity = Math.min(tableSize0(maxSize, probing.load), INITIAL_CAPACITY);
         this.mask     = capacity - 1;
         this.hashes   = new int   [capacity];
         this.keys     = new Object[capacity];
         this.values   = new Object[capacity];
         this.freqs    = new int   [capacity];
+        this.ctrl     = ControlBytes.allocate(capacity);
     }
 
+    public ConcurrentLFUCache(int maxSize, @NotNull Probing probing) { this(maxSize, probing, ValueStrength.STRONG); }
+    public ConcurrentLFUCache(int maxSize, @NotNull ValueStrength valueStrength) { this(maxSize, Probing.LINEAR, valueStrength); }
+    public ConcurrentLFUCache(int maxSize) { this(maxSize, Probing.LINEAR); }
     public ConcurrentLFUCache() { this(16); }
     public ConcurrentLFUCache(int maxSize, int ignoredConcurrencyLevel) { this(maxSize); }
     public ConcurrentLFUCache(int maxSize, float ignoredLoadFactor) { this(maxSize); }
     public ConcurrentLFUCache(int maxSize, int i, float f) { this(maxSize); }
 
-    private static int spread(int h) {
-        h ^= (h >>> 16);
-        h &= 0x7FFF_FFFF; // keep positive; 0 and -1 are sentinels
-        return h == 0 ? 1 : h;
+    /**
+     * Changes the entry limit. Lowering it evicts down to the new limit
+     * straight away and shrinks the table to the size the limit needs.
+     */
+    public void setMaximumSize(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        long stamp = lock.writeLock();
+        try {
+            drainCleared();
+            this.maxSize = maxSize;
+            int cap    = Math.min(capacity, tableSize0(maxSize, probing.load));
+            int excess = liveCount.get() - maxSize;
+            if (excess > 0)          evictAndResize(excess, cap);
+            else if (cap < capacity) resize(cap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int getMaximumSize() {
+        return maxSize;
+    }
+
+    private int spread(int h) {
+        return mix0(h, seed);
     }
 
     @Override
     public @Nullable V get(Object key) {
-        int h   = spread(key.hashCode());
+        int  hc    = key.hashCode();
         long stamp = lock.tryOptimisticRead();
-
-        int idx = findSlot(h, key, hashes, keys, mask);
-        V   val = idx >= 0 ? (V) values[idx] : null;
+        int  h     = spread(hc); // a reseed changes this; the stamp catches it
+
+        // A resize swaps every array: probe one snapshot, and skip the
+        // probe if it mixes two tables
+        byte[]   cs  = ctrl;
+        int[]    hs  = hashes;
+        Object[] ks  = keys;
+        Object[] vs  = values;
+        int      len = ks.length;
+        int idx = len == vs.length && len == hs.length && cs.length == len + ControlBytes.GROUP - 1
+                ? findSlot(h, key, cs, hs, ks, len - 1) : -1;
+        V   val = idx >= 0 ? (V) ValueStrength.unwrap(vs[idx]) : null;
 
         if (!lock.validate(stamp)) {
             // Fallback to read lock
             stamp = lock.readLock();
             try {
-                idx = findSlot(h, key, hashes, keys, mask);
-                val = idx >= 0 ? (V) values[idx] : null;
+                h   = spread(hc);
+                idx = findSlot(h, key, ctrl, hashes, keys, mask);
+                val = idx >= 0 ? (V) ValueStrength.unwrap(values[idx]) : null;
             } finally {
                 lock.unlockRead(stamp);
             }
         }
 
-        if (idx >= 0) {
+        if (val != null) {
             // Increment frequency under write lock (small contention window)
             long ws = lock.writeLock();
             try {
+                drainCleared();
                 // Re-find: slot may have moved between read and write lock
-                int widx = findSlot(h, key, hashes, keys, mask);
+                int widx = findSlot(spread(hc), key, ctrl, hashes, keys, mask);
                 if (widx >= 0) freqs[widx]++;
             } finally {
                 lock.unlockWrite(ws);
@@ -115,29 +213,33 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
     @Override
     public @Nullable V put(K key, V value) {
         if (value == null) throw new IllegalArgumentException("Null values not allowed");
-        int h = spread(key.hashCode());
+        int hc = key.hashCode();
 
         long stamp = lock.writeLock();
         try {
-            int idx = findSlot(h, key, hashes, keys, mask);
+            drainCleared();
+            int h   = spread(hc);
+            int idx = findSlot(h, key, ctrl, hashes, keys, mask);
             if (idx >= 0) {
                 // Update existing
-                V old = (V) values[idx];
-                values[idx] = value;
+                V old = (V) ValueStrength.unwrap(values[idx]);
+                values[idx] = valueStrength.wrap(key, value, cleared);
                 freqs [idx]++;
                 return old;
             }
 
             // Evict if at capacity
             if (liveCount.get() >= maxSize) evictLFU();
+            if (liveCount.get() >= (int) (capacity * probing.load)) resize(capacity << 1);
 
-            // Insert into first empty or tombstone slot
-            int slot = probeInsert(h, hashes, mask);
+            int slot = claimSlot(h);
             hashes[slot] = h;
+            ControlBytes.set(ctrl, slot, ControlBytes.tag(h));
             keys  [slot] = key;
-            values[slot] = value;
+            values[slot] = valueStrength.wrap(key, value, cleared);
             freqs [slot] = 1;
             liveCount.incrementAndGet();
+            if (probeTooLong0(slot, h, mask) && reseededAt != capacity) reseed();
             return null;
         } finally {
             lock.unlockWrite(stamp);
@@ -146,16 +248,14 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
 
     @Override
     public @Nullable V remove(@NotNull Object key) {
-        int h = spread(key.hashCode());
+        int hc = key.hashCode();
         long stamp = lock.writeLock();
         try {
-            int idx = findSlot(h, key, hashes, keys, mask);
+            drainCleared();
+            int idx = findSlot(spread(hc), key, ctrl, hashes, keys, mask);
             if (idx < 0) return null;
-            V old      = (V) values[idx];
-            hashes[idx] = TOMBSTONE;
-            keys  [idx] = null;
-            values[idx] = null;
-            freqs [idx] = 0;
+            V old      = (V) ValueStrength.unwrap(values[idx]);
+            deleteSlot(idx);
             liveCount.decrementAndGet();
             return old;
         } finally {
@@ -163,6 +263,28 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
         }
     }
 
+    /**
+     * Removes every key of {@code batch} under a single write-lock
+     * acquisition, rather than one per key; returns how many were present.
+     */
+    public int invalidateAll(@NotNull Collection<?> batch) {
+        long stamp = lock.writeLock();
+        try {
+            drainCleared();
+            int removed = 0;
+            for (Object key : batch) {
+                int idx = findSlot(spread(key.hashCode()), key, ctrl, hashes, keys, mask);
+                if (idx < 0) continue;
+                deleteSlot(idx);
+                removed++;
+            }
+            liveCount.addAndGet(-removed);
+            return removed;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
     private void evictLFU() {
         int minFreq  = Integer.MAX_VALUE;
         int minSlot  = -1;
@@ -178,29 +300,223 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
         }
 
         if (minSlot >= 0) {
-            hashes[minSlot] = TOMBSTONE;
-            keys  [minSlot] = null;
-            values[minSlot] = null;
-            freqs [minSlot] = 0;
+            deleteSlot(minSlot);
             liveCount.decrementAndGet();
         }
     }
 
-    /** Returns slot index if key found, -1 otherwise. */
-    private static int findSlot(int h, Object key, int[] hs, Object[] ks, int mask) {
-        int i = h & mask;
-        for (int probe = 0; probe <= mask; probe++) {
-            int sh = hs[i];
-            if (sh == EMPTY)      return -1;
-            if (sh == h && key.equals(ks[i])) return i;
-            i = (i + 1) & mask;
+    /**
+     * Evicts the {@code n} least frequently used entries and rehashes the
+     * rest into {@code newCapacity} slots. One sort finds the cutoff
+     * frequency, where {@code n} calls to evictLFU would each scan the whole
+     * table. Caller must hold write lock.
+     */
+    private void evictAndResize(int n, int newCapacity) {
+        int[] fs   = new int[liveCount.get()];
+        int   live = 0;
+        for (int i = 0; i < capacity; i++)
+            if (hashes[i] > 0) fs[live++] = freqs[i];
+        Arrays.sort(fs, 0, live);
+
+        int cutoff = fs[n - 1];
+        int ties   = 0; // entries at the cutoff frequency that go as well
+        for (int j = n - 1; j >= 0 && fs[j] == cutoff; j--) ties++;
+
+        for (int i = 0; i < capacity; i++) {
+            if (hashes[i] <= 0) continue;
+            int f = freqs[i];
+            if (f < cutoff || (f == cutoff && ties-- > 0)) {
+                hashes[i] = EMPTY;
+                keys  [i] = null;
+                values[i] = null;
+                liveCount.decrementAndGet();
+            }
         }
-        return -1;
+        // The holes break probe runs; the rehash repairs them
+        resize(newCapacity);
+    }
+
+    /** Rehashes every entry into a table of {@code newCapacity} slots. Caller must hold write lock. */
+    private void resize(int newCapacity) {
+        int[]    oh = hashes;
+        Object[] ok = keys;
+        Object[] ov = values;
+        int[]    of = freqs;
+
+        hashes   = new int   [newCapacity];
+        keys     = new Object[newCapacity];
+        values   = new Object[newCapacity];
+        freqs    = new int   [newCapacity];
+        ctrl     = ControlBytes.allocate(newCapacity);
+        capacity = newCapacity;
+        mask     = newCapacity - 1;
+        for (int i = 0; i < oh.length; i++) {
+            if (oh[i] == EMPTY) continue;
+            int s = claimSlot(oh[i]);
+            hashes[s] = oh[i];
+            keys  [s] = ok[i];
+            values[s] = ov[i];
+            freqs [s] = of[i];
+            ControlBytes.set(ctrl, s, ControlBytes.tag(oh[i]));
+        }
+    }
+
+    /**
+     * Draws a new seed and rehashes every entry in place. Keys with equal
+     * hashCodes collide under any seed, so this runs at most once per
+     * table size. Caller must hold write lock.
+     */
+    private void reseed() {
+        reseededAt = capacity;
+        seed       = newSeed0();
+        rehash();
+    }
+
+    /** Recomputes every hash under the current seed and re-lays the table. Caller must hold write lock. */
+    private void rehash() {
+        for (int i = 0; i < capacity; i++)
+            if (hashes[i] != EMPTY) hashes[i] = spread(keys[i].hashCode());
+        resize(capacity);
+    }
+
+    /**
+     * Writes a snapshot of this cache, frequencies included, for
+     * {@link #readFrom}. Writers wait until it is done. The stream is
+     * flushed but not closed.
+     */
+    public void writeTo(@NotNull OutputStream out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
     }
 
-    /** Returns the first empty or tombstone slot for insertion. */
-    private static int probeInsert(int h, int[] hs, int mask) {
-        return probe0(h, hs, mask, EMPTY, TOMBSTONE);
+    public void writeTo(@NotNull WritableByteChannel out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
+    }
+
+    public static <K, V> @NotNull ConcurrentLFUCache<K, V> readFrom(@NotNull InputStream in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    public static <K, V> @NotNull ConcurrentLFUCache<K, V> readFrom(@NotNull ReadableByteChannel in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    private void write(SnapshotOutput out, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        // Soft and weak values must be held for the whole write, which takes the write lock
+        long stamp = cleared == null ? lock.readLock() : lock.writeLock();
+        try {
+            Object[] vs = cleared == null ? values : holdValues();
+            out.writeHeader("ConcurrentLFUCache");
+            out.writeInt(maxSize);
+            out.writeUTF(probing.name());
+            out.writeUTF(valueStrength.name());
+            out.writeInt(capacity);
+            out.writeInt(seed);
+            out.writeInt(liveCount.get());
+            out.writeInts(hashes, capacity);
+            out.writeInts(freqs, capacity);
+            writeEntries0(out, hashes, keys, vs, EMPTY, keyCodec, valueCodec);
+        } finally {
+            lock.unlock(stamp);
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the values slot by slot, soft and weak ones held strongly,
+     * after removing every entry already cleared. Caller must hold write lock.
+     */
+    private Object[] holdValues() {
+        for (;;) {
+            drainCleared();
+            Object[] held     = new Object[capacity];
+            boolean  complete = true;
+            for (int i = 0; i < capacity; i++)
+                if (hashes[i] != EMPTY && (held[i] = ValueStrength.unwrap(values[i])) == null) complete = false;
+            if (complete) return held;
+
+            // Cleared, but not queued yet; a backward shift may refill slot i
+            for (int i = 0; i < capacity; i++) {
+                while (hashes[i] != EMPTY && ValueStrength.unwrap(values[i]) == null) {
+                    deleteSlot(i);
+                    liveCount.decrementAndGet();
+                }
+            }
+        }
+    }
+
+    private static <K, V> ConcurrentLFUCache<K, V> read(SnapshotInput in, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        in.readHeader("ConcurrentLFUCache");
+        int           maxSize  = in.readInt();
+        Probing       probing  = readProbing0(in);
+        ValueStrength strength = readValueStrength0(in);
+        if (maxSize <= 0) throw new StreamCorruptedException("bad maxSize " + maxSize);
+        int           capacity = readTableSize0(in, maxSize, probing);
+
+        ConcurrentLFUCache<K, V> cache = new ConcurrentLFUCache<>(maxSize, probing, strength);
+        cache.capacity = capacity;
+        cache.mask     = capacity - 1;
+        cache.seed     = in.readInt();
+        int size       = in.readCount(Math.min(maxSize, capacity - 1));
+        cache.hashes   = new int   [capacity];
+        cache.keys     = new Object[capacity];
+        cache.values   = new Object[capacity];
+        cache.freqs    = new int   [capacity];
+        cache.ctrl     = ControlBytes.allocate(capacity);
+        in.readInts(cache.hashes, capacity);
+        in.readInts(cache.freqs, capacity);
+
+        boolean valid = readEntries0(in, cache.hashes, cache.keys, cache.values, cache.ctrl, EMPTY, size,
+                                     cache::spread, keyCodec, valueCodec);
+        if (cache.cleared != null) {
+            for (int i = 0; i < capacity; i++)
+                if (cache.hashes[i] != EMPTY) cache.values[i] = strength.wrap(cache.keys[i], cache.values[i], cache.cleared);
+        }
+        if (!valid) cache.rehash();
+        cache.liveCount.set(size);
+        return cache;
+    }
+
+    /**
+     * Returns the slot a new entry of hash {@code h} goes into, first moving
+     * the rest of the run forward if Robin Hood probing hands it an
+     * occupied one. Caller must hold write lock.
+     */
+    private int claimSlot(int h) {
+        if (probing == Probing.LINEAR) return probe0(h, hashes, mask, EMPTY);
+        int p = robinHood0(h, hashes, mask, EMPTY);
+        int e = probe0(p, hashes, mask, EMPTY);
+        for (int k = e; k != p; k = (k - 1) & mask) moveSlot((k - 1) & mask, k);
+        return p;
+    }
+
+    /** Empties slot {@code i} by backward shift. Caller must hold write lock. */
+    private void deleteSlot(int i) {
+        for (int j; (j = nextShift(i)) >= 0; i = j) moveSlot(j, i);
+        hashes[i] = EMPTY;
+        ControlBytes.set(ctrl, i, ControlBytes.EMPTY);
+        keys  [i] = null;
+        values[i] = null;
+        freqs [i] = 0;
+    }
+
+    private int nextShift(int hole) {
+        return probing == Probing.ROBIN_HOOD ? shiftRobinHood0(hole, hashes, mask, EMPTY) : shift0(hole, hashes, mask, EMPTY);
+    }
+
+    /** Copies slot {@code from} over slot {@code to}. Caller must hold write lock. */
+    private void moveSlot(int from, int to) {
+        hashes[to] = hashes[from];
+        keys  [to] = keys  [from];
+        values[to] = values[from];
+        freqs [to] = freqs [from];
+        ControlBytes.set(ctrl, to, ctrl[from]);
+    }
+
+    /** Group probe over the control bytes — returns slot if key found, -1 otherwise. */
+    private int findSlot(int h, Object key, byte[] cs, int[] hs, Object[] ks, int mask) {
+        return probing == Probing.ROBIN_HOOD
+            ? ControlBytes.findRobinHood(h, key, cs, hs, ks, mask)
+            : ControlBytes.find(h, key, cs, ks, mask);
     }
 
     @Override public void putAll(Map<? extends K, ? extends V> m) {
@@ -216,6 +532,7 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
         long stamp = lock.writeLock();
         try {
             Arrays.fill(hashes, EMPTY);
+            Arrays.fill(ctrl,   ControlBytes.EMPTY);
             Arrays.fill(keys,   null);
             Arrays.fill(values, null);
             Arrays.fill(freqs,  EMPTY);
@@ -225,6 +542,34 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
         }
     }
 
+    /**
+     * Frees the slots of entries whose soft or weak value the GC has
+     * cleared. Writes and hits do this anyway; call it to release them
+     * from a cache that is idle.
+     */
+    public void cleanUp() {
+        if (cleared == null) return;
+        long stamp = lock.writeLock();
+        try {
+            drainCleared();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Removes every entry the reference queue reports cleared, in one batch. Caller must hold write lock. */
+    private void drainCleared() {
+        if (cleared == null) return;
+        for (Reference<?> ref; (ref = cleared.poll()) != null; ) {
+            Object key = ((ValueStrength.ValueReference) ref).key();
+            int    idx = findSlot(spread(key.hashCode()), key, ctrl, hashes, keys, mask);
+            if (idx < 0 || values[idx] != ref) continue; // replaced or removed since
+            deleteSlot(idx);
+            liveCount.decrementAndGet();
+        }
+    }
+
+    /** Live entries, counting those whose value was cleared but not yet drained. */
     @Override public int     size()                    { return liveCount.get(); }
     @Override public boolean isEmpty()                 { return liveCount.get() == 0; }
     @Override public boolean containsKey(Object key)  { return get(key) != null; }
@@ -232,7 +577,7 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
         long stamp = lock.readLock();
         try {
             for (int i = 0; i < capacity; i++)
-                if (hashes[i] > 0 && v.equals(values[i])) return true;
+                if (hashes[i] > 0 && v.equals(ValueStrength.unwrap(values[i]))) return true;
             return false;
         } finally {
             lock.unlockRead(stamp);
@@ -244,26 +589,50 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
     @Override public @NotNull Set<Entry<K, V>> entrySet() { return new EntrySetView(); }
 
     private abstract class SlotIterator<T> implements Iterator<T> {
-        int cursor = 0;
-        int next   = -1;
-
-        SlotIterator() { advance(); }
-
-        private void advance() {
-            while (cursor < capacity && hashes[cursor] <= 0) cursor++;
-            next = cursor < capacity ? cursor++ : -1;
+        // The table as of creation; a later resize leaves this one untouched
+        final int[]    hs = hashes;
+        final Object[] ks = keys;
+        final Object[] vs = values;
+        final int      tableMask = hs.length - 1;
+
+        // Starts just past an empty slot and wraps; see ConcurrentLFRUCache.emptySlot0
+        final int origin = emptySlot0(hs, EMPTY);
+        int    step = 0;    // slots past origin examined so far
+        int    next = -1;
+        V      nextValue;   // held from hasNext, so a soft or weak value cannot be cleared before next
+        int    last = -1;   // slot returned last, and the key it held
+        Object lastKey;
+
+        @Override public boolean hasNext() {
+            if (next >= 0) return true;
+            // A removal since then may have shifted an unvisited entry back into the returned slot
+            if (last >= 0 && hs[last] > 0 && ks[last] != lastKey && hold(last)) return true;
+            while (++step < hs.length) {
+                int i = (origin + step) & tableMask;
+                if (hs[i] > 0 && hold(i)) return true;
+            }
+            return false;
         }
 
-        @Override public boolean hasNext() { return next >= 0; }
+        /** Makes slot {@code i} the next one, unless its value has been cleared. */
+        private boolean hold(int i) {
+            V v = (V) ValueStrength.unwrap(vs[i]);
+            if (v == null) return false;
+            next      = i;
+            nextValue = v;
+            return true;
+        }
 
         @Override public T next() {
-            if (next < 0) throw new NoSuchElementException();
+            if (!hasNext()) throw new NoSuchElementException();
             int i = next;
-            advance();
-            return extract(i);
+            next    = -1;
+            last    = i;
+            lastKey = ks[i];
+            return extract(i, nextValue);
         }
 
-        abstract T extract(int i);
+        abstract T extract(int i, V value);
     }
 
     private final class KeySetView extends AbstractSet<K> {
@@ -272,8 +641,8 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
             long stamp = lock.readLock();
             try {
                 return new SlotIterator<K>() {
-                    @Override K extract(int i) {
-                        return (K) keys[i];
+                    @Override K extract(int i, V value) {
+                        return (K) ks[i];
                     }
                 };
             } finally {
@@ -289,8 +658,8 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
             long stamp = lock.readLock();
             try {
                 return new SlotIterator<V>() {
-                    @Override V extract(int i) {
-                        return (V) values[i];
+                    @Override V extract(int i, V value) {
+                        return value;
                     }
                 };
             } finally {
@@ -305,8 +674,8 @@ public class ConcurrentLFUCache<K, V> implements Map<K, V> {
             long stamp = lock.readLock();
             try {
                 return new SlotIterator<Entry<K,V>>() {
-                    @Override Entry<K,V> extract(int i) {
-                        return Map.entry((K) keys[i], (V) values[i]);
+                    @Override Entry<K,V> extract(int i, V value) {
+                        return Map.entry((K) ks[i], value);
                     }
                 };
             } finally {
@@ -1,153 +1,425 @@
 package io.github.flameyossnowy.velocis.cache.algorithms;
 
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
+import io.github.flameyossnowy.velocis.cache.SnapshotOutput;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.concurrent.locks.StampedLock;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 
-import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFUCache.nextPow2;
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.tableSize0;
 
 /**
  * Concurrent LRU Cache — Structure-of-Arrays open-addressing hash table
- * guarded by a StampedLock, with LRU ordering tracked by the lock-free
- * ConcurrentDoublyLinkedList.
+ * guarded by a StampedLock, with LRU ordering threaded through the slots
+ * themselves.
  * <p>
  * Layout (all arrays share the same slot index):
- *   int[]    hashes   — spread hash; 0 = empty, -1 = tombstone
+ *   int[]    hashes   — spread hash; 0 = empty
  *   Object[] keys     — key at slot i
  *   Object[] values   — value at slot i
- *   Node[]   nodes    — corresponding DLL node for LRU tracking
+ *   byte[]   ctrl     — 7-bit hash tag per slot, probed eight at a time; see {@link ControlBytes}
+ *   int[]    prev     — slot of the next-older entry, or NIL
+ *   int[]    next     — slot of the next-newer entry, or NIL
+ *   long[]   promotedAt — promotion tick of the last move to the tail
  * <p>
- * Reads use optimistic stamps with fallback to a read lock.
- * Writes (put / remove / evict) take the write lock.
- * LRU list mutations (moveToEnd, removeHead) are lock-free via CAS inside
- * ConcurrentDoublyLinkedList — they happen outside the write lock where
- * possible to reduce contention.
+ * The recency list is intrusive: {@code head} is the least-recently-used
+ * slot and {@code tail} the most-recently-used one. Promoting an entry is a
+ * handful of int stores and allocates nothing, and eviction unlinks
+ * {@code head} directly instead of re-hashing its key to find the slot.
+ * <p>
+ * Removal is tombstone-free: later entries of the probe run shift back into
+ * the hole and their neighbours' links are repointed, so probe lengths stay
+ * bounded however long the cache churns.
+ * <p>
+ * The table starts small and doubles whenever it passes its load factor
+ * (70%, or 87.5% with {@link Probing#ROBIN_HOOD}); a resize re-inserts
+ * entries from head to tail so the recency order carries over.
+ * {@link #setMaximumSize(int)} changes the limit at runtime.
+ * <p>
+ * Hashes are mixed with a random per-instance seed; an insert that lands
+ * implausibly far from home draws a new seed and rehashes, at most once per
+ * table size.
+ * <p>
+ * Reads use optimistic stamps with fallback to a read lock. A hit then
+ * tries the write lock to move its slot to the tail and, if another thread
+ * holds the lock, skips the move: under contention the recency order is
+ * approximate, but a hit never waits for a promotion, and readers never
+ * queue behind each other's promotions. Writes (put / remove / evict)
+ * take the write lock.
+ * <p>
+ * A {@link ValueStrength} other than {@code STRONG} holds values through
+ * soft or weak references; entries whose value the GC clears are freed in
+ * batch at the next write or promoting hit, or by {@link #cleanUp()}.
+ * <p>
+ * With {@link #setNegativeTtl} on, {@link #markAbsent} and
+ * {@link #getOrLoad} cache the fact that a key has no value: a negative
+ * entry lives in an ordinary slot, its value slot holding an expiry
+ * marker, so repeated lookups of a missing key stop reaching the source
+ * of truth. It ages in the recency list like any entry and is reported by
+ * {@link #isAbsent} and {@link #negativeHitCount()} only: the views
+ * neither show nor remove it, though it counts in {@link #size()}.
+ * <p>
+ * {@link #writeTo} snapshots the cache in binary: the slot arrays go out
+ * in bulk, then each key and value through a {@link Codec}, and
+ * {@link #readFrom} loads them back into place without re-probing, unless
+ * a key's hashCode has changed between processes.
+ * <p>
+ * Every link at the tail advances a promotion tick, so
+ * {@code tick - promotedAt[i]} bounds how far slot {@code i} can have drifted
+ * from the tail. With {@link #setPromotionThreshold(float)} a hit only
+ * promotes once that distance exceeds the given fraction of the cache;
+ * hot keys that are still near the tail skip the write lock entirely.
  */
 @SuppressWarnings("unchecked")
-public class ConcurrentLRUCache<K, V> implements Map<K, V> {
+public class ConcurrentLRUCache<K, V> implements Map<K, V>, Resizable {
 
     private static final int   EMPTY     =  0;
-    private static final int   TOMBSTONE = -1;
-    private static final float LOAD      = 0.70f;
+    private static final int   NIL       = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private int[]    hashes;
+    private byte[]   ctrl;
+    private Object[] keys;
+    private Object[] values;
+    private int[]    prev;
+    private int[]    next;
+    private long[]   promotedAt;
 
-    private final int[]    hashes;
-    private final Object[] keys;
-    private final Object[] values;
-    private final ConcurrentDoublyLinkedList.Node<K, V>[] nodes;
+    private int head = NIL; // least-recently-used slot
+    private int tail = NIL; // most-recently-used slot
 
-    private final int capacity;
-    private final int mask;
-    private final int maxSize;
+    private volatile long  tick;               // advanced on every linkLast
+    private volatile float promotionThreshold; // 0 = promote every hit (exact LRU)
 
-    private final StampedLock              lock      = new StampedLock();
-    private final AtomicInteger            liveCount = new AtomicInteger(0);
-    private final ConcurrentDoublyLinkedList<K, V> list = new ConcurrentDoublyLinkedList<>();
+    private volatile @Nullable BiConsumer<? super K, ? super V> evictionListener;
+
+    private volatile long    negativeTtl; // nanos; 0 = negative caching off
+    private volatile boolean hasAbsent;   // a negative entry may be stored; written under the write lock only
+    private final LongAdder  negativeHits = new LongAdder();
+
+    private volatile @Nullable MarginalHits marginalHits; // set while in a CacheGroup
+
+    private int capacity;
+    private int mask;
+    private volatile int maxSize; // written under the write lock only
+    private final Probing probing;
+
+    private final ValueStrength                    valueStrength;
+    private final @Nullable ReferenceQueue<Object> cleared; // null for STRONG values
+
+    private int seed = ConcurrentLFRUCache.newSeed0();
+    private int reseededAt; // capacity at the last reseed
+
+    private final StampedLock   lock      = new StampedLock();
+    private final AtomicInteger liveCount = new AtomicInteger(0);
 
     private transient volatile KeySetView   keySetView;
     private transient volatile ValuesView   valuesView;
     private transient volatile EntrySetView entrySetView;
 
-    public ConcurrentLRUCache(int maxSize) {
+    public ConcurrentLRUCache(int maxSize, @NotNull Probing probing, @NotNull ValueStrength valueStrength) {
         if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
         this.maxSize  = maxSize;
-        this.capacity = nextPow2((int) (maxSize / LOAD) + 1);
+        this.probing  = probing;
+        this.valueStrength = valueStrength;
+        this.cleared       = valueStrength == ValueStrength.STRONG ? null : new ReferenceQueue<>();
+        this.capacity = Math.min(tableSize0(maxSize, probing.load), INITIAL_CAPACITY);
         this.mask     = capacity - 1;
         this.hashes   = new int[capacity];
+        this.ctrl     = ControlBytes.allocate(capacity);
         this.keys     = new Object[capacity];
         this.values   = new Object[capacity];
-        this.nodes    = new ConcurrentDoublyLinkedList.Node[capacity];
+        this.prev     = new int   [capacity];
+        this.next     = new int   [capacity];
+        this.promotedAt = new long[capacity];
     }
 
+    public ConcurrentLRUCache(int maxSize, @NotNull Probing probing)   { this(maxSize, probing, ValueStrength.STRONG); }
+    public ConcurrentLRUCache(int maxSize, @NotNull ValueStrength s)   { this(maxSize, Probing.LINEAR, s); }
+    public ConcurrentLRUCache(int maxSize)                             { this(maxSize, Probing.LINEAR); }
     public ConcurrentLRUCache()                                        { this(16); }
     public ConcurrentLRUCache(int maxSize, int ignored)                { this(maxSize); }
     public ConcurrentLRUCache(int maxSize, float ignored)              { this(maxSize); }
     public ConcurrentLRUCache(int maxSize, int ignored, float ignored2){ this(maxSize); }
 
+    /**
+     * Switches to approximate LRU: a hit only moves its entry to the tail if
+     * more than {@code fraction * size()} entries have been promoted or
+     * inserted since its own last promotion. 0 (the default) keeps exact LRU.
+     */
+    public void setPromotionThreshold(float fraction) {
+        if (!(fraction >= 0f && fraction < 1f)) throw new IllegalArgumentException("promotionThreshold must be in [0, 1)");
+        this.promotionThreshold = fraction;
+    }
+
+    public float getPromotionThreshold() {
+        return promotionThreshold;
+    }
+
+    /**
+     * Sets a callback for every entry evicted to make room, or null for
+     * none; removals and {@link #clear()} are not reported. It runs on the
+     * evicting thread while that thread holds the write lock, so it must
+     * not call back into this cache and should hand anything slow to
+     * another thread.
+     */
+    public void setEvictionListener(@Nullable BiConsumer<? super K, ? super V> listener) {
+        this.evictionListener = listener;
+    }
+
+    /**
+     * Changes the entry limit. Lowering it evicts least-recently-used
+     * entries down to the new limit straight away and shrinks the table to
+     * the size the limit needs.
+     */
+    public void setMaximumSize(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        long stamp = lock.writeLock();
+        try {
+            drainCleared();
+            this.maxSize = maxSize;
+            if (marginalHits != null) marginalHits = new MarginalHits(maxSize);
+            while (liveCount.get() > maxSize) evictLRU();
+            int cap = tableSize0(maxSize, probing.load);
+            if (cap < capacity) resize(cap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int getMaximumSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets how long a negative entry stands before lookups treat the key as
+     * unknown again. 0, the default, turns negative caching off; entries
+     * already stored keep their expiry.
+     */
+    public void setNegativeTtl(long ttl, @NotNull TimeUnit unit) {
+        if (ttl < 0) throw new IllegalArgumentException("negativeTtl must be >= 0");
+        this.negativeTtl = unit.toNanos(ttl);
+    }
+
+    public long getNegativeTtl(@NotNull TimeUnit unit) {
+        return unit.convert(negativeTtl, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records that {@code key} has no value, replacing any it had, until the
+     * negative TTL passes or a put gives it one. The entry takes a slot and
+     * counts towards the maximum size and {@link #size()}, but {@link #get}
+     * returns null for it and the views skip it. Does nothing while
+     * negative caching is off.
+     */
+    public void markAbsent(@NotNull K key) {
+        long ttl = negativeTtl;
+        if (ttl > 0) store(key, new Absent(System.nanoTime() + ttl));
+    }
+
+    /** Whether {@code key} has an unexpired negative entry; a hit counts in {@link #negativeHitCount()}. */
+    public boolean isAbsent(@NotNull Object key) {
+        if (!(find(key) instanceof Absent a) || a.expired()) return false;
+        negativeHits.increment();
+        return true;
+    }
+
+    /**
+     * Returns {@code key}'s value, calling {@code loader} on a miss and
+     * caching what it returns. A null result is cached as a negative entry,
+     * so until it expires later calls return null without loading. Loads
+     * are not coalesced: concurrent misses on a key each call the loader.
+     */
+    public @Nullable V getOrLoad(@NotNull K key, @NotNull Function<? super K, ? extends V> loader) {
+        Object stored = find(key);
+        if (stored instanceof Absent a && !a.expired()) {
+            negativeHits.increment();
+            return null;
+        }
+        V value = (V) valueOf(stored);
+        if (value != null) return value;
+
+        value = loader.apply(key);
+        if (value == null) markAbsent(key);
+        else               put(key, value);
+        return value;
+    }
+
+    /** Lookups answered by a negative entry through {@link #isAbsent} or {@link #getOrLoad}. */
+    public long negativeHitCount() {
+        return negativeHits.sum();
+    }
+
     @Override
     public @Nullable V get(Object key) {
-        int h = spread(key.hashCode());
+        return (V) valueOf(find(key));
+    }
 
-        long stamp = lock.tryOptimisticRead();
-        int idx = findSlot(h, key);
-        V   val = idx >= 0 ? (V) values[idx] : null;
-        ConcurrentDoublyLinkedList.Node<K, V> node = idx >= 0 ? nodes[idx] : null;
+    /**
+     * What {@code key}'s slot holds, or null if it has none; a hit on a
+     * value or an unexpired negative entry is promoted.
+     */
+    private @Nullable Object find(Object key) {
+        int hc = key.hashCode();
+
+        // A resize or reseed swaps every array: probe one snapshot, and
+        // skip the probe if it mixes two tables
+        long     stamp = lock.tryOptimisticRead();
+        int      h     = spread(hc);
+        byte[]   cs    = ctrl;
+        int[]    hs    = hashes;
+        Object[] ks    = keys;
+        Object[] vs    = values;
+        long[]   pa    = promotedAt;
+        int      len   = ks.length;
+        int    idx    = len == vs.length && len == pa.length && len == hs.length && cs.length == len + ControlBytes.GROUP - 1
+                      ? findSlot(h, key, cs, hs, ks, len - 1) : -1;
+        Object stored = idx >= 0 ? vs[idx] : null;
+        long   last   = idx >= 0 ? pa[idx] : 0L;
 
         if (!lock.validate(stamp)) {
             stamp = lock.readLock();
             try {
-                idx  = findSlot(h, key);
-                val  = idx >= 0 ? (V) values[idx] : null;
-                node = idx >= 0 ? nodes[idx] : null;
+                h      = spread(hc);
+                idx    = findSlot(h, key, ctrl, hashes, keys, mask);
+                stored = idx >= 0 ? values[idx] : null;
+                last   = idx >= 0 ? promotedAt[idx] : 0L;
             } finally {
                 lock.unlockRead(stamp);
             }
         }
 
-        if (node != null) list.moveToEnd(node);
-        return val;
+        boolean      live = isLive(stored);
+        MarginalHits mh   = marginalHits;
+        if (mh != null) {
+            if (live) mh.hit(tick - last, maxSize);
+            else      mh.miss(h);
+        }
+
+        // Lossy: if anyone holds the lock the hit goes unrecorded rather
+        // than queueing readers behind the writer
+        long ws;
+        if (live && shouldPromote(last) && (ws = lock.tryWriteLock()) != 0L) {
+            try {
+                drainCleared();
+                // The slot may have been vacated, reused or resized away since
+                // the read; only re-probe when it no longer holds this key.
+                h = spread(hc);
+                if (idx >= capacity || hashes[idx] != h || !key.equals(keys[idx])) idx = findSlot(h, key, ctrl, hashes, keys, mask);
+                if (idx >= 0) moveToTail(idx);
+            } finally {
+                lock.unlockWrite(ws);
+            }
+        }
+        return stored;
     }
 
     @Override
     public @Nullable V put(K key, V value) {
         if (value == null) throw new IllegalArgumentException("Null values are not allowed");
-        int h = spread(key.hashCode());
+        return (V) valueOf(store(key, valueStrength.wrap(key, value, cleared)));
+    }
+
+    /** Stores {@code stored} in key's slot; returns what the slot held before, or null. */
+    private @Nullable Object store(K key, Object stored) {
+        int hc = key.hashCode();
 
         long stamp = lock.writeLock();
         try {
-            int idx = findSlot(h, key);
+            drainCleared();
+            int h   = spread(hc);
+            int idx = findSlot(h, key, ctrl, hashes, keys, mask);
+            if (stored instanceof Absent) hasAbsent = true;
             if (idx >= 0) {
-                V old = (V) values[idx];
-                values[idx] = value;
-                ConcurrentDoublyLinkedList.Node<K, V> node = nodes[idx];
-                // promote outside lock after we've finished mutating the table
-                lock.unlockWrite(stamp);
-                stamp = 0L;
-                list.moveToEnd(node);
+                Object old = values[idx];
+                values[idx] = stored;
+                moveToTail(idx);
                 return old;
             }
 
             if (liveCount.get() >= maxSize) evictLRU();
+            if (liveCount.get() >= (int) (capacity * probing.load)) resize(capacity << 1);
 
-            int slot = probeInsert(h);
-            ConcurrentDoublyLinkedList.Node<K, V> node = list.addToEnd(key, value);
+            int slot = claimSlot(h);
             hashes[slot] = h;
+            ControlBytes.set(ctrl, slot, ControlBytes.tag(h));
             keys  [slot] = key;
-            values[slot] = value;
-            nodes [slot] = node;
+            values[slot] = stored;
+            linkLast(slot);
             liveCount.incrementAndGet();
+            if (ConcurrentLFRUCache.probeTooLong0(slot, h, mask) && reseededAt != capacity) reseed();
             return null;
         } finally {
-            if (stamp != 0L) lock.unlockWrite(stamp);
+            lock.unlockWrite(stamp);
         }
     }
 
+    /**
+     * Removes {@code key}'s entry, negative or not, and returns its value:
+     * null for a negative entry as for a missing key.
+     */
     @Override
     public @Nullable V remove(Object key) {
-        int h = spread(key.hashCode());
+        int hc = key.hashCode();
         long stamp = lock.writeLock();
         try {
-            int idx = findSlot(h, key);
+            drainCleared();
+            int idx = findSlot(spread(hc), key, ctrl, hashes, keys, mask);
             if (idx < 0) return null;
 
-            V old = (V) values[idx];
-            ConcurrentDoublyLinkedList.Node<K, V> node = nodes[idx];
-
-            hashes[idx] = TOMBSTONE;
-            keys  [idx] = null;
-            values[idx] = null;
-            nodes [idx] = null;
+            V old = (V) valueOf(values[idx]);
+            unlink(idx);
+            deleteSlot(idx);
             liveCount.decrementAndGet();
-
-            // remove from LRU list outside table lock
-            lock.unlockWrite(stamp);
-            stamp = 0L;
-            list.remove(node);
             return old;
         } finally {
-            if (stamp != 0L) lock.unlockWrite(stamp);
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean remove(Object key, Object value) {
+        return value != null && removeValue(key, value);
+    }
+
+    /**
+     * Removes {@code key} only if it has a value, equal to {@code expected}
+     * unless that is null. The views remove through this, so a negative
+     * entry, which they never show, is neither removed nor reported.
+     */
+    private boolean removeValue(Object key, @Nullable Object expected) {
+        int hc = key.hashCode();
+        long stamp = lock.writeLock();
+        try {
+            drainCleared();
+            int idx = findSlot(spread(hc), key, ctrl, hashes, keys, mask);
+            if (idx < 0) return false;
+
+            Object v = valueOf(values[idx]);
+            if (v == null || expected != null && !expected.equals(v)) return false;
+            unlink(idx);
+            deleteSlot(idx);
+            liveCount.decrementAndGet();
+            return true;
+        } finally {
+            lock.unlockWrite(stamp);
         }
     }
 
@@ -161,16 +433,46 @@ public class ConcurrentLRUCache<K, V> implements Map<K, V> {
         long stamp = lock.writeLock();
         try {
             Arrays.fill(hashes, EMPTY);
+            Arrays.fill(ctrl,   ControlBytes.EMPTY);
             Arrays.fill(keys,   null);
             Arrays.fill(values, null);
-            Arrays.fill(nodes,  null);
+            head = tail = NIL;
             liveCount.set(0);
-            list.clear();
+            hasAbsent = false;
         } finally {
             lock.unlockWrite(stamp);
         }
     }
 
+    /**
+     * Frees the slots of entries whose soft or weak value the GC has
+     * cleared. Writes and promoting hits do this anyway; call it to release
+     * them from a cache that is idle.
+     */
+    public void cleanUp() {
+        if (cleared == null) return;
+        long stamp = lock.writeLock();
+        try {
+            drainCleared();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /** Removes every entry the reference queue reports cleared, in one batch. Caller must hold write lock. */
+    private void drainCleared() {
+        if (cleared == null) return;
+        for (Reference<?> ref; (ref = cleared.poll()) != null; ) {
+            Object key = ((ValueStrength.ValueReference) ref).key();
+            int    idx = findSlot(spread(key.hashCode()), key, ctrl, hashes, keys, mask);
+            if (idx < 0 || values[idx] != ref) continue; // replaced or removed since
+            unlink(idx);
+            deleteSlot(idx);
+            liveCount.decrementAndGet();
+        }
+    }
+
+    /** Live entries, counting those whose value was cleared but not yet drained. */
     @Override public int     size()                   { return liveCount.get(); }
     @Override public boolean isEmpty()                { return liveCount.get() == 0; }
     @Override public boolean containsKey(Object key)  { return get(key) != null; }
@@ -180,7 +482,7 @@ public class ConcurrentLRUCache<K, V> implements Map<K, V> {
         long stamp = lock.readLock();
         try {
             for (int i = 0; i < capacity; i++)
-                if (hashes[i] > 0 && v.equals(values[i])) return true;
+                if (hashes[i] > 0 && v.equals(valueOf(values[i]))) return true;
             return false;
         } finally {
             lock.unlockRead(stamp);
@@ -191,74 +493,384 @@ public class ConcurrentLRUCache<K, V> implements Map<K, V> {
     @Override public @NotNull Collection<V>    values()   { return valuesView   == null ? (valuesView   = new ValuesView())   : valuesView;   }
     @Override public @NotNull Set<Entry<K, V>> entrySet() { return entrySetView == null ? (entrySetView = new EntrySetView()) : entrySetView; }
 
+    /** Starts or stops counting marginal hits for a {@link CacheGroup}. */
+    void trackMarginalHits(boolean on) {
+        long stamp = lock.writeLock();
+        try {
+            marginalHits = on ? new MarginalHits(maxSize) : null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Nullable MarginalHits marginalHits() {
+        return marginalHits;
+    }
+
+    /** Value slot of a negative entry: the key has no value until {@code expiresAt}, in nanoTime. */
+    private record Absent(long expiresAt) {
+        boolean expired() {
+            return System.nanoTime() - expiresAt >= 0;
+        }
+    }
+
+    /** The value a slot stores, or null for a negative entry or a value the GC has cleared. */
+    private static @Nullable Object valueOf(@Nullable Object stored) {
+        return stored instanceof Absent ? null : ValueStrength.unwrap(stored);
+    }
+
+    /** Whether a slot stores a value or an unexpired negative entry, i.e. whether a lookup of it is a hit. */
+    private static boolean isLive(@Nullable Object stored) {
+        return stored instanceof Absent a ? !a.expired() : valueOf(stored) != null;
+    }
+
     /** Evicts the least-recently-used entry. Caller must hold write lock. */
     private void evictLRU() {
-        ConcurrentDoublyLinkedList.Node<K, V> lru = list.removeHead();
-        if (lru == null) return;
-        int h   = spread(lru.key.hashCode());
-        int idx = findSlot(h, lru.key);
-        if (idx < 0) return;
-        hashes[idx] = TOMBSTONE;
-        keys  [idx] = null;
-        values[idx] = null;
-        nodes [idx] = null;
+        int victim = head;
+        if (victim == NIL) return;
+        K k = (K) keys[victim];
+        V v = (V) valueOf(values[victim]);
+        MarginalHits mh = marginalHits;
+        if (mh != null) mh.evicted(hashes[victim]);
+        unlink(victim);
+        deleteSlot(victim);
         liveCount.decrementAndGet();
+
+        BiConsumer<? super K, ? super V> listener = evictionListener;
+        if (listener != null && v != null) listener.accept(k, v);
     }
 
-    /** Linear probe — returns slot if key found, -1 otherwise. */
-    private int findSlot(int h, Object key) {
-        int i = h & mask;
-        for (int probe = 0; probe <= mask; probe++) {
-            int sh = hashes[i];
-            if (sh == EMPTY) return -1;
-            if (sh == h && key.equals(keys[i])) return i;
-            i = (i + 1) & mask;
+    /**
+     * Rehashes every entry into a table of {@code newCapacity} slots,
+     * walking the old list from head so the new one keeps its order.
+     * Caller must hold write lock.
+     */
+    private void resize(int newCapacity) {
+        int[]    oh = hashes;
+        Object[] ok = keys;
+        Object[] ov = values;
+        int[]    on = next;
+        long[]   op = promotedAt;
+        int      i  = head;
+
+        hashes     = new int   [newCapacity];
+        ctrl       = ControlBytes.allocate(newCapacity);
+        keys       = new Object[newCapacity];
+        values     = new Object[newCapacity];
+        prev       = new int   [newCapacity];
+        next       = new int   [newCapacity];
+        promotedAt = new long  [newCapacity];
+        capacity   = newCapacity;
+        mask       = newCapacity - 1;
+        head = tail = NIL;
+
+        for (; i != NIL; i = on[i]) {
+            int s = claimSlot(oh[i]);
+            hashes    [s] = oh[i];
+            ControlBytes.set(ctrl, s, ControlBytes.tag(oh[i]));
+            keys      [s] = ok[i];
+            values    [s] = ov[i];
+            promotedAt[s] = op[i];
+            prev[s] = tail;
+            next[s] = NIL;
+            if (tail == NIL) head = s;
+            else             next[tail] = s;
+            tail = s;
         }
-        return -1;
     }
 
-    /** Linear probe — returns first empty or tombstone slot for insertion. */
-    private int probeInsert(int h) {
-        return ConcurrentLFRUCache.probe0(h, hashes, mask, EMPTY, TOMBSTONE);
+    /**
+     * Empties the already-unlinked slot {@code i} by backward shift: later
+     * entries of its probe run move back into the hole, taking their list
+     * links with them. Caller must hold write lock.
+     */
+    private void deleteSlot(int i) {
+        for (int j; (j = nextShift(i)) >= 0; i = j) moveSlot(j, i);
+        hashes[i] = EMPTY;
+        ControlBytes.set(ctrl, i, ControlBytes.EMPTY);
+        keys  [i] = null;
+        values[i] = null;
     }
 
-    private static int spread(int h) {
-        h ^= (h >>> 16);
-        h &= 0x7FFF_FFFF;
-        return h == 0 ? 1 : h;
+    private int nextShift(int hole) {
+        return probing == Probing.ROBIN_HOOD
+            ? ConcurrentLFRUCache.shiftRobinHood0(hole, hashes, mask, EMPTY)
+            : ConcurrentLFRUCache.shift0(hole, hashes, mask, EMPTY);
     }
 
-    private abstract class SlotIterator<T> implements Iterator<T> {
-        int cursor = 0;
-        int current = -1;
+    /** Moves the entry in slot {@code from} into the free slot {@code to}. Caller must hold write lock. */
+    private void moveSlot(int from, int to) {
+        hashes    [to] = hashes    [from];
+        ControlBytes.set(ctrl, to, ctrl[from]);
+        keys      [to] = keys      [from];
+        values    [to] = values    [from];
+        promotedAt[to] = promotedAt[from];
+
+        int p = prev[from];
+        int n = next[from];
+        prev[to] = p;
+        next[to] = n;
+        if (p == NIL) head = to;
+        else          next[p] = to;
+        if (n == NIL) tail = to;
+        else          prev[n] = to;
+    }
+
+    /**
+     * True when the entry promoted at {@code last} may have drifted further
+     * from the tail than the promotion threshold allows. An entry that is
+     * still the tail never needs promoting.
+     */
+    private boolean shouldPromote(long last) {
+        return tick - last > (long) (promotionThreshold * liveCount.get());
+    }
+
+    /** Appends slot {@code i} at the most-recently-used end. Caller must hold write lock. */
+    private void linkLast(int i) {
+        prev[i] = tail;
+        next[i] = NIL;
+        if (tail == NIL) head = i;
+        else             next[tail] = i;
+        tail = i;
+        promotedAt[i] = ++tick;
+    }
+
+    /** Detaches slot {@code i} from the recency list. Caller must hold write lock. */
+    private void unlink(int i) {
+        int p = prev[i];
+        int n = next[i];
+        if (p == NIL) head = n;
+        else          next[p] = n;
+        if (n == NIL) tail = p;
+        else          prev[n] = p;
+    }
+
+    private void moveToTail(int i) {
+        if (i == tail) return;
+        unlink(i);
+        linkLast(i);
+    }
+
+    /** Group probe over the control bytes — returns slot if key found, -1 otherwise. */
+    private int findSlot(int h, Object key, byte[] cs, int[] hs, Object[] ks, int mask) {
+        return probing == Probing.ROBIN_HOOD
+            ? ControlBytes.findRobinHood(h, key, cs, hs, ks, mask)
+            : ControlBytes.find(h, key, cs, ks, mask);
+    }
 
-        SlotIterator() { advance(); }
+    /**
+     * Draws a new seed and rehashes every entry, keeping the recency order.
+     * At most once per table size: keys with equal hashCodes collide under
+     * any seed. Caller must hold write lock.
+     */
+    private void reseed() {
+        reseededAt = capacity;
+        seed       = ConcurrentLFRUCache.newSeed0();
+        rehash();
+    }
+
+    /** Recomputes every hash under the current seed and re-lays the table. Caller must hold write lock. */
+    private void rehash() {
+        for (int i = 0; i < capacity; i++)
+            if (hashes[i] != EMPTY) hashes[i] = spread(keys[i].hashCode());
+        resize(capacity);
+    }
+
+    /**
+     * Returns the slot a new entry of hash {@code h} goes into. Under Robin
+     * Hood probing the rest of the run is first moved one slot forward,
+     * links and all. Caller must hold write lock.
+     */
+    private int claimSlot(int h) {
+        if (probing == Probing.LINEAR) return ConcurrentLFRUCache.probe0(h, hashes, mask, EMPTY);
+        int p = ConcurrentLFRUCache.robinHood0(h, hashes, mask, EMPTY);
+        int e = ConcurrentLFRUCache.probe0(p, hashes, mask, EMPTY);
+        for (int k = e; k != p; k = (k - 1) & mask) moveSlot((k - 1) & mask, k);
+        return p;
+    }
 
-        private void advance() {
-            while (cursor < capacity && hashes[cursor] <= 0) cursor++;
-            current = cursor < capacity ? cursor++ : -1;
+    private int spread(int h) {
+        return ConcurrentLFRUCache.mix0(h, seed);
+    }
+
+    /**
+     * Writes a snapshot of this cache, recency order and all, for
+     * {@link #readFrom}. Writers wait until it is done. The stream is
+     * flushed but not closed.
+     */
+    public void writeTo(@NotNull OutputStream out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
+    }
+
+    public void writeTo(@NotNull WritableByteChannel out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
+    }
+
+    /** Reads a cache written by {@link #writeTo}; its eviction listener is not part of the snapshot. */
+    public static <K, V> @NotNull ConcurrentLRUCache<K, V> readFrom(@NotNull InputStream in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    public static <K, V> @NotNull ConcurrentLRUCache<K, V> readFrom(@NotNull ReadableByteChannel in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    private void write(SnapshotOutput out, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        // Soft and weak values must be held for the whole write and negative
+        // entries dropped from it, which takes the write lock
+        long stamp = lock.readLock();
+        if (cleared != null || hasAbsent) {
+            lock.unlockRead(stamp);
+            stamp = lock.writeLock();
         }
+        try {
+            Object[] vs = cleared == null && !hasAbsent ? values : holdValues();
+            out.writeHeader("ConcurrentLRUCache");
+            out.writeInt(maxSize);
+            out.writeUTF(probing.name());
+            out.writeUTF(valueStrength.name());
+            out.writeFloat(promotionThreshold);
+            out.writeInt(capacity);
+            out.writeInt(seed);
+            out.writeInt(liveCount.get());
+            out.writeInt(head);
+            out.writeInt(tail);
+            out.writeLong(tick);
+            out.writeInts(hashes, capacity);
+            out.writeInts(prev, capacity);
+            out.writeInts(next, capacity);
+            out.writeLongs(promotedAt, capacity);
+            ConcurrentLFRUCache.writeEntries0(out, hashes, keys, vs, EMPTY, keyCodec, valueCodec);
+        } finally {
+            lock.unlock(stamp);
+        }
+        out.flush();
+    }
+
+    /**
+     * Returns the values slot by slot, soft and weak ones held strongly,
+     * after removing every entry already cleared and every negative entry,
+     * whose expiry means nothing to another process. Caller must hold write lock.
+     */
+    private Object[] holdValues() {
+        for (;;) {
+            drainCleared();
+            Object[] held     = new Object[capacity];
+            boolean  complete = true;
+            for (int i = 0; i < capacity; i++)
+                if (hashes[i] != EMPTY && (held[i] = valueOf(values[i])) == null) complete = false;
+            if (complete) return held;
+
+            // Negative, or cleared but not queued yet; a backward shift may refill slot i
+            for (int i = 0; i < capacity; i++) {
+                while (hashes[i] != EMPTY && valueOf(values[i]) == null) {
+                    unlink(i);
+                    deleteSlot(i);
+                    liveCount.decrementAndGet();
+                }
+            }
+            hasAbsent = false;
+        }
+    }
+
+    private static <K, V> ConcurrentLRUCache<K, V> read(SnapshotInput in, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        in.readHeader("ConcurrentLRUCache");
+        int           maxSize   = in.readInt();
+        Probing       probing   = ConcurrentLFRUCache.readProbing0(in);
+        ValueStrength strength  = ConcurrentLFRUCache.readValueStrength0(in);
+        float         threshold = in.readFloat();
+        if (maxSize <= 0) throw new StreamCorruptedException("bad maxSize " + maxSize);
+        if (!(threshold >= 0f && threshold < 1f)) throw new StreamCorruptedException("bad promotionThreshold " + threshold);
+        int           capacity  = ConcurrentLFRUCache.readTableSize0(in, maxSize, probing);
+
+        ConcurrentLRUCache<K, V> cache = new ConcurrentLRUCache<>(maxSize, probing, strength);
+        cache.promotionThreshold = threshold;
+        cache.capacity   = capacity;
+        cache.mask       = capacity - 1;
+        cache.seed       = in.readInt();
+        int size         = in.readCount(Math.min(maxSize, capacity - 1));
+        cache.head       = in.readInt();
+        cache.tail       = in.readInt();
+        cache.tick       = in.readLong();
+        cache.hashes     = new int   [capacity];
+        cache.ctrl       = ControlBytes.allocate(capacity);
+        cache.keys       = new Object[capacity];
+        cache.values     = new Object[capacity];
+        cache.prev       = new int   [capacity];
+        cache.next       = new int   [capacity];
+        cache.promotedAt = new long  [capacity];
+        in.readInts(cache.hashes, capacity);
+        in.readInts(cache.prev, capacity);
+        in.readInts(cache.next, capacity);
+        in.readLongs(cache.promotedAt, capacity);
+
+        boolean valid = ConcurrentLFRUCache.readEntries0(in, cache.hashes, cache.keys, cache.values, cache.ctrl, EMPTY, size,
+                                                         cache::spread, keyCodec, valueCodec);
+        ConcurrentLFRUCache.checkList0(cache.hashes, EMPTY, cache.prev, cache.next, NIL, cache.head, cache.tail, size, null, 0);
+        if (cache.cleared != null) {
+            for (int i = 0; i < capacity; i++)
+                if (cache.hashes[i] != EMPTY) cache.values[i] = strength.wrap(cache.keys[i], cache.values[i], cache.cleared);
+        }
+        if (!valid) cache.rehash();
+        cache.liveCount.set(size);
+        return cache;
+    }
 
-        @Override public boolean hasNext() { return current >= 0; }
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        // The table as of creation; a later resize leaves this one untouched
+        final int[]    hs = hashes;
+        final Object[] ks = keys;
+        final Object[] vs = values;
+        final int      tableMask = hs.length - 1;
+
+        // Starts just past an empty slot and wraps; see ConcurrentLFRUCache.emptySlot0
+        final int origin = ConcurrentLFRUCache.emptySlot0(hs, EMPTY);
+        int    step = 0;    // slots past origin examined so far
+        int    next = -1;
+        V      nextValue;   // held from hasNext, so a soft or weak value cannot be cleared before next
+        int    last = -1;   // slot returned last, and the key it held
+        Object lastKey;
+
+        @Override public boolean hasNext() {
+            if (next >= 0) return true;
+            // A removal since then may have shifted an unvisited entry back into the returned slot
+            if (last >= 0 && hs[last] > 0 && ks[last] != lastKey && hold(last)) return true;
+            while (++step < hs.length) {
+                int i = (origin + step) & tableMask;
+                if (hs[i] > 0 && hold(i)) return true;
+            }
+            return false;
+        }
+
+        /** Makes slot {@code i} the next one, unless its value has been cleared. */
+        private boolean hold(int i) {
+            V v = (V) valueOf(vs[i]);
+            if (v == null) return false;
+            next      = i;
+            nextValue = v;
+            return true;
+        }
 
         @Override public T next() {
-            if (current < 0) throw new NoSuchElementException();
-            int i = current;
-            advance();
-            return extract(i);
+            if (!hasNext()) throw new NoSuchElementException();
+            int i = next;
+            next    = -1;
+            last    = i;
+            lastKey = ks[i];
+            return extract(i, nextValue);
         }
 
-        abstract T extract(int i);
+        abstract T extract(int i, V value);
     }
 
     private final class KeySetView extends AbstractSet<K> {
         @Override public int  size()              { return liveCount.get(); }
         @Override public boolean contains(Object o) { return containsKey(o); }
-        @Override public boolean remove(Object o)   { return ConcurrentLRUCache.this.remove(o) != null; }
+        @Override public boolean remove(Object o)   { return removeValue(o, null); }
         @Override public void clear()               { ConcurrentLRUCache.this.clear(); }
         @Override public @NotNull Iterator<K> iterator() {
             long stamp = lock.readLock();
-            try { return new SlotIterator<K>() { @Override K extract(int i) { return (K) keys[i]; } }; }
+            try { return new SlotIterator<K>() { @Override K extract(int i, V value) { return (K) ks[i]; } }; }
             finally { lock.unlockRead(stamp); }
         }
     }
@@ -269,7 +881,7 @@ public class ConcurrentLRUCache<K, V> implements Map<K, V> {
         @Override public void clear()               { ConcurrentLRUCache.this.clear(); }
         @Override public @NotNull Iterator<V> iterator() {
             long stamp = lock.readLock();
-            try { return new SlotIterator<V>() { @Override V extract(int i) { return (V) values[i]; } }; }
+            try { return new SlotIterator<V>() { @Override V extract(int i, V value) { return value; } }; }
             finally { lock.unlockRead(stamp); }
         }
     }
@@ -283,15 +895,15 @@ public class ConcurrentLRUCache<K, V> implements Map<K, V> {
             return v != null && v.equals(e.getValue());
         }
         @Override public boolean remove(Object o) {
-            if (!(o instanceof Map.Entry<?, ?> e)) return false;
-            return ConcurrentLRUCache.this.remove(e.getKey()) != null;
+            if (!(o instanceof Map.Entry<?, ?> e) || e.getValue() == null) return false;
+            return removeValue(e.getKey(), e.getValue());
         }
         @Override public @NotNull Iterator<Entry<K, V>> iterator() {
             long stamp = lock.readLock();
             try {
                 return new SlotIterator<Entry<K, V>>() {
-                    @Override Entry<K, V> extract(int i) {
-                        return Map.entry((K) keys[i], (V) values[i]);
+                    @Override Entry<K, V> extract(int i, V value) {
+                        return Map.entry((K) ks[i], value);
                     }
                 };
             } finally { lock.unlockRead(stamp); }
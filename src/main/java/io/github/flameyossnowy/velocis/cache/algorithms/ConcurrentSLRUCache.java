@@ -0,0 +1,647 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
+import io.github.flameyossnowy.velocis.cache.SnapshotOutput;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+import static io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFRUCache.tableSize0;
+
+/**
+ * Concurrent Segmented LRU Cache — the open-addressing layout of
+ * {@link ConcurrentLRUCache}, with the recency list split in two.
+ * <p>
+ * Layout (all arrays share the same slot index):
+ *   int[]    hashes   — spread hash; 0 = empty
+ *   Object[] keys     — key at slot i
+ *   Object[] values   — value at slot i
+ *   byte[]   ctrl     — 7-bit hash tag per slot, probed eight at a time; see {@link ControlBytes}
+ *   int[]    prev     — slot of the next-older entry in the same segment, or NIL
+ *   int[]    next     — slot of the next-newer entry in the same segment, or NIL
+ *   byte[]   segment  — PROBATION or PROTECTED
+ * <p>
+ * New entries are inserted at the tail of the probationary segment. A
+ * second hit moves an entry to the tail of the protected segment, which
+ * holds at most {@code protectedRatio} of the cache; when it overflows, its
+ * least-recently-used entry is demoted back to the probationary tail.
+ * Eviction always takes the probationary head first, so a burst of
+ * one-time reads churns probation and never touches the protected hot set.
+ * <p>
+ * Removal is tombstone-free backward-shift deletion, as in
+ * {@link ConcurrentLRUCache}.
+ * <p>
+ * The table grows on demand, {@link #setMaximumSize(int)} resizes the
+ * cache at runtime, {@link Probing} picks the collision strategy, and hashes
+ * are seeded per instance and reseeded on a runaway probe, as in
+ * {@link ConcurrentLRUCache}. So are binary snapshots: {@link #writeTo}
+ * and {@link #readFrom} keep both segments and their order.
+ * <p>
+ * Locking is the same as {@link ConcurrentLRUCache}: optimistic reads with
+ * read-lock fallback, the write lock for puts, removes and evictions, and
+ * a hit moves its entry only if it gets the write lock without waiting. A
+ * skipped hit can leave an entry on probation one hit longer, but never
+ * pulls a protected entry back out.
+ */
+@SuppressWarnings("unchecked")
+public class ConcurrentSLRUCache<K, V> implements Map<K, V>, Resizable {
+
+    private static final int   EMPTY     =  0;
+    private static final int   NIL       = -1;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private static final byte  PROBATION = 0;
+    private static final byte  PROTECTED = 1;
+
+    private static final float DEFAULT_PROTECTED_RATIO = 0.80f;
+
+    private int[]    hashes;
+    private byte[]   ctrl;
+    private Object[] keys;
+    private Object[] values;
+    private int[]    prev;
+    private int[]    next;
+    private byte[]   segment;
+
+    // Indexed by segment: head is the least-recently-used slot, tail the most
+    private final int[] segHead = { NIL, NIL };
+    private final int[] segTail = { NIL, NIL };
+
+    private int protectedSize;
+
+    private int capacity;
+    private int mask;
+    private volatile int maxSize; // written under the write lock only
+    private final float protectedRatio;
+    private final Probing probing;
+    private int         maxProtected;
+
+    private int seed = ConcurrentLFRUCache.newSeed0();
+    private int reseededAt; // capacity at the last reseed
+
+    private final StampedLock   lock      = new StampedLock();
+    private final AtomicInteger liveCount = new AtomicInteger(0);
+
+    private transient volatile KeySetView   keySetView;
+    private transient volatile ValuesView   valuesView;
+    private transient volatile EntrySetView entrySetView;
+
+    /**
+     * @param protectedRatio the share of {@code maxSize} reserved for entries
+     *                       that have been hit at least twice
+     * @param probing        collision strategy of the table
+     */
+    public ConcurrentSLRUCache(int maxSize, float protectedRatio, @NotNull Probing probing) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        if (!(protectedRatio >= 0f && protectedRatio < 1f)) throw new IllegalArgumentException("protectedRatio must be in [0, 1)");
+        this.maxSize        = maxSize;
+        this.protectedRatio = protectedRatio;
+        this.maxProtected   = (int) (maxSize * protectedRatio);
+        this.probing        = probing;
+        this.capacity       = Math.min(tableSize0(maxSize, probing.load), INITIAL_CAPACITY);
+        this.mask         = capacity - 1;
+        this.hashes       = new int[capacity];
+        this.ctrl         = ControlBytes.allocate(capacity);
+        this.keys         = new Object[capacity];
+        this.values       = new Object[capacity];
+        this.prev         = new int   [capacity];
+        this.next         = new int   [capacity];
+        this.segment      = new byte  [capacity];
+    }
+
+    public ConcurrentSLRUCache(int maxSize, float protectedRatio)       { this(maxSize, protectedRatio, Probing.LINEAR); }
+    public ConcurrentSLRUCache(int maxSize, @NotNull Probing probing)   { this(maxSize, DEFAULT_PROTECTED_RATIO, probing); }
+    public ConcurrentSLRUCache(int maxSize)                             { this(maxSize, DEFAULT_PROTECTED_RATIO); }
+    public ConcurrentSLRUCache()                                        { this(16); }
+    public ConcurrentSLRUCache(int maxSize, int ignored)                { this(maxSize); }
+    public ConcurrentSLRUCache(int maxSize, int ignored, float ignored2){ this(maxSize); }
+
+    /**
+     * Changes the entry limit, keeping the protected share. Lowering it
+     * evicts down to the new limit straight away, demotes protected
+     * overflow to probation and shrinks the table to the size the limit
+     * needs.
+     */
+    public void setMaximumSize(int maxSize) {
+        if (maxSize <= 0) throw new IllegalArgumentException("maxSize must be > 0");
+        long stamp = lock.writeLock();
+        try {
+            this.maxSize      = maxSize;
+            this.maxProtected = (int) (maxSize * protectedRatio);
+            while (liveCount.get() > maxSize) evict();
+            while (protectedSize > maxProtected) {
+                int demoted = segHead[PROTECTED];
+                unlink(demoted);
+                linkLast(PROBATION, demoted);
+            }
+            int cap = tableSize0(maxSize, probing.load);
+            if (cap < capacity) resize(cap);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    public int getMaximumSize() {
+        return maxSize;
+    }
+
+    @Override
+    public @Nullable V get(Object key) {
+        int hc = key.hashCode();
+
+        // A resize or reseed swaps every array: probe one snapshot, and
+        // skip the probe if it mixes two tables
+        long     stamp = lock.tryOptimisticRead();
+        int      h     = spread(hc);
+        byte[]   cs    = ctrl;
+        int[]    hs    = hashes;
+        Object[] ks    = keys;
+        Object[] vs    = values;
+        int      len   = ks.length;
+        int idx = len == vs.length && len == hs.length && cs.length == len + ControlBytes.GROUP - 1
+                ? findSlot(h, key, cs, hs, ks, len - 1) : -1;
+        V   val = idx >= 0 ? (V) vs[idx] : null;
+
+        if (!lock.validate(stamp)) {
+            stamp = lock.readLock();
+            try {
+                h   = spread(hc);
+                idx = findSlot(h, key, ctrl, hashes, keys, mask);
+                val = idx >= 0 ? (V) values[idx] : null;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        // Lossy: if anyone holds the lock the hit goes unrecorded rather
+        // than queueing readers behind the writer
+        long ws;
+        if (idx >= 0 && (ws = lock.tryWriteLock()) != 0L) {
+            try {
+                // The slot may have been vacated, reused or resized away since
+                // the read; only re-probe when it no longer holds this key.
+                h = spread(hc);
+                if (idx >= capacity || hashes[idx] != h || !key.equals(keys[idx])) idx = findSlot(h, key, ctrl, hashes, keys, mask);
+                if (idx >= 0) onHit(idx);
+            } finally {
+                lock.unlockWrite(ws);
+            }
+        }
+        return val;
+    }
+
+    @Override
+    public @Nullable V put(K key, V value) {
+        if (value == null) throw new IllegalArgumentException("Null values are not allowed");
+        int hc = key.hashCode();
+
+        long stamp = lock.writeLock();
+        try {
+            int h   = spread(hc);
+            int idx = findSlot(h, key, ctrl, hashes, keys, mask);
+            if (idx >= 0) {
+                V old = (V) values[idx];
+                values[idx] = value;
+                onHit(idx);
+                return old;
+            }
+
+            if (liveCount.get() >= maxSize) evict();
+            if (liveCount.get() >= (int) (capacity * probing.load)) resize(capacity << 1);
+
+            int slot = claimSlot(h);
+            hashes[slot] = h;
+            ControlBytes.set(ctrl, slot, ControlBytes.tag(h));
+            keys  [slot] = key;
+            values[slot] = value;
+            linkLast(PROBATION, slot);
+            liveCount.incrementAndGet();
+            if (ConcurrentLFRUCache.probeTooLong0(slot, h, mask) && reseededAt != capacity) reseed();
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public @Nullable V remove(Object key) {
+        int hc = key.hashCode();
+        long stamp = lock.writeLock();
+        try {
+            int idx = findSlot(spread(hc), key, ctrl, hashes, keys, mask);
+            if (idx < 0) return null;
+
+            V old = (V) values[idx];
+            removeSlot(idx);
+            return old;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> m) {
+        m.forEach(this::put);
+    }
+
+    @Override
+    public void clear() {
+        long stamp = lock.writeLock();
+        try {
+            Arrays.fill(hashes, EMPTY);
+            Arrays.fill(ctrl,   ControlBytes.EMPTY);
+            Arrays.fill(keys,   null);
+            Arrays.fill(values, null);
+            Arrays.fill(segHead, NIL);
+            Arrays.fill(segTail, NIL);
+            protectedSize = 0;
+            liveCount.set(0);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override public int     size()                   { return liveCount.get(); }
+    @Override public boolean isEmpty()                { return liveCount.get() == 0; }
+    @Override public boolean containsKey(Object key)  { return get(key) != null; }
+
+    @Override
+    public boolean containsValue(Object v) {
+        long stamp = lock.readLock();
+        try {
+            for (int i = 0; i < capacity; i++)
+                if (hashes[i] > 0 && v.equals(values[i])) return true;
+            return false;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override public @NotNull Set<K>           keySet()   { return keySetView   == null ? (keySetView   = new KeySetView())   : keySetView;   }
+    @Override public @NotNull Collection<V>    values()   { return valuesView   == null ? (valuesView   = new ValuesView())   : valuesView;   }
+    @Override public @NotNull Set<Entry<K, V>> entrySet() { return entrySetView == null ? (entrySetView = new EntrySetView()) : entrySetView; }
+
+    /**
+     * Moves a hit slot to the protected tail, demoting the protected head to
+     * probation if that overflows the protected segment. Caller must hold
+     * write lock.
+     */
+    private void onHit(int i) {
+        if (segment[i] == PROTECTED) {
+            if (i == segTail[PROTECTED]) return;
+            unlink(i);
+            linkLast(PROTECTED, i);
+            return;
+        }
+
+        if (maxProtected == 0) {
+            // Degenerates to plain LRU
+            if (i == segTail[PROBATION]) return;
+            unlink(i);
+            linkLast(PROBATION, i);
+            return;
+        }
+
+        unlink(i);
+        linkLast(PROTECTED, i);
+        if (protectedSize > maxProtected) {
+            int demoted = segHead[PROTECTED];
+            unlink(demoted);
+            linkLast(PROBATION, demoted);
+        }
+    }
+
+    /**
+     * Evicts the probationary head, or the protected head if probation is
+     * empty. Caller must hold write lock.
+     */
+    private void evict() {
+        int victim = segHead[PROBATION];
+        if (victim == NIL) victim = segHead[PROTECTED];
+        if (victim == NIL) return;
+        removeSlot(victim);
+    }
+
+    /**
+     * Rehashes every entry into a table of {@code newCapacity} slots,
+     * walking each old segment from head so the new ones keep their order.
+     * Caller must hold write lock.
+     */
+    private void resize(int newCapacity) {
+        int[]    oh = hashes;
+        Object[] ok = keys;
+        Object[] ov = values;
+        int[]    on = next;
+        int[]    heads = segHead.clone();
+
+        hashes   = new int   [newCapacity];
+        ctrl     = ControlBytes.allocate(newCapacity);
+        keys     = new Object[newCapacity];
+        values   = new Object[newCapacity];
+        prev     = new int   [newCapacity];
+        next     = new int   [newCapacity];
+        segment  = new byte  [newCapacity];
+        capacity = newCapacity;
+        mask     = newCapacity - 1;
+        Arrays.fill(segHead, NIL);
+        Arrays.fill(segTail, NIL);
+        protectedSize = 0;
+
+        for (byte seg = PROBATION; seg <= PROTECTED; seg++) {
+            for (int i = heads[seg]; i != NIL; i = on[i]) {
+                int s = claimSlot(oh[i]);
+                hashes[s] = oh[i];
+                ControlBytes.set(ctrl, s, ControlBytes.tag(oh[i]));
+                keys  [s] = ok[i];
+                values[s] = ov[i];
+                linkLast(seg, s);
+            }
+        }
+    }
+
+    /**
+     * Unlinks an occupied slot and empties it by backward shift: later
+     * entries of its probe run move back into the hole, taking their segment
+     * links with them. Caller must hold write lock.
+     */
+    private void removeSlot(int i) {
+        unlink(i);
+        for (int j; (j = nextShift(i)) >= 0; i = j) moveSlot(j, i);
+        hashes[i] = EMPTY;
+        ControlBytes.set(ctrl, i, ControlBytes.EMPTY);
+        keys  [i] = null;
+        values[i] = null;
+        liveCount.decrementAndGet();
+    }
+
+    private int nextShift(int hole) {
+        return probing == Probing.ROBIN_HOOD
+            ? ConcurrentLFRUCache.shiftRobinHood0(hole, hashes, mask, EMPTY)
+            : ConcurrentLFRUCache.shift0(hole, hashes, mask, EMPTY);
+    }
+
+    /** Moves the entry in slot {@code from} into the free slot {@code to}. Caller must hold write lock. */
+    private void moveSlot(int from, int to) {
+        byte seg = segment[from];
+        hashes [to] = hashes [from];
+        ControlBytes.set(ctrl, to, ctrl[from]);
+        keys   [to] = keys   [from];
+        values [to] = values [from];
+        segment[to] = seg;
+
+        int p = prev[from];
+        int n = next[from];
+        prev[to] = p;
+        next[to] = n;
+        if (p == NIL) segHead[seg] = to;
+        else          next[p] = to;
+        if (n == NIL) segTail[seg] = to;
+        else          prev[n] = to;
+    }
+
+    /** Appends slot {@code i} at the tail of segment {@code seg}. Caller must hold write lock. */
+    private void linkLast(byte seg, int i) {
+        int t = segTail[seg];
+        segment[i] = seg;
+        prev[i] = t;
+        next[i] = NIL;
+        if (t == NIL) segHead[seg] = i;
+        else          next[t] = i;
+        segTail[seg] = i;
+        if (seg == PROTECTED) protectedSize++;
+    }
+
+    /** Detaches slot {@code i} from its segment. Caller must hold write lock. */
+    private void unlink(int i) {
+        byte seg = segment[i];
+        int  p   = prev[i];
+        int  n   = next[i];
+        if (p == NIL) segHead[seg] = n;
+        else          next[p] = n;
+        if (n == NIL) segTail[seg] = p;
+        else          prev[n] = p;
+        if (seg == PROTECTED) protectedSize--;
+    }
+
+    /** Group probe over the control bytes — returns slot if key found, -1 otherwise. */
+    private int findSlot(int h, Object key, byte[] cs, int[] hs, Object[] ks, int mask) {
+        return probing == Probing.ROBIN_HOOD
+            ? ControlBytes.findRobinHood(h, key, cs, hs, ks, mask)
+            : ControlBytes.find(h, key, cs, ks, mask);
+    }
+
+    /**
+     * Draws a new seed and rehashes every entry, keeping the recency order.
+     * At most once per table size: keys with equal hashCodes collide under
+     * any seed. Caller must hold write lock.
+     */
+    private void reseed() {
+        reseededAt = capacity;
+        seed       = ConcurrentLFRUCache.newSeed0();
+        rehash();
+    }
+
+    /** Recomputes every hash under the current seed and re-lays the table. Caller must hold write lock. */
+    private void rehash() {
+        for (int i = 0; i < capacity; i++)
+            if (hashes[i] != EMPTY) hashes[i] = spread(keys[i].hashCode());
+        resize(capacity);
+    }
+
+    /**
+     * Returns the slot a new entry of hash {@code h} goes into, first moving
+     * the rest of the run one slot forward under Robin Hood probing. Caller
+     * must hold write lock.
+     */
+    private int claimSlot(int h) {
+        if (probing == Probing.LINEAR) return ConcurrentLFRUCache.probe0(h, hashes, mask, EMPTY);
+        int p = ConcurrentLFRUCache.robinHood0(h, hashes, mask, EMPTY);
+        int e = ConcurrentLFRUCache.probe0(p, hashes, mask, EMPTY);
+        for (int k = e; k != p; k = (k - 1) & mask) moveSlot((k - 1) & mask, k);
+        return p;
+    }
+
+    private int spread(int h) {
+        return ConcurrentLFRUCache.mix0(h, seed);
+    }
+
+    /**
+     * Writes a snapshot of this cache, both segments in order, for
+     * {@link #readFrom}. Writers wait until it is done. The stream is
+     * flushed but not closed.
+     */
+    public void writeTo(@NotNull OutputStream out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
+    }
+
+    public void writeTo(@NotNull WritableByteChannel out, @NotNull Codec<? super K> keyCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        write(new SnapshotOutput(out), keyCodec, valueCodec);
+    }
+
+    public static <K, V> @NotNull ConcurrentSLRUCache<K, V> readFrom(@NotNull InputStream in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    public static <K, V> @NotNull ConcurrentSLRUCache<K, V> readFrom(@NotNull ReadableByteChannel in, @NotNull Codec<K> keyCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return read(new SnapshotInput(in), keyCodec, valueCodec);
+    }
+
+    private void write(SnapshotOutput out, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        long stamp = lock.readLock();
+        try {
+            out.writeHeader("ConcurrentSLRUCache");
+            out.writeInt(maxSize);
+            out.writeFloat(protectedRatio);
+            out.writeUTF(probing.name());
+            out.writeInt(capacity);
+            out.writeInt(seed);
+            out.writeInt(liveCount.get());
+            out.writeInt(protectedSize);
+            out.writeInts(segHead, 2);
+            out.writeInts(segTail, 2);
+            out.writeInts(hashes, capacity);
+            out.writeInts(prev, capacity);
+            out.writeInts(next, capacity);
+            out.write(segment, 0, capacity);
+            ConcurrentLFRUCache.writeEntries0(out, hashes, keys, values, EMPTY, keyCodec, valueCodec);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        out.flush();
+    }
+
+    private static <K, V> ConcurrentSLRUCache<K, V> read(SnapshotInput in, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        in.readHeader("ConcurrentSLRUCache");
+        int     maxSize        = in.readInt();
+        float   protectedRatio = in.readFloat();
+        Probing probing        = ConcurrentLFRUCache.readProbing0(in);
+        if (maxSize <= 0 || !(protectedRatio >= 0f && protectedRatio < 1f)) throw new StreamCorruptedException("bad settings");
+        int     capacity       = ConcurrentLFRUCache.readTableSize0(in, maxSize, probing);
+
+        ConcurrentSLRUCache<K, V> cache = new ConcurrentSLRUCache<>(maxSize, protectedRatio, probing);
+        cache.capacity      = capacity;
+        cache.mask          = capacity - 1;
+        cache.seed          = in.readInt();
+        int size            = in.readCount(Math.min(maxSize, capacity - 1));
+        cache.protectedSize = in.readCount(size);
+        in.readInts(cache.segHead, 2);
+        in.readInts(cache.segTail, 2);
+        cache.hashes  = new int   [capacity];
+        cache.ctrl    = ControlBytes.allocate(capacity);
+        cache.keys    = new Object[capacity];
+        cache.values  = new Object[capacity];
+        cache.prev    = new int   [capacity];
+        cache.next    = new int   [capacity];
+        cache.segment = new byte  [capacity];
+        in.readInts(cache.hashes, capacity);
+        in.readInts(cache.prev, capacity);
+        in.readInts(cache.next, capacity);
+        in.readFully(cache.segment);
+
+        boolean valid = ConcurrentLFRUCache.readEntries0(in, cache.hashes, cache.keys, cache.values, cache.ctrl, EMPTY, size,
+                                                         cache::spread, keyCodec, valueCodec);
+        // Each segment's list holds only its own slots, and together they hold every full one
+        for (int k = 0; k < 2; k++) {
+            ConcurrentLFRUCache.checkList0(cache.hashes, EMPTY, cache.prev, cache.next, NIL, cache.segHead[k], cache.segTail[k],
+                                           k == PROTECTED ? cache.protectedSize : size - cache.protectedSize, cache.segment, k);
+        }
+        if (!valid) cache.rehash();
+        cache.liveCount.set(size);
+        return cache;
+    }
+
+    private abstract class SlotIterator<T> implements Iterator<T> {
+        // The table as of creation; a later resize leaves this one untouched
+        final int[]    hs = hashes;
+        final Object[] ks = keys;
+        final Object[] vs = values;
+        final int      tableMask = hs.length - 1;
+
+        // Starts just past an empty slot and wraps; see ConcurrentLFRUCache.emptySlot0
+        final int origin = ConcurrentLFRUCache.emptySlot0(hs, EMPTY);
+        int    step = 0;    // slots past origin examined so far
+        int    next = -1;
+        int    last = -1;   // slot returned last, and the key it held
+        Object lastKey;
+
+        @Override public boolean hasNext() {
+            if (next >= 0) return true;
+            // A removal since then may have shifted an unvisited entry back into the returned slot
+            if (last >= 0 && hs[last] > 0 && ks[last] != lastKey) { next = last; return true; }
+            while (++step < hs.length) {
+                int i = (origin + step) & tableMask;
+                if (hs[i] > 0) { next = i; return true; }
+            }
+            return false;
+        }
+
+        @Override public T next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            int i = next;
+            next    = -1;
+            last    = i;
+            lastKey = ks[i];
+            return extract(i);
+        }
+
+        abstract T extract(int i);
+    }
+
+    private final class KeySetView extends AbstractSet<K> {
+        @Override public int  size()              { return liveCount.get(); }
+        @Override public boolean contains(Object o) { return containsKey(o); }
+        @Override public boolean remove(Object o)   { return ConcurrentSLRUCache.this.remove(o) != null; }
+        @Override public void clear()               { ConcurrentSLRUCache.this.clear(); }
+        @Override public @NotNull Iterator<K> iterator() {
+            long stamp = lock.readLock();
+            try { return new SlotIterator<K>() { @Override K extract(int i) { return (K) ks[i]; } }; }
+            finally { lock.unlockRead(stamp); }
+        }
+    }
+
+    private final class ValuesView extends AbstractCollection<V> {
+        @Override public int  size()              { return liveCount.get(); }
+        @Override public boolean contains(Object o) { return containsValue(o); }
+        @Override public void clear()               { ConcurrentSLRUCache.this.clear(); }
+        @Override public @NotNull Iterator<V> iterator() {
+            long stamp = lock.readLock();
+            try { return new SlotIterator<V>() { @Override V extract(int i) { return (V) vs[i]; } }; }
+            finally { lock.unlockRead(stamp); }
+        }
+    }
+
+    private final class EntrySetView extends AbstractSet<Entry<K, V>> {
+        @Override public int  size()              { return liveCount.get(); }
+        @Override public void clear()             { ConcurrentSLRUCache.this.clear(); }
+        @Override public boolean contains(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> e)) return false;
+            V v = get(e.getKey());
+            return v != null && v.equals(e.getValue());
+        }
+        @Override public boolean remove(Object o) {
+            if (!(o instanceof Map.Entry<?, ?> e)) return false;
+            return ConcurrentSLRUCache.this.remove(e.getKey()) != null;
+        }
+        @Override public @NotNull Iterator<Entry<K, V>> iterator() {
+            long stamp = lock.readLock();
+            try {
+                return new SlotIterator<Entry<K, V>>() {
+                    @Override Entry<K, V> extract(int i) {
+                        return Map.entry((K) ks[i], (V) vs[i]);
+                    }
+                };
+            } finally { lock.unlockRead(stamp); }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * SwissTable-style control bytes for the open-addressing caches.
+ * <p>
+ * {@code ctrl[i]} is 0 for an empty slot, or {@code 0x80 | tag} where the
+ * 7-bit tag comes from the high bits of the slot's spread hash. A probe
+ * loads {@link #GROUP} control bytes as one {@code long} and matches them
+ * all at once with SWAR bit tricks, so a miss reads one word per eight
+ * slots instead of eight hashes, and {@code equals} only runs on tag
+ * matches — about one in 128 for a key that is not there.
+ * <p>
+ * The array carries {@code GROUP - 1} trailing bytes that mirror the first
+ * slots, so a group that starts near the end of the table reads straight
+ * through instead of wrapping.
+ */
+final class ControlBytes {
+
+    static final int GROUP = 8;
+
+    static final byte EMPTY = 0;
+
+    private static final long LSB = 0x0101_0101_0101_0101L;
+    private static final long MSB = 0x8080_8080_8080_8080L;
+
+    private static final VarHandle WORD = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private ControlBytes() {}
+
+    static byte[] allocate(int capacity) {
+        return new byte[capacity + GROUP - 1];
+    }
+
+    /** Control byte of a full slot holding spread hash {@code h} (positive, 31 bits). */
+    static byte tag(int h) {
+        return (byte) (0x80 | (h >>> 24));
+    }
+
+    /** Sets slot {@code i}, keeping the mirrored tail in step. */
+    static void set(byte[] ctrl, int i, byte b) {
+        int capacity = ctrl.length - GROUP + 1;
+        ctrl[i] = b;
+        for (int j = i + capacity; j < ctrl.length; j += capacity) ctrl[j] = b;
+    }
+
+    /**
+     * Linear probe a group at a time; returns the slot holding {@code key},
+     * or -1 once the probe run ends. Tolerates arrays torn by a concurrent
+     * writer: it never throws, and a bad answer is left for the caller's
+     * stamp validation to reject.
+     */
+    static int find(int h, Object key, byte[] ctrl, Object[] ks, int mask) {
+        long pattern = LSB * (tag(h) & 0xFF);
+        int  i       = h & mask;
+        for (int probed = 0; probed <= mask; probed += GROUP) {
+            long w     = (long) WORD.get(ctrl, i);
+            long empty = ~w & MSB;
+            long x     = w ^ pattern;
+            // Zero-byte test: flags every matching byte, plus at worst a few
+            // spurious ones above a real match, which equals() then rejects
+            long match = (x - LSB) & ~x & MSB;
+            if (empty != 0) match &= (empty & -empty) - 1; // only bytes before the run ends
+
+            while (match != 0) {
+                int slot = (i + (Long.numberOfTrailingZeros(match) >>> 3)) & mask;
+                if (key.equals(ks[slot])) return slot;
+                match &= match - 1;
+            }
+            if (empty != 0) return -1;
+            i = (i + GROUP) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * {@link #find} for a Robin Hood table: runs are sorted by home slot, so
+     * once the last entry of a group sits closer to its home than the key
+     * would at that slot, the key cannot be further on.
+     */
+    static int findRobinHood(int h, Object key, byte[] ctrl, int[] hs, Object[] ks, int mask) {
+        long pattern = LSB * (tag(h) & 0xFF);
+        int  home    = h & mask;
+        int  i       = home;
+        for (int probed = 0; probed <= mask; probed += GROUP) {
+            long w     = (long) WORD.get(ctrl, i);
+            long empty = ~w & MSB;
+            long x     = w ^ pattern;
+            long match = (x - LSB) & ~x & MSB;
+            if (empty != 0) match &= (empty & -empty) - 1;
+
+            while (match != 0) {
+                int slot = (i + (Long.numberOfTrailingZeros(match) >>> 3)) & mask;
+                if (key.equals(ks[slot])) return slot;
+                match &= match - 1;
+            }
+            if (empty != 0) return -1;
+
+            int last = (i + GROUP - 1) & mask;
+            if (((last - (hs[last] & mask)) & mask) < ((last - home) & mask)) return -1;
+            i = (i + GROUP) & mask;
+        }
+        return -1;
+    }
+}
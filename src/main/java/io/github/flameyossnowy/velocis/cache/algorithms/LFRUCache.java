@@ -4,18 +4,47 @@ import io.github.flameyossnowy.velocis.cache.utils.CountMinSketch;
 
 import java.util.*;
 
+/**
+ * Single-threaded LFRU cache: evicts the least-recently-used entry among
+ * those with the lowest frequency.
+ * <p>
+ * Frequencies come from a Count-Min Sketch and are capped at
+ * {@link #MAX_FREQUENCY}, which keeps the bucket table a fixed, directly
+ * indexed array. Every occupied slot sits in the doubly-linked list of its
+ * frequency bucket, threaded through the slot-indexed {@code prev} /
+ * {@code next} arrays, so moving an entry between buckets is a few int
+ * stores and allocates nothing.
+ * <p>
+ * Home slots are mixed with a random per-instance seed. An insert that
+ * lands implausibly far from home draws a new seed and rehashes, at most
+ * once until the cache is cleared.
+ */
 public class LFRUCache<K, V> implements Map<K, V> {
 
     private static final Object EMPTY     = null;
-    private static final Object TOMBSTONE = new Object();
+    private static final int    NIL       = -1;
+
+    /** Entries accessed more often than this share the top bucket, ordered by recency. */
+    private static final int MAX_FREQUENCY = 255;
 
     private Object[] keys;
     private Object[] values;
     private int[]    hashes;
 
-    private final TreeMap<Integer, FrequencyList> frequencyBuckets;
+    private int     seed = ConcurrentLFRUCache.newSeed0();
+    private boolean reseeded; // once per fill: equal hashCodes collide under any seed
+
+    // Per-slot bucket membership
+    private int[] freq;
+    private int[] prev;
+    private int[] next;
+
+    // Per-frequency lists: head is the least-recently-used slot at that frequency
+    private final int[] bucketHead = new int[MAX_FREQUENCY + 1];
+    private final int[] bucketTail = new int[MAX_FREQUENCY + 1];
 
-    private final Map<Integer, FrequencyList.Node> slotToNode;
+    /** No occupied slot has a frequency below this. */
+    private int minFreq = 1;
 
     private final int               capacity;
     private int                     size;
@@ -27,45 +56,6 @@ public class LFRUCache<K, V> implements Map<K, V> {
     private Values   valuesView;
     private KeySet   keySetView;
 
-    private static class FrequencyList {
-        static class Node {
-            int  slot;
-            Node prev, next;
-            Node(int slot) { this.slot = slot; }
-        }
-
-        Node head, tail;
-
-        /** Appends to tail (most-recently-used end). */
-        Node addSlot(int slot) {
-            Node node = new Node(slot);
-            if (head == null) {
-                head = tail = node;
-            } else {
-                tail.next = node;
-                node.prev = tail;
-                tail = node;
-            }
-            return node;
-        }
-
-        void removeNode(Node node) {
-            if (node.prev != null) node.prev.next = node.next; else head = node.next;
-            if (node.next != null) node.next.prev = node.prev; else tail = node.prev;
-            node.prev = node.next = null;
-        }
-
-        /** Removes and returns the head slot (least-recently-used at this frequency). */
-        int removeHead() {
-            if (head == null) return -1;
-            Node node = head;
-            removeNode(node);
-            return node.slot;
-        }
-
-        boolean isEmpty() { return head == null; }
-    }
-
     public LFRUCache(int capacity) {
         if (capacity <= 0) throw new IllegalArgumentException("Cache size must be greater than 0");
         int tableSize   = nextPowerOfTwo(capacity * 2);
@@ -73,9 +63,12 @@ public class LFRUCache<K, V> implements Map<K, V> {
         this.keys       = new Object[tableSize];
         this.values     = new Object[tableSize];
         this.hashes     = new int[tableSize];
+        this.freq       = new int[tableSize];
+        this.prev       = new int[tableSize];
+        this.next       = new int[tableSize];
         this.sketch     = new CountMinSketch<>();
-        this.frequencyBuckets = new TreeMap<>();
-        this.slotToNode = new HashMap<>();
+        Arrays.fill(bucketHead, NIL);
+        Arrays.fill(bucketTail, NIL);
     }
 
     public LFRUCache() {
@@ -112,6 +105,7 @@ public class LFRUCache<K, V> implements Map<K, V> {
         // New entries start at frequency 1
         sketch.increment(key);
         addToFrequencyBucket(slot, 1);
+        if (!reseeded && ConcurrentLFRUCache.probeTooLong0(slot, indexFor(hashes[slot], keys.length), keys.length - 1)) reseed();
         return null;
     }
 
@@ -122,13 +116,7 @@ public class LFRUCache<K, V> implements Map<K, V> {
         if (slot < 0) return null;
 
         V old = (V) values[slot];
-        removeFromFrequencyBucket(slot);
-
-        keys[slot]   = TOMBSTONE;
-        values[slot] = EMPTY;
-        hashes[slot] = 0;
-        slotToNode.remove(slot);
-        size--;
+        removeSlot(slot);
         return old;
     }
 
@@ -155,9 +143,11 @@ public class LFRUCache<K, V> implements Map<K, V> {
         Arrays.fill(keys,   EMPTY);
         Arrays.fill(values, EMPTY);
         Arrays.fill(hashes, 0);
-        frequencyBuckets.clear();
-        slotToNode.clear();
+        Arrays.fill(bucketHead, NIL);
+        Arrays.fill(bucketTail, NIL);
+        minFreq = 1;
         sketch.clear();
+        reseeded = false;
         size = 0;
     }
 
@@ -165,56 +155,80 @@ public class LFRUCache<K, V> implements Map<K, V> {
     @Override public Collection<V>     values()   { return (valuesView  == null) ? (valuesView  = new Values())   : valuesView;  }
     @Override public Set<Entry<K, V>>  entrySet() { return (entrySetView == null) ? (entrySetView = new EntrySet()) : entrySetView; }
 
-    @SuppressWarnings("unchecked")
     private void updateFrequency(K key, int slot) {
         removeFromFrequencyBucket(slot);
         sketch.increment(key);
-        int newFreq = sketch.getFrequency(key);
+        int newFreq = Math.min(sketch.getFrequency(key), MAX_FREQUENCY);
         addToFrequencyBucket(slot, newFreq);
     }
 
+    /** Appends {@code slot} to the most-recently-used end of its bucket. */
     private void addToFrequencyBucket(int slot, int frequency) {
-        FrequencyList list = frequencyBuckets.computeIfAbsent(frequency, ignored -> new FrequencyList());
-        FrequencyList.Node node = list.addSlot(slot);
-        slotToNode.put(slot, node);
+        int tail = bucketTail[frequency];
+        freq[slot] = frequency;
+        prev[slot] = tail;
+        next[slot] = NIL;
+        if (tail == NIL) bucketHead[frequency] = slot;
+        else next[tail] = slot;
+        bucketTail[frequency] = slot;
+        if (frequency < minFreq) minFreq = frequency;
     }
 
     private void removeFromFrequencyBucket(int slot) {
-        FrequencyList.Node node = slotToNode.remove(slot);
-        if (node == null) return;
-
-        // Find which bucket this node belongs to by scanning, O(log n) at most
-        // since we only have as many buckets as distinct frequencies
-        for (Map.Entry<Integer, FrequencyList> entry : frequencyBuckets.entrySet()) {
-            FrequencyList list = entry.getValue();
-            // Check if this node is actually in this list by walking from it
-            // (safe because node.prev/next are nulled on removeNode)
-            list.removeNode(node);
-            if (list.isEmpty()) {
-                frequencyBuckets.remove(entry.getKey());
+        int f = freq[slot];
+        int p = prev[slot];
+        int n = next[slot];
+        if (p == NIL) bucketHead[f] = n;
+        else next[p] = n;
+        if (n == NIL) bucketTail[f] = p;
+        else prev[n] = p;
+    }
+
+    /**
+     * Drops an occupied slot from its bucket and empties it by backward
+     * shift: each later entry of the probe run whose home lies at or before
+     * the hole moves back into it, bucket links included, and the vacated
+     * slot becomes the new hole.
+     */
+    private void removeSlot(int slot) {
+        removeFromFrequencyBucket(slot);
+        int mask = keys.length - 1;
+        for (int j = (slot + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = indexFor(hashes[j], keys.length);
+            if (((j - home) & mask) >= ((j - slot) & mask)) {
+                moveSlot(j, slot);
+                slot = j;
             }
-            break; // node can only belong to one bucket
         }
+        keys[slot]   = EMPTY;
+        values[slot] = EMPTY;
+        hashes[slot] = 0;
+        size--;
     }
 
-    @SuppressWarnings("unchecked")
-    private void evictLFRU() {
-        if (frequencyBuckets.isEmpty()) return;
-
-        int lowestFreq = frequencyBuckets.firstKey();
-        FrequencyList list = frequencyBuckets.get(lowestFreq);
-        if (list == null) return;
+    /** Moves the entry in {@code from} into the empty slot {@code to}, repointing its bucket neighbours. */
+    private void moveSlot(int from, int to) {
+        int f = freq[from];
+        int p = prev[from];
+        int n = next[from];
+        keys[to]   = keys[from];
+        values[to] = values[from];
+        hashes[to] = hashes[from];
+        freq[to]   = f;
+        prev[to]   = p;
+        next[to]   = n;
+        if (p == NIL) bucketHead[f] = to;
+        else next[p] = to;
+        if (n == NIL) bucketTail[f] = to;
+        else prev[n] = to;
+    }
 
-        int evictSlot = list.removeHead();
-        if (list.isEmpty()) frequencyBuckets.remove(lowestFreq);
+    private void evictLFRU() {
+        if (size == 0) return;
 
-        if (evictSlot >= 0) {
-            slotToNode.remove(evictSlot);
-            keys[evictSlot]   = TOMBSTONE;
-            values[evictSlot] = EMPTY;
-            hashes[evictSlot] = 0;
-            size--;
-        }
+        // minFreq is a lower bound; skip buckets emptied since it was set
+        while (bucketHead[minFreq] == NIL) minFreq++;
+        removeSlot(bucketHead[minFreq]);
     }
 
     private int findSlot(Object key) {
@@ -225,7 +239,7 @@ public class LFRUCache<K, V> implements Map<K, V> {
         for (int i = 0; i < tableLen; i++) {
             Object k = keys[slot];
             if (k == EMPTY)     return -1;
-            if (k != TOMBSTONE && hashes[slot] == hash && k.equals(key)) return slot;
+            if (hashes[slot] == hash && k.equals(key)) return slot;
             slot = (slot + 1) & (tableLen - 1);
         }
         return -1;
@@ -237,7 +251,7 @@ public class LFRUCache<K, V> implements Map<K, V> {
         int tableLen = keys.length;
         int slot     = indexFor(hash, tableLen);
 
-        while (keys[slot] != EMPTY && keys[slot] != TOMBSTONE) {
+        while (keys[slot] != EMPTY) {
             slot = (slot + 1) & (tableLen - 1);
         }
 
@@ -248,12 +262,58 @@ public class LFRUCache<K, V> implements Map<K, V> {
         return slot;
     }
 
+    /**
+     * Draws a new seed and re-inserts every entry into a fresh table of the
+     * same size, bucket by bucket from head to tail so frequencies and
+     * recency order carry over.
+     */
+    private void reseed() {
+        Object[] ok    = keys;
+        Object[] ov    = values;
+        int[]    oh    = hashes;
+        int[]    on    = next;
+        int[]    heads = bucketHead.clone();
+        int      n     = ok.length;
+
+        reseeded = true;
+        seed     = ConcurrentLFRUCache.newSeed0();
+        keys     = new Object[n];
+        values   = new Object[n];
+        hashes   = new int[n];
+        freq     = new int[n];
+        prev     = new int[n];
+        next     = new int[n];
+        Arrays.fill(bucketHead, NIL);
+        Arrays.fill(bucketTail, NIL);
+        for (int f = minFreq; f <= MAX_FREQUENCY; f++) {
+            for (int i = heads[f]; i != NIL; i = on[i]) {
+                int slot = indexFor(oh[i], n);
+                while (keys[slot] != EMPTY) slot = (slot + 1) & (n - 1);
+                keys[slot]   = ok[i];
+                values[slot] = ov[i];
+                hashes[slot] = oh[i];
+                addToFrequencyBucket(slot, f);
+            }
+        }
+    }
+
     private boolean isOccupied(int slot) {
-        return keys[slot] != EMPTY && keys[slot] != TOMBSTONE;
+        return keys[slot] != EMPTY;
+    }
+
+    /** Any empty slot; the table is always larger than the cache. */
+    private int emptySlot() {
+        int i = 0;
+        while (keys[i] != EMPTY) i++;
+        return i;
     }
 
-    private static int indexFor(int hash, int tableLen) {
-        return (hash ^ (hash >>> 16)) & (tableLen - 1);
+    /**
+     * Home slot of {@code hash}, mixed with this instance's random seed so
+     * neither sequential nor hand-picked keys pile into one probe run.
+     */
+    private int indexFor(int hash, int tableLen) {
+        return ConcurrentLFRUCache.mix0(hash, seed) & (tableLen - 1);
     }
 
     private static int nextPowerOfTwo(int n) {
@@ -264,21 +324,32 @@ public class LFRUCache<K, V> implements Map<K, V> {
     }
 
     private abstract class TableIterator<T> implements Iterator<T> {
-        int cursor      = -1;
+        // The walk starts just past an empty slot and wraps around. No probe
+        // run crosses that slot, so a backward shift can only pull a
+        // not-yet-visited entry into the slot that was just removed.
+        final int origin = emptySlot();
+        int step;                // slots past origin examined so far
+        int cursor = -1;
         int lastReturned = -1;
+        int lastStep;
 
         TableIterator() { advance(); }
 
         private void advance() {
-            cursor = lastReturned + 1;
-            while (cursor < keys.length && !isOccupied(cursor)) cursor++;
+            int mask = keys.length - 1;
+            cursor = -1;
+            while (++step < keys.length) {
+                int slot = (origin + step) & mask;
+                if (keys[slot] != EMPTY) { cursor = slot; return; }
+            }
         }
 
-        @Override public boolean hasNext() { return cursor < keys.length; }
+        @Override public boolean hasNext() { return cursor >= 0; }
 
         int nextSlot() {
             if (!hasNext()) throw new NoSuchElementException();
             lastReturned = cursor;
+            lastStep     = step;
             advance();
             return lastReturned;
         }
@@ -286,12 +357,10 @@ public class LFRUCache<K, V> implements Map<K, V> {
         @Override
         public void remove() {
             if (lastReturned < 0) throw new IllegalStateException();
-            removeFromFrequencyBucket(lastReturned);
-            keys[lastReturned]   = TOMBSTONE;
-            values[lastReturned] = EMPTY;
-            hashes[lastReturned] = 0;
-            slotToNode.remove(lastReturned);
-            size--;
+            removeSlot(lastReturned);
+            // Re-examine the vacated slot: a later entry may have shifted in
+            step = lastStep - 1;
+            advance();
             lastReturned = -1;
         }
     }
@@ -6,12 +6,14 @@ import java.util.*;
 
 public class LFUCache<K, V> implements Map<K, V> {
     private static final Object EMPTY     = null;
-    private static final Object TOMBSTONE = new Object();
 
     private Object[] keys;
     private Object[] values;
     private int[]    hashes;
 
+    private int     seed = ConcurrentLFRUCache.newSeed0();
+    private boolean reseeded; // once per fill: equal hashCodes collide under any seed
+
     private final int              capacity;
     private int                    size;
     private final CountMinSketch<K> sketch;
@@ -76,11 +78,7 @@ public class LFUCache<K, V> implements Map<K, V> {
         if (slot < 0) return null;
 
         V old = (V) values[slot];
-
-        keys[slot]   = TOMBSTONE;
-        values[slot] = EMPTY;
-        hashes[slot] = 0;
-        size--;
+        removeSlot(slot);
         return old;
     }
 
@@ -114,6 +112,7 @@ public class LFUCache<K, V> implements Map<K, V> {
         Arrays.fill(values, EMPTY);
         Arrays.fill(hashes, 0);
         sketch.clear();
+        reseeded = false;
         size = 0;
     }
 
@@ -141,7 +140,7 @@ public class LFUCache<K, V> implements Map<K, V> {
         for (int i = 0; i < tableLen; i++) {
             Object k = keys[slot];
             if (k == EMPTY)     return -1;
-            if (k != TOMBSTONE && hashes[slot] == hash && k.equals(key)) return slot;
+            if (hashes[slot] == hash && k.equals(key)) return slot;
             slot = (slot + 1) & (tableLen - 1);
         }
         return -1;
@@ -153,7 +152,7 @@ public class LFUCache<K, V> implements Map<K, V> {
         int tableLen = keys.length;
         int slot     = indexFor(hash, tableLen);
 
-        while (keys[slot] != EMPTY && keys[slot] != TOMBSTONE) {
+        while (keys[slot] != EMPTY) {
             slot = (slot + 1) & (tableLen - 1);
         }
 
@@ -161,6 +160,29 @@ public class LFUCache<K, V> implements Map<K, V> {
         values[slot] = value;
         hashes[slot] = hash;
         size++;
+        if (!reseeded && ConcurrentLFRUCache.probeTooLong0(slot, indexFor(hash, tableLen), tableLen - 1)) reseed();
+    }
+
+    /** Draws a new seed and re-inserts every entry into a fresh table of the same size. */
+    private void reseed() {
+        Object[] ok = keys;
+        Object[] ov = values;
+        int[]    oh = hashes;
+        int      n  = ok.length;
+
+        reseeded = true;
+        seed     = ConcurrentLFRUCache.newSeed0();
+        keys     = new Object[n];
+        values   = new Object[n];
+        hashes   = new int[n];
+        for (int i = 0; i < n; i++) {
+            if (ok[i] == EMPTY) continue;
+            int slot = indexFor(oh[i], n);
+            while (keys[slot] != EMPTY) slot = (slot + 1) & (n - 1);
+            keys[slot]   = ok[i];
+            values[slot] = ov[i];
+            hashes[slot] = oh[i];
+        }
     }
 
     /**
@@ -181,20 +203,49 @@ public class LFUCache<K, V> implements Map<K, V> {
             }
         }
 
-        if (minSlot >= 0) {
-            keys[minSlot]   = TOMBSTONE;
-            values[minSlot] = EMPTY;
-            hashes[minSlot] = 0;
-            size--;
+        if (minSlot >= 0) removeSlot(minSlot);
+    }
+
+    /**
+     * Empties {@code slot} by backward shift: each later entry of the probe
+     * run whose home lies at or before the hole moves back into it, and the
+     * vacated slot becomes the new hole. No tombstones are left behind, so
+     * probe lengths do not grow under churn.
+     */
+    private void removeSlot(int slot) {
+        int mask = keys.length - 1;
+        for (int j = (slot + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = indexFor(hashes[j], keys.length);
+            if (((j - home) & mask) >= ((j - slot) & mask)) {
+                keys[slot]   = keys[j];
+                values[slot] = values[j];
+                hashes[slot] = hashes[j];
+                slot = j;
+            }
         }
+        keys[slot]   = EMPTY;
+        values[slot] = EMPTY;
+        hashes[slot] = 0;
+        size--;
     }
 
     private boolean isOccupied(int slot) {
-        return keys[slot] != EMPTY && keys[slot] != TOMBSTONE;
+        return keys[slot] != EMPTY;
     }
 
-    private static int indexFor(int hash, int tableLen) {
-        return (hash ^ (hash >>> 16)) & (tableLen - 1);
+    /** Any empty slot; the table is always larger than the cache. */
+    private int emptySlot() {
+        int i = 0;
+        while (keys[i] != EMPTY) i++;
+        return i;
+    }
+
+    /**
+     * Home slot of {@code hash}, mixed with this instance's random seed so
+     * neither sequential nor hand-picked keys pile into one probe run.
+     */
+    private int indexFor(int hash, int tableLen) {
+        return ConcurrentLFRUCache.mix0(hash, seed) & (tableLen - 1);
     }
 
     private static int nextPowerOfTwo(int n) {
@@ -206,22 +257,33 @@ public class LFUCache<K, V> implements Map<K, V> {
 
     /** Shared base for the three view iterators. */
     private abstract class TableIterator<T> implements Iterator<T> {
+        // The walk starts just past an empty slot and wraps around. No probe
+        // run crosses that slot, so a backward shift can only pull a
+        // not-yet-visited entry into the slot that was just removed.
+        final int origin = emptySlot();
+        int step;                // slots past origin examined so far
         int cursor = -1;
         int lastReturned = -1;
+        int lastStep;
 
         TableIterator() { advance(); }
 
         private void advance() {
-            cursor = lastReturned + 1;
-            while (cursor < keys.length && !isOccupied(cursor)) cursor++;
+            int mask = keys.length - 1;
+            cursor = -1;
+            while (++step < keys.length) {
+                int slot = (origin + step) & mask;
+                if (keys[slot] != EMPTY) { cursor = slot; return; }
+            }
         }
 
         @Override
-        public boolean hasNext() { return cursor < keys.length; }
+        public boolean hasNext() { return cursor >= 0; }
 
         int nextSlot() {
             if (!hasNext()) throw new NoSuchElementException();
             lastReturned = cursor;
+            lastStep     = step;
             advance();
             return lastReturned;
         }
@@ -229,10 +291,10 @@ public class LFUCache<K, V> implements Map<K, V> {
         @Override
         public void remove() {
             if (lastReturned < 0) throw new IllegalStateException();
-            keys[lastReturned]   = TOMBSTONE;
-            values[lastReturned] = EMPTY;
-            hashes[lastReturned] = 0;
-            size--;
+            removeSlot(lastReturned);
+            // Re-examine the vacated slot: a later entry may have shifted in
+            step = lastStep - 1;
+            advance();
             lastReturned = -1;
         }
     }
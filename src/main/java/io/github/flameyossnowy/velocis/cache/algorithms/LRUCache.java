@@ -1,17 +1,374 @@
 package io.github.flameyossnowy.velocis.cache.algorithms;
 
-import java.util.LinkedHashMap;
+import java.util.*;
+
+/**
+ * Bounded single-threaded LRU cache.
+ * <p>
+ * Open-addressing table in the same layout as {@link LFUCache}, with the
+ * recency list threaded through the slots as {@code int} links, so there is
+ * no node object per entry. {@code head} is the least-recently-used slot and
+ * {@code tail} the most-recently-used one; {@code get} and updating
+ * {@code put} move their slot to the tail, and inserting into a full cache
+ * evicts {@code head}.
+ * <p>
+ * Views iterate from least- to most-recently-used, like an access-ordered
+ * {@link LinkedHashMap}, and do not count as accesses.
+ * <p>
+ * Home slots are seeded per instance, and a runaway probe run triggers one
+ * rehash under a new seed, as in {@link LFRUCache}.
+ */
+public class LRUCache<K, V> implements Map<K, V> {
+    private static final Object EMPTY     = null;
+    private static final int    NIL       = -1;
+
+    private Object[] keys;
+    private Object[] values;
+    private int[]    hashes;
+    private int[]    prev;
+    private int[]    next;
+
+    private int     seed = ConcurrentLFRUCache.newSeed0();
+    private boolean reseeded; // once per fill: equal hashCodes collide under any seed
+
+    private int head = NIL; // least-recently-used slot
+    private int tail = NIL; // most-recently-used slot
+
+    private final int capacity;
+    private int       size;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private EntrySet  entrySet;
+    private KeySet    keySet;
+    private Values    valuesView;
 
-public class LRUCache<K, V> extends LinkedHashMap<K, V> {
     public LRUCache(int maxSize) {
-        super(maxSize, 0.75F, true);
+        this(maxSize, 0.5F);
     }
 
+    /**
+     * @param loadFactor the largest fraction of the table {@code maxSize}
+     *                   entries may occupy; the table is sized from it once
+     *                   and never grows
+     */
     public LRUCache(int maxSize, float loadFactor) {
-        super(maxSize, loadFactor, true);
+        if (maxSize <= 0) throw new IllegalArgumentException("Cache size must be greater than 0");
+        if (!(loadFactor > 0 && loadFactor < 1)) throw new IllegalArgumentException("loadFactor must be in (0, 1)");
+        int tableSize = nextPowerOfTwo((int) Math.ceil(maxSize / (double) loadFactor));
+        this.capacity = maxSize;
+        this.keys     = new Object[tableSize];
+        this.values   = new Object[tableSize];
+        this.hashes   = new int[tableSize];
+        this.prev     = new int[tableSize];
+        this.next     = new int[tableSize];
     }
 
     public LRUCache() {
-        this(16);
+        this(DEFAULT_CAPACITY);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0) return null;
+        moveToTail(slot);
+        return (V) values[slot];
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V put(K key, V value) {
+        if (key   == null) throw new IllegalArgumentException("Null keys are not allowed");
+        if (value == null) throw new IllegalArgumentException("Null values are not allowed");
+
+        int slot = findSlot(key);
+
+        if (slot >= 0) {
+            V old = (V) values[slot];
+            values[slot] = value;
+            moveToTail(slot);
+            return old;
+        }
+
+        if (size >= capacity) removeSlot(head);
+
+        insertNew(key, value);
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int slot = findSlot(key);
+        if (slot < 0) return null;
+
+        V old = (V) values[slot];
+        removeSlot(slot);
+        return old;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return findSlot(key) >= 0;
+    }
+
+    @Override
+    public boolean containsValue(Object target) {
+        for (int i = head; i != NIL; i = next[i]) {
+            if (values[i].equals(target)) return true;
+        }
+        return false;
+    }
+
+    @Override
+    public int size()      { return size; }
+
+    @Override
+    public boolean isEmpty() { return size == 0; }
+
+    @Override
+    public void putAll(Map<? extends K, ? extends V> map) {
+        for (Entry<? extends K, ? extends V> e : map.entrySet()) put(e.getKey(), e.getValue());
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys,   EMPTY);
+        Arrays.fill(values, EMPTY);
+        Arrays.fill(hashes, 0);
+        head = tail = NIL;
+        reseeded = false;
+        size = 0;
+    }
+
+    @Override
+    public Set<K> keySet() {
+        return (keySet == null) ? (keySet = new KeySet()) : keySet;
+    }
+
+    @Override
+    public Collection<V> values() {
+        return (valuesView == null) ? (valuesView = new Values()) : valuesView;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return (entrySet == null) ? (entrySet = new EntrySet()) : entrySet;
+    }
+
+    /** Returns the slot index for {@code key}, or {@code -1} if not present. */
+    private int findSlot(Object key) {
+        int hash     = key.hashCode();
+        int tableLen = keys.length;
+        int slot     = indexFor(hash, tableLen);
+
+        for (int i = 0; i < tableLen; i++) {
+            Object k = keys[slot];
+            if (k == EMPTY)     return -1;
+            if (hashes[slot] == hash && k.equals(key)) return slot;
+            slot = (slot + 1) & (tableLen - 1);
+        }
+        return -1;
+    }
+
+    /** Inserts a brand-new key-value pair at the MRU end. Caller must ensure capacity. */
+    private void insertNew(K key, V value) {
+        int hash     = key.hashCode();
+        int tableLen = keys.length;
+        int slot     = indexFor(hash, tableLen);
+
+        while (keys[slot] != EMPTY) {
+            slot = (slot + 1) & (tableLen - 1);
+        }
+
+        keys[slot]   = key;
+        values[slot] = value;
+        hashes[slot] = hash;
+        linkLast(slot);
+        size++;
+        if (!reseeded && ConcurrentLFRUCache.probeTooLong0(slot, indexFor(hash, tableLen), tableLen - 1)) reseed();
+    }
+
+    /**
+     * Draws a new seed and re-inserts every entry into a fresh table of the
+     * same size, from head to tail so the recency order carries over.
+     */
+    private void reseed() {
+        Object[] ok = keys;
+        Object[] ov = values;
+        int[]    oh = hashes;
+        int[]    on = next;
+        int      n  = ok.length;
+        int      i  = head;
+
+        reseeded = true;
+        seed     = ConcurrentLFRUCache.newSeed0();
+        keys     = new Object[n];
+        values   = new Object[n];
+        hashes   = new int[n];
+        prev     = new int[n];
+        next     = new int[n];
+        head = tail = NIL;
+        for (; i != NIL; i = on[i]) {
+            int slot = indexFor(oh[i], n);
+            while (keys[slot] != EMPTY) slot = (slot + 1) & (n - 1);
+            keys[slot]   = ok[i];
+            values[slot] = ov[i];
+            hashes[slot] = oh[i];
+            linkLast(slot);
+        }
+    }
+
+    /**
+     * Unlinks an occupied slot and empties it by backward shift: each later
+     * entry of the probe run whose home lies at or before the hole moves back
+     * into it, list links included, and the vacated slot becomes the new hole.
+     */
+    private void removeSlot(int slot) {
+        unlink(slot);
+        int mask = keys.length - 1;
+        for (int j = (slot + 1) & mask; keys[j] != EMPTY; j = (j + 1) & mask) {
+            int home = indexFor(hashes[j], keys.length);
+            if (((j - home) & mask) >= ((j - slot) & mask)) {
+                moveSlot(j, slot);
+                slot = j;
+            }
+        }
+        keys[slot]   = EMPTY;
+        values[slot] = EMPTY;
+        hashes[slot] = 0;
+        size--;
+    }
+
+    /** Moves the entry in {@code from} into the empty slot {@code to}, repointing its list neighbours. */
+    private void moveSlot(int from, int to) {
+        int p = prev[from];
+        int n = next[from];
+        keys[to]   = keys[from];
+        values[to] = values[from];
+        hashes[to] = hashes[from];
+        prev[to]   = p;
+        next[to]   = n;
+        if (p == NIL) head = to;
+        else next[p] = to;
+        if (n == NIL) tail = to;
+        else prev[n] = to;
+    }
+
+    private void linkLast(int slot) {
+        prev[slot] = tail;
+        next[slot] = NIL;
+        if (tail == NIL) head = slot;
+        else next[tail] = slot;
+        tail = slot;
+    }
+
+    private void unlink(int slot) {
+        int p = prev[slot];
+        int n = next[slot];
+        if (p == NIL) head = n;
+        else next[p] = n;
+        if (n == NIL) tail = p;
+        else prev[n] = p;
+    }
+
+    private void moveToTail(int slot) {
+        if (slot == tail) return;
+        unlink(slot);
+        linkLast(slot);
+    }
+
+    /**
+     * Home slot of {@code hash}, mixed with this instance's random seed so
+     * neither sequential nor hand-picked keys pile into one probe run.
+     */
+    private int indexFor(int hash, int tableLen) {
+        return ConcurrentLFRUCache.mix0(hash, seed) & (tableLen - 1);
+    }
+
+    private static int nextPowerOfTwo(int n) {
+        if (n <= 1) return 1;
+        int p = 1;
+        while (p < n) p <<= 1;
+        return p;
+    }
+
+    /** Shared base for the three view iterators; walks the recency list from head. */
+    private abstract class TableIterator<T> implements Iterator<T> {
+        int cursor = head;
+        int lastReturned = NIL;
+
+        @Override
+        public boolean hasNext() { return cursor != NIL; }
+
+        int nextSlot() {
+            if (!hasNext()) throw new NoSuchElementException();
+            lastReturned = cursor;
+            cursor = next[cursor];
+            return lastReturned;
+        }
+
+        @Override
+        public void remove() {
+            if (lastReturned == NIL) throw new IllegalStateException();
+            // The removal may shift the next entry to another slot; find it again by key
+            Object nextKey = cursor == NIL ? null : keys[cursor];
+            removeSlot(lastReturned);
+            if (nextKey != null) cursor = findSlot(nextKey);
+            lastReturned = NIL;
+        }
+    }
+
+    private class KeySet extends AbstractSet<K> {
+        @Override public int size() { return size; }
+
+        @Override
+        public boolean contains(Object o) { return findSlot(o) >= 0; }
+
+        @Override
+        public Iterator<K> iterator() {
+            return new TableIterator<K>() {
+                @Override @SuppressWarnings("unchecked")
+                public K next() { return (K) keys[nextSlot()]; }
+            };
+        }
+    }
+
+    private class Values extends AbstractCollection<V> {
+        @Override public int size() { return size; }
+
+        @Override
+        public Iterator<V> iterator() {
+            return new TableIterator<V>() {
+                @Override @SuppressWarnings("unchecked")
+                public V next() { return (V) values[nextSlot()]; }
+            };
+        }
+    }
+
+    private class EntrySet extends AbstractSet<Entry<K, V>> {
+        @Override public int size() { return size; }
+
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+            return new TableIterator<Entry<K, V>>() {
+                @Override @SuppressWarnings("unchecked")
+                public Entry<K, V> next() {
+                    int slot = nextSlot();
+                    K k = (K) keys[slot];
+                    V v = (V) values[slot];
+                    return new AbstractMap.SimpleEntry<>(k, v);
+                }
+            };
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Entry<?, ?> e)) return false;
+            int slot = findSlot(e.getKey());
+            return slot >= 0 && values[slot].equals(e.getValue());
+        }
     }
 }
@@ -0,0 +1,59 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * What a {@link ConcurrentLRUCache} in a {@link CacheGroup} would gain or
+ * lose by changing size by {@code window} entries.
+ * <p>
+ * {@code tailHits} counts hits on entries among the {@code window} least
+ * recently used, the hits shrinking by a window would lose; a hit's
+ * distance from the tail is bounded by the promotion ticks since it was
+ * last promoted. {@code ghostHits} counts misses on keys among the last
+ * {@code window} evicted, the hits growing by a window would have had.
+ * <p>
+ * Evicted keys are remembered by spread hash in a direct-mapped table, and
+ * lookups read it without the write lock the evictions hold, so a
+ * collision, a race or a reseed of the cache can drop a ghost hit or,
+ * rarely, invent one. A group only compares these counts, which need not
+ * be exact.
+ */
+final class MarginalHits {
+
+    final int       window;
+    final LongAdder tailHits  = new LongAdder();
+    final LongAdder ghostHits = new LongAdder();
+
+    private final int[]  ghostHashes;
+    private final long[] ghostSeqs;   // value of evictions when the ghost was recorded
+    private final int    ghostMask;
+    private volatile long evictions;  // written under the cache's write lock only
+
+    MarginalHits(int maxSize) {
+        this.window = Math.max(1, maxSize >>> 4);
+        int size = Integer.highestOneBit(window * 2 - 1) << 1;
+        this.ghostHashes = new int [size];
+        this.ghostSeqs   = new long[size];
+        this.ghostMask   = size - 1;
+    }
+
+    /** Records a hit {@code distance} promotion ticks from the tail of a cache holding up to {@code maxSize}. */
+    void hit(long distance, int maxSize) {
+        if (distance >= maxSize - window) tailHits.increment();
+    }
+
+    /** Records a miss on a key of spread hash {@code h}. */
+    void miss(int h) {
+        int i = h & ghostMask;
+        if (ghostHashes[i] == h && evictions - ghostSeqs[i] < window) ghostHits.increment();
+    }
+
+    /** Records the eviction of a key of spread hash {@code h}. Caller must hold the cache's write lock. */
+    void evicted(int h) {
+        int  i   = h & ghostMask;
+        long seq = evictions;
+        ghostSeqs  [i] = seq;
+        ghostHashes[i] = h;
+        evictions = seq + 1;
+    }
+}
@@ -0,0 +1,240 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import org.jetbrains.annotations.NotNull;
+
+import javax.management.ListenerNotFoundException;
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryNotificationInfo;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Shrinks registered caches while the old generation fills up and grows
+ * them back once it drains, so caches can be sized for a quiet heap
+ * without risking an OOM under a load spike.
+ * <p>
+ * Pressure is the occupancy of the heap pools that report it after a
+ * collection, the old generation under the usual collectors, as a
+ * fraction of their maximum: post-GC occupancy is live data, where plain
+ * usage also counts garbage. The monitor sets both the usage and the
+ * collection usage threshold of those pools to {@code highFraction}, so
+ * the JVM notifies it as soon as the old generation crosses it, and checks
+ * the post-GC occupancy on every notification and every
+ * {@code checkIntervalMillis} besides.
+ * <p>
+ * At or above {@code highFraction} every cache's effective maximum size
+ * drops to 70% of what it was, evicting straight away, down to a tenth of
+ * the size it was registered with; at or below {@code lowFraction} it
+ * grows back by a tenth of that size per check. In between, sizes hold, so
+ * the caches do not flap around one threshold. Shrinks are at least one
+ * check interval apart, giving the collector time to reclaim what the last
+ * one evicted.
+ * <p>
+ * Thresholds are JVM-wide, so run one monitor per JVM. A registered cache
+ * belongs to the monitor: resizing it by hand is undone at the next step.
+ * Register a {@link CacheGroup} as a whole rather than its members. Under
+ * a collector whose pools report no post-GC occupancy the monitor never
+ * resizes anything.
+ */
+public final class MemoryPressureMonitor implements AutoCloseable {
+
+    private static final float DEFAULT_HIGH_FRACTION = 0.85f;
+    private static final float DEFAULT_LOW_FRACTION  = 0.70f;
+    private static final long  DEFAULT_CHECK_MILLIS  = 1000;
+
+    private static final double SHRINK    = 0.7;
+    private static final double GROW      = 0.1; // of the registered size, per step
+    private static final double MIN_SCALE = 0.1;
+
+    private final float highFraction;
+    private final float lowFraction;
+    private final long  checkIntervalNanos;
+
+    private final List<MemoryPoolMXBean> pools    = new ArrayList<>();
+    private final NotificationEmitter    emitter  = (NotificationEmitter) ManagementFactory.getMemoryMXBean();
+    private final NotificationListener   listener = this::onNotification;
+
+    // Guarded by this
+    private final Map<Object, Registration> registered = new IdentityHashMap<>();
+    private double scale = 1.0;
+    private long   lastShrink; // nanoTime
+
+    private final ScheduledExecutorService checker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "velocis-memory-pressure");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private record Registration(Resizable cache, int nominal) {}
+
+    public MemoryPressureMonitor() {
+        this(DEFAULT_HIGH_FRACTION, DEFAULT_LOW_FRACTION, DEFAULT_CHECK_MILLIS);
+    }
+
+    /**
+     * @param highFraction        post-GC occupancy of the old generation at which caches shrink
+     * @param lowFraction         occupancy at or below which they grow back
+     * @param checkIntervalMillis time between two occupancy checks, and the least between two shrinks
+     */
+    public MemoryPressureMonitor(float highFraction, float lowFraction, long checkIntervalMillis) {
+        if (!(highFraction > 0f && highFraction < 1f)) throw new IllegalArgumentException("highFraction must be in (0, 1)");
+        if (!(lowFraction > 0f && lowFraction < highFraction)) throw new IllegalArgumentException("lowFraction must be in (0, highFraction)");
+        if (checkIntervalMillis <= 0) throw new IllegalArgumentException("checkIntervalMillis must be > 0");
+        this.highFraction       = highFraction;
+        this.lowFraction        = lowFraction;
+        this.checkIntervalNanos = TimeUnit.MILLISECONDS.toNanos(checkIntervalMillis);
+        this.lastShrink         = System.nanoTime() - checkIntervalNanos;
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() != MemoryType.HEAP || !pool.isCollectionUsageThresholdSupported()) continue;
+            long max = pool.getUsage().getMax();
+            if (max <= 0) continue;
+            long threshold = (long) (max * (double) highFraction);
+            pool.setCollectionUsageThreshold(threshold);
+            if (pool.isUsageThresholdSupported()) pool.setUsageThreshold(threshold);
+            pools.add(pool);
+        }
+        emitter.addNotificationListener(listener, null, null);
+        checker.scheduleWithFixedDelay(this::checkQuietly, checkIntervalMillis, checkIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Puts {@code cache} under the monitor; its current maximum size is the
+     * one it grows back to. It starts at the current scale, so a cache
+     * registered under pressure is shrunk straight away.
+     */
+    public synchronized void register(@NotNull Resizable cache) {
+        add(cache, cache);
+    }
+
+    /**
+     * Puts {@code group} under the monitor, scaling its budget, though never
+     * below one entry per member.
+     */
+    public synchronized void register(@NotNull CacheGroup group) {
+        add(group, new Resizable() {
+            @Override public int  getMaximumSize()            { return group.getBudget(); }
+            @Override public void setMaximumSize(int maxSize) { group.setBudget(Math.max(maxSize, group.members().size())); }
+        });
+    }
+
+    /** Takes a cache or group off the monitor and restores the size it was registered with. */
+    public synchronized boolean unregister(@NotNull Object cache) {
+        Registration r = registered.remove(cache);
+        if (r == null) return false;
+        r.cache.setMaximumSize(r.nominal);
+        return true;
+    }
+
+    /** The fraction of their registered size the caches are held to, 1 without pressure. */
+    public synchronized double getScale() {
+        return scale;
+    }
+
+    /** Post-GC occupancy of the fullest monitored pool, as a fraction of its maximum; 0 if none reports it. */
+    public double occupancy() {
+        double occupancy = 0;
+        for (MemoryPoolMXBean pool : pools) {
+            MemoryUsage usage = pool.getCollectionUsage();
+            if (usage == null || usage.getMax() <= 0) continue;
+            occupancy = Math.max(occupancy, (double) usage.getUsed() / usage.getMax());
+        }
+        return occupancy;
+    }
+
+    /** Checks the occupancy now and shrinks or grows the caches one step if it calls for it. */
+    public synchronized void check() {
+        double occupancy = occupancy();
+        long   now       = System.nanoTime();
+        if (occupancy >= highFraction) {
+            if (now - lastShrink < checkIntervalNanos) return;
+            lastShrink = now;
+            rescale(Math.max(MIN_SCALE, scale * SHRINK));
+        } else if (occupancy <= lowFraction && scale < 1.0) {
+            rescale(Math.min(1.0, scale + GROW));
+        }
+    }
+
+    /** Stops monitoring, clears the pool thresholds and restores every cache to its registered size. */
+    @Override
+    public synchronized void close() {
+        checker.shutdown();
+        try {
+            emitter.removeNotificationListener(listener);
+        } catch (ListenerNotFoundException ignored) {
+            // already removed
+        }
+        for (MemoryPoolMXBean pool : pools) {
+            pool.setCollectionUsageThreshold(0);
+            if (pool.isUsageThresholdSupported()) pool.setUsageThreshold(0);
+        }
+        scale = 1.0;
+        for (Registration r : registered.values()) resize(r, r.nominal);
+        registered.clear();
+    }
+
+    private void add(Object key, Resizable cache) {
+        if (registered.containsKey(key)) throw new IllegalArgumentException("cache is already registered");
+        Registration r = new Registration(cache, cache.getMaximumSize());
+        registered.put(key, r);
+        if (scale < 1.0) cache.setMaximumSize(scaled(r));
+    }
+
+    private void rescale(double scale) {
+        this.scale = scale;
+        for (Registration r : registered.values()) {
+            int size = scaled(r);
+            if (size != r.cache.getMaximumSize()) resize(r, size);
+        }
+    }
+
+    /** Resizes one cache, reporting a failure, such as a throwing eviction listener, so the others still get resized. */
+    private static void resize(Registration r, int size) {
+        try {
+            r.cache.setMaximumSize(size);
+        } catch (RuntimeException e) {
+            report(e);
+        }
+    }
+
+    private int scaled(Registration r) {
+        return (int) Math.max(1, r.nominal * scale);
+    }
+
+    private void onNotification(Notification notification, Object handback) {
+        String type = notification.getType();
+        if (!type.equals(MemoryNotificationInfo.MEMORY_THRESHOLD_EXCEEDED)
+                && !type.equals(MemoryNotificationInfo.MEMORY_COLLECTION_THRESHOLD_EXCEEDED)) return;
+        // Evicting can take a while; keep it off the JVM's notification thread
+        try {
+            checker.execute(this::checkQuietly);
+        } catch (RejectedExecutionException e) {
+            // closed
+        }
+    }
+
+    private void checkQuietly() {
+        try {
+            check();
+        } catch (RuntimeException e) {
+            report(e); // nothing thrown must cancel the periodic check
+        }
+    }
+
+    private static void report(Throwable e) {
+        Thread t = Thread.currentThread();
+        t.getUncaughtExceptionHandler().uncaughtException(t, e);
+    }
+}
@@ -0,0 +1,29 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+/**
+ * Collision strategy of the open-addressing concurrent caches, and the load
+ * factor each one runs at.
+ */
+public enum Probing {
+    /** Plain linear probing; tables are kept under 70% full. */
+    LINEAR(0.70f),
+
+    /**
+     * Robin Hood linear probing: an insertion takes the slot of the first
+     * entry sitting closer to its home than the new one would, and shifts
+     * the rest of the run forward. Every run stays sorted by home slot, so
+     * a lookup stops as soon as it meets an entry closer to home than the
+     * key would be, and a miss no longer has to reach an empty slot. Probe
+     * lengths stay short enough to run tables 87.5% full.
+     * <p>
+     * Inserts move entries forward, so an iteration running concurrently
+     * with puts may see an entry twice.
+     */
+    ROBIN_HOOD(0.875f);
+
+    final float load;
+
+    Probing(float load) {
+        this.load = load;
+    }
+}
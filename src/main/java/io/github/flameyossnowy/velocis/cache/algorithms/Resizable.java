@@ -0,0 +1,13 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+/**
+ * A cache whose entry limit can change while it is in use, such as by a
+ * {@link MemoryPressureMonitor}.
+ */
+public interface Resizable {
+
+    int getMaximumSize();
+
+    /** Changes the entry limit; lowering it evicts down to the new limit straight away. */
+    void setMaximumSize(int maxSize);
+}
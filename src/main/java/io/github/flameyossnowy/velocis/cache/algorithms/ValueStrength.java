@@ -0,0 +1,72 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+
+/**
+ * How strongly a concurrent cache holds its values.
+ * <p>
+ * With {@code SOFT} or {@code WEAK}, each slot holds its value through a
+ * reference the GC may clear. A cleared entry reads as absent straight
+ * away; its slot is freed in batch the next time the cache takes its
+ * write lock, from the reference queue the GC fills, so no sweeper thread
+ * is needed. Until then it still counts towards {@code size()}. Keys are
+ * always held strongly: lookups compare them with {@code equals}.
+ */
+public enum ValueStrength {
+    /** Values are ordinary references and are only dropped by eviction or removal. */
+    STRONG,
+
+    /**
+     * Values are cleared when the GC runs short of memory, least recently
+     * used first; the choice for large derived objects that should give way
+     * under memory pressure.
+     */
+    SOFT,
+
+    /** Values are cleared as soon as nothing outside the cache uses them. */
+    WEAK;
+
+    /** Reference a soft or weak value is held through; it keeps the key, so a drained one finds its slot. */
+    interface ValueReference {
+        Object key();
+        Object get();
+    }
+
+    private static final class SoftValue extends SoftReference<Object> implements ValueReference {
+        private final Object key;
+
+        SoftValue(Object key, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override public Object key() { return key; }
+    }
+
+    private static final class WeakValue extends WeakReference<Object> implements ValueReference {
+        private final Object key;
+
+        WeakValue(Object key, Object value, ReferenceQueue<Object> queue) {
+            super(value, queue);
+            this.key = key;
+        }
+
+        @Override public Object key() { return key; }
+    }
+
+    /** What a slot stores for {@code value}; {@code queue} may be null only for {@code STRONG}. */
+    Object wrap(Object key, Object value, ReferenceQueue<Object> queue) {
+        return switch (this) {
+            case STRONG -> value;
+            case SOFT   -> new SoftValue(key, value, queue);
+            case WEAK   -> new WeakValue(key, value, queue);
+        };
+    }
+
+    /** The value a slot stores, or null if the GC has cleared it. */
+    static Object unwrap(Object stored) {
+        return stored instanceof ValueReference ref ? ref.get() : stored;
+    }
+}
@@ -0,0 +1,190 @@
+package io.github.flameyossnowy.velocis.cache.invalidation;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFUCache;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Spreads key invalidations between the near caches of several processes.
+ * <p>
+ * {@link #publish} only adds the key to a pending set, so a key published
+ * many times between two flushes goes out once. A flusher thread drains
+ * the set every {@code flushIntervalMillis}, or as soon as it holds
+ * {@code maxBatch} keys, and hands the batch to the local subscribers and,
+ * encoded with the key {@link Codec}, to the {@link InvalidationTransport}
+ * for the other processes. Batches received from peers go to the local
+ * subscribers too.
+ * <p>
+ * A subscriber gets a whole batch at once; {@link #subscribe(ConcurrentLFUCache)}
+ * removes it with {@link ConcurrentLFUCache#invalidateAll}, under one
+ * write-lock acquisition per batch. Subscribers run on the flusher or
+ * transport thread and should not block.
+ *
+ * <h2>Wire format</h2>
+ * A message is a key count followed by that many length-prefixed encoded
+ * keys, all big-endian. A batch that does not fit the transport's message
+ * size goes out as several messages. A key whose encoding alone does not
+ * fit is still delivered to the local subscribers but never broadcast; it
+ * is reported to the flusher thread's uncaught exception handler.
+ */
+public class InvalidationBus<K> implements AutoCloseable {
+
+    private static final long DEFAULT_FLUSH_MILLIS = 5;
+    private static final int  DEFAULT_MAX_BATCH    = 1024;
+
+    private final InvalidationTransport transport;
+    private final Codec<K>              keyCodec;
+    private final int                   maxBatch;
+
+    private final Set<K>        pending     = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushQueued = new AtomicBoolean();
+    private final List<Consumer<? super Collection<K>>> subscribers = new CopyOnWriteArrayList<>();
+
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "velocis-invalidation-flusher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    public InvalidationBus(@NotNull InvalidationTransport transport, @NotNull Codec<K> keyCodec) {
+        this(transport, keyCodec, DEFAULT_FLUSH_MILLIS, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * @param flushIntervalMillis the longest a published key waits before it is sent
+     * @param maxBatch            pending keys that trigger a flush straight away
+     */
+    public InvalidationBus(@NotNull InvalidationTransport transport, @NotNull Codec<K> keyCodec,
+                           long flushIntervalMillis, int maxBatch) {
+        if (flushIntervalMillis <= 0) throw new IllegalArgumentException("flushIntervalMillis must be > 0");
+        if (maxBatch <= 0) throw new IllegalArgumentException("maxBatch must be > 0");
+        this.transport = transport;
+        this.keyCodec  = keyCodec;
+        this.maxBatch  = maxBatch;
+        flusher.scheduleWithFixedDelay(this::flush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        transport.start(this::receive);
+    }
+
+    /** Queues {@code key} to be invalidated in every subscribed cache, here and in the peers. */
+    public void publish(@NotNull K key) {
+        pending.add(key);
+        if (pending.size() >= maxBatch && flushQueued.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flush);
+            } catch (RejectedExecutionException e) {
+                flushQueued.set(false); // closed
+            }
+        }
+    }
+
+    public void subscribe(@NotNull Consumer<? super Collection<K>> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void subscribe(@NotNull ConcurrentLFUCache<K, ?> cache) {
+        subscribe(cache::invalidateAll);
+    }
+
+    /** Sends every pending key now. */
+    public synchronized void flush() {
+        flushQueued.set(false);
+        if (pending.isEmpty()) return;
+
+        List<K> batch = new ArrayList<>(pending.size());
+        for (Iterator<K> it = pending.iterator(); it.hasNext(); ) {
+            batch.add(it.next());
+            it.remove(); // a key published again from here on waits for the next flush
+        }
+        deliver(batch);
+        try {
+            send(batch);
+        } catch (IOException e) {
+            report(new UncheckedIOException("Cannot send invalidations", e));
+        } catch (RuntimeException e) {
+            report(e); // a throwing key codec must not cancel the periodic flush
+        }
+    }
+
+    private void send(List<K> batch) throws IOException {
+        int        max = transport.maxMessageSize();
+        ByteBuffer msg = ByteBuffer.allocate(max);
+        int        count = 0;
+        msg.putInt(0);
+        for (K key : batch) {
+            byte[] bytes = keyCodec.encode(key);
+            if (Integer.BYTES * 2 + bytes.length > max) {
+                // Cannot go out in any message; the peers keep it until it is evicted or written again
+                report(new IllegalArgumentException("key too large to broadcast: " + bytes.length + " bytes"));
+                continue;
+            }
+            if (msg.remaining() < Integer.BYTES + bytes.length) {
+                transport.send(seal(msg, count));
+                msg.clear();
+                msg.putInt(0);
+                count = 0;
+            }
+            msg.putInt(bytes.length).put(bytes);
+            count++;
+        }
+        if (count > 0) transport.send(seal(msg, count));
+    }
+
+    private static byte[] seal(ByteBuffer msg, int count) {
+        msg.putInt(0, count);
+        return Arrays.copyOf(msg.array(), msg.position());
+    }
+
+    private void receive(byte[] message) {
+        List<K> batch;
+        try {
+            ByteBuffer in    = ByteBuffer.wrap(message);
+            int        count = in.getInt();
+            if (count < 0 || count > message.length) throw new IllegalArgumentException("bad key count " + count);
+            batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int len = in.getInt();
+                if (len < 0 || len > in.remaining()) throw new IllegalArgumentException("bad key length " + len);
+                byte[] bytes = new byte[len];
+                in.get(bytes);
+                batch.add(keyCodec.decode(bytes));
+            }
+        } catch (RuntimeException e) {
+            // Truncated or corrupt message, or a key the codec rejects
+            report(new IllegalStateException("Malformed invalidation message", e));
+            return;
+        }
+        deliver(batch);
+    }
+
+    private void deliver(List<K> batch) {
+        Collection<K> view = Collections.unmodifiableList(batch);
+        for (Consumer<? super Collection<K>> subscriber : subscribers) {
+            try {
+                subscriber.accept(view);
+            } catch (RuntimeException e) {
+                report(e); // one failing subscriber must not starve the rest, or stop the thread
+            }
+        }
+    }
+
+    private static void report(Throwable e) {
+        Thread t = Thread.currentThread();
+        t.getUncaughtExceptionHandler().uncaughtException(t, e);
+    }
+
+    /** Flushes what is pending, then stops the flusher and closes the transport. */
+    @Override
+    public void close() throws IOException {
+        flusher.shutdown();
+        flush();
+        transport.close();
+    }
+}
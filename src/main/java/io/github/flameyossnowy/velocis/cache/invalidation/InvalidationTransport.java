@@ -0,0 +1,23 @@
+package io.github.flameyossnowy.velocis.cache.invalidation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Carries encoded invalidation batches between the processes sharing a
+ * {@link InvalidationBus}. Delivery may be best-effort; a lost message
+ * leaves its keys cached until they are evicted or written again.
+ */
+public interface InvalidationTransport extends Closeable {
+
+    /** Sends {@code message}, at most {@link #maxMessageSize()} bytes, to every peer. */
+    void send(byte[] message) throws IOException;
+
+    /** Starts handing messages received from peers to {@code receiver}, on a thread of the transport's own. */
+    void start(@NotNull Consumer<byte[]> receiver);
+
+    int maxMessageSize();
+}
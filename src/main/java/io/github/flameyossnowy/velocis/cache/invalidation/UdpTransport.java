@@ -0,0 +1,91 @@
+package io.github.flameyossnowy.velocis.cache.invalidation;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * UDP transport between processes on one host: each process binds its own
+ * loopback port and sends every message to the ports of its peers.
+ * Datagrams never leave the host, so loss is rare, but it is not ruled
+ * out; see {@link InvalidationTransport}.
+ * <p>
+ * The JDK has no datagram channel over Unix domain sockets, which is why
+ * this is loopback UDP rather than a socket file.
+ */
+public class UdpTransport implements InvalidationTransport {
+
+    /** Largest UDP payload over IPv4. */
+    private static final int MAX_DATAGRAM = 65_507;
+
+    private final DatagramChannel         channel;
+    private final List<InetSocketAddress> peers;
+    private volatile Thread               receiver;
+
+    /**
+     * @param port  this process's port on the loopback interface
+     * @param peers the ports the other processes bound
+     */
+    public UdpTransport(int port, int... peers) throws IOException {
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        this.channel = DatagramChannel.open().bind(new InetSocketAddress(loopback, port));
+        this.peers   = new ArrayList<>(peers.length);
+        for (int peer : peers) this.peers.add(new InetSocketAddress(loopback, peer));
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException {
+        if (message.length > MAX_DATAGRAM) throw new IllegalArgumentException("message too large: " + message.length + " bytes");
+        for (InetSocketAddress peer : peers) channel.send(ByteBuffer.wrap(message), peer);
+    }
+
+    @Override
+    public synchronized void start(@NotNull Consumer<byte[]> receiver) {
+        if (this.receiver != null) throw new IllegalStateException("already started");
+        Thread t = new Thread(() -> receive(receiver), "velocis-invalidation-udp");
+        t.setDaemon(true);
+        this.receiver = t;
+        t.start();
+    }
+
+    private void receive(Consumer<byte[]> receiver) {
+        ByteBuffer buf = ByteBuffer.allocate(MAX_DATAGRAM);
+        try {
+            while (true) {
+                buf.clear();
+                channel.receive(buf);
+                buf.flip();
+                receiver.accept(Arrays.copyOf(buf.array(), buf.limit()));
+            }
+        } catch (ClosedChannelException e) {
+            // closed: stop receiving
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public int maxMessageSize() {
+        return MAX_DATAGRAM;
+    }
+
+    /** The port actually bound, which differs from the one asked for when that was 0. */
+    public int port() throws IOException {
+        return ((InetSocketAddress) channel.getLocalAddress()).getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
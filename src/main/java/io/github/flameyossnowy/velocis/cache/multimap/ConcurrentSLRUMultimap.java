@@ -0,0 +1,23 @@
+package io.github.flameyossnowy.velocis.cache.multimap;
+
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentSLRUCache;
+
+import java.util.List;
+
+public class ConcurrentSLRUMultimap<K, V> extends ConcurrentSLRUCache<K, List<V>> implements Multimap<K, V> {
+    public ConcurrentSLRUMultimap(int maxSize, int concurrencyLevel, float loadFactor) {
+        super(maxSize, concurrencyLevel, loadFactor);
+    }
+
+    public ConcurrentSLRUMultimap(int maxSize, int concurrencyLevel) {
+        super(maxSize, concurrencyLevel);
+    }
+
+    public ConcurrentSLRUMultimap(int maxSize) {
+        super(maxSize);
+    }
+
+    public ConcurrentSLRUMultimap() {
+        super();
+    }
+}
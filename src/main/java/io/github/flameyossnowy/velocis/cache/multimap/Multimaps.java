@@ -48,6 +48,7 @@ public final class Multimaps {
             case CONCURRENT_LFU -> new ConcurrentLFUMultimap<>();
             case CONCURRENT_LRU -> new ConcurrentLRUMultimap<>();
             case CONCURRENT_LFRU -> new ConcurrentLFRUMultimap<>();
+            case CONCURRENT_SLRU -> new ConcurrentSLRUMultimap<>();
         };
     }
 
@@ -56,6 +57,7 @@ public final class Multimaps {
             case CONCURRENT_LFU -> new ConcurrentLFUMultimap<>(maxSize, concurrencyLevel, loadFactor);
             case CONCURRENT_LRU -> new ConcurrentLRUMultimap<>(maxSize, concurrencyLevel, loadFactor);
             case CONCURRENT_LFRU -> new ConcurrentLFRUMultimap<>(maxSize, concurrencyLevel, loadFactor);
+            case CONCURRENT_SLRU -> new ConcurrentSLRUMultimap<>(maxSize, concurrencyLevel, loadFactor);
             default -> throw new UnsupportedOperationException();
         };
     }
@@ -78,6 +80,7 @@ public final class Multimaps {
         LFRU,
         CONCURRENT_LFU,
         CONCURRENT_LRU,
-        CONCURRENT_LFRU
+        CONCURRENT_LFRU,
+        CONCURRENT_SLRU
     }
 }
@@ -0,0 +1,30 @@
+package io.github.flameyossnowy.velocis.cache.partitioned;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * One partition of a {@link PartitionedCache}, and the transport that
+ * reaches it. Every call returns at once with a future, so a remote
+ * implementation can keep many requests in flight on one connection
+ * instead of waiting out a round trip per call.
+ */
+public interface CacheNode<K, V> {
+
+    /** Stable name of the node; its place on the hash ring derives from it. */
+    @NotNull String id();
+
+    @NotNull CompletableFuture<V> get(@NotNull K key);
+
+    /** Values of those {@code keys} the node holds; absent keys are left out. */
+    @NotNull CompletableFuture<Map<K, V>> getAll(@NotNull Collection<? extends K> keys);
+
+    @NotNull CompletableFuture<V> put(@NotNull K key, @NotNull V value);
+
+    @NotNull CompletableFuture<Void> putAll(@NotNull Map<? extends K, ? extends V> entries);
+
+    @NotNull CompletableFuture<V> remove(@NotNull K key);
+}
@@ -0,0 +1,69 @@
+package io.github.flameyossnowy.velocis.cache.partitioned;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Immutable consistent-hash ring: every node sits at {@code virtualNodes}
+ * points, and a key belongs to the first point at or after its own hash.
+ * Adding or removing a node only moves the keys on its own arcs, about
+ * {@code 1/N} of them, and the many small arcs keep the shares even.
+ * <p>
+ * Points and key hashes are fixed functions of {@link CacheNode#id()} and
+ * {@code hashCode()}, so every process that builds a ring from the same
+ * nodes routes a key the same way, provided the key's hashCode is the
+ * same in every JVM, as it is for strings, numbers and records of them.
+ */
+final class HashRing<N extends CacheNode<?, ?>> {
+
+    private final int[]    points; // sorted
+    private final Object[] owners; // owners[i] sits at points[i]
+    private final List<N>  nodes;
+
+    HashRing(@NotNull Collection<N> nodes, int virtualNodes) {
+        this.nodes = List.copyOf(nodes);
+        int    n      = this.nodes.size() * virtualNodes;
+        long[] packed = new long[n];
+        int    p      = 0;
+        for (int i = 0; i < this.nodes.size(); i++) {
+            int id = this.nodes.get(i).id().hashCode();
+            for (int v = 0; v < virtualNodes; v++) {
+                // point in the high half, node index in the low, so one sort pairs them up
+                packed[p++] = ((long) mix(id ^ (v * 0x9E37_79B9)) << 32) | i;
+            }
+        }
+        Arrays.sort(packed);
+        this.points = new int[n];
+        this.owners = new Object[n];
+        for (int i = 0; i < n; i++) {
+            points[i] = (int) (packed[i] >> 32);
+            owners[i] = this.nodes.get((int) packed[i]);
+        }
+    }
+
+    List<N> nodes() {
+        return nodes;
+    }
+
+    @SuppressWarnings("unchecked")
+    N owner(@NotNull Object key) {
+        int h = mix(key.hashCode());
+        int i = Arrays.binarySearch(points, h);
+        if (i < 0) i = -i - 1;                 // first point above h
+        if (i == points.length) i = 0;         // past the last point: wrap round
+        return (N) owners[i];
+    }
+
+    /** murmur3's finalizer; unseeded, since every process must agree on it. */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EB_CA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2_AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
@@ -0,0 +1,66 @@
+package io.github.flameyossnowy.velocis.cache.partitioned;
+
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLRUCache;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * In-process partition: a {@link ConcurrentLRUCache} whose futures are
+ * already complete. Also the storage behind a {@link LoopbackCacheNode},
+ * or behind the server side of a remote transport.
+ */
+public class LocalCacheNode<K, V> implements CacheNode<K, V> {
+
+    private final String                   id;
+    private final ConcurrentLRUCache<K, V> storage;
+
+    public LocalCacheNode(@NotNull String id, int maxSize) {
+        this.id      = id;
+        this.storage = new ConcurrentLRUCache<>(maxSize);
+    }
+
+    @Override
+    public @NotNull String id() {
+        return id;
+    }
+
+    /** The partition's storage. */
+    public @NotNull ConcurrentLRUCache<K, V> storage() {
+        return storage;
+    }
+
+    @Override
+    public @NotNull CompletableFuture<V> get(@NotNull K key) {
+        return CompletableFuture.completedFuture(storage.get(key));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Map<K, V>> getAll(@NotNull Collection<? extends K> keys) {
+        Map<K, V> found = new HashMap<>();
+        for (K key : keys) {
+            V v = storage.get(key);
+            if (v != null) found.put(key, v);
+        }
+        return CompletableFuture.completedFuture(found);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<V> put(@NotNull K key, @NotNull V value) {
+        return CompletableFuture.completedFuture(storage.put(key, value));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        storage.putAll(entries);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public @NotNull CompletableFuture<V> remove(@NotNull K key) {
+        return CompletableFuture.completedFuture(storage.remove(key));
+    }
+}
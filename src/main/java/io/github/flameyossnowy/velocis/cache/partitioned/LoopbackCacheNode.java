@@ -0,0 +1,74 @@
+package io.github.flameyossnowy.velocis.cache.partitioned;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * Stand-in for a remote node, for tests: requests go into a queue that a
+ * thread of the node's own serves in order, as a server would serve one
+ * pipelined connection. Callers get their futures back straight away and
+ * may queue any number of requests before the first one completes.
+ * Keys and values are passed by reference, not serialized.
+ */
+public class LoopbackCacheNode<K, V> implements CacheNode<K, V>, AutoCloseable {
+
+    private final LocalCacheNode<K, V> target;
+    private final ExecutorService      server;
+
+    public LoopbackCacheNode(@NotNull LocalCacheNode<K, V> target) {
+        this.target = target;
+        this.server = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "velocis-loopback-" + target.id());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private <T> CompletableFuture<T> call(Supplier<CompletableFuture<T>> request) {
+        return CompletableFuture.supplyAsync(request, server).thenCompose(f -> f);
+    }
+
+    @Override
+    public @NotNull String id() {
+        return target.id();
+    }
+
+    @Override
+    public @NotNull CompletableFuture<V> get(@NotNull K key) {
+        return call(() -> target.get(key));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Map<K, V>> getAll(@NotNull Collection<? extends K> keys) {
+        List<K> copy = List.copyOf(keys); // the caller may reuse its collection
+        return call(() -> target.getAll(copy));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<V> put(@NotNull K key, @NotNull V value) {
+        return call(() -> target.put(key, value));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<Void> putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        Map<K, V> copy = Map.copyOf(entries);
+        return call(() -> target.putAll(copy));
+    }
+
+    @Override
+    public @NotNull CompletableFuture<V> remove(@NotNull K key) {
+        return call(() -> target.remove(key));
+    }
+
+    @Override
+    public void close() {
+        server.shutdown();
+    }
+}
@@ -0,0 +1,153 @@
+package io.github.flameyossnowy.velocis.cache.partitioned;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+/**
+ * Cache sharded across several {@link CacheNode}s by a consistent-hash ring
+ * with virtual nodes, so the total capacity is the sum of the nodes' and
+ * adding a node only moves about {@code 1/N} of the keys.
+ * <p>
+ * Single-key calls go to the key's owner. {@link #getAll} and
+ * {@link #putAll} group their keys by owner and send one request per node,
+ * all of them before waiting on any, so a multi-get costs about one round
+ * trip to the slowest owner rather than one per key. The {@code Async}
+ * variants return without waiting at all.
+ * <p>
+ * {@link #addNode} and {@link #removeNode} swap in a new ring; entries are
+ * not migrated, so keys whose owner changed miss once and are refilled
+ * from the source of truth like any other miss.
+ */
+public class PartitionedCache<K, V> {
+
+    private static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final int virtualNodes;
+    private volatile HashRing<CacheNode<K, V>> ring;
+
+    public PartitionedCache(@NotNull Collection<? extends CacheNode<K, V>> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * @param virtualNodes points per node on the ring; more points spread
+     *                     the keys more evenly, at a little memory per point
+     */
+    public PartitionedCache(@NotNull Collection<? extends CacheNode<K, V>> nodes, int virtualNodes) {
+        if (virtualNodes <= 0) throw new IllegalArgumentException("virtualNodes must be > 0");
+        this.virtualNodes = virtualNodes;
+        this.ring         = newRing(new ArrayList<>(nodes));
+    }
+
+    private HashRing<CacheNode<K, V>> newRing(List<CacheNode<K, V>> nodes) {
+        if (nodes.isEmpty()) throw new IllegalArgumentException("at least one node is required");
+        Set<String> ids = new HashSet<>();
+        for (CacheNode<K, V> node : nodes)
+            if (!ids.add(node.id())) throw new IllegalArgumentException("duplicate node id " + node.id());
+        return new HashRing<>(nodes, virtualNodes);
+    }
+
+    public synchronized void addNode(@NotNull CacheNode<K, V> node) {
+        List<CacheNode<K, V>> nodes = new ArrayList<>(ring.nodes());
+        nodes.add(node);
+        ring = newRing(nodes);
+    }
+
+    /** Returns whether a node of that id was on the ring. */
+    public synchronized boolean removeNode(@NotNull String id) {
+        List<CacheNode<K, V>> nodes = new ArrayList<>(ring.nodes());
+        if (!nodes.removeIf(n -> n.id().equals(id))) return false;
+        ring = newRing(nodes);
+        return true;
+    }
+
+    public @NotNull List<CacheNode<K, V>> nodes() {
+        return ring.nodes();
+    }
+
+    /** The node {@code key} belongs to. */
+    public @NotNull CacheNode<K, V> ownerOf(@NotNull K key) {
+        return ring.owner(key);
+    }
+
+    public @Nullable V get(@NotNull K key) {
+        return join(getAsync(key));
+    }
+
+    public @NotNull CompletableFuture<V> getAsync(@NotNull K key) {
+        return ring.owner(key).get(key);
+    }
+
+    public @Nullable V put(@NotNull K key, @NotNull V value) {
+        return join(putAsync(key, value));
+    }
+
+    public @NotNull CompletableFuture<V> putAsync(@NotNull K key, @NotNull V value) {
+        if (value == null) throw new IllegalArgumentException("Null values are not allowed");
+        return ring.owner(key).put(key, value);
+    }
+
+    public @Nullable V remove(@NotNull K key) {
+        return join(removeAsync(key));
+    }
+
+    public @NotNull CompletableFuture<V> removeAsync(@NotNull K key) {
+        return ring.owner(key).remove(key);
+    }
+
+    /** Values of those {@code keys} any node holds; absent keys are left out. */
+    public @NotNull Map<K, V> getAll(@NotNull Collection<? extends K> keys) {
+        return join(getAllAsync(keys));
+    }
+
+    public @NotNull CompletableFuture<Map<K, V>> getAllAsync(@NotNull Collection<? extends K> keys) {
+        Map<CacheNode<K, V>, List<K>> byOwner = groupByOwner(keys);
+        List<CompletableFuture<Map<K, V>>> replies = new ArrayList<>(byOwner.size());
+        for (Map.Entry<CacheNode<K, V>, List<K>> e : byOwner.entrySet())
+            replies.add(e.getKey().getAll(e.getValue()));
+
+        return CompletableFuture.allOf(replies.toArray(CompletableFuture<?>[]::new)).thenApply(done -> {
+            Map<K, V> found = new HashMap<>();
+            for (CompletableFuture<Map<K, V>> reply : replies) found.putAll(reply.join());
+            return found;
+        });
+    }
+
+    public void putAll(@NotNull Map<? extends K, ? extends V> entries) {
+        join(putAllAsync(entries));
+    }
+
+    public @NotNull CompletableFuture<Void> putAllAsync(@NotNull Map<? extends K, ? extends V> entries) {
+        HashRing<CacheNode<K, V>> r = ring;
+        Map<CacheNode<K, V>, Map<K, V>> byOwner = new HashMap<>();
+        for (Map.Entry<? extends K, ? extends V> e : entries.entrySet())
+            byOwner.computeIfAbsent(r.owner(e.getKey()), n -> new HashMap<>()).put(e.getKey(), e.getValue());
+
+        List<CompletableFuture<Void>> replies = new ArrayList<>(byOwner.size());
+        for (Map.Entry<CacheNode<K, V>, Map<K, V>> e : byOwner.entrySet())
+            replies.add(e.getKey().putAll(e.getValue()));
+        return CompletableFuture.allOf(replies.toArray(CompletableFuture<?>[]::new));
+    }
+
+    private Map<CacheNode<K, V>, List<K>> groupByOwner(Collection<? extends K> keys) {
+        HashRing<CacheNode<K, V>> r = ring; // one ring for the whole batch
+        Map<CacheNode<K, V>, List<K>> byOwner = new HashMap<>();
+        for (K key : keys) byOwner.computeIfAbsent(r.owner(key), n -> new ArrayList<>()).add(key);
+        return byOwner;
+    }
+
+    /** Waits for {@code f}, rethrowing a node's failure as it was thrown. */
+    private static <T> T join(CompletableFuture<T> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package io.github.flameyossnowy.velocis.cache.tiered;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Byte store outside the Java heap: a fixed-size ring log in a direct
+ * buffer or a memory-mapped file, indexed by an on-heap map from key to
+ * record position.
+ * <p>
+ * Every write appends a {@code [length][bytes]} record at the write head.
+ * Once the head has gone all the way round, it overwrites the oldest
+ * records and drops their keys, so the store evicts first-in, first-out
+ * and never fragments. Updates and removes only repoint or drop the index
+ * entry; the dead record is reclaimed when the head passes it.
+ * <p>
+ * Writes are serialized by a lock. Reads take none: a read copies the
+ * record out, then checks the head has not lapped it meanwhile, much like
+ * a {@link java.util.concurrent.locks.StampedLock} optimistic read.
+ * <p>
+ * Only values live off the heap; keys stay in the index. A mapped store
+ * lets the OS page cold records out to the file, but its contents are not
+ * recovered by a new store over the same file. Buffers are released by
+ * the garbage collector once the store is unreachable.
+ */
+public class OffHeapStore<K> {
+
+    private static final int HEADER = Integer.BYTES;
+
+    private final ByteBuffer buffer;
+    private final int        capacity;
+
+    private final ConcurrentHashMap<K, Long> index = new ConcurrentHashMap<>();
+
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final ArrayDeque<Written<K>> written = new ArrayDeque<>(); // records oldest first; guarded by writeLock
+    private long end;                // logical offset of the write head; guarded by writeLock
+    private volatile long reserved;  // end of the newest record, published before its bytes are written
+
+    private record Written<K>(K key, long position) {}
+
+    private OffHeapStore(ByteBuffer buffer) {
+        this.buffer   = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    /** A store of {@code capacity} bytes of direct memory. */
+    public static <K> @NotNull OffHeapStore<K> direct(int capacity) {
+        if (capacity <= HEADER) throw new IllegalArgumentException("capacity must be > " + HEADER);
+        return new OffHeapStore<>(ByteBuffer.allocateDirect(capacity));
+    }
+
+    /**
+     * A store of {@code capacity} bytes mapped from {@code file}, which is
+     * created or extended as needed. Whatever the file held before is
+     * ignored.
+     */
+    public static <K> @NotNull OffHeapStore<K> mapped(@NotNull Path file, int capacity) {
+        if (capacity <= HEADER) throw new IllegalArgumentException("capacity must be > " + HEADER);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return new OffHeapStore<>(channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Largest value this store can hold. */
+    public int maxValueSize() {
+        return capacity - HEADER;
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    /** Number of keys with a live record. */
+    public int size() {
+        return index.size();
+    }
+
+    public boolean containsKey(@NotNull K key) {
+        return index.containsKey(key);
+    }
+
+    /** A copy of {@code key}'s bytes, or null if absent or overwritten. */
+    public @Nullable byte[] get(@NotNull K key) {
+        Long p = index.get(key);
+        if (p == null) return null;
+
+        long pos = p;
+        int  off = (int) (pos % capacity);
+        int  len = buffer.getInt(off);
+        if (len < 0 || len > capacity - HEADER - off) return null; // lapped before the length was read
+        byte[] out = new byte[len];
+        buffer.get(off + HEADER, out);
+
+        VarHandle.acquireFence(); // the copy above happens before the check below
+        return pos >= reserved - capacity ? out : null;
+    }
+
+    /**
+     * Stores {@code value} under {@code key}, overwriting the oldest
+     * records if the store is full. Returns false, storing nothing, when
+     * the value is larger than {@link #maxValueSize()}.
+     */
+    public boolean put(@NotNull K key, byte[] value) {
+        int need = HEADER + value.length;
+        if (need > capacity) return false;
+
+        writeLock.lock();
+        try {
+            long pos = end;
+            int  off = (int) (pos % capacity);
+            if (off + need > capacity) {
+                // Records never wrap: skip the tail of this lap
+                pos += capacity - off;
+                off  = 0;
+            }
+            long newEnd = pos + need;
+
+            reclaim(newEnd - capacity);
+            reserved = newEnd;
+            VarHandle.storeStoreFence(); // readers must see the head move before the bytes change
+            buffer.putInt(off, value.length);
+            buffer.put(off + HEADER, value);
+            end = newEnd;
+
+            index.put(key, pos);
+            written.addLast(new Written<>(key, pos));
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Drops {@code key}; its record is reclaimed once the head passes it. */
+    public boolean remove(@NotNull K key) {
+        return index.remove(key) != null;
+    }
+
+    public void clear() {
+        writeLock.lock();
+        try {
+            index.clear();
+            written.clear();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /** Unindexes every record that starts before {@code horizon}. Caller must hold writeLock. */
+    private void reclaim(long horizon) {
+        Written<K> w;
+        while ((w = written.peekFirst()) != null && w.position() < horizon) {
+            written.pollFirst();
+            index.remove(w.key(), w.position()); // unless the key was rewritten since
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.flameyossnowy.velocis.cache.tiered;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLRUCache;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Two-level cache: a small on-heap {@link ConcurrentLRUCache} (L1) in
+ * front of a large {@link OffHeapStore} (L2), so the heap holds the hot
+ * entries and a much larger warm set costs only direct memory or file
+ * pages.
+ * <p>
+ * An entry lives in one tier at a time. When L1 evicts an entry, it is
+ * demoted: encoded with the {@link Codec} and written to L2 on a
+ * background executor, so the evicting put never pays for encoding or the
+ * L2 write. Until that write lands, the entry waits in a small on-heap
+ * map and stays readable. A read that misses L1 and finds the entry there
+ * or in L2 promotes it back into L1.
+ * <p>
+ * L1 hits take no lock beyond L1's own. Misses, writes and removes lock a
+ * stripe chosen by key, which keeps a promotion, a demotion and a put of
+ * the same key from interleaving; different keys rarely share a stripe.
+ */
+public class TieredCache<K, V> implements AutoCloseable {
+
+    private static final int STRIPES = 64;
+
+    private final ConcurrentLRUCache<K, V> l1;
+    private final OffHeapStore<K>          l2;
+    private final Codec<V>                 codec;
+
+    private final Executor                 demoter;
+    private final @Nullable ExecutorService ownDemoter; // shut down by close()
+    private final ConcurrentHashMap<K, V>  demoting = new ConcurrentHashMap<>();
+
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+
+    /** Demotes on a daemon thread of its own, stopped by {@link #close()}. */
+    public TieredCache(int l1MaxSize, @NotNull OffHeapStore<K> l2, @NotNull Codec<V> codec) {
+        this(l1MaxSize, l2, codec, Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "velocis-tiered-demoter");
+            t.setDaemon(true);
+            return t;
+        }), true);
+    }
+
+    /**
+     * @param demoter runs the L2 writes; it must not run them on the
+     *                calling thread, which holds L1's write lock at the time
+     */
+    public TieredCache(int l1MaxSize, @NotNull OffHeapStore<K> l2, @NotNull Codec<V> codec, @NotNull Executor demoter) {
+        this(l1MaxSize, l2, codec, demoter, false);
+    }
+
+    private TieredCache(int l1MaxSize, OffHeapStore<K> l2, Codec<V> codec, Executor demoter, boolean ownsDemoter) {
+        if (l1MaxSize <= 0) throw new IllegalArgumentException("l1MaxSize must be > 0");
+        this.l1         = new ConcurrentLRUCache<>(l1MaxSize);
+        this.l2         = l2;
+        this.codec      = codec;
+        this.demoter    = demoter;
+        this.ownDemoter = ownsDemoter ? (ExecutorService) demoter : null;
+        for (int i = 0; i < STRIPES; i++) locks[i] = new ReentrantLock();
+        l1.setEvictionListener(this::demote);
+    }
+
+    public @Nullable V get(@NotNull K key) {
+        V v = l1.get(key);
+        if (v != null) return v;
+
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            v = l1.get(key);
+            if (v != null) return v;
+            v = demoting.remove(key);
+            if (v == null) {
+                byte[] bytes = l2.get(key);
+                if (bytes == null) return null;
+                l2.remove(key);
+                v = codec.decode(bytes);
+            }
+            l1.put(key, v);
+            return v;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Puts into L1, replacing any copy in a lower tier; returns the previous value. */
+    public @Nullable V put(@NotNull K key, @NotNull V value) {
+        if (value == null) throw new IllegalArgumentException("Null values are not allowed");
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            V pending = demoting.remove(key);
+            V old     = l1.put(key, value);
+
+            // L1 may have evicted the old value after the line above
+            // looked, or evicted the new one already; only the first is stale
+            V late = demoting.get(key);
+            if (late != null && late != value) {
+                demoting.remove(key, late);
+                if (old == null) old = late;
+            }
+            if (old == null) old = pending;
+            if (old == null) old = l2Value(key);
+            l2.remove(key);
+            return old;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public @Nullable V remove(@NotNull K key) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            // Once out of L1 the key cannot be demoted, so the lower tiers
+            // hold the last word
+            V old     = l1.remove(key);
+            V pending = demoting.remove(key);
+            if (old == null) old = pending;
+            if (old == null) old = l2Value(key);
+            l2.remove(key);
+            return old;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Whether any tier holds {@code key}; does not promote it. */
+    public boolean containsKey(@NotNull K key) {
+        return l1.containsKey(key) || demoting.containsKey(key) || l2.containsKey(key);
+    }
+
+    /** Entries across all tiers; approximate while demotions are in flight. */
+    public int size() {
+        return l1.size() + demoting.size() + l2.size();
+    }
+
+    /** Entries held on the heap in L1. */
+    public int hotSize() {
+        return l1.size();
+    }
+
+    public void clear() {
+        for (ReentrantLock lock : locks) lock.lock();
+        try {
+            l1.clear();
+            demoting.clear();
+            l2.clear();
+        } finally {
+            for (ReentrantLock lock : locks) lock.unlock();
+        }
+    }
+
+    /** Stops the demotion thread, if this cache started one. Pending demotions are dropped. */
+    @Override
+    public void close() {
+        if (ownDemoter != null) ownDemoter.shutdownNow();
+    }
+
+    /** L1 eviction listener; runs under L1's write lock, so it only queues the write. */
+    private void demote(K key, V value) {
+        demoting.put(key, value);
+        try {
+            demoter.execute(() -> writeBack(key, value));
+        } catch (RejectedExecutionException e) {
+            demoting.remove(key, value); // closed; the entry is simply dropped
+        }
+    }
+
+    private void writeBack(K key, V value) {
+        ReentrantLock lock = lockFor(key);
+        lock.lock();
+        try {
+            // Skip if the entry was promoted, replaced or removed meanwhile
+            if (demoting.remove(key, value)) l2.put(key, codec.encode(value));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private @Nullable V l2Value(K key) {
+        byte[] bytes = l2.get(key);
+        return bytes == null ? null : codec.decode(bytes);
+    }
+
+    private ReentrantLock lockFor(Object key) {
+        int h = key.hashCode();
+        return locks[(h ^ (h >>> 16)) & (STRIPES - 1)];
+    }
+}
@@ -1,7 +1,15 @@
 package io.github.flameyossnowy.velocis.tables;
 
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
+import io.github.flameyossnowy.velocis.cache.SnapshotOutput;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
@@ -23,6 +31,7 @@ public class ConcurrentHashTable<R, C, V> implements Table<R, C, V> {
     private final LongAdder    size         = new LongAdder();
     private final AtomicBoolean resizing    = new AtomicBoolean(false);
     private final float         loadFactor;
+    private final int           seed        = Hashing.newSeed();
 
     private volatile EntrySet entrySetView;
     private volatile KeySet   keySetView;
@@ -78,17 +87,12 @@ public class ConcurrentHashTable<R, C, V> implements Table<R, C, V> {
         this.tableRef   = new AtomicReference<>(new AtomicReferenceArray<>(nextPowerOfTwo(initialCapacity)));
     }
 
-    private static int spread(int h) {
-        h ^= (h >>> 16);
-        return h;
-    }
-
     private static int bucketIndex(int hash, int len) {
         return hash & (len - 1);
     }
 
     private int hash(R row, C column) {
-        return spread(row.hashCode() ^ column.hashCode());
+        return Hashing.mix(row.hashCode(), column.hashCode(), seed);
     }
 
     @Override
@@ -342,6 +346,32 @@ public class ConcurrentHashTable<R, C, V> implements Table<R, C, V> {
         return new RowMap(row);
     }
 
+    /**
+     * Writes every cell, each part encoded by its codec, for
+     * {@link #readFrom} or any other table's {@code readFrom}. Writers are
+     * not blocked: like iteration, the snapshot may or may not include
+     * cells changed while it runs. The stream is flushed but not closed.
+     */
+    public void writeTo(@NotNull OutputStream out, @NotNull Codec<? super R> rowCodec,
+                        @NotNull Codec<? super C> columnCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        TableSnapshots.write(new SnapshotOutput(out), loadFactor, this, rowCodec, columnCodec, valueCodec);
+    }
+
+    public void writeTo(@NotNull WritableByteChannel out, @NotNull Codec<? super R> rowCodec,
+                        @NotNull Codec<? super C> columnCodec, @NotNull Codec<? super V> valueCodec) throws IOException {
+        TableSnapshots.write(new SnapshotOutput(out), loadFactor, this, rowCodec, columnCodec, valueCodec);
+    }
+
+    public static <R, C, V> @NotNull ConcurrentHashTable<R, C, V> readFrom(@NotNull InputStream in, @NotNull Codec<R> rowCodec,
+                                                                           @NotNull Codec<C> columnCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return TableSnapshots.read(new SnapshotInput(in), ConcurrentHashTable::new, rowCodec, columnCodec, valueCodec);
+    }
+
+    public static <R, C, V> @NotNull ConcurrentHashTable<R, C, V> readFrom(@NotNull ReadableByteChannel in, @NotNull Codec<R> rowCodec,
+                                                                           @NotNull Codec<C> columnCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return TableSnapshots.read(new SnapshotInput(in), ConcurrentHashTable::new, rowCodec, columnCodec, valueCodec);
+    }
+
     @Override
     public Set<Table.Entry<R, C, V>> entrySet() {
         if (entrySetView == null) entrySetView = new EntrySet();
@@ -1,14 +1,26 @@
 package io.github.flameyossnowy.velocis.tables;
 
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
+import io.github.flameyossnowy.velocis.cache.SnapshotOutput;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Array;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
 
 /**
  * A hash table implementation of the Table interface.
  * <p>
  * The table uses a hash table to store the entries.
+ * <p>
+ * Row and column hashes are mixed with a random per-table seed, and a bin
+ * that still collects eight entries is indexed by a sorted tree, so lookups
+ * in it stay logarithmic even when keys share their hashCodes.
  * @author FlameyosFlow
  * @param <R> The row, or known as the first key.
  * @param <C> The column, or known as the second key.
@@ -26,6 +38,9 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
     private Values values;
 
     private Node<R, C, V>[] table;
+    private TreeBin<R, C, V>[] trees; // parallel to table; null until a bin overflows
+
+    private final int seed = Hashing.newSeed();
 
     private static final int INITIAL_CAPACITY = 16;
     private static final float LOAD_FACTOR = 0.75f;
@@ -52,7 +67,7 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
      */
     public HashTable(final int size, final float loadFactor) {
         this.loadFactor = loadFactor;
-        table = new Node[size];
+        table = newNodes(size);
     }
 
     // ---------------
@@ -60,10 +75,25 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
     // ---------------
 
     private int hash(final R row, final C column) {
-        int rowCode = row.hashCode();
-        int columnCode = column.hashCode();
-        int length = table.length;
-        return Math.abs((rowCode ^ columnCode) % length);
+        return Hashing.mix(row.hashCode(), column.hashCode(), seed) & 0x7FFFFFFF;
+    }
+
+    private int indexFor(final int hash) {
+        return hash % table.length;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <R, C, V> Node<R, C, V>[] newNodes(final int length) {
+        return (Node<R, C, V>[]) new Node[length];
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static <R, C, V> TreeBin<R, C, V>[] newBins(final int length) {
+        return (TreeBin<R, C, V>[]) new TreeBin[length];
+    }
+
+    private TreeBin<R, C, V> binAt(final int index) {
+        return trees == null ? null : trees[index];
     }
 
     private void resize() {
@@ -71,34 +101,91 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
         int newCapacity = table.length * 2;
 
         // Create the new table with the updated capacity
-        Node<R, C, V>[] newTable = new Node[newCapacity];
+        Node<R, C, V>[] newTable = newNodes(newCapacity);
         Table.Entry<R, C, V>[] oldTable = this.table; // Reference to the old table
         this.table = newTable; // Update the table reference to the new one
+        this.trees = null;
 
-        // Rehash all existing entries into the new table
+        // Rehash all existing entries into the new table, appending at each
+        // chain's remembered tail so a crowded bin is not walked per entry
+        Node<R, C, V>[] tails = newNodes(newCapacity);
+        int[] counts = new int[newCapacity];
         for (final Entry<R, C, V> rcvEntry : oldTable) {
             Table.Entry<R, C, V> current = rcvEntry;
             while (current != null) {
-                // Recalculate the hash using the new table capacity
-                int newHash = hash(current.row(), current.column());
-
-                // Handle collisions: if the bucket is already occupied, chain the new node
-                if (newTable[newHash] == null) {
-                    // No collision, simply place the node
-                    newTable[newHash] = new Node<>(current.row(), current.column(), current.value());
-                } else {
-                    // Collision handling: traverse to the end of the chain and append the new node
-                    Node<R, C, V> node = newTable[newHash];
-                    while (node.next() != null) {
-                        node = node.next();
-                    }
-                    node.next = new Node<>(current.row(), current.column(), current.value());
-                }
+                int index = indexFor(hash(current.row(), current.column()));
+                Node<R, C, V> node = new Node<>(current.row(), current.column(), current.value());
+                if (tails[index] == null) newTable[index] = node;
+                else tails[index].next = node;
+                tails[index] = node;
+                counts[index]++;
 
                 // Move to the next node in the current chain in the old table
                 current = current.next();
             }
         }
+
+        for (int i = 0; i < newCapacity; i++) {
+            if (counts[i] >= TreeBin.TREEIFY_THRESHOLD) treeify(i);
+        }
+    }
+
+    /** Rebuilds bin {@code index} out of tree nodes and indexes them. */
+    private void treeify(final int index) {
+        if (trees == null) trees = newBins(table.length);
+        TreeBin<R, C, V> bin = new TreeBin<>();
+        TreeBin.TreeNode<R, C, V> head = null;
+        TreeBin.TreeNode<R, C, V> tail = null;
+        for (Node<R, C, V> current = table[index]; current != null; current = current.next) {
+            TreeBin.TreeNode<R, C, V> node = new TreeBin.TreeNode<>(hash(current.row, current.column), current.row, current.column, current.value);
+            if (tail == null) head = node;
+            else {
+                tail.next = node;
+                node.prev = tail;
+            }
+            tail = node;
+            bin.add(node);
+        }
+        table[index] = head;
+        trees[index] = bin;
+    }
+
+    private V putTreeValue(final TreeBin<R, C, V> bin, final int index, final int hash, final Table.Entry<R, C, V> node, final boolean ifAbsent) {
+        TreeBin.TreeNode<R, C, V> current = bin.find(hash, node.row(), node.column());
+        if (current != null) {
+            if (ifAbsent) return current.value();
+            current.setValue(node.value());
+            return node.value();
+        }
+
+        // Order within a bin does not matter; the head is the O(1) end
+        TreeBin.TreeNode<R, C, V> newNode = new TreeBin.TreeNode<>(hash, node.row(), node.column(), node.value());
+        TreeBin.TreeNode<R, C, V> head = (TreeBin.TreeNode<R, C, V>) table[index];
+        newNode.next = head;
+        if (head != null) head.prev = newNode;
+        table[index] = newNode;
+        bin.add(newNode);
+
+        size++;
+        modCount++;
+        return null;
+    }
+
+    private V removeTreeValue(final TreeBin<R, C, V> bin, final int index, final int hash, final R row, final C column) {
+        TreeBin.TreeNode<R, C, V> current = bin.find(hash, row, column);
+        if (current == null) return null;
+
+        TreeBin.TreeNode<R, C, V> next = (TreeBin.TreeNode<R, C, V>) current.next;
+        if (current.prev == null) table[index] = next;
+        else current.prev.next = next;
+        if (next != null) next.prev = current.prev;
+        bin.remove(current);
+        // The chain stays valid on its own; drop the index once it no longer pays
+        if (bin.size() < TreeBin.UNTREEIFY_THRESHOLD) trees[index] = null;
+
+        size--;
+        modCount++;
+        return current.value();
     }
 
 
@@ -108,9 +195,14 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
         }
 
         int hash = this.hash(node.row(), node.column());
+        int index = indexFor(hash);
+
+        TreeBin<R, C, V> bin = binAt(index);
+        if (bin != null) return putTreeValue(bin, index, hash, node, ifAbsent);
 
-        Node<R, C, V> current = table[hash];
+        Node<R, C, V> current = table[index];
         Node<R, C, V> previous = null;
+        int binCount = 0;
 
         while (current != null) {
             if (Objects.equals(current.row(), node.row()) && Objects.equals(current.column(), node.column())) {
@@ -120,17 +212,19 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
             }
             previous = current;
             current = current.next();
+            binCount++;
         }
 
         // No existing entry found, append the new node
         Node<R, C, V> newNode = new Node<>(node.row(), node.column(), node.value());
         if (previous == null) {
             // Insert at the head
-            table[hash] = newNode;
+            table[index] = newNode;
         } else {
             // Link to the previous node
             previous.next = newNode;
         }
+        if (binCount + 1 >= TreeBin.TREEIFY_THRESHOLD) treeify(index);
 
         size++;
         modCount++;
@@ -199,6 +293,7 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
     @Override
     public void clear() {
         Arrays.fill(table, null);
+        trees = null;
         size = 0;
         modCount++;
     }
@@ -211,8 +306,15 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
     @Override
     public V get(final R row, final C column) {
         int hash = hash(row, column);
-        Table.Entry<R, C, V> current = table[hash];
+        int index = indexFor(hash);
+
+        TreeBin<R, C, V> bin = binAt(index);
+        if (bin != null) {
+            Table.Entry<R, C, V> node = bin.find(hash, row, column);
+            return node == null ? null : node.value();
+        }
 
+        Table.Entry<R, C, V> current = table[index];
         while (current != null) {
             if (Objects.equals(current.row(), row) && Objects.equals(current.column(), column)) {
                 return current.value();
@@ -235,13 +337,18 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
     @Override
     public V remove(final R row, final C column) {
         int hash = hash(row, column);
-        Node<R, C, V> current = table[hash];
+        int index = indexFor(hash);
+
+        TreeBin<R, C, V> bin = binAt(index);
+        if (bin != null) return removeTreeValue(bin, index, hash, row, column);
+
+        Node<R, C, V> current = table[index];
         Node<R, C, V> prev = null;
 
         while (current != null) {
             if (Objects.equals(current.row(), row) && Objects.equals(current.column(), column)) {
                 if (prev == null) {
-                    table[hash] = current.next();
+                    table[index] = current.next();
                 } else {
                     prev.next = current.next();
                 }
@@ -290,6 +397,41 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
         return new RowMap(row);
     }
 
+    /**
+     * Writes every cell in iteration order, each part encoded by its codec,
+     * for {@link #readFrom} or any other table's {@code readFrom}. The
+     * stream is flushed but not closed.
+     * @param out The stream to write to.
+     * @param rowCodec Encodes the rows.
+     * @param columnCodec Encodes the columns.
+     * @param valueCodec Encodes the values.
+     */
+    public void writeTo(final @NotNull OutputStream out, final @NotNull Codec<? super R> rowCodec,
+                        final @NotNull Codec<? super C> columnCodec, final @NotNull Codec<? super V> valueCodec) throws IOException {
+        TableSnapshots.write(new SnapshotOutput(out), loadFactor, this, rowCodec, columnCodec, valueCodec);
+    }
+
+    public void writeTo(final @NotNull WritableByteChannel out, final @NotNull Codec<? super R> rowCodec,
+                        final @NotNull Codec<? super C> columnCodec, final @NotNull Codec<? super V> valueCodec) throws IOException {
+        TableSnapshots.write(new SnapshotOutput(out), loadFactor, this, rowCodec, columnCodec, valueCodec);
+    }
+
+    /**
+     * Reads a table snapshot into a new hash table, sized up front for all
+     * of its cells.
+     * @param in The stream to read from.
+     * @return The table read.
+     */
+    public static <R, C, V> @NotNull HashTable<R, C, V> readFrom(final @NotNull InputStream in, final @NotNull Codec<R> rowCodec,
+                                                                 final @NotNull Codec<C> columnCodec, final @NotNull Codec<V> valueCodec) throws IOException {
+        return TableSnapshots.read(new SnapshotInput(in), HashTable::new, rowCodec, columnCodec, valueCodec);
+    }
+
+    public static <R, C, V> @NotNull HashTable<R, C, V> readFrom(final @NotNull ReadableByteChannel in, final @NotNull Codec<R> rowCodec,
+                                                                 final @NotNull Codec<C> columnCodec, final @NotNull Codec<V> valueCodec) throws IOException {
+        return TableSnapshots.read(new SnapshotInput(in), HashTable::new, rowCodec, columnCodec, valueCodec);
+    }
+
     public class KeySet implements Set<KeyEntry<R, C>> {
         @Override
         public int size() {
@@ -493,6 +635,7 @@ public class HashTable<R, C, V> implements Table<R, C, V> {
         @Override
         public void clear() {
             Arrays.fill(HashTable.this.table, null);
+            HashTable.this.trees = null;
             HashTable.this.size = 0;
             HashTable.this.modCount++;
         }
@@ -0,0 +1,34 @@
+package io.github.flameyossnowy.velocis.tables;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Seeded row/column hashing shared by the tables.
+ * <p>
+ * Every table draws its own random seed, so whoever chooses the keys
+ * cannot precompute a set that lands in one bin.
+ */
+final class Hashing {
+
+    private Hashing() {}
+
+    static int newSeed() {
+        return ThreadLocalRandom.current().nextInt();
+    }
+
+    /**
+     * murmur3's finalizer over the combined key hashes xor {@code seed}.
+     * The rows and columns are combined as {@code 31 * row + column} rather
+     * than xor, so {@code (a, b)} and {@code (b, a)} do not collide, nor
+     * does every {@code (a, a)}.
+     */
+    static int mix(int rowHash, int columnHash, int seed) {
+        int h = (31 * rowHash + columnHash) ^ seed;
+        h ^= h >>> 16;
+        h *= 0x85EB_CA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2_AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
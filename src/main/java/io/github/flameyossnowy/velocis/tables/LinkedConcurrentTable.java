@@ -120,6 +120,7 @@ public class LinkedConcurrentTable<R, C, V> implements Table<R, C, V> {
 
     private final AtomicInteger size          = new AtomicInteger(0);
     private final float         loadFactor;
+    private final int           seed          = Hashing.newSeed();
 
     private final Node<R, C, V> listHead;
     private final Node<R, C, V> listTail;
@@ -151,18 +152,14 @@ public class LinkedConcurrentTable<R, C, V> implements Table<R, C, V> {
         this.entries = new LinkedEntrySet();
     }
 
-    private static int spread(int h) {
-        h ^= (h >>> 16);
-        return h & 0x7FFF_FFFF; // keep positive; 0 reserved for "empty"
-    }
-
     private int hash(R row, C column) {
-        int h = spread(row.hashCode() ^ column.hashCode());
+        int h = Hashing.mix(row.hashCode(), column.hashCode(), seed) & 0x7FFF_FFFF; // keep positive
         return h == 0 ? 1 : h; // 0 is the empty-slot sentinel
     }
 
     private int stripeIndex(int hash) {
-        return (hash >>> (32 - STRIPE_SHIFT)) & STRIPE_MASK;
+        // Top bits of the 31-bit hash; the sign bit is always clear
+        return (hash >>> (31 - STRIPE_SHIFT)) & STRIPE_MASK;
     }
 
     @Override
@@ -1,7 +1,12 @@
 package io.github.flameyossnowy.velocis.tables;
 
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
 import org.jetbrains.annotations.NotNull;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
 import java.util.*;
 
 @SuppressWarnings({"unused"})
@@ -22,6 +27,17 @@ public class LinkedHashTable<R, C, V> extends HashTable<R, C, V> {
         super(size, loadFactor);
     }
 
+    /** Reads a table snapshot into a new linked table, keeping the order the cells were written in. */
+    public static <R, C, V> @NotNull LinkedHashTable<R, C, V> readFrom(@NotNull InputStream in, @NotNull Codec<R> rowCodec,
+                                                                       @NotNull Codec<C> columnCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return TableSnapshots.read(new SnapshotInput(in), LinkedHashTable::new, rowCodec, columnCodec, valueCodec);
+    }
+
+    public static <R, C, V> @NotNull LinkedHashTable<R, C, V> readFrom(@NotNull ReadableByteChannel in, @NotNull Codec<R> rowCodec,
+                                                                       @NotNull Codec<C> columnCodec, @NotNull Codec<V> valueCodec) throws IOException {
+        return TableSnapshots.read(new SnapshotInput(in), LinkedHashTable::new, rowCodec, columnCodec, valueCodec);
+    }
+
     @Override
     public V put(R row, C column, V value) {
         V oldValue = super.put(row, column, value);
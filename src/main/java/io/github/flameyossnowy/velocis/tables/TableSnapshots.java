@@ -0,0 +1,66 @@
+package io.github.flameyossnowy.velocis.tables;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.SnapshotInput;
+import io.github.flameyossnowy.velocis.cache.SnapshotOutput;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+
+/**
+ * Binary snapshot format shared by the tables.
+ * <p>
+ * The tables chain nodes rather than keep parallel arrays, so a snapshot
+ * is the load factor, the size as a presizing hint, and then the cells in
+ * iteration order, each flagged by a {@code true} byte, up to a
+ * {@code false} one. The flag lets a concurrent table be written while it
+ * changes, when the size read up front may be stale.
+ * <p>
+ * The format is the same for every table, so a snapshot of one kind of
+ * table loads into any other.
+ */
+final class TableSnapshots {
+
+    private static final String KIND = "Table";
+
+    /** Largest table a snapshot's size hint presizes for; bigger ones grow as they load. */
+    private static final int MAX_PRESIZE = 1 << 26;
+
+    private TableSnapshots() {}
+
+    /** Something that makes an empty table of the given capacity and load factor. */
+    interface Factory<T> {
+        T create(int capacity, float loadFactor);
+    }
+
+    static <R, C, V> void write(SnapshotOutput out, float loadFactor, Table<R, C, V> table,
+                                Codec<? super R> rowCodec, Codec<? super C> columnCodec, Codec<? super V> valueCodec) throws IOException {
+        out.writeHeader(KIND);
+        out.writeFloat(loadFactor);
+        out.writeInt(table.size());
+        for (Table.Entry<R, C, V> e : table.entrySet()) {
+            out.writeBoolean(true);
+            rowCodec.write(e.row(), out);
+            columnCodec.write(e.column(), out);
+            valueCodec.write(e.value(), out);
+        }
+        out.writeBoolean(false);
+        out.flush();
+    }
+
+    static <R, C, V, T extends Table<R, C, V>> T read(SnapshotInput in, Factory<T> factory,
+                                                      Codec<R> rowCodec, Codec<C> columnCodec, Codec<V> valueCodec) throws IOException {
+        in.readHeader(KIND);
+        float loadFactor = in.readFloat();
+        if (!(loadFactor > 0f)) throw new StreamCorruptedException("bad load factor " + loadFactor);
+        int size = in.readCount(Integer.MAX_VALUE);
+
+        T table = factory.create((int) Math.min(MAX_PRESIZE, size / loadFactor + 1), loadFactor);
+        while (in.readBoolean()) {
+            R row    = rowCodec.read(in);
+            C column = columnCodec.read(in);
+            table.put(row, column, valueCodec.read(in));
+        }
+        return table;
+    }
+}
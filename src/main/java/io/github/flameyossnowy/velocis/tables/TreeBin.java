@@ -0,0 +1,91 @@
+package io.github.flameyossnowy.velocis.tables;
+
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Sorted index over one overlong {@link HashTable} bin.
+ * <p>
+ * A bin that reaches {@link #TREEIFY_THRESHOLD} entries is rebuilt out of
+ * {@link TreeNode}s, which are still linked through {@code next} so the
+ * table's iterators walk them as before, and are also indexed here by
+ * hash, then row and column where those are {@link Comparable}. Lookups
+ * in the bin then take logarithmic time however many keys share it.
+ * Entries that compare equal without being equal, such as keys of a class
+ * that is not {@code Comparable} with equal hashes, share one tree key and
+ * are chained through {@link TreeNode#tieNext}.
+ */
+final class TreeBin<R, C, V> {
+
+    static final int TREEIFY_THRESHOLD   = 8;
+    static final int UNTREEIFY_THRESHOLD = 6;
+
+    private final TreeMap<TreeNode<R, C, V>, TreeNode<R, C, V>> index = new TreeMap<>(TreeBin::compare);
+    private int size;
+
+    static final class TreeNode<R, C, V> extends Table.Node<R, C, V> {
+        final int hash;
+
+        TreeNode<R, C, V> prev;    // previous node of the bin chain
+        TreeNode<R, C, V> tieNext; // next node under the same tree key
+
+        TreeNode(int hash, R row, C column, V value) {
+            super(row, column, value);
+            this.hash = hash;
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    TreeNode<R, C, V> find(int hash, R row, C column) {
+        for (TreeNode<R, C, V> n = index.get(new TreeNode<>(hash, row, column, null)); n != null; n = n.tieNext) {
+            if (Objects.equals(n.row, row) && Objects.equals(n.column, column)) return n;
+        }
+        return null;
+    }
+
+    void add(TreeNode<R, C, V> node) {
+        TreeNode<R, C, V> tie = index.putIfAbsent(node, node);
+        if (tie != null) {
+            node.tieNext = tie.tieNext;
+            tie.tieNext  = node;
+        }
+        size++;
+    }
+
+    void remove(TreeNode<R, C, V> node) {
+        TreeNode<R, C, V> first = index.get(node);
+        if (first == node) {
+            index.remove(node);
+            if (node.tieNext != null) index.put(node.tieNext, node.tieNext);
+        } else {
+            TreeNode<R, C, V> n = first;
+            while (n.tieNext != node) n = n.tieNext;
+            n.tieNext = node.tieNext;
+        }
+        node.tieNext = null;
+        size--;
+    }
+
+    /**
+     * Orders by hash, then row, then column. Keys of different classes
+     * order by class name, and a row or column that is not
+     * {@code Comparable} compares equal to any other of its class.
+     */
+    private static int compare(TreeNode<?, ?, ?> a, TreeNode<?, ?, ?> b) {
+        int c = Integer.compare(a.hash, b.hash);
+        if (c != 0) return c;
+        c = compareKeys(a.row, b.row);
+        return c != 0 ? c : compareKeys(a.column, b.column);
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareKeys(Object a, Object b) {
+        Class<?> ca = a.getClass();
+        Class<?> cb = b.getClass();
+        if (ca != cb) return ca.getName().compareTo(cb.getName());
+        return a instanceof Comparable ? ((Comparable) a).compareTo(b) : 0;
+    }
+}
@@ -1,7 +1,11 @@
 module io.github.flameyossnowy.velocis {
+    requires java.management;
     requires org.jetbrains.annotations;
     exports io.github.flameyossnowy.velocis.cache;
     exports io.github.flameyossnowy.velocis.cache.algorithms;
+    exports io.github.flameyossnowy.velocis.cache.invalidation;
     exports io.github.flameyossnowy.velocis.cache.multimap;
+    exports io.github.flameyossnowy.velocis.cache.partitioned;
+    exports io.github.flameyossnowy.velocis.cache.tiered;
     exports io.github.flameyossnowy.velocis.tables;
 }
\ No newline at end of file
@@ -0,0 +1,46 @@
+package io.github.flameyossnowy.velocis.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CodecTest {
+
+    @Test
+    void streamingFormRoundTrips() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        byte[] big = new byte[300_000];
+        for (int i = 0; i < big.length; i++) big[i] = (byte) (i * 31);
+        Codec.STRING.write("héllo", out);
+        Codec.BYTES.write(big, out);
+        Codec.INTEGER.write(-5, out);
+        Codec.LONG.write(Long.MIN_VALUE, out);
+        Codec.<Integer>serializable().write(42, out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        assertEquals("héllo", Codec.STRING.read(in));
+        assertArrayEquals(big, Codec.BYTES.read(in));
+        assertEquals(-5, Codec.INTEGER.read(in));
+        assertEquals(Long.MIN_VALUE, Codec.LONG.read(in));
+        assertEquals(42, Codec.<Integer>serializable().read(in));
+    }
+
+    /** A corrupt length near 2 GB must run into the end of the input, not allocate the whole array first. */
+    @Test
+    void corruptLengthFailsWithoutAHugeAllocation() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(Integer.MAX_VALUE - 8);
+        out.write(new byte[100]);
+        byte[] corrupt = bytes.toByteArray();
+
+        assertThrows(EOFException.class, () -> Codec.STRING.read(new DataInputStream(new ByteArrayInputStream(corrupt))));
+        assertThrows(EOFException.class, () -> Codec.BYTES.read(new DataInputStream(new ByteArrayInputStream(corrupt))));
+
+        byte[] negative = {(byte) 0xFF, 0, 0, 0};
+        assertThrows(StreamCorruptedException.class, () -> Codec.STRING.read(new DataInputStream(new ByteArrayInputStream(negative))));
+    }
+}
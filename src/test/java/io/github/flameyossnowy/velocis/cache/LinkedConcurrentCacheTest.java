@@ -0,0 +1,131 @@
+package io.github.flameyossnowy.velocis.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LinkedConcurrentCacheTest {
+
+    @Test
+    void insertionOrderEvictsOldest() {
+        LinkedConcurrentCache<Integer, String> cache = new LinkedConcurrentCache<>(3, false);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        cache.get(1);
+        cache.put(4, "d");
+        assertEquals(List.of(2, 3, 4), new ArrayList<>(cache.keySet()));
+    }
+
+    @Test
+    void accessOrderEvictsLeastRecentlyUsed() {
+        LinkedConcurrentCache<Integer, String> cache = new LinkedConcurrentCache<>(3, true);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        assertEquals("a", cache.get(1));
+        assertEquals("b", cache.put(2, "B"));
+        // The buffered hits are replayed before the eviction, so 3 is the coldest
+        cache.put(4, "d");
+        assertEquals(List.of(4, 1, 2), new ArrayList<>(cache.keySet()));
+        assertEquals("B", cache.get(2));
+        assertEquals(3, cache.size());
+    }
+
+    /**
+     * Bounded access-ordered mode under contention: afterwards the list and
+     * the index must agree, the bound must hold, and touching every key
+     * again must not hang on a node lost from the list.
+     */
+    @Test
+    void concurrentAccessOrderKeepsListAndIndexInStep() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            for (int round = 0; round < 10; round++) {
+                LinkedConcurrentCache<Integer, Integer> cache = new LinkedConcurrentCache<>(16, true);
+                run(8, 50_000, (random, op) -> {
+                    int key = random.nextInt(64);
+                    int r   = random.nextInt(100);
+                    if (r < 60)      cache.get(key);
+                    else if (r < 95) cache.put(key, op);
+                    else             cache.remove(key);
+                });
+
+                Set<Integer> listed = new HashSet<>();
+                for (Integer key : cache.keySet()) {
+                    assertTrue(listed.add(key), "key " + key + " listed twice");
+                    assertTrue(cache.containsKey(key), "listed key " + key + " is not mapped");
+                }
+                for (int key = 0; key < 64; key++)
+                    assertEquals(cache.containsKey(key), listed.contains(key), "mapped key " + key + " is not listed");
+                assertEquals(listed.size(), cache.size());
+                assertTrue(cache.size() <= 16, "size " + cache.size());
+
+                for (int key = 0; key < 64; key++) {
+                    cache.get(key);
+                    cache.put(key, key);
+                }
+                assertEquals(16, cache.size());
+            }
+        }, "an operation hung");
+    }
+
+    /**
+     * Every value put must come back exactly once: as the old value of a
+     * later put, from a remove, or in the final contents. An update that
+     * lands on a node a concurrent remove has already unmapped would vanish.
+     */
+    @Test
+    void updatesAreNotLostToConcurrentRemoves() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            LinkedConcurrentCache<Integer, Integer> cache = new LinkedConcurrentCache<>(1 << 20, true);
+            ConcurrentHashMap<Integer, AtomicInteger> seen = new ConcurrentHashMap<>();
+            AtomicInteger nextValue = new AtomicInteger();
+
+            run(6, 50_000, (random, op) -> {
+                int key = random.nextInt(4);
+                Integer old;
+                if (random.nextBoolean()) {
+                    old = cache.put(key, nextValue.incrementAndGet());
+                } else {
+                    old = cache.remove(key);
+                }
+                if (old != null) seen.computeIfAbsent(old, v -> new AtomicInteger()).incrementAndGet();
+            });
+            for (Integer v : cache.values()) seen.computeIfAbsent(v, x -> new AtomicInteger()).incrementAndGet();
+
+            for (int v = 1; v <= nextValue.get(); v++) {
+                AtomicInteger count = seen.get(v);
+                assertEquals(1, count == null ? 0 : count.get(), "value " + v + " seen");
+            }
+        }, "an operation hung");
+    }
+
+    private interface Op {
+        void apply(Random random, int op);
+    }
+
+    private static void run(int threads, int opsPerThread, Op op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            done.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int i = 0; i < opsPerThread; i++) op.apply(random, i);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> f : done) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
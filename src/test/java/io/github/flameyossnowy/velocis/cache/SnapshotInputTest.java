@@ -0,0 +1,92 @@
+package io.github.flameyossnowy.velocis.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotInputTest {
+
+    @Test
+    void readLineMatchesDataInputStream() throws IOException {
+        // The long line puts a \r at the end of the first buffer, its \n at the start of the next
+        String text = "a\nb\r\nc\rd\n\n\r" + "x".repeat((1 << 16) - 12) + "\r\néÿ tail";
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        assertEquals('\r', bytes[(1 << 16) - 1]);
+
+        assertEquals(linesOf(new DataInputStream(new ByteArrayInputStream(bytes))), linesOf(new SnapshotInput(new ByteArrayInputStream(bytes))));
+        assertEquals(linesOf(new DataInputStream(new ByteArrayInputStream(bytes))), linesOf(new SnapshotInput(Channels.newChannel(new ByteArrayInputStream(bytes)))));
+    }
+
+    @Test
+    void readLineReturnsNullOnlyAtTheEnd() throws IOException {
+        SnapshotInput in = new SnapshotInput(new ByteArrayInputStream(new byte[] {'\n'}));
+        assertEquals("", in.readLine());
+        assertNull(in.readLine());
+    }
+
+    @Test
+    void nonBlockingChannelsAreRejected() throws IOException {
+        Pipe pipe = Pipe.open();
+        try {
+            pipe.source().configureBlocking(false);
+            pipe.sink().configureBlocking(false);
+            assertThrows(IllegalArgumentException.class, () -> new SnapshotInput(pipe.source()));
+            assertThrows(IllegalArgumentException.class, () -> new SnapshotOutput(pipe.sink()));
+
+            pipe.source().configureBlocking(true);
+            pipe.sink().configureBlocking(true);
+            new SnapshotInput(pipe.source());
+            new SnapshotOutput(pipe.sink());
+        } finally {
+            pipe.source().close();
+            pipe.sink().close();
+        }
+    }
+
+    /** A read that returns no bytes is retried, not taken for the end of the snapshot. */
+    @Test
+    void emptyReadsAreNotTheEnd() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        SnapshotOutput out = new SnapshotOutput(bytes);
+        out.writeHeader("test");
+        for (int i = 0; i < 100; i++) out.writeLong(i * 0x1_0000_0001L);
+        out.flush();
+
+        ReadableByteChannel source = Channels.newChannel(new ByteArrayInputStream(bytes.toByteArray()));
+        ReadableByteChannel trickle = new ReadableByteChannel() {
+            boolean empty;
+
+            @Override public int read(ByteBuffer dst) throws IOException {
+                empty = !empty;
+                if (empty) return 0;
+                ByteBuffer one = ByteBuffer.allocate(Math.min(3, dst.remaining()));
+                int n = source.read(one);
+                dst.put(one.flip());
+                return n;
+            }
+
+            @Override public boolean isOpen() { return true; }
+            @Override public void close() {}
+        };
+
+        SnapshotInput in = new SnapshotInput(trickle);
+        in.readHeader("test");
+        for (int i = 0; i < 100; i++) assertEquals(i * 0x1_0000_0001L, in.readLong());
+        assertThrows(EOFException.class, in::readByte);
+    }
+
+    private static List<String> linesOf(DataInput in) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line; (line = in.readLine()) != null; ) lines.add(line);
+        return lines;
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheGroupTest {
+
+    private final List<CacheGroup> opened = new ArrayList<>();
+
+    @AfterEach
+    void close() {
+        opened.forEach(CacheGroup::close);
+    }
+
+    @Test
+    void membersAlwaysAddUpToTheBudget() {
+        CacheGroup group = group(1000);
+        ConcurrentLRUCache<Integer, String> a = new ConcurrentLRUCache<>(5);
+        ConcurrentLRUCache<Integer, String> b = new ConcurrentLRUCache<>(5);
+        ConcurrentLRUCache<Integer, String> c = new ConcurrentLRUCache<>(5);
+
+        group.add(a);
+        assertEquals(1000, a.getMaximumSize());
+        group.add(b);
+        assertSizes(group, 1000);
+        group.add(c);
+        assertSizes(group, 1000);
+        assertEquals(333, c.getMaximumSize());
+
+        group.setBudget(601);
+        assertSizes(group, 601);
+        group.setBudget(1500);
+        assertSizes(group, 1500);
+
+        assertTrue(group.remove(b));
+        assertFalse(group.remove(b));
+        assertSizes(group, 1500);
+        assertEquals(List.of(a, c), group.members());
+
+        group.rebalance();
+        assertSizes(group, 1500);
+        assertThrows(IllegalArgumentException.class, () -> group.setBudget(1));
+        assertThrows(IllegalArgumentException.class, () -> group.add(a));
+    }
+
+    /**
+     * A member shrunk from outside the group leaves the others holding less
+     * than the budget; adding a cache then must neither spin nor overshoot.
+     */
+    @Test
+    void membersResizedFromOutsideAreScaledBackIntoTheBudget() throws InterruptedException {
+        CacheGroup group = group(100);
+        ConcurrentLRUCache<Integer, String> a = new ConcurrentLRUCache<>(5);
+        ConcurrentLRUCache<Integer, String> b = new ConcurrentLRUCache<>(5);
+        group.add(a);
+
+        a.setMaximumSize(10);
+        // On a thread of its own: a spinning add holds the group's monitor for good
+        Thread adder = new Thread(() -> group.add(b));
+        adder.setDaemon(true);
+        adder.start();
+        adder.join(5000);
+        if (adder.isAlive()) {
+            opened.remove(group);
+            fail("add never returned");
+        }
+        assertSizes(group, 100);
+        assertEquals(50, b.getMaximumSize());
+
+        b.setMaximumSize(1000);
+        group.rebalance();
+        assertSizes(group, 100);
+        assertTrue(b.getMaximumSize() > a.getMaximumSize(), "scaled by one factor");
+
+        a.setMaximumSize(1);
+        group.setBudget(200);
+        assertSizes(group, 200);
+
+        b.setMaximumSize(7);
+        assertTrue(group.remove(a));
+        assertEquals(200, b.getMaximumSize());
+    }
+
+    @Test
+    void capacityMovesToTheMemberWithGhostHits() {
+        CacheGroup group = group(2000);
+        ConcurrentLRUCache<Integer, String> thrashing = new ConcurrentLRUCache<>(5);
+        ConcurrentLRUCache<Integer, String> idle      = new ConcurrentLRUCache<>(5);
+        group.add(thrashing);
+        group.add(idle);
+        assertEquals(1000, thrashing.getMaximumSize());
+
+        for (int round = 0; round < 3; round++) {
+            // A loop slightly larger than the cache misses on every key it just evicted
+            for (int pass = 0; pass < 3; pass++) {
+                for (int key = 0; key < 1030; key++) {
+                    if (thrashing.get(key) == null) thrashing.put(key, "v" + key);
+                }
+            }
+            // A small hot set never touches the coldest entries
+            for (int key = 0; key < 100; key++) idle.put(key, "v" + key);
+            for (int pass = 0; pass < 10; pass++) {
+                for (int key = 0; key < 100; key++) assertNotNull(idle.get(key));
+            }
+
+            int before = thrashing.getMaximumSize();
+            group.rebalance();
+            assertSizes(group, 2000);
+            assertTrue(thrashing.getMaximumSize() > before, "round " + round + ": " + thrashing.getMaximumSize());
+        }
+        assertEquals(100, idle.size(), "the hot set still fits");
+    }
+
+    private CacheGroup group(int budget) {
+        // Long interval: the tests rebalance by hand
+        CacheGroup group = new CacheGroup(budget, 3_600_000);
+        opened.add(group);
+        return group;
+    }
+
+    private static void assertSizes(CacheGroup group, int budget) {
+        assertEquals(budget, group.getBudget());
+        long total = 0;
+        for (ConcurrentLRUCache<?, ?> cache : group.members()) {
+            assertTrue(cache.getMaximumSize() >= 1);
+            total += cache.getMaximumSize();
+        }
+        assertEquals(budget, total, "member sizes " + group.members().stream().map(ConcurrentLRUCache::getMaximumSize).toList());
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every snapshot is read back both from a stream and from a channel, and
+ * the copies must then evict exactly as the original does. Corrupt
+ * snapshots must fail with StreamCorruptedException or EOFException.
+ */
+class CacheSnapshotTest {
+
+    private static final Codec<Integer> K = Codec.INTEGER;
+    private static final Codec<String>  V = Codec.STRING;
+
+    @Test
+    void concurrentLRUCacheRoundTrips() throws IOException {
+        ConcurrentLRUCache<Integer, String> cache = fill(new ConcurrentLRUCache<>(64, Probing.ROBIN_HOOD));
+        byte[] snapshot = bytes(out -> cache.writeTo(out, K, V));
+        assertArrayEquals(snapshot, bytes(out -> cache.writeTo(Channels.newChannel(out), K, V)));
+
+        sameBehaviour(cache,
+                ConcurrentLRUCache.readFrom(new ByteArrayInputStream(snapshot), K, V),
+                ConcurrentLRUCache.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), K, V));
+    }
+
+    @Test
+    void concurrentLFUCacheRoundTrips() throws IOException {
+        ConcurrentLFUCache<Integer, String> cache = fill(new ConcurrentLFUCache<>(64, Probing.LINEAR));
+        byte[] snapshot = bytes(out -> cache.writeTo(out, K, V));
+        assertArrayEquals(snapshot, bytes(out -> cache.writeTo(Channels.newChannel(out), K, V)));
+
+        sameBehaviour(cache,
+                ConcurrentLFUCache.readFrom(new ByteArrayInputStream(snapshot), K, V),
+                ConcurrentLFUCache.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), K, V));
+    }
+
+    @Test
+    void concurrentLFRUCacheRoundTrips() throws IOException {
+        ConcurrentLFRUCache<Integer, String> cache = fill(new ConcurrentLFRUCache<>(64, Probing.ROBIN_HOOD));
+        byte[] snapshot = bytes(out -> cache.writeTo(out, K, V));
+        assertArrayEquals(snapshot, bytes(out -> cache.writeTo(Channels.newChannel(out), K, V)));
+
+        sameBehaviour(cache,
+                ConcurrentLFRUCache.readFrom(new ByteArrayInputStream(snapshot), K, V),
+                ConcurrentLFRUCache.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), K, V));
+    }
+
+    @Test
+    void concurrentSLRUCacheRoundTrips() throws IOException {
+        ConcurrentSLRUCache<Integer, String> cache = fill(new ConcurrentSLRUCache<>(64, Probing.LINEAR));
+        byte[] snapshot = bytes(out -> cache.writeTo(out, K, V));
+        assertArrayEquals(snapshot, bytes(out -> cache.writeTo(Channels.newChannel(out), K, V)));
+
+        sameBehaviour(cache,
+                ConcurrentSLRUCache.readFrom(new ByteArrayInputStream(snapshot), K, V),
+                ConcurrentSLRUCache.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), K, V));
+    }
+
+    @Test
+    void lruSnapshotWithBadLinksIsRejected() throws IOException {
+        ConcurrentLRUCache<Integer, String> cache = fill(new ConcurrentLRUCache<>(64, Probing.LINEAR));
+        byte[] snapshot = bytes(out -> cache.writeTo(out, K, V));
+
+        ByteBuffer b = ByteBuffer.wrap(snapshot);
+        skipHeader(b);
+        b.getInt();                  // maxSize
+        skipUTF(b);                  // probing
+        skipUTF(b);                  // value strength
+        b.getFloat();                // promotion threshold
+        int capacity = b.getInt();
+        b.getInt();                  // seed
+        b.getInt();                  // size
+        int head = b.getInt();
+        int tail = b.getInt();
+        b.getLong();                 // tick
+        int prev = b.position() + capacity * Integer.BYTES;
+        int next = prev + capacity * Integer.BYTES;
+
+        assertCorrupt(snapshot, s -> putInt(s, next + tail * 4, head),      LRU_READER); // cycle
+        assertCorrupt(snapshot, s -> putInt(s, next + head * 4, capacity),  LRU_READER); // out of the table
+        assertCorrupt(snapshot, s -> putInt(s, next + head * 4, -7),        LRU_READER);
+        assertCorrupt(snapshot, s -> putInt(s, prev + tail * 4, tail),      LRU_READER); // broken back link
+        assertCorrupt(snapshot, s -> putInt(s, next + head * 4, -1),        LRU_READER); // list too short
+        assertThrows(EOFException.class, () -> LRU_READER.read(Arrays.copyOf(snapshot, snapshot.length - 3)));
+    }
+
+    @Test
+    void slruSnapshotWithBadSegmentsIsRejected() throws IOException {
+        ConcurrentSLRUCache<Integer, String> cache = fill(new ConcurrentSLRUCache<>(64, Probing.LINEAR));
+        byte[] snapshot = bytes(out -> cache.writeTo(out, K, V));
+
+        ByteBuffer b = ByteBuffer.wrap(snapshot);
+        skipHeader(b);
+        b.getInt();                  // maxSize
+        b.getFloat();                // protected ratio
+        skipUTF(b);                  // probing
+        int capacity = b.getInt();
+        b.getInt();                  // seed
+        b.getInt();                  // size
+        int protectedSizeAt = b.position();
+        int protectedSize   = b.getInt();
+        assertTrue(protectedSize > 0, "fill should have promoted entries");
+        b.getInt();                  // probation head
+        int protectedHead = b.getInt();
+        int segments = b.position() + 2 * Integer.BYTES + 3 * capacity * Integer.BYTES;
+
+        assertCorrupt(snapshot, s -> s[segments + protectedHead] = 0,                SLRU_READER); // slot in the wrong list
+        assertCorrupt(snapshot, s -> putInt(s, protectedSizeAt, protectedSize - 1),  SLRU_READER);
+        assertCorrupt(snapshot, s -> putInt(s, protectedSizeAt + 8, capacity + 1),   SLRU_READER); // protected head
+    }
+
+    @Test
+    void lfruSnapshotWithBadMetaIsRejected() throws IOException {
+        ConcurrentLFRUCache<Integer, String> cache = fill(new ConcurrentLFRUCache<>(64, Probing.LINEAR));
+        byte[] snapshot = bytes(out -> cache.writeTo(out, K, V));
+
+        ByteBuffer b = ByteBuffer.wrap(snapshot);
+        skipHeader(b);
+        b.getInt();                  // maxSize
+        skipUTF(b);                  // decay
+        b.getLong();                 // period
+        skipUTF(b);                  // probing
+        b.getInt();                  // sample size
+        int capacity = b.getInt();
+        b.getInt();                  // seed
+        b.getInt();                  // size
+        int clockAt = b.position();
+        b.getLong();                 // clock
+        b.getLong();                 // last halving
+        int hashes = b.position();
+        int meta   = hashes + capacity * Integer.BYTES;
+        int full   = 0;
+        while (b.getInt(hashes + full * 4) == 0) full++;
+        int fullSlot = full;
+
+        assertCorrupt(snapshot, s -> putLong(s, meta + fullSlot * 8, -1L), LFRU_READER);
+        assertCorrupt(snapshot, s -> putLong(s, clockAt, -1L),            LFRU_READER);
+    }
+
+    /**
+     * A table size the stored maxSize could never have grown to must be
+     * rejected before the tables are allocated: a few dozen bytes claiming
+     * 2^30 slots would otherwise run out of memory.
+     */
+    @Test
+    void oversizedTableIsRejectedBeforeAllocating() throws IOException {
+        ConcurrentLRUCache<Integer, String>  lru  = fill(new ConcurrentLRUCache<>(64, Probing.LINEAR));
+        ConcurrentLFUCache<Integer, String>  lfu  = fill(new ConcurrentLFUCache<>(64, Probing.LINEAR));
+        ConcurrentSLRUCache<Integer, String> slru = fill(new ConcurrentSLRUCache<>(64, Probing.LINEAR));
+        ConcurrentLFRUCache<Integer, String> lfru = fill(new ConcurrentLFRUCache<>(64, Probing.LINEAR));
+
+        assertOversizedTableRejected(bytes(out -> lru.writeTo(out, K, V)), LRU_READER, b -> {
+            b.getInt(); skipUTF(b); skipUTF(b); b.getFloat(); // maxSize, probing, value strength, promotion threshold
+        });
+        assertOversizedTableRejected(bytes(out -> lfu.writeTo(out, K, V)), LFU_READER, b -> {
+            b.getInt(); skipUTF(b); skipUTF(b);               // maxSize, probing, value strength
+        });
+        assertOversizedTableRejected(bytes(out -> slru.writeTo(out, K, V)), SLRU_READER, b -> {
+            b.getInt(); b.getFloat(); skipUTF(b);             // maxSize, protected ratio, probing
+        });
+        assertOversizedTableRejected(bytes(out -> lfru.writeTo(out, K, V)), LFRU_READER, b -> {
+            b.getInt(); skipUTF(b); b.getLong(); skipUTF(b); b.getInt(); // maxSize, decay, period, probing, sample size
+        });
+    }
+
+    /** The bound must still admit the largest table every maxSize really grows to. */
+    @Test
+    void fullCachesOfEverySizeRoundTrip() throws IOException {
+        for (Probing probing : Probing.values()) {
+            for (int maxSize = 1; maxSize <= 200; maxSize++) {
+                ConcurrentLRUCache<Integer, String>  lru  = new ConcurrentLRUCache<>(maxSize, probing);
+                ConcurrentLFUCache<Integer, String>  lfu  = new ConcurrentLFUCache<>(maxSize, probing);
+                ConcurrentSLRUCache<Integer, String> slru = new ConcurrentSLRUCache<>(maxSize, probing);
+                ConcurrentLFRUCache<Integer, String> lfru = new ConcurrentLFRUCache<>(maxSize, probing);
+                for (int i = 0; i <= maxSize; i++) {
+                    lru.put(i, "v" + i);
+                    lfu.put(i, "v" + i);
+                    slru.put(i, "v" + i);
+                    lfru.put(i, "v" + i);
+                }
+                String at = probing + " maxSize " + maxSize;
+                assertEquals(new HashMap<>(lru),  LRU_READER.read(bytes(out -> lru.writeTo(out, K, V))), at);
+                assertEquals(new HashMap<>(lfu),  LFU_READER.read(bytes(out -> lfu.writeTo(out, K, V))), at);
+                assertEquals(new HashMap<>(slru), SLRU_READER.read(bytes(out -> slru.writeTo(out, K, V))), at);
+                assertEquals(new HashMap<>(lfru), LFRU_READER.read(bytes(out -> lfru.writeTo(out, K, V))), at);
+            }
+        }
+    }
+
+    private interface Settings {
+        void skip(ByteBuffer b);
+    }
+
+    /** Doubles the stored table size, then sets it to 2^30 with nothing after it. */
+    private static void assertOversizedTableRejected(byte[] snapshot, Reader reader, Settings settings) {
+        ByteBuffer b = ByteBuffer.wrap(snapshot);
+        skipHeader(b);
+        settings.skip(b);
+        int capacityAt = b.position();
+        int capacity   = b.getInt();
+
+        assertCorrupt(snapshot, s -> putInt(s, capacityAt, capacity * 2), reader);
+        byte[] truncated = Arrays.copyOf(snapshot, capacityAt + Integer.BYTES);
+        putInt(truncated, capacityAt, 1 << 30);
+        assertThrows(StreamCorruptedException.class, () -> reader.read(truncated));
+    }
+
+    private interface Reader {
+        Object read(byte[] snapshot) throws IOException;
+    }
+
+    private static final Reader LRU_READER  = s -> ConcurrentLRUCache.readFrom(new ByteArrayInputStream(s), K, V);
+    private static final Reader LFU_READER  = s -> ConcurrentLFUCache.readFrom(new ByteArrayInputStream(s), K, V);
+    private static final Reader SLRU_READER = s -> ConcurrentSLRUCache.readFrom(new ByteArrayInputStream(s), K, V);
+    private static final Reader LFRU_READER = s -> ConcurrentLFRUCache.readFrom(new ByteArrayInputStream(s), K, V);
+
+    private interface Corruption {
+        void apply(byte[] snapshot);
+    }
+
+    private static void assertCorrupt(byte[] snapshot, Corruption corruption, Reader reader) {
+        byte[] copy = snapshot.clone();
+        corruption.apply(copy);
+        assertThrows(StreamCorruptedException.class, () -> reader.read(copy));
+    }
+
+    /** Fills past the limit, with hits on some keys, so order, frequency and segments all matter. */
+    private static <C extends Map<Integer, String>> C fill(C cache) {
+        Random random = new Random(46);
+        for (int i = 0; i < 200; i++) {
+            cache.put(i, "v" + i);
+            for (int j = 0; j < 3; j++) cache.get(random.nextInt(i + 1));
+        }
+        return cache;
+    }
+
+    /** Runs the same operations on all three caches and checks they keep the same contents. */
+    @SafeVarargs
+    private static void sameBehaviour(Map<Integer, String> original, Map<Integer, String>... copies) {
+        for (Map<Integer, String> copy : copies) assertEquals(new HashMap<>(original), new HashMap<>(copy));
+        Random random = new Random(64);
+        for (int op = 0; op < 2000; op++) {
+            int key = random.nextInt(300);
+            boolean put = random.nextInt(3) == 0;
+            String expected = put ? original.put(key, "w" + op) : original.get(key);
+            for (Map<Integer, String> copy : copies) {
+                assertEquals(expected, put ? copy.put(key, "w" + op) : copy.get(key), "op " + op + " on key " + key);
+                assertEquals(new HashSet<>(original.keySet()), new HashSet<>(copy.keySet()), "contents after op " + op);
+            }
+        }
+    }
+
+    private interface Write {
+        void to(OutputStream out) throws IOException;
+    }
+
+    private static byte[] bytes(Write write) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write.to(out);
+        return out.toByteArray();
+    }
+
+    private static void skipHeader(ByteBuffer b) {
+        b.getInt();  // magic
+        b.get();     // version
+        skipUTF(b);  // kind
+    }
+
+    private static void skipUTF(ByteBuffer b) {
+        int len = b.getShort() & 0xFFFF;
+        b.position(b.position() + len);
+    }
+
+    private static void putInt(byte[] s, int at, int v) {
+        ByteBuffer.wrap(s).putInt(at, v);
+    }
+
+    private static void putLong(byte[] s, int at, long v) {
+        ByteBuffer.wrap(s).putLong(at, v);
+    }
+}
@@ -0,0 +1,201 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentClockCacheTest {
+
+    /**
+     * Unbounded in practice, so the cache must behave exactly like a
+     * HashMap. Fresh keys and removes keep forcing table copies.
+     */
+    @Test
+    void matchesHashMapWithoutEviction() {
+        ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(1 << 20);
+        Map<Integer, Integer> model = new HashMap<>();
+        Random random = new Random(41);
+
+        for (int op = 0; op < 200_000; op++) {
+            // The key range drifts, so old keys die and new ones are claimed
+            int key = op / 64 + random.nextInt(512);
+            int r   = random.nextInt(100);
+            if (r < 45)      assertEquals(model.put(key, op), cache.put(key, op), "put " + key);
+            else if (r < 75) assertEquals(model.get(key), cache.get(key), "get " + key);
+            else             assertEquals(model.remove(key), cache.remove(key), "remove " + key);
+            if (op % 1000 == 0) assertEquals(model.size(), cache.size());
+        }
+        assertEquals(model, new HashMap<>(cache));
+        assertEquals(model.keySet(), new HashSet<>(cache.keySet()));
+        assertEquals(model.size(), cache.size());
+
+        cache.clear();
+        assertTrue(cache.isEmpty());
+        assertNull(cache.get(0));
+    }
+
+    /** With eviction every entry left must still be one the model holds, and the bound must hold. */
+    @Test
+    void boundedCacheHoldsOnlyCurrentValues() {
+        ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(100);
+        Map<Integer, Integer> model = new HashMap<>();
+        Random random = new Random(7);
+
+        for (int op = 0; op < 100_000; op++) {
+            int key = random.nextInt(1000);
+            if (random.nextInt(4) == 0) {
+                Integer old = cache.remove(key);
+                if (old != null) assertEquals(model.get(key), old);
+                model.remove(key);
+            } else {
+                Integer old = cache.put(key, op);
+                if (old != null) assertEquals(model.get(key), old);
+                model.put(key, op);
+            }
+            assertTrue(cache.size() <= 100, "size " + cache.size());
+        }
+        for (Map.Entry<Integer, Integer> e : cache.entrySet())
+            assertEquals(model.get(e.getKey()), e.getValue(), "stale value for " + e.getKey());
+    }
+
+    /**
+     * The hand passes over an entry read since its last visit, so keys read
+     * between insertions outlive any number of one-time keys, across table
+     * copies too: a copy carries the reference bits over.
+     */
+    @Test
+    void referencedEntriesOutliveOneTimeKeys() {
+        ConcurrentClockCache<Integer, String> cache = new ConcurrentClockCache<>(4);
+        cache.put(0, "v0");
+        cache.put(1, "v1");
+        for (int i = 2; i < 1000; i++) {
+            assertEquals("v0", cache.get(0), "before one-time key " + i);
+            assertEquals("v1", cache.get(1), "before one-time key " + i);
+            cache.put(i, "v" + i);
+            assertTrue(cache.size() <= 4, "size " + cache.size());
+        }
+        assertEquals(4, cache.size());
+        assertEquals("v0", cache.get(0));
+        assertEquals("v1", cache.get(1));
+    }
+
+    @Test
+    void setMaximumSizeShrinksAndGrows() {
+        ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(1000);
+        for (int i = 0; i < 1000; i++) cache.put(i, i);
+        assertEquals(1000, cache.size());
+
+        cache.setMaximumSize(100);
+        assertEquals(100, cache.getMaximumSize());
+        assertEquals(100, cache.size());
+        for (Map.Entry<Integer, Integer> e : cache.entrySet()) assertEquals(e.getKey(), e.getValue());
+
+        cache.setMaximumSize(500);
+        assertEquals(100, cache.size()); // growing evicts nothing and adds nothing
+        for (int i = 1000; i < 2000; i++) cache.put(i, i);
+        assertEquals(500, cache.size());
+        for (Map.Entry<Integer, Integer> e : cache.entrySet()) assertEquals(e.getKey(), e.getValue());
+
+        assertThrows(IllegalArgumentException.class, () -> cache.setMaximumSize(0));
+        assertThrows(IllegalArgumentException.class, () -> new ConcurrentClockCache<>(0));
+    }
+
+    /**
+     * Each thread owns its keys, so for those keys the cache must answer
+     * exactly as the thread's own HashMap would, while all the threads'
+     * fresh keys and removes keep copying the table underneath.
+     */
+    @Test
+    void ownedKeysAreLinearizableAcrossCopies() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(1 << 20);
+            int threads = 8;
+            List<Map<Integer, Integer>> models = new ArrayList<>();
+            for (int t = 0; t < threads; t++) models.add(new HashMap<>());
+
+            run(threads, 50_000, (thread, random, op) -> {
+                Map<Integer, Integer> model = models.get(thread);
+                int key   = (op / 32 + random.nextInt(256)) * threads + thread;
+                int value = op * threads + thread;
+                int r     = random.nextInt(100);
+                if (r < 45)      assertEquals(model.put(key, value), cache.put(key, value), "put " + key);
+                else if (r < 75) assertEquals(model.get(key), cache.get(key), "get " + key);
+                else             assertEquals(model.remove(key), cache.remove(key), "remove " + key);
+            });
+
+            Map<Integer, Integer> all = new HashMap<>();
+            models.forEach(all::putAll);
+            assertEquals(all, new HashMap<>(cache));
+            assertEquals(all.size(), cache.size());
+        }, "an operation hung");
+    }
+
+    /**
+     * All threads share a few keys. Every value put must come back exactly
+     * once: as the old value of a later put, from a remove, or in the final
+     * contents, however the table copies interleave with the writes.
+     */
+    @Test
+    void sharedKeysLoseAndDuplicateNoWriteAcrossCopies() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            ConcurrentClockCache<Integer, Integer> cache = new ConcurrentClockCache<>(1 << 20);
+            ConcurrentHashMap<Integer, AtomicInteger> seen = new ConcurrentHashMap<>();
+            AtomicInteger nextValue = new AtomicInteger(); // shared keys take values > 0
+            AtomicInteger nextChurn = new AtomicInteger(); // churn keys and values are < 0
+
+            run(8, 50_000, (thread, random, op) -> {
+                int r = random.nextInt(100);
+                if (r < 30) {
+                    // Churn: fresh keys that die again, so the table keeps being copied
+                    int churn = nextChurn.decrementAndGet();
+                    cache.put(churn, churn);
+                    cache.remove(churn);
+                    return;
+                }
+                int     key = random.nextInt(4);
+                Integer old = r < 70 ? cache.put(key, nextValue.incrementAndGet()) : cache.remove(key);
+                if (old != null) seen.computeIfAbsent(old, v -> new AtomicInteger()).incrementAndGet();
+            });
+            int left = 0;
+            for (Integer v : cache.values()) {
+                seen.computeIfAbsent(v, x -> new AtomicInteger()).incrementAndGet();
+                left++;
+            }
+
+            for (int v = 1; v <= nextValue.get(); v++) {
+                AtomicInteger count = seen.get(v);
+                assertEquals(1, count == null ? 0 : count.get(), "value " + v + " seen");
+            }
+            assertEquals(left, cache.size());
+        }, "an operation hung");
+    }
+
+    private interface Op {
+        void apply(int thread, Random random, int op);
+    }
+
+    private static void run(int threads, int opsPerThread, Op op) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            done.add(pool.submit(() -> {
+                Random random = new Random(thread);
+                start.await();
+                for (int i = 0; i < opsPerThread; i++) op.apply(thread, random, i);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> f : done) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentDoublyLinkedList.Node;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentDoublyLinkedListTest {
+
+    @Test
+    void keepsInsertionAndMoveOrder() {
+        ConcurrentDoublyLinkedList<Integer, String> list = new ConcurrentDoublyLinkedList<>();
+        Node<Integer, String> a = list.addToEnd(1, "a");
+        Node<Integer, String> b = list.addToEnd(2, "b");
+        Node<Integer, String> c = list.addToEnd(3, "c");
+        assertEquals(List.of(1, 2, 3), keys(list));
+
+        list.moveToEnd(a);
+        assertEquals(List.of(2, 3, 1), keys(list));
+        list.moveToEnd(a); // already last
+        assertEquals(List.of(2, 3, 1), keys(list));
+
+        assertTrue(list.remove(c));
+        assertFalse(list.remove(c));
+        assertTrue(c.isDeleted());
+        assertEquals(List.of(2, 1), keys(list));
+
+        assertSame(b, list.removeHead());
+        assertSame(a, list.removeHead());
+        assertNull(list.removeHead());
+        assertEquals(List.of(), keys(list));
+    }
+
+    @Test
+    void removedNodeIsNotMovedBack() {
+        ConcurrentDoublyLinkedList<Integer, String> list = new ConcurrentDoublyLinkedList<>();
+        Node<Integer, String> a = list.addToEnd(1, "a");
+        list.addToEnd(2, "b");
+        assertTrue(list.remove(a));
+        list.moveToEnd(a);
+        assertEquals(List.of(2), keys(list));
+    }
+
+    /**
+     * Many threads hammer a short list, so the last node is moved again
+     * while earlier moves of it are still being unlinked. Afterwards every
+     * node that was not removed must be reachable exactly once, and no
+     * operation may have hung.
+     */
+    @Test
+    void concurrentMovesAndRemovalsKeepEveryLiveNodeReachable() {
+        assertTimeoutPreemptively(Duration.ofSeconds(60), () -> {
+            for (int round = 0; round < 20; round++) stressRound(4 + round % 5, 8, 20_000);
+        }, "an operation hung");
+    }
+
+    private static void stressRound(int nodes, int threads, int opsPerThread) throws Exception {
+        ConcurrentDoublyLinkedList<Integer, Integer> list = new ConcurrentDoublyLinkedList<>();
+        List<Node<Integer, Integer>> all = new CopyOnWriteArrayList<>();
+        for (int i = 0; i < nodes; i++) all.add(list.addToEnd(i, i));
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CyclicBarrier start = new CyclicBarrier(threads);
+        List<Future<?>> done = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int seed = t;
+            done.add(pool.submit(() -> {
+                Random random = new Random(seed);
+                start.await();
+                for (int op = 0; op < opsPerThread; op++) {
+                    int r = random.nextInt(100);
+                    if (r < 80) {
+                        // Mostly the newest nodes, which keep getting relinked behind the same predecessor
+                        int i = all.size() - 1 - random.nextInt(Math.min(3, all.size()));
+                        list.moveToEnd(all.get(i));
+                    } else if (r < 90) {
+                        Node<Integer, Integer> node = all.get(random.nextInt(all.size()));
+                        if (list.remove(node)) all.add(list.addToEnd(node.getKey(), op));
+                    } else {
+                        Node<Integer, Integer> head = list.removeHead();
+                        if (head != null) all.add(list.addToEnd(head.getKey(), op));
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> f : done) f.get();
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Set<Node<Integer, Integer>> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Node<Integer, Integer> n = list.getHead().next; n != list.getTail(); n = n.next) {
+            assertNotNull(n, "broken chain");
+            assertTrue(reachable.add(n), "cycle through node " + n.getKey());
+            assertFalse(n.isDeleted(), "removed node " + n.getKey() + " still linked");
+            assertEquals(ConcurrentDoublyLinkedList.LIVE, n.state, "node " + n.getKey() + " left mid-operation");
+        }
+        for (Node<Integer, Integer> n : all) {
+            if (!n.isDeleted()) assertTrue(reachable.contains(n), "live node " + n.getKey() + " is unreachable");
+        }
+        assertEquals(nodes, reachable.size());
+
+        // Every node must still be movable and removable without hanging
+        for (Node<Integer, Integer> n : reachable) list.moveToEnd(n);
+        while (list.removeHead() != null) { }
+        assertSame(list.getTail(), list.getHead().next);
+    }
+
+    private static List<Integer> keys(ConcurrentDoublyLinkedList<Integer, String> list) {
+        List<Integer> keys = new ArrayList<>();
+        for (Node<Integer, String> n = list.getHead().successor(); n != list.getTail(); n = n.successor()) keys.add(n.getKey());
+        return keys;
+    }
+}
@@ -0,0 +1,117 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLRUCacheTest {
+
+    @Test
+    void hitsPromoteWhenUncontended() {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(3, Probing.LINEAR);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+        cache.get(1);
+        cache.put(4, "d");
+        assertTrue(cache.containsKey(1));
+        assertFalse(cache.containsKey(2));
+    }
+
+    /**
+     * A snapshot holds the read lock while it writes to a stream that
+     * blocks. A hit on the coldest entry must still return at once,
+     * skipping its promotion instead of waiting for the write lock.
+     */
+    @Test
+    void hitDoesNotWaitForTheLockToPromote() throws Exception {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(8192, Probing.LINEAR);
+        // Enough slots that the snapshot overflows its buffer while still holding the lock
+        for (int i = 0; i < 8192; i++) cache.put(i, "v" + i);
+
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocking = new OutputStream() {
+            @Override public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override public void write(byte[] b, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread snapshot = new Thread(() -> {
+            try {
+                cache.writeTo(blocking, Codec.INTEGER, Codec.STRING);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        snapshot.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS), "snapshot never reached the stream");
+
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals("v0", cache.get(0)), "hit blocked on the lock");
+        } finally {
+            release.countDown();
+            snapshot.join();
+        }
+        assertNull(failure.get());
+
+        // The skipped promotion left 0 the coldest entry
+        cache.put(-1, "new");
+        assertFalse(cache.containsKey(0));
+        assertTrue(cache.containsKey(1));
+    }
+
+    @Test
+    void viewsNeitherShowNorRemoveNegativeEntries() {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(8, Probing.LINEAR);
+        cache.setNegativeTtl(1, TimeUnit.HOURS);
+        cache.put(1, "a");
+        cache.markAbsent(2);
+
+        assertFalse(cache.keySet().contains(2));
+        assertFalse(cache.keySet().remove(2));
+        assertFalse(cache.entrySet().remove(Map.entry(2, "a")));
+        assertFalse(cache.remove(2, "a"));
+        assertTrue(cache.isAbsent(2), "a view removed the negative entry");
+
+        // Map.remove drops it, returning no value
+        assertNull(cache.remove(2));
+        assertFalse(cache.isAbsent(2));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void viewsRemoveEntriesThatHaveValues() {
+        ConcurrentLRUCache<Integer, String> cache = new ConcurrentLRUCache<>(8, Probing.LINEAR);
+        cache.put(1, "a");
+        cache.put(2, "b");
+        cache.put(3, "c");
+
+        assertTrue(cache.keySet().remove(1));
+        assertFalse(cache.keySet().remove(1));
+        assertFalse(cache.entrySet().remove(Map.entry(2, "wrong")), "removed an entry with another value");
+        assertEquals("b", cache.get(2));
+        assertTrue(cache.entrySet().remove(Map.entry(2, "b")));
+        assertFalse(cache.remove(3, "wrong"));
+        assertTrue(cache.remove(3, "c"));
+        assertTrue(cache.isEmpty());
+    }
+}
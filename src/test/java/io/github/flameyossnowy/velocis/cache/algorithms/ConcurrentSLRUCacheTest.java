@@ -0,0 +1,101 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentSLRUCacheTest {
+
+    /**
+     * Entries hit twice sit in the protected segment. A scan of one-off
+     * keys, many times the cache size, must churn probation only.
+     */
+    @Test
+    void oneOffScanDoesNotEvictProtectedEntries() {
+        ConcurrentSLRUCache<Integer, String> cache = new ConcurrentSLRUCache<>(100, 0.8f, Probing.LINEAR);
+        for (int i = 0; i < 50; i++) cache.put(i, "hot" + i);
+        for (int i = 0; i < 50; i++) assertEquals("hot" + i, cache.get(i));
+
+        for (int i = 1000; i < 11_000; i++) cache.put(i, "scan" + i);
+
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 50; i++) assertEquals("hot" + i, cache.get(i), "protected key " + i);
+        // Probation kept only the newest scan keys
+        assertNull(cache.get(1000));
+        assertEquals("scan10999", cache.get(10_999));
+    }
+
+    @Test
+    void protectedOverflowIsDemotedNotEvicted() {
+        ConcurrentSLRUCache<Integer, String> cache = new ConcurrentSLRUCache<>(10, 0.5f, Probing.LINEAR);
+        for (int i = 0; i < 10; i++) cache.put(i, "v" + i);
+        // Six promotions into a protected segment of five push 0 back to probation
+        for (int i = 0; i < 6; i++) cache.get(i);
+        assertEquals(10, cache.size());
+
+        // 0 is now the newest probationary entry; older ones (6..9) go first
+        for (int i = 100; i < 104; i++) cache.put(i, "n" + i);
+        assertTrue(cache.containsKey(0));
+        for (int i = 6; i < 10; i++) assertFalse(cache.containsKey(i), "key " + i);
+    }
+
+    /**
+     * A snapshot holds the read lock while it writes to a stream that
+     * blocks. A hit must still return at once, skipping its promotion
+     * instead of waiting for the write lock.
+     */
+    @Test
+    void hitDoesNotWaitForTheLockToPromote() throws Exception {
+        ConcurrentSLRUCache<Integer, String> cache = new ConcurrentSLRUCache<>(8192, Probing.LINEAR);
+        // Enough slots that the snapshot overflows its buffer while still holding the lock
+        for (int i = 0; i < 8192; i++) cache.put(i, "v" + i);
+
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream blocking = new OutputStream() {
+            @Override public void write(int b) throws IOException {
+                write(new byte[] {(byte) b}, 0, 1);
+            }
+
+            @Override public void write(byte[] b, int off, int len) throws IOException {
+                writing.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread snapshot = new Thread(() -> {
+            try {
+                cache.writeTo(blocking, Codec.INTEGER, Codec.STRING);
+            } catch (Throwable t) {
+                failure.set(t);
+            }
+        });
+        snapshot.start();
+        assertTrue(writing.await(10, TimeUnit.SECONDS), "snapshot never reached the stream");
+
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(5), () -> assertEquals("v0", cache.get(0)), "hit blocked on the lock");
+        } finally {
+            release.countDown();
+            snapshot.join();
+        }
+        assertNull(failure.get());
+
+        // The skipped promotion left 0 the oldest probationary entry
+        cache.put(-1, "new");
+        assertFalse(cache.containsKey(0));
+        assertTrue(cache.containsKey(1));
+    }
+}
@@ -0,0 +1,112 @@
+package io.github.flameyossnowy.velocis.cache.algorithms;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Backward-shift deletion across the end of the table: keys are picked by
+ * home slot so one probe run starts in the last slots and wraps into the
+ * first ones, where keys homed at slot 0 and up already sit. Deleting them
+ * in every kind of order must leave each remaining key findable.
+ */
+class WrappedProbeRunDeletionTest {
+
+    private static final int TRIALS = 200;
+
+    @ParameterizedTest
+    @EnumSource(Probing.class)
+    void concurrentLRUCache(Probing probing) {
+        check(() -> new ConcurrentLRUCache<>(64, probing));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Probing.class)
+    void concurrentLFUCache(Probing probing) {
+        check(() -> new ConcurrentLFUCache<>(64, probing));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Probing.class)
+    void concurrentLFRUCache(Probing probing) {
+        check(() -> new ConcurrentLFRUCache<>(64, probing));
+    }
+
+    @ParameterizedTest
+    @EnumSource(Probing.class)
+    void concurrentSLRUCache(Probing probing) {
+        check(() -> new ConcurrentSLRUCache<>(64, probing));
+    }
+
+    @Test
+    void lfuCache() {
+        check(() -> new LFUCache<>(8));
+    }
+
+    @Test
+    void lruCache() {
+        check(() -> new LRUCache<>(8));
+    }
+
+    private static void check(Supplier<Map<Integer, Integer>> factory) {
+        Random random = new Random(37);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            Map<Integer, Integer> cache = factory.get();
+            int length = tableLength(cache);
+            int seed   = seed(cache);
+
+            // Five keys homed in the last two slots wrap into slots 0..2, where three more are homed
+            List<Integer> keys = new ArrayList<>();
+            keys.addAll(keysHomedIn(seed, length, length - 2, length, 5));
+            keys.addAll(keysHomedIn(seed, length, 0, 3, 3));
+            Collections.shuffle(keys, random);
+            for (Integer key : keys) cache.put(key, -key);
+            assertEquals(length, tableLength(cache), "table was resized; pick fewer keys");
+            assertEquals(seed, seed(cache), "table was reseeded; pick fewer keys");
+
+            Collections.shuffle(keys, random);
+            Set<Integer> left = new HashSet<>(keys);
+            for (Integer victim : keys) {
+                assertEquals(-victim, cache.remove(victim), "remove " + victim);
+                left.remove(victim);
+                assertNull(cache.get(victim), "removed key " + victim + " still found");
+                for (Integer key : left) assertEquals(-key, cache.get(key), "key " + key + " lost after removing " + victim);
+                assertEquals(left.size(), cache.size());
+            }
+        }
+    }
+
+    /** {@code count} keys whose home slot under {@code seed} lies in {@code [from, to)}. */
+    private static List<Integer> keysHomedIn(int seed, int length, int from, int to, int count) {
+        List<Integer> keys = new ArrayList<>();
+        for (int key = 1; keys.size() < count; key++) {
+            int home = ConcurrentLFRUCache.mix0(Integer.hashCode(key), seed) & (length - 1);
+            if (home >= from && home < to) keys.add(key);
+        }
+        return keys;
+    }
+
+    private static int tableLength(Object cache) {
+        return ((Object[]) read(cache, "keys")).length;
+    }
+
+    private static int seed(Object cache) {
+        return (Integer) read(cache, "seed");
+    }
+
+    private static Object read(Object cache, String name) {
+        try {
+            Field f = cache.getClass().getDeclaredField(name);
+            f.setAccessible(true);
+            return f.get(cache);
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package io.github.flameyossnowy.velocis.cache.invalidation;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InvalidationBusTest {
+
+    private final BlockingQueue<Throwable> reported = new LinkedBlockingQueue<>();
+    private final List<AutoCloseable>      opened   = new ArrayList<>();
+    private Thread.UncaughtExceptionHandler previousHandler;
+
+    @BeforeEach
+    void captureReports() {
+        previousHandler = Thread.getDefaultUncaughtExceptionHandler();
+        Thread.setDefaultUncaughtExceptionHandler((t, e) -> reported.add(e));
+    }
+
+    @AfterEach
+    void close() throws Exception {
+        for (AutoCloseable c : opened) c.close();
+        Thread.setDefaultUncaughtExceptionHandler(previousHandler);
+    }
+
+    @Test
+    void batchesRoundTripBetweenTwoLoopbackTransports() throws Exception {
+        int[] ports = freePorts(2);
+        InvalidationBus<String> a = bus(new UdpTransport(ports[0], ports[1]));
+        InvalidationBus<String> b = bus(new UdpTransport(ports[1], ports[0]));
+        BlockingQueue<Collection<String>> atA = subscribe(a);
+        BlockingQueue<Collection<String>> atB = subscribe(b);
+
+        for (int i = 0; i < 100; i++) a.publish("k" + i % 10); // repeats collapse into one batch
+        a.flush();
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 10; i++) expected.add("k" + i);
+        assertEquals(expected, new HashSet<>(next(atA)), "local subscribers");
+        assertEquals(expected, new HashSet<>(next(atB)), "peer subscribers");
+
+        b.publish("back");
+        b.flush();
+        assertEquals(List.of("back"), List.copyOf(next(atB)));
+        assertEquals(List.of("back"), List.copyOf(next(atA)));
+        assertNull(reported.poll());
+    }
+
+    /**
+     * A datagram claiming a key of almost 2 GiB must be reported as
+     * malformed, not allocated, and the receiver must keep going.
+     */
+    @Test
+    void malformedDatagramsAreReportedAndSkipped() throws Exception {
+        UdpTransport transport = new UdpTransport(0);
+        InvalidationBus<String> bus = bus(transport);
+        BlockingQueue<Collection<String>> received = subscribe(bus);
+
+        try (DatagramChannel peer = DatagramChannel.open()) {
+            InetSocketAddress target = new InetSocketAddress(InetAddress.getLoopbackAddress(), transport.port());
+            List<ByteBuffer> malformed = List.of(
+                ByteBuffer.allocate(8).putInt(1).putInt(Integer.MAX_VALUE - 8).flip(), // length past the datagram
+                ByteBuffer.allocate(8).putInt(1).putInt(-1).flip(),                     // negative length
+                ByteBuffer.allocate(6).putInt(1).putShort((short) 0).flip(),            // truncated length
+                ByteBuffer.allocate(4).putInt(Integer.MAX_VALUE).flip());               // count past the datagram
+            for (ByteBuffer datagram : malformed) {
+                peer.send(datagram, target);
+                Throwable e = reported.poll(10, TimeUnit.SECONDS);
+                assertInstanceOf(IllegalStateException.class, e, "report for a malformed datagram");
+                assertEquals("Malformed invalidation message", e.getMessage());
+            }
+
+            byte[] key = Codec.STRING.encode("valid");
+            peer.send(ByteBuffer.allocate(8 + key.length).putInt(1).putInt(key.length).put(key).flip(), target);
+            assertEquals(List.of("valid"), List.copyOf(next(received)), "receiver stopped after a malformed datagram");
+        }
+        assertTrue(received.isEmpty());
+    }
+
+    @Test
+    void keysTooLargeForAnyMessageAreReported() throws Exception {
+        List<byte[]> sent = new ArrayList<>();
+        InvalidationBus<String> bus = bus(new InvalidationTransport() {
+            @Override public void send(byte[] message) {
+                sent.add(message);
+            }
+
+            @Override public void start(@NotNull Consumer<byte[]> receiver) {
+            }
+
+            @Override public int maxMessageSize() {
+                return 32;
+            }
+
+            @Override public void close() {
+            }
+        });
+        BlockingQueue<Collection<String>> local = subscribe(bus);
+
+        bus.publish("x".repeat(25));
+        bus.publish("small");
+        bus.flush();
+
+        assertEquals(2, next(local).size(), "local subscribers still see the large key");
+        assertEquals(1, sent.size());
+        ByteBuffer msg = ByteBuffer.wrap(sent.get(0));
+        assertEquals(1, msg.getInt());
+        assertEquals(5, msg.getInt());
+
+        Throwable e = reported.poll(10, TimeUnit.SECONDS);
+        assertInstanceOf(IllegalArgumentException.class, e);
+        assertEquals("key too large to broadcast: 25 bytes", e.getMessage());
+    }
+
+    private InvalidationBus<String> bus(InvalidationTransport transport) {
+        // A long interval so only the explicit flushes send
+        InvalidationBus<String> bus = new InvalidationBus<>(transport, Codec.STRING, 60_000, 1 << 20);
+        opened.add(bus);
+        return bus;
+    }
+
+    private static BlockingQueue<Collection<String>> subscribe(InvalidationBus<String> bus) {
+        BlockingQueue<Collection<String>> batches = new LinkedBlockingQueue<>();
+        bus.subscribe(batch -> batches.add(List.copyOf(batch)));
+        return batches;
+    }
+
+    private static Collection<String> next(BlockingQueue<Collection<String>> batches) throws InterruptedException {
+        Collection<String> batch = batches.poll(10, TimeUnit.SECONDS);
+        assertNotNull(batch, "no batch delivered");
+        return batch;
+    }
+
+    private static int[] freePorts(int n) throws IOException {
+        int[] ports = new int[n];
+        List<DatagramChannel> probes = new ArrayList<>();
+        try {
+            for (int i = 0; i < n; i++) {
+                DatagramChannel probe = DatagramChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+                probes.add(probe);
+                ports[i] = ((InetSocketAddress) probe.getLocalAddress()).getPort();
+            }
+        } finally {
+            for (DatagramChannel probe : probes) probe.close();
+        }
+        return ports;
+    }
+}
@@ -0,0 +1,179 @@
+package io.github.flameyossnowy.velocis.cache.partitioned;
+
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PartitionedCacheTest {
+
+    private static final int KEYS = 20_000;
+
+    private final List<LoopbackCacheNode<Integer, String>> opened = new ArrayList<>();
+
+    @AfterEach
+    void closeNodes() {
+        opened.forEach(LoopbackCacheNode::close);
+    }
+
+    @Test
+    void addingANodeMovesOnlyItsShareOfKeys() {
+        PartitionedCache<Integer, String> cache = new PartitionedCache<>(List.of(node("a"), node("b"), node("c"), node("d")));
+        Map<Integer, String> before = owners(cache);
+
+        cache.addNode(node("e"));
+        Map<Integer, String> after = owners(cache);
+
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            if (before.get(key).equals(after.get(key))) continue;
+            moved++;
+            assertEquals("e", after.get(key), "key " + key + " moved between old nodes");
+        }
+        assertShare(moved, 5);
+    }
+
+    @Test
+    void removingANodeMovesOnlyTheKeysItOwned() {
+        PartitionedCache<Integer, String> cache = new PartitionedCache<>(List.of(node("a"), node("b"), node("c"), node("d"), node("e")));
+        Map<Integer, String> before = owners(cache);
+
+        assertTrue(cache.removeNode("c"));
+        assertFalse(cache.removeNode("c"));
+        Map<Integer, String> after = owners(cache);
+
+        int moved = 0;
+        for (int key = 0; key < KEYS; key++) {
+            if (before.get(key).equals(after.get(key))) continue;
+            moved++;
+            assertEquals("c", before.get(key), "key " + key + " moved off a node that stayed");
+        }
+        assertShare(moved, 5);
+    }
+
+    @Test
+    void removedAndReAddedNodeGetsItsKeysBack() {
+        PartitionedCache<Integer, String> cache = new PartitionedCache<>(List.of(node("a"), node("b"), node("c")));
+        Map<Integer, String> before = owners(cache);
+        cache.removeNode("b");
+        cache.addNode(node("b"));
+        assertEquals(before, owners(cache));
+    }
+
+    @Test
+    void getAllSendsOneBatchPerOwner() {
+        List<CountingNode> nodes = List.of(counting("a"), counting("b"), counting("c"), counting("d"));
+        PartitionedCache<Integer, String> cache = new PartitionedCache<>(nodes);
+
+        Map<Integer, String> entries = new HashMap<>();
+        for (int key = 0; key < 1000; key++) entries.put(key, "v" + key);
+        cache.putAll(entries);
+
+        List<Integer> wanted = new ArrayList<>(entries.keySet());
+        wanted.add(-1); // absent keys are left out
+        assertEquals(entries, cache.getAll(wanted));
+
+        for (CountingNode node : nodes) {
+            assertEquals(1, node.putAlls.get(), node.id());
+            assertEquals(1, node.getAlls.get(), node.id());
+            assertEquals(0, node.singleCalls.get(), node.id());
+            for (Integer key : node.lastBatch) assertSame(node, cache.ownerOf(key), "key " + key + " sent to " + node.id());
+        }
+        int batched = nodes.stream().mapToInt(n -> n.lastBatch.size()).sum();
+        assertEquals(wanted.size(), batched);
+    }
+
+    @Test
+    void movedKeysMissOnceAfterAddNode() {
+        PartitionedCache<Integer, String> cache = new PartitionedCache<>(List.of(node("a"), node("b")));
+        for (int key = 0; key < 1000; key++) cache.put(key, "v" + key);
+        cache.addNode(node("c"));
+
+        for (int key = 0; key < 1000; key++) {
+            if (cache.ownerOf(key).id().equals("c")) {
+                assertNull(cache.get(key));
+                cache.put(key, "v" + key);
+            }
+            assertEquals("v" + key, cache.get(key));
+        }
+    }
+
+    @Test
+    void rejectsDuplicateIdsAndEmptyRings() {
+        assertThrows(IllegalArgumentException.class, () -> new PartitionedCache<>(List.of(node("a"), node("a"))));
+        PartitionedCache<Integer, String> cache = new PartitionedCache<>(List.of(node("a")));
+        assertThrows(IllegalArgumentException.class, () -> cache.addNode(node("a")));
+        assertThrows(IllegalArgumentException.class, () -> cache.removeNode("a"));
+        assertEquals(1, cache.nodes().size());
+    }
+
+    /** Expects about {@code 1/n} of the keys, within a generous margin for ring variance. */
+    private static void assertShare(int moved, int n) {
+        double share = (double) moved / KEYS;
+        assertTrue(share > 0.6 / n && share < 1.4 / n, "moved " + moved + " of " + KEYS);
+    }
+
+    private static Map<Integer, String> owners(PartitionedCache<Integer, String> cache) {
+        Map<Integer, String> owners = new HashMap<>();
+        for (int key = 0; key < KEYS; key++) owners.put(key, cache.ownerOf(key).id());
+        return owners;
+    }
+
+    private LoopbackCacheNode<Integer, String> node(String id) {
+        LoopbackCacheNode<Integer, String> node = new LoopbackCacheNode<>(new LocalCacheNode<>(id, 4096));
+        opened.add(node);
+        return node;
+    }
+
+    private CountingNode counting(String id) {
+        return new CountingNode(node(id));
+    }
+
+    /** Counts the requests that reach a node. */
+    private static final class CountingNode implements CacheNode<Integer, String> {
+        final CacheNode<Integer, String> target;
+        final AtomicInteger getAlls     = new AtomicInteger();
+        final AtomicInteger putAlls     = new AtomicInteger();
+        final AtomicInteger singleCalls = new AtomicInteger();
+        volatile List<Integer> lastBatch = List.of();
+
+        CountingNode(CacheNode<Integer, String> target) {
+            this.target = target;
+        }
+
+        @Override public @NotNull String id() {
+            return target.id();
+        }
+
+        @Override public @NotNull CompletableFuture<String> get(@NotNull Integer key) {
+            singleCalls.incrementAndGet();
+            return target.get(key);
+        }
+
+        @Override public @NotNull CompletableFuture<Map<Integer, String>> getAll(@NotNull Collection<? extends Integer> keys) {
+            getAlls.incrementAndGet();
+            lastBatch = List.copyOf(keys);
+            return target.getAll(keys);
+        }
+
+        @Override public @NotNull CompletableFuture<String> put(@NotNull Integer key, @NotNull String value) {
+            singleCalls.incrementAndGet();
+            return target.put(key, value);
+        }
+
+        @Override public @NotNull CompletableFuture<Void> putAll(@NotNull Map<? extends Integer, ? extends String> entries) {
+            putAlls.incrementAndGet();
+            return target.putAll(entries);
+        }
+
+        @Override public @NotNull CompletableFuture<String> remove(@NotNull Integer key) {
+            singleCalls.incrementAndGet();
+            return target.remove(key);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.flameyossnowy.velocis.cache.tiered;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapStoreTest {
+
+    /** Each record of a 20-byte value takes 24 bytes, so four fit in 100 with 4 to spare. */
+    private static final int CAPACITY = 100;
+    private static final int VALUE    = 20;
+
+    @Test
+    void ringWrapsAroundEvictingTheOldestRecords() {
+        OffHeapStore<Integer> store = OffHeapStore.direct(CAPACITY);
+        for (int key = 0; key < 100; key++) {
+            assertTrue(store.put(key, value(key)));
+            // The fifth record does not fit the 4 bytes left of the lap and starts the next one
+            int oldest = Math.max(0, key - 3);
+            assertEquals(key - oldest + 1, store.size(), "after key " + key);
+            for (int k = 0; k <= key; k++) {
+                if (k < oldest) {
+                    assertNull(store.get(k), "key " + k + " after key " + key);
+                    assertFalse(store.containsKey(k));
+                } else {
+                    assertArrayEquals(value(k), store.get(k), "key " + k + " after key " + key);
+                }
+            }
+        }
+    }
+
+    @Test
+    void reclaimingAnOldRecordKeepsTheKeysNewerOne() {
+        OffHeapStore<String> store = OffHeapStore.direct(CAPACITY);
+        store.put("a", value(1));
+        store.put("b", value(2));
+        store.put("a", value(3)); // the first record of a is now dead
+        store.put("c", value(4));
+        store.put("d", value(5)); // wraps, reclaiming the dead record of a
+
+        assertArrayEquals(value(3), store.get("a"));
+        assertArrayEquals(value(2), store.get("b"));
+        store.put("e", value(6)); // reclaims b
+        assertNull(store.get("b"));
+        assertArrayEquals(value(3), store.get("a"));
+        assertEquals(4, store.size());
+
+        assertTrue(store.remove("a"));
+        assertFalse(store.remove("a"));
+        assertNull(store.get("a"));
+        store.clear();
+        assertEquals(0, store.size());
+        assertNull(store.get("e"));
+    }
+
+    @Test
+    void valuesLargerThanTheStoreAreRefused() {
+        OffHeapStore<String> store = OffHeapStore.direct(CAPACITY);
+        assertEquals(CAPACITY - Integer.BYTES, store.maxValueSize());
+        assertFalse(store.put("big", new byte[store.maxValueSize() + 1]));
+        assertFalse(store.containsKey("big"));
+        assertTrue(store.put("fits", new byte[store.maxValueSize()]));
+        assertEquals(store.maxValueSize(), store.get("fits").length);
+        assertThrows(IllegalArgumentException.class, () -> OffHeapStore.direct(Integer.BYTES));
+    }
+
+    @Test
+    void mappedStoreWrapsLikeADirectOne(@TempDir Path dir) {
+        OffHeapStore<Integer> store = OffHeapStore.mapped(dir.resolve("store"), CAPACITY);
+        for (int key = 0; key < 10; key++) store.put(key, value(key));
+        assertEquals(4, store.size());
+        for (int key = 6; key < 10; key++) assertArrayEquals(value(key), store.get(key));
+    }
+
+    /**
+     * A read that found the record's position in the index, and was then
+     * lapped by writers before it copied the record out, must return null
+     * rather than the bytes that now sit there.
+     */
+    @Test
+    void readLappedAfterTheIndexLookupReturnsNull() throws ReflectiveOperationException {
+        OffHeapStore<String> store = OffHeapStore.direct(CAPACITY);
+        store.put("a", value(1));
+
+        // Lap "a" between the index lookup and the copy, on the reading thread itself
+        setIndex(store, new ConcurrentHashMap<>() {
+            boolean lapped;
+
+            @Override public Long get(Object key) {
+                Long position = super.get(key);
+                if (!lapped && key.equals("a")) {
+                    lapped = true;
+                    for (int i = 2; i <= 5; i++) store.put("k" + i, value(i));
+                }
+                return position;
+            }
+        });
+        assertNull(store.get("a"));
+        assertFalse(store.containsKey("a"));
+        assertArrayEquals(value(5), store.get("k5"), "the record that overwrote a");
+    }
+
+    /** {@code VALUE} bytes, all equal to {@code seed}. */
+    private static byte[] value(int seed) {
+        byte[] bytes = new byte[VALUE];
+        Arrays.fill(bytes, (byte) seed);
+        return bytes;
+    }
+
+    private static void setIndex(OffHeapStore<String> store, ConcurrentHashMap<String, Long> index) throws ReflectiveOperationException {
+        Field field = OffHeapStore.class.getDeclaredField("index");
+        field.setAccessible(true);
+        @SuppressWarnings("unchecked")
+        ConcurrentHashMap<String, Long> old = (ConcurrentHashMap<String, Long>) field.get(store);
+        index.putAll(old);
+        field.set(store, index);
+    }
+}
@@ -0,0 +1,142 @@
+package io.github.flameyossnowy.velocis.cache.tiered;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Most tests queue demotions on an executor they drain by hand, so an
+ * evicted entry can be caught both while its L2 write is pending and once
+ * it has landed.
+ */
+class TieredCacheTest {
+
+    private final Deque<Runnable> demotions = new ArrayDeque<>();
+    private final Executor        queued    = demotions::add;
+
+    @Test
+    void putReturnsThePreviousValueFromEveryTier() {
+        OffHeapStore<Integer> l2 = OffHeapStore.direct(1 << 16);
+        TieredCache<Integer, String> cache = new TieredCache<>(2, l2, Codec.STRING, queued);
+
+        assertNull(cache.put(1, "a1"));
+        assertNull(cache.put(2, "b1"));
+        assertEquals("a1", cache.put(1, "a2"), "from L1");
+
+        cache.put(3, "c1"); // demotes 2
+        assertEquals(1, demotions.size());
+        assertEquals("b1", cache.put(2, "b2"), "from a pending demotion"); // demotes 1
+        drain();
+        assertFalse(l2.containsKey(2), "the replaced demotion must not land");
+        assertTrue(l2.containsKey(1));
+
+        assertEquals("a2", cache.put(1, "a3"), "from L2"); // demotes 3
+        assertFalse(l2.containsKey(1));
+        drain();
+
+        assertEquals("c1", cache.remove(3), "from L2");
+        assertEquals("a3", cache.remove(1), "from L1");
+        assertNull(cache.remove(1));
+        assertEquals(1, cache.size());
+        assertEquals("b2", cache.get(2));
+    }
+
+    @Test
+    void readsPromoteFromEitherLowerTier() {
+        OffHeapStore<Integer> l2 = OffHeapStore.direct(1 << 16);
+        TieredCache<Integer, String> cache = new TieredCache<>(1, l2, Codec.STRING, queued);
+
+        cache.put(1, "a");
+        cache.put(2, "b"); // demotes 1
+        assertTrue(cache.containsKey(1));
+        assertEquals("a", cache.get(1), "promoted from a pending demotion"); // demotes 2
+        drain();
+        assertFalse(l2.containsKey(1), "the promoted entry's demotion must not land");
+        assertTrue(l2.containsKey(2));
+
+        assertEquals("b", cache.get(2), "promoted from L2"); // demotes 1
+        assertFalse(l2.containsKey(2));
+        assertEquals(1, cache.hotSize());
+        drain();
+        assertEquals(2, cache.size());
+        assertEquals("a", cache.get(1));
+    }
+
+    @Test
+    void writesWhileADemotionIsPendingAreNotUndone() {
+        OffHeapStore<Integer> l2 = OffHeapStore.direct(1 << 16);
+        TieredCache<Integer, String> cache = new TieredCache<>(1, l2, Codec.STRING, queued);
+
+        cache.put(1, "a");
+        cache.put(2, "b"); // demotes 1
+        assertEquals("a", cache.remove(1));
+        drain();
+        assertNull(cache.get(1), "removed entry came back from L2");
+        assertFalse(cache.containsKey(1));
+
+        cache.put(3, "c"); // demotes 2
+        assertEquals("b", cache.put(2, "b2"));
+        drain();
+        assertEquals("b2", cache.get(2), "overwritten entry came back from L2");
+
+        cache.clear();
+        drain();
+        assertEquals(0, cache.size());
+    }
+
+    /**
+     * Threads each own a set of keys and check every result against a
+     * model of their own, while their puts and promotions keep demoting each
+     * other's entries through the background demoter. A lost, stale or
+     * resurrected value fails the owner's next read.
+     */
+    @Test
+    void demotionsAndPromotionsRaceWithoutLosingWrites() throws InterruptedException {
+        int threads = 4;
+        int keys    = 64; // per thread, against an L1 of 16
+        OffHeapStore<Integer> l2 = OffHeapStore.direct(1 << 24); // never laps in this run
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+
+        try (TieredCache<Integer, String> cache = new TieredCache<>(16, l2, Codec.STRING)) {
+            List<Thread> workers = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                int owner = t;
+                workers.add(new Thread(() -> {
+                    Map<Integer, String> model  = new HashMap<>();
+                    Random               random = new Random(owner);
+                    try {
+                        for (int op = 0; op < 20_000; op++) {
+                            int    key   = random.nextInt(keys) * threads + owner;
+                            String at    = "thread " + owner + " op " + op + " key " + key;
+                            int    which = random.nextInt(10);
+                            if (which < 4) {
+                                String value = owner + "-" + op;
+                                assertEquals(model.put(key, value), cache.put(key, value), at);
+                            } else if (which < 9) {
+                                assertEquals(model.get(key), cache.get(key), at);
+                            } else {
+                                assertEquals(model.remove(key), cache.remove(key), at);
+                            }
+                        }
+                        for (Map.Entry<Integer, String> e : model.entrySet()) assertEquals(e.getValue(), cache.get(e.getKey()));
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }));
+            }
+            workers.forEach(Thread::start);
+            for (Thread w : workers) w.join(60_000);
+            for (Thread w : workers) assertFalse(w.isAlive(), "worker stuck");
+        }
+        if (failure.get() != null) fail(failure.get());
+    }
+
+    private void drain() {
+        for (Runnable demotion; (demotion = demotions.poll()) != null; ) demotion.run();
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.flameyossnowy.velocis.tables;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.lang.reflect.Field;
+import java.util.*;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Every key hashes alike, so all entries land in one bin: it must turn
+ * into a tree past the threshold, survive resizes as one, and fall back to
+ * a plain chain once removals shrink it, for keys that are
+ * {@code Comparable} and for keys that only have equals.
+ */
+class HashTableCollisionTest {
+
+    private static final int ENTRIES = 64;
+
+    static class Collider {
+        final int id;
+
+        Collider(int id) {
+            this.id = id;
+        }
+
+        @Override public int hashCode() {
+            return 42;
+        }
+
+        @Override public boolean equals(Object o) {
+            return o instanceof Collider c && c.id == id;
+        }
+
+        @Override public String toString() {
+            return "Collider" + id;
+        }
+    }
+
+    static final class ComparableCollider extends Collider implements Comparable<ComparableCollider> {
+        ComparableCollider(int id) {
+            super(id);
+        }
+
+        @Override public int compareTo(ComparableCollider o) {
+            return Integer.compare(id, o.id);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = { true, false })
+    void collidingKeysTreeifyAndUntreeify(boolean comparable) throws ReflectiveOperationException {
+        IntFunction<Collider> key = comparable ? ComparableCollider::new : Collider::new;
+        HashTable<Collider, Collider, Integer> table = new HashTable<>(16);
+        Map<Integer, Integer> expected = new HashMap<>();
+
+        for (int i = 0; i < ENTRIES; i++) {
+            assertNull(table.put(key.apply(i), key.apply(-i), i));
+            expected.put(i, i);
+        }
+        assertEquals(1, treeBins(table), "a full bin should be a tree after the resizes");
+        assertContents(table, key, expected);
+        assertNull(table.get(key.apply(1), key.apply(1)), "row and column that were never paired");
+
+        // Overwrites and putIfAbsent find the existing tree nodes
+        for (int i = 0; i < ENTRIES; i += 4) {
+            table.put(key.apply(i), key.apply(-i), i + 1000);
+            expected.put(i, i + 1000);
+        }
+        assertEquals(expected.get(8), table.putIfAbsent(key.apply(8), key.apply(-8), -1));
+        assertEquals(ENTRIES, table.size());
+        assertContents(table, key, expected);
+
+        // Removals in an arbitrary order, down to below the untreeify threshold
+        List<Integer> order = new ArrayList<>(expected.keySet());
+        Collections.shuffle(order, new Random(42));
+        for (int i : order.subList(0, ENTRIES - TreeBin.UNTREEIFY_THRESHOLD + 1)) {
+            assertEquals(expected.remove(i), table.remove(key.apply(i), key.apply(-i)));
+            assertNull(table.remove(key.apply(i), key.apply(-i)));
+            assertContents(table, key, expected);
+        }
+        assertEquals(0, treeBins(table), "a bin below the threshold should be a chain again");
+
+        // Growing the chain back past the threshold treeifies it in place
+        for (int i = ENTRIES; i < ENTRIES + TreeBin.TREEIFY_THRESHOLD; i++) {
+            table.put(key.apply(i), key.apply(-i), i);
+            expected.put(i, i);
+        }
+        assertEquals(1, treeBins(table));
+        assertContents(table, key, expected);
+
+        table.clear();
+        assertEquals(0, treeBins(table));
+        assertTrue(table.isEmpty());
+    }
+
+    private static void assertContents(HashTable<Collider, Collider, Integer> table, IntFunction<Collider> key, Map<Integer, Integer> expected) {
+        assertEquals(expected.size(), table.size());
+        for (Map.Entry<Integer, Integer> e : expected.entrySet()) {
+            int i = e.getKey();
+            assertEquals(e.getValue(), table.get(key.apply(i), key.apply(-i)), "entry " + i);
+            assertTrue(table.containsKey(key.apply(i), key.apply(-i)));
+        }
+
+        // The iterators walk the bin chain, tree or not
+        Map<Integer, Integer> iterated = new HashMap<>();
+        for (Table.Entry<Collider, Collider, Integer> e : table.entrySet())
+            assertNull(iterated.put(e.row().id, e.value()), "entry " + e.row() + " seen twice");
+        assertEquals(expected, iterated);
+    }
+
+    private static int treeBins(HashTable<?, ?, ?> table) throws ReflectiveOperationException {
+        Field field = HashTable.class.getDeclaredField("trees");
+        field.setAccessible(true);
+        Object[] trees = (Object[]) field.get(table);
+        if (trees == null) return 0;
+        int bins = 0;
+        for (Object bin : trees) if (bin != null) bins++;
+        return bins;
+    }
+}
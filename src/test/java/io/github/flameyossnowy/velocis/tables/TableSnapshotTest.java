@@ -0,0 +1,85 @@
+package io.github.flameyossnowy.velocis.tables;
+
+import io.github.flameyossnowy.velocis.cache.Codec;
+import io.github.flameyossnowy.velocis.cache.algorithms.ConcurrentLFUCache;
+import org.junit.jupiter.api.Test;
+
+import java.io.*;
+import java.nio.channels.Channels;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/** Snapshots read back from a stream and from a channel hold the same entries, in the same order for linked tables. */
+class TableSnapshotTest {
+
+    private static final Codec<Integer> R = Codec.INTEGER;
+    private static final Codec<String>  C = Codec.STRING;
+    private static final Codec<Long>    V = Codec.LONG;
+
+    @Test
+    void hashTableRoundTrips() throws IOException {
+        HashTable<Integer, String, Long> table = fill(new HashTable<>());
+        byte[] snapshot = bytes(out -> table.writeTo(out, R, C, V));
+        assertArrayEquals(snapshot, bytes(out -> table.writeTo(Channels.newChannel(out), R, C, V)));
+
+        assertEquals(contents(table), contents(HashTable.readFrom(new ByteArrayInputStream(snapshot), R, C, V)));
+        assertEquals(contents(table), contents(HashTable.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), R, C, V)));
+    }
+
+    @Test
+    void concurrentHashTableRoundTrips() throws IOException {
+        ConcurrentHashTable<Integer, String, Long> table = fill(new ConcurrentHashTable<>());
+        byte[] snapshot = bytes(out -> table.writeTo(out, R, C, V));
+        assertArrayEquals(snapshot, bytes(out -> table.writeTo(Channels.newChannel(out), R, C, V)));
+
+        assertEquals(contents(table), contents(ConcurrentHashTable.readFrom(new ByteArrayInputStream(snapshot), R, C, V)));
+        assertEquals(contents(table), contents(ConcurrentHashTable.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), R, C, V)));
+    }
+
+    @Test
+    void linkedHashTableRoundTripsInOrder() throws IOException {
+        LinkedHashTable<Integer, String, Long> table = fill(new LinkedHashTable<>());
+        byte[] snapshot = bytes(out -> table.writeTo(out, R, C, V));
+        assertArrayEquals(snapshot, bytes(out -> table.writeTo(Channels.newChannel(out), R, C, V)));
+
+        assertEquals(order(table), order(LinkedHashTable.readFrom(new ByteArrayInputStream(snapshot), R, C, V)));
+        assertEquals(order(table), order(LinkedHashTable.readFrom(Channels.newChannel(new ByteArrayInputStream(snapshot)), R, C, V)));
+    }
+
+    @Test
+    void snapshotOfAnotherKindIsRejected() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ConcurrentLFUCache<Integer, String>(4).writeTo(out, R, C);
+        assertThrows(StreamCorruptedException.class, () -> HashTable.readFrom(new ByteArrayInputStream(out.toByteArray()), R, C, V));
+    }
+
+    private static <T extends Table<Integer, String, Long>> T fill(T table) {
+        Random random = new Random(46);
+        for (int i = 0; i < 500; i++) table.put(random.nextInt(50), "c" + random.nextInt(20), random.nextLong());
+        return table;
+    }
+
+    private static Map<List<Object>, Long> contents(Table<Integer, String, Long> table) {
+        Map<List<Object>, Long> map = new HashMap<>();
+        for (Table.Entry<Integer, String, Long> e : table.entrySet()) map.put(List.of(e.row(), e.column()), e.value());
+        assertEquals(table.size(), map.size());
+        return map;
+    }
+
+    private static List<List<Object>> order(Table<Integer, String, Long> table) {
+        List<List<Object>> order = new ArrayList<>();
+        for (Table.Entry<Integer, String, Long> e : table.entrySet()) order.add(List.of(e.row(), e.column(), e.value()));
+        return order;
+    }
+
+    private interface Write {
+        void to(OutputStream out) throws IOException;
+    }
+
+    private static byte[] bytes(Write write) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write.to(out);
+        return out.toByteArray();
+    }
+}